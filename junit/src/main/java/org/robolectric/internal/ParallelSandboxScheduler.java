@@ -0,0 +1,183 @@
+package org.robolectric.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.junit.runners.model.RunnerScheduler;
+import org.robolectric.util.Util;
+
+/**
+ * A {@link RunnerScheduler} that runs the children of a runner concurrently on a fixed pool of
+ * worker threads.
+ *
+ * <p>Each worker thread has a stable index in {@code [0, poolSize)}. Runners use the index of the
+ * current worker (see {@link #currentWorkerIndex()}) to select an independent sandbox, so two test
+ * methods running at the same time never share a sandbox (and therefore never share a class loader
+ * or main thread). The worker pool is shared by all runners in the JVM so that the number of
+ * sandboxes per configuration stays bounded by the pool size.
+ *
+ * <p>The default locale and time zone are JVM-global. Runners set them up for each test from its
+ * configuration, and bracket each test with {@link #enterGlobalState(Object)} and {@link
+ * #exitGlobalState(Object)}, passing a key describing that configuration: tests with different keys
+ * run one group at a time, and the default locale and time zone are restored once a group is done.
+ * The gate only knows about the keys, so it doesn't protect tests which change the default locale
+ * or time zone themselves, e.g. with {@link Locale#setDefault(Locale)}.
+ *
+ * <p>This mode is opt-in, enabled by setting the {@code robolectric.sandboxPoolSize} system
+ * property to a value greater than one. Tests that mutate JVM-global state while they run (system
+ * properties, the default locale or time zone, files at fixed paths) are not safe to run in this
+ * mode. Perf stats are reported once per test class rather than once per test.
+ */
+public final class ParallelSandboxScheduler implements RunnerScheduler {
+
+  public static final String POOL_SIZE_PROPERTY = "robolectric.sandboxPoolSize";
+
+  private static final ThreadLocal<Integer> WORKER_INDEX = new ThreadLocal<>();
+  private static final AtomicInteger nextWorkerIndex = new AtomicInteger();
+  private static final GlobalStateGate globalStateGate = new GlobalStateGate();
+  private static ThreadPoolExecutor sharedExecutor;
+
+  private final ExecutorService executor;
+  private final List<Future<?>> futures = new ArrayList<>();
+
+  ParallelSandboxScheduler(int poolSize) {
+    this.executor = getSharedExecutor(poolSize);
+  }
+
+  /** Returns the configured number of sandboxes per configuration; 1 disables parallelism. */
+  public static int getPoolSize() {
+    return Math.max(1, Integer.parseInt(System.getProperty(POOL_SIZE_PROPERTY, "1")));
+  }
+
+  /** Returns true if test methods are configured to run in parallel. */
+  public static boolean isEnabled() {
+    return getPoolSize() > 1;
+  }
+
+  /**
+   * Returns the index of the worker running on the current thread, or 0 if the current thread is
+   * not a worker of a {@link ParallelSandboxScheduler}.
+   */
+  public static int currentWorkerIndex() {
+    Integer index = WORKER_INDEX.get();
+    return index == null ? 0 : index;
+  }
+
+  /**
+   * Blocks until no test which sets up JVM-global state differently from {@code stateKey} is
+   * running. Every call must be followed by a call to {@link #exitGlobalState(Object)}.
+   *
+   * @param stateKey describes the JVM-global state the test sets up; tests with equal keys may run
+   *     concurrently. A null key means the test doesn't set up any JVM-global state.
+   */
+  public static void enterGlobalState(@Nullable Object stateKey) throws InterruptedException {
+    globalStateGate.enter(stateKey);
+  }
+
+  /** Marks a test which called {@link #enterGlobalState(Object)} with {@code stateKey} as done. */
+  public static void exitGlobalState(@Nullable Object stateKey) {
+    globalStateGate.exit(stateKey);
+  }
+
+  private static synchronized ExecutorService getSharedExecutor(int poolSize) {
+    if (sharedExecutor == null) {
+      sharedExecutor =
+          (ThreadPoolExecutor)
+              Executors.newFixedThreadPool(
+                  poolSize,
+                  r -> {
+                    int index = nextWorkerIndex.getAndIncrement();
+                    Thread thread =
+                        new Thread(
+                            () -> {
+                              WORKER_INDEX.set(index);
+                              r.run();
+                            },
+                            "Robolectric sandbox worker " + index);
+                    thread.setDaemon(true);
+                    return thread;
+                  });
+    } else if (sharedExecutor.getMaximumPoolSize() < poolSize) {
+      // Grow the pool rather than replacing it, so worker indices (and so sandboxes) stay unique.
+      sharedExecutor.setMaximumPoolSize(poolSize);
+      sharedExecutor.setCorePoolSize(poolSize);
+    }
+    return sharedExecutor;
+  }
+
+  @Override
+  public void schedule(Runnable childStatement) {
+    synchronized (futures) {
+      futures.add(executor.submit(childStatement));
+    }
+  }
+
+  @Override
+  public void finished() {
+    List<Future<?>> toAwait;
+    synchronized (futures) {
+      toAwait = new ArrayList<>(futures);
+      futures.clear();
+    }
+    for (Future<?> future : toAwait) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        // Test failures are reported through the RunNotifier; anything else escaped the runner.
+        throw Util.sneakyThrow(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Lets tests with the same JVM-global state key run concurrently, and makes tests with a
+   * different key wait until they're all done.
+   */
+  static final class GlobalStateGate {
+    private Object currentKey;
+    private int holders;
+    private Locale savedLocale;
+    private TimeZone savedTimeZone;
+
+    synchronized void enter(@Nullable Object stateKey) throws InterruptedException {
+      if (stateKey == null) {
+        return;
+      }
+      while (holders > 0 && !Objects.equals(currentKey, stateKey)) {
+        wait();
+      }
+      if (holders == 0) {
+        currentKey = stateKey;
+        savedLocale = Locale.getDefault();
+        savedTimeZone = TimeZone.getDefault();
+      }
+      holders++;
+    }
+
+    synchronized void exit(@Nullable Object stateKey) {
+      if (stateKey == null) {
+        return;
+      }
+      if (--holders == 0) {
+        Locale.setDefault(savedLocale);
+        TimeZone.setDefault(savedTimeZone);
+        currentKey = null;
+        savedLocale = null;
+        savedTimeZone = null;
+        notifyAll();
+      }
+    }
+  }
+}
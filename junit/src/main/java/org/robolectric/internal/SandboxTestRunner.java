@@ -9,10 +9,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -64,8 +65,9 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
   protected final ClassHandlerBuilder classHandlerBuilder;
 
   private final List<PerfStatsReporter> perfStatsReporters;
-  private final HashMap<Class<?>, Sandbox> loadedTestClasses = new HashMap<>();
-  private final HashMap<Class<?>, HelperTestRunner> helperRunners = new HashMap<>();
+  private final Map<Class<?>, Sandbox> loadedTestClasses = new ConcurrentHashMap<>();
+  private final Map<Class<?>, HelperTestRunner> helperRunners = new ConcurrentHashMap<>();
+  private final boolean runsInParallel;
 
   public SandboxTestRunner(Class<?> klass) throws InitializationError {
     this(klass, DEFAULT_INJECTOR);
@@ -79,6 +81,12 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
     shadowProviders = injector.getInstance(ShadowProviders.class);
     classHandlerBuilder = injector.getInstance(ClassHandlerBuilder.class);
     perfStatsReporters = Arrays.asList(injector.getInstance(PerfStatsReporter[].class));
+
+    int sandboxPoolSize = ParallelSandboxScheduler.getPoolSize();
+    runsInParallel = sandboxPoolSize > 1;
+    if (runsInParallel) {
+      setScheduler(new ParallelSandboxScheduler(sandboxPoolSize));
+    }
   }
 
   @Nonnull
@@ -97,6 +105,11 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
     return new Statement() {
       @Override
       public void evaluate() throws Throwable {
+        PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
+        if (runsInParallel) {
+          // Tests running concurrently share the collector, so report their stats together.
+          perfStatsCollector.setEnabled(!perfStatsReporters.isEmpty());
+        }
         try {
           statement.evaluate();
           for (Map.Entry<Class<?>, Sandbox> entry : loadedTestClasses.entrySet()) {
@@ -118,15 +131,17 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
         } finally {
           afterClass();
           loadedTestClasses.clear();
+          if (runsInParallel) {
+            reportPerfStats(perfStatsCollector);
+            perfStatsCollector.reset();
+          }
         }
       }
     };
   }
 
   private void invokeBeforeClass(final Class<?> clazz, final Sandbox sandbox) throws Throwable {
-    if (!loadedTestClasses.containsKey(clazz)) {
-      loadedTestClasses.put(clazz, sandbox);
-
+    if (loadedTestClasses.putIfAbsent(clazz, sandbox) == null) {
       final TestClass testClass = new TestClass(clazz);
       final List<FrameworkMethod> befores = testClass.getAnnotatedMethods(BeforeClass.class);
       for (FrameworkMethod before : befores) {
@@ -236,74 +251,100 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
     return new Statement() {
       @Override
       public void evaluate() throws Throwable {
-        PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
-        perfStatsCollector.setEnabled(!perfStatsReporters.isEmpty());
-
-        Event initialization = perfStatsCollector.startEvent("initialization");
-
-        final Sandbox sandbox = getSandbox(method);
-
-        // Configure sandbox *BEFORE* setting the ClassLoader. This is necessary because
-        // creating the ShadowMap loads all ShadowProviders via ServiceLoader and this is
-        // not available once we install the Robolectric class loader.
-        configureSandbox(sandbox, method);
-
-        sandbox.runOnMainThread(
-            () -> {
-              ClassLoader priorContextClassLoader = Thread.currentThread().getContextClassLoader();
-              Thread.currentThread().setContextClassLoader(sandbox.getRobolectricClassLoader());
-
-              Class<?> bootstrappedTestClass =
-                  sandbox.bootstrappedClass(getTestClass().getJavaClass());
-              HelperTestRunner helperTestRunner = getCachedHelperTestRunner(bootstrappedTestClass);
-              helperTestRunner.frameworkMethod = method;
-
-              // The method class may be different than the test class if the method annotated @Test
-              // is declared on a superclass of the test.
-              Class<?> bootstrappedMethodClass =
-                  sandbox.bootstrappedClass(method.getMethod().getDeclaringClass());
-              final Method bootstrappedMethod;
-              try {
-                Class<?>[] parameterTypes =
-                    stream(method.getMethod().getParameterTypes())
-                        .map(type -> type.isPrimitive() ? type : sandbox.bootstrappedClass(type))
-                        .toArray(Class[]::new);
-                bootstrappedMethod =
-                    bootstrappedMethodClass.getMethod(method.getMethod().getName(), parameterTypes);
-              } catch (NoSuchMethodException e) {
-                throw new RuntimeException(e);
-              }
-
-              try {
-                // Only invoke @BeforeClass once per class
-                invokeBeforeClass(bootstrappedTestClass, sandbox);
-
-                beforeTest(sandbox, method, bootstrappedMethod);
-
-                initialization.finished();
-
-                Statement statement =
-                    helperTestRunner.methodBlock(new FrameworkMethod(bootstrappedMethod));
-
-                // todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
-                try {
-                  statement.evaluate();
-                } finally {
-                  afterTest(method, bootstrappedMethod);
-                }
-              } catch (Throwable throwable) {
-                throw Util.sneakyThrow(throwable);
-              } finally {
-                Thread.currentThread().setContextClassLoader(priorContextClassLoader);
-                finallyAfterTest(method);
-                reportPerfStats(perfStatsCollector);
-                perfStatsCollector.reset();
-              }
-            });
+        Object globalStateKey = runsInParallel ? getGlobalStateKey(method) : null;
+        ParallelSandboxScheduler.enterGlobalState(globalStateKey);
+        try {
+          evaluateInSandbox(method);
+        } finally {
+          ParallelSandboxScheduler.exitGlobalState(globalStateKey);
+        }
       }
     };
   }
 
+  private void evaluateInSandbox(FrameworkMethod method) {
+    PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
+    if (!runsInParallel) {
+      perfStatsCollector.setEnabled(!perfStatsReporters.isEmpty());
+    }
+
+    Event initialization = perfStatsCollector.startEvent("initialization");
+
+    final Sandbox sandbox = getSandbox(method);
+
+    // Configure sandbox *BEFORE* setting the ClassLoader. This is necessary because
+    // creating the ShadowMap loads all ShadowProviders via ServiceLoader and this is
+    // not available once we install the Robolectric class loader.
+    configureSandbox(sandbox, method);
+
+    sandbox.runOnMainThread(
+        () -> {
+          ClassLoader priorContextClassLoader = Thread.currentThread().getContextClassLoader();
+          Thread.currentThread().setContextClassLoader(sandbox.getRobolectricClassLoader());
+
+          Class<?> bootstrappedTestClass =
+              sandbox.bootstrappedClass(getTestClass().getJavaClass());
+          HelperTestRunner helperTestRunner = getCachedHelperTestRunner(bootstrappedTestClass);
+          helperTestRunner.frameworkMethod = method;
+
+          // The method class may be different than the test class if the method annotated @Test
+          // is declared on a superclass of the test.
+          Class<?> bootstrappedMethodClass =
+              sandbox.bootstrappedClass(method.getMethod().getDeclaringClass());
+          final Method bootstrappedMethod;
+          try {
+            Class<?>[] parameterTypes =
+                stream(method.getMethod().getParameterTypes())
+                    .map(type -> type.isPrimitive() ? type : sandbox.bootstrappedClass(type))
+                    .toArray(Class[]::new);
+            bootstrappedMethod =
+                bootstrappedMethodClass.getMethod(method.getMethod().getName(), parameterTypes);
+          } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+          }
+
+          try {
+            // Only invoke @BeforeClass once per class
+            invokeBeforeClass(bootstrappedTestClass, sandbox);
+
+            beforeTest(sandbox, method, bootstrappedMethod);
+
+            initialization.finished();
+
+            Statement statement =
+                helperTestRunner.methodBlock(new FrameworkMethod(bootstrappedMethod));
+
+            // todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
+            try {
+              statement.evaluate();
+            } finally {
+              afterTest(method, bootstrappedMethod);
+            }
+          } catch (Throwable throwable) {
+            throw Util.sneakyThrow(throwable);
+          } finally {
+            Thread.currentThread().setContextClassLoader(priorContextClassLoader);
+            finallyAfterTest(method);
+            if (!runsInParallel) {
+              reportPerfStats(perfStatsCollector);
+              perfStatsCollector.reset();
+            }
+          }
+        });
+  }
+
+  /**
+   * Returns a key describing the JVM-global state (such as the default locale) that the given test
+   * sets up, or null if it doesn't set up any. When test methods run in parallel, tests with
+   * different keys never run at the same time.
+   *
+   * @see ParallelSandboxScheduler#enterGlobalState(Object)
+   */
+  @Nullable
+  protected Object getGlobalStateKey(FrameworkMethod method) {
+    return null;
+  }
+
   @SuppressWarnings("CatchAndPrintStackTrace")
   private void reportPerfStats(PerfStatsCollector perfStatsCollector) {
     if (perfStatsReporters.isEmpty()) {
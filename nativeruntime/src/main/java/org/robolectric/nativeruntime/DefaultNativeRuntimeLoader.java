@@ -9,7 +9,6 @@ import android.os.Build;
 import com.google.auto.service.AutoService;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import java.io.File;
 import java.io.IOException;
@@ -22,13 +21,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 import javax.annotation.Priority;
 import org.robolectric.pluginapi.NativeRuntimeLoader;
 import org.robolectric.util.PerfStatsCollector;
-import org.robolectric.util.TempDirectory;
+import org.robolectric.util.ResourceExtractionCache;
 import org.robolectric.util.inject.Injector;
 
 /** Loads the Robolectric native runtime. */
@@ -40,7 +41,9 @@ public class DefaultNativeRuntimeLoader implements NativeRuntimeLoader {
   private static final AtomicReference<NativeRuntimeLoader> nativeRuntimeLoader =
       new AtomicReference<>();
 
-  private TempDirectory extractDirectory;
+  private static final String ICU_DAT_PATH = "icu/icudt68l.dat";
+
+  private Path extractDirectory;
 
   public static void injectAndLoad() {
     // Ensure a single instance.
@@ -74,43 +77,49 @@ public class DefaultNativeRuntimeLoader implements NativeRuntimeLoader {
           .measure(
               "loadNativeRuntime",
               () -> {
-                extractDirectory = new TempDirectory("nativeruntime");
                 System.setProperty("icu.locale.default", Locale.getDefault().toLanguageTag());
-                if (Build.VERSION.SDK_INT >= O) {
-                  maybeCopyFonts(extractDirectory);
+                Map<String, URL> resources = new TreeMap<>();
+                boolean hasFonts = Build.VERSION.SDK_INT >= O && addFonts(resources);
+                boolean hasIcuData = addIcuData(resources);
+                // Fonts and ICU data are read-only, so they can be shared with other JVMs.
+                extractDirectory =
+                    ResourceExtractionCache.getInstance().extract("nativeruntime", resources);
+                if (hasFonts) {
+                  System.setProperty(
+                      "robolectric.nativeruntime.fontdir",
+                      // Android's FontListParser expects a trailing slash for the base font
+                      // directory.
+                      extractDirectory.resolve("fonts").toAbsolutePath() + File.separator);
+                }
+                if (hasIcuData) {
+                  System.setProperty(
+                      "icu.data.path",
+                      extractDirectory.resolve(ICU_DAT_PATH).toAbsolutePath().toString());
                 }
-                maybeCopyIcuData(extractDirectory);
-                loadLibrary(extractDirectory);
+                loadLibrary();
               });
     } catch (IOException e) {
       throw new AssertionError("Unable to load Robolectric native runtime library", e);
     }
   }
 
-  /** Attempts to load the ICU dat file. This is only relevant for native graphics. */
-  private void maybeCopyIcuData(TempDirectory tempDirectory) throws IOException {
-    URL icuDatUrl;
+  /** Adds the ICU dat file, if available. This is only relevant for native graphics. */
+  private static boolean addIcuData(Map<String, URL> resources) {
     try {
-      icuDatUrl = Resources.getResource("icu/icudt68l.dat");
+      resources.put(ICU_DAT_PATH, Resources.getResource(ICU_DAT_PATH));
+      return true;
     } catch (IllegalArgumentException e) {
-      return;
+      return false;
     }
-    Path icuPath = tempDirectory.create("icu");
-    Path icuDatPath = icuPath.resolve("icudt68l.dat");
-    Resources.asByteSource(icuDatUrl).copyTo(Files.asByteSink(icuDatPath.toFile()));
-    System.setProperty("icu.data.path", icuDatPath.toAbsolutePath().toString());
   }
 
-  /**
-   * Attempts to copy the system fonts to a temporary directory. This is only relevant for native
-   * graphics.
-   */
-  private void maybeCopyFonts(TempDirectory tempDirectory) throws IOException {
+  /** Adds the system fonts, if available. This is only relevant for native graphics. */
+  private static boolean addFonts(Map<String, URL> resources) throws IOException {
     URI fontsUri = null;
     try {
       fontsUri = Resources.getResource("fonts/").toURI();
     } catch (IllegalArgumentException | URISyntaxException e) {
-      return;
+      return false;
     }
 
     FileSystem zipfs = null;
@@ -120,7 +129,6 @@ public class DefaultNativeRuntimeLoader implements NativeRuntimeLoader {
     }
 
     Path fontsInputPath = Paths.get(fontsUri);
-    Path fontsOutputPath = tempDirectory.create("fonts");
 
     try (Stream<Path> pathStream = java.nio.file.Files.walk(fontsInputPath)) {
       Iterator<Path> fileIterator = pathStream.iterator();
@@ -131,25 +139,20 @@ public class DefaultNativeRuntimeLoader implements NativeRuntimeLoader {
           continue;
         }
         String fontPath = "fonts/" + path.getFileName();
-        URL resource = Resources.getResource(fontPath);
-        Path outputPath = tempDirectory.getBasePath().resolve(fontPath);
-        Resources.asByteSource(resource).copyTo(Files.asByteSink(outputPath.toFile()));
+        resources.put(fontPath, Resources.getResource(fontPath));
       }
     }
-    System.setProperty(
-        "robolectric.nativeruntime.fontdir",
-        // Android's FontListParser expects a trailing slash for the base font directory.
-        fontsOutputPath.toAbsolutePath() + File.separator);
     if (zipfs != null) {
       zipfs.close();
     }
+    return true;
   }
 
-  private void loadLibrary(TempDirectory tempDirectory) throws IOException {
+  private void loadLibrary() throws IOException {
     String libraryName = System.mapLibraryName("robolectric-nativeruntime");
-    Path libraryPath = tempDirectory.getBasePath().resolve(libraryName);
     URL libraryResource = Resources.getResource(nativeLibraryPath());
-    Resources.asByteSource(libraryResource).copyTo(Files.asByteSink(libraryPath.toFile()));
+    Path libraryPath =
+        ResourceExtractionCache.getInstance().extractNativeLibrary(libraryName, libraryResource);
     System.load(libraryPath.toAbsolutePath().toString());
   }
 
@@ -193,7 +196,7 @@ public class DefaultNativeRuntimeLoader implements NativeRuntimeLoader {
 
   @VisibleForTesting
   Path getDirectory() {
-    return extractDirectory == null ? null : extractDirectory.getBasePath();
+    return extractDirectory;
   }
 
   @VisibleForTesting
@@ -9,6 +9,9 @@ public class Metric {
   private long elapsedNs;
   private long minNs;
   private long maxNs;
+  private long p50Ns;
+  private long p90Ns;
+  private long p99Ns;
   private final boolean success;
 
   public Metric(String name, int count, int elapsedNs, boolean success) {
@@ -22,6 +25,28 @@ public class Metric {
     this(name, 0, 0, success);
   }
 
+  /** Creates a snapshot of a metric, including latency percentiles. */
+  public Metric(
+      String name,
+      int count,
+      long elapsedNs,
+      long minNs,
+      long maxNs,
+      long p50Ns,
+      long p90Ns,
+      long p99Ns,
+      boolean success) {
+    this.name = name;
+    this.count = count;
+    this.elapsedNs = elapsedNs;
+    this.minNs = minNs;
+    this.maxNs = maxNs;
+    this.p50Ns = p50Ns;
+    this.p90Ns = p90Ns;
+    this.p99Ns = p99Ns;
+    this.success = success;
+  }
+
   public String getName() {
     return name;
   }
@@ -42,6 +67,21 @@ public class Metric {
     return maxNs;
   }
 
+  /** Returns the median duration, or 0 if percentiles weren't tracked for this metric. */
+  public long getP50Ns() {
+    return p50Ns;
+  }
+
+  /** Returns the 90th percentile duration, or 0 if percentiles weren't tracked. */
+  public long getP90Ns() {
+    return p90Ns;
+  }
+
+  /** Returns the 99th percentile duration, or 0 if percentiles weren't tracked. */
+  public long getP99Ns() {
+    return p99Ns;
+  }
+
   public boolean isSuccess() {
     return success;
   }
@@ -95,6 +135,9 @@ public class Metric {
         + ", count=" + count
         + ", minNs=" + minNs
         + ", maxNs=" + maxNs
+        + ", p50Ns=" + p50Ns
+        + ", p90Ns=" + p90Ns
+        + ", p99Ns=" + p99Ns
         + ", elapsedNs=" + elapsedNs
         + ", success=" + success
         + '}';
@@ -1,18 +1,53 @@
 package org.robolectric.preinstrumented;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.tree.ClassNode;
 import org.robolectric.config.AndroidConfigurer;
 import org.robolectric.interceptors.AndroidInterceptors;
 import org.robolectric.internal.bytecode.ClassDetails;
@@ -29,10 +64,23 @@ public class JarInstrumentor {
 
   private static final int ONE_MB = 1024 * 1024;
 
+  /** Suffix of the index written next to each destination JAR to support incremental runs. */
+  private static final String INDEX_SUFFIX = ".index";
+
+  /** Bumped whenever the index format or the way its stamp is computed changes. */
+  private static final int INDEX_FORMAT_VERSION = 2;
+
+  /** How many entries per thread may be instrumented ahead of the entry being written. */
+  private static final int MAX_PENDING_ENTRIES_PER_THREAD = 64;
+
   private static final Injector INJECTOR = new Injector.Builder().build();
 
   private final ClassInstrumentor classInstrumentor;
   private final InstrumentationConfiguration instrumentationConfiguration;
+  private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+  private int lastClassCount;
+  private int lastReusedClassCount;
 
   public static void main(String[] args) throws IOException, ClassNotFoundException {
     new JarInstrumentor().processCommandLine(args);
@@ -58,7 +106,15 @@ public class JarInstrumentor {
       return;
     }
 
-    System.err.println("Usage: JarInstrumentor <source jar> <dest jar> ");
+    if (args.length == 3 && args[2].equals("--incremental")) {
+      File sourceFile = new File(args[0]);
+      File destJarFile = new File(args[1]);
+
+      instrumentJarIncrementally(sourceFile, destJarFile);
+      return;
+    }
+
+    System.err.println("Usage: JarInstrumentor <source jar> <dest jar> [--incremental]");
     exit(1);
   }
 
@@ -71,77 +127,503 @@ public class JarInstrumentor {
   /**
    * Performs the JAR instrumentation.
    *
+   * <p>Classes are instrumented in parallel, but entries are always written in the order of the
+   * source JAR, so the output is deterministic.
+   *
    * @param sourceJarFile The source JAR to process.
    * @param destJarFile The destination JAR with the instrumented method calls.
    */
   @VisibleForTesting
   protected void instrumentJar(File sourceJarFile, File destJarFile)
       throws IOException, ClassNotFoundException {
+    instrumentJar(sourceJarFile, destJarFile, null, false);
+    // an index left by an earlier incremental run no longer describes the destination JAR
+    Files.deleteIfExists(indexFileFor(destJarFile).toPath());
+  }
+
+  /**
+   * Like {@link #instrumentJar(File, File)}, but copies classes from an existing destination JAR
+   * instead of instrumenting them again if neither the class nor anything else that affects its
+   * instrumentation has changed since that JAR was written. The output is identical to that of a
+   * full run. An index is written next to the destination JAR so that the next incremental run
+   * can reuse its entries.
+   *
+   * @param sourceJarFile The source JAR to process.
+   * @param destJarFile The destination JAR, which is replaced once the new one has been written.
+   */
+  @VisibleForTesting
+  protected void instrumentJarIncrementally(File sourceJarFile, File destJarFile)
+      throws IOException, ClassNotFoundException {
+    if (!destJarFile.exists()) {
+      instrumentJar(sourceJarFile, destJarFile, null, true);
+      return;
+    }
+
+    File tmpJarFile = new File(destJarFile.getPath() + ".tmp");
+    instrumentJar(sourceJarFile, tmpJarFile, destJarFile, true);
+    // Each index entry records the CRC of the output it describes, so a stale index left behind
+    // by an interrupted move is harmless.
+    Files.move(
+        indexFileFor(tmpJarFile).toPath(),
+        indexFileFor(destJarFile).toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    Files.move(tmpJarFile.toPath(), destJarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * @param previousJarFile A JAR previously written by this class whose entries may be reused, or
+   *     null.
+   * @param writeIndex Whether to write an index next to the destination JAR.
+   */
+  private void instrumentJar(
+      File sourceJarFile, File destJarFile, File previousJarFile, boolean writeIndex)
+      throws IOException, ClassNotFoundException {
     long startNs = System.nanoTime();
-    JarFile jarFile = new JarFile(sourceJarFile);
-    ClassNodeProvider classNodeProvider =
-        new ClassNodeProvider() {
-          @Override
-          protected byte[] getClassBytes(String className) throws ClassNotFoundException {
-            return JarInstrumentor.getClassBytes(className, jarFile);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try (JarFile jarFile = new JarFile(sourceJarFile)) {
+      // get the jar's SDK version
+      int sdkVersion;
+      try {
+        sdkVersion = getJarAndroidSDKVersion(jarFile);
+      } catch (Exception e) {
+        throw new AssertionError("Unable to get Android SDK version from Jar file", e);
+      }
+      classInstrumentor.setAndroidJarSDKVersion(sdkVersion);
+
+      List<JarEntry> entries = Collections.list(jarFile.entries());
+      Map<String, SourceClass> sourceClasses = readSourceClasses(pool, jarFile, entries);
+      String stamp = computeStamp(sdkVersion, sourceClasses);
+      Index previousIndex =
+          previousJarFile == null ? Index.EMPTY : Index.read(indexFileFor(previousJarFile), stamp);
+
+      try (JarFile previousJar = previousIndex.isEmpty() ? null : new JarFile(previousJarFile)) {
+        InstrumentationRun run =
+            new InstrumentationRun(jarFile, sourceClasses, previousJar, previousIndex);
+        run.writeJar(pool, entries, destJarFile);
+        if (writeIndex) {
+          run.index.write(indexFileFor(destJarFile), stamp);
+        }
+        lastClassCount = run.classCount;
+        lastReusedClassCount = run.reusedClassCount;
+
+        long elapsedNs = System.nanoTime() - startNs;
+        System.out.println(
+            String.format(
+                Locale.getDefault(),
+                "Wrote %d classes (%d reused) and %d resources in %1.2f seconds",
+                run.classCount,
+                run.reusedClassCount,
+                run.nonClassCount,
+                elapsedNs / 1000000000.0));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Hashes every class in the JAR and records its position in the type hierarchy. */
+  private static Map<String, SourceClass> readSourceClasses(
+      ForkJoinPool pool, JarFile jarFile, List<JarEntry> entries)
+      throws IOException, ClassNotFoundException {
+    List<ForkJoinTask<SourceClass>> tasks = new ArrayList<>();
+    for (JarEntry jarEntry : entries) {
+      if (jarEntry.getName().endsWith(".class")) {
+        tasks.add(
+            pool.submit(
+                () ->
+                    new SourceClass(
+                        jarEntry.getName(),
+                        ByteStreams.toByteArray(jarFile.getInputStream(jarEntry)))));
+      }
+    }
+    Map<String, SourceClass> sourceClasses = new TreeMap<>();
+    for (ForkJoinTask<SourceClass> task : tasks) {
+      SourceClass sourceClass = await(task);
+      sourceClasses.put(sourceClass.name, sourceClass);
+    }
+    return sourceClasses;
+  }
+
+  /**
+   * Computes a hash of everything besides a class's own bytes that affects how it is instrumented.
+   */
+  private String computeStamp(int sdkVersion, Map<String, SourceClass> sourceClasses) {
+    Hasher hasher =
+        Hashing.sha256()
+            .newHasher()
+            .putInt(INDEX_FORMAT_VERSION)
+            .putInt(sdkVersion)
+            .putString(instrumentationConfiguration.fingerprint(), StandardCharsets.UTF_8)
+            .putString(
+                Strings.nullToEmpty(System.getProperty("java.specification.version")),
+                StandardCharsets.UTF_8);
+    // ClassInstrumentor relies on helpers in its own package and on ASM, so hash them all.
+    putPackageClassFiles(hasher, ClassInstrumentor.class);
+    putPackageClassFiles(hasher, ClassReader.class);
+    putPackageClassFiles(hasher, GeneratorAdapter.class);
+    putPackageClassFiles(hasher, ClassNode.class);
+    putClassFile(hasher, classInstrumentor.getClass());
+    // Stack map frames of a class are computed from the supertypes of other classes, so any change
+    // to the type hierarchy invalidates every entry.
+    for (SourceClass sourceClass : sourceClasses.values()) {
+      hasher
+          .putString(sourceClass.name, StandardCharsets.UTF_8)
+          .putString(sourceClass.hierarchy, StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putClassFile(Hasher hasher, Class<?> clazz) {
+    String resourceName = clazz.getName().replace('.', '/') + ".class";
+    hasher.putString(resourceName, StandardCharsets.UTF_8);
+    ClassLoader classLoader = JarInstrumentor.class.getClassLoader();
+    try (InputStream in = classLoader.getResourceAsStream(resourceName)) {
+      if (in != null) {
+        hasher.putBytes(ByteStreams.toByteArray(in));
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("couldn't read " + resourceName, e);
+    }
+  }
+
+  /**
+   * Hashes every class in the package of {@code packageMember}, as found in the JAR or directory
+   * it was loaded from. If they can't be found, hashes a random value, so that no entries are
+   * reused.
+   */
+  private static void putPackageClassFiles(Hasher hasher, Class<?> packageMember) {
+    String className = packageMember.getName();
+    String packagePath = className.substring(0, className.lastIndexOf('.') + 1).replace('.', '/');
+    hasher.putString(packagePath, StandardCharsets.UTF_8);
+    CodeSource codeSource = packageMember.getProtectionDomain().getCodeSource();
+    URL location = codeSource == null ? null : codeSource.getLocation();
+    try {
+      Path path =
+          location == null || !"file".equals(location.getProtocol())
+              ? null
+              : Paths.get(location.toURI());
+      if (path != null && Files.isDirectory(path)) {
+        Path packageDir = path.resolve(packagePath);
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.list(packageDir)) {
+          classFiles =
+              files
+                  .filter(file -> file.getFileName().toString().endsWith(".class"))
+                  .sorted()
+                  .collect(Collectors.toList());
+        }
+        for (Path classFile : classFiles) {
+          hasher
+              .putString(classFile.getFileName().toString(), StandardCharsets.UTF_8)
+              .putBytes(Files.readAllBytes(classFile));
+        }
+      } else if (path != null && Files.isRegularFile(path)) {
+        try (JarFile jarFile = new JarFile(path.toFile())) {
+          List<JarEntry> classEntries =
+              Collections.list(jarFile.entries()).stream()
+                  .filter(
+                      entry ->
+                          entry.getName().startsWith(packagePath)
+                              && entry.getName().endsWith(".class")
+                              && entry.getName().indexOf('/', packagePath.length()) < 0)
+                  .sorted((a, b) -> a.getName().compareTo(b.getName()))
+                  .collect(Collectors.toList());
+          for (JarEntry classEntry : classEntries) {
+            try (InputStream in = jarFile.getInputStream(classEntry)) {
+              hasher
+                  .putString(classEntry.getName(), StandardCharsets.UTF_8)
+                  .putBytes(ByteStreams.toByteArray(in));
+            }
           }
-        };
+        }
+      } else {
+        hasher.putString(UUID.randomUUID().toString(), StandardCharsets.UTF_8);
+      }
+    } catch (IOException | URISyntaxException e) {
+      throw new IllegalStateException("couldn't read the classes of " + packagePath, e);
+    }
+  }
+
+  /** Returns the number of classes written by the last run. */
+  @VisibleForTesting
+  int getLastClassCount() {
+    return lastClassCount;
+  }
+
+  /** Returns the number of classes the last run copied from the previous destination JAR. */
+  @VisibleForTesting
+  int getLastReusedClassCount() {
+    return lastReusedClassCount;
+  }
 
-    int nonClassCount = 0;
-    int classCount = 0;
+  private static File indexFileFor(File jarFile) {
+    return new File(jarFile.getPath() + INDEX_SUFFIX);
+  }
 
-    // get the jar's SDK version
+  private static <T> T await(Future<T> future) throws IOException, ClassNotFoundException {
     try {
-      classInstrumentor.setAndroidJarSDKVersion(getJarAndroidSDKVersion(jarFile));
-    } catch (Exception e) {
-      throw new AssertionError("Unable to get Android SDK version from Jar file", e);
-    }
-
-    try (JarOutputStream jarOut =
-        new JarOutputStream(new BufferedOutputStream(new FileOutputStream(destJarFile), ONE_MB))) {
-      Enumeration<JarEntry> entries = jarFile.entries();
-      while (entries.hasMoreElements()) {
-        JarEntry jarEntry = entries.nextElement();
-
-        String name = jarEntry.getName();
-        if (name.endsWith("/")) {
-          jarOut.putNextEntry(createJarEntry(jarEntry));
-        } else if (name.endsWith(".class")) {
-          String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
-
-          try {
-            byte[] classBytes = getClassBytes(className, jarFile);
-            ClassDetails classDetails = new ClassDetails(classBytes);
-            byte[] outBytes = classBytes;
-            if (instrumentationConfiguration.shouldInstrument(classDetails)) {
-              outBytes =
-                  classInstrumentor.instrument(
-                      classDetails, instrumentationConfiguration, classNodeProvider);
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while instrumenting");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.throwIfInstanceOf(cause, IOException.class);
+      Throwables.throwIfInstanceOf(cause, ClassNotFoundException.class);
+      Throwables.throwIfUnchecked(cause);
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /** State of a single {@link #instrumentJar(File, File, File, boolean)} call. */
+  private class InstrumentationRun {
+    private final JarFile jarFile;
+    private final Map<String, SourceClass> sourceClasses;
+    private final JarFile previousJar;
+    private final Index previousIndex;
+    private final ClassNodeProvider classNodeProvider;
+    private final Index index = new Index();
+
+    private int nonClassCount = 0;
+    private int classCount = 0;
+    private int reusedClassCount = 0;
+
+    InstrumentationRun(
+        JarFile jarFile,
+        Map<String, SourceClass> sourceClasses,
+        JarFile previousJar,
+        Index previousIndex) {
+      this.jarFile = jarFile;
+      this.sourceClasses = sourceClasses;
+      this.previousJar = previousJar;
+      this.previousIndex = previousIndex;
+      this.classNodeProvider =
+          new ClassNodeProvider() {
+            @Override
+            protected byte[] getClassBytes(String className) throws ClassNotFoundException {
+              return JarInstrumentor.getClassBytes(className, jarFile);
             }
-            jarOut.putNextEntry(createJarEntry(jarEntry));
-            jarOut.write(outBytes);
-            classCount++;
-          } catch (NegativeArraySizeException e) {
-            System.err.println(
-                "Skipping instrumenting due to NegativeArraySizeException for class: " + className);
+          };
+    }
+
+    void writeJar(ForkJoinPool pool, List<JarEntry> entries, File destJarFile)
+        throws IOException, ClassNotFoundException {
+      // Classes are instrumented ahead of the entry being written, but only within a window, to
+      // bound the memory held by instrumented classes waiting to be written.
+      int maxPendingEntries = parallelism * MAX_PENDING_ENTRIES_PER_THREAD;
+      Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+      try (JarOutputStream jarOut =
+          new JarOutputStream(
+              new BufferedOutputStream(new FileOutputStream(destJarFile), ONE_MB))) {
+        for (JarEntry jarEntry : entries) {
+          ForkJoinTask<ClassOutput> task = null;
+          if (jarEntry.getName().endsWith(".class")) {
+            task = pool.submit(() -> processClass(jarEntry));
           }
-        } else {
-          // resources & stuff
-          jarOut.putNextEntry(createJarEntry(jarEntry));
-          ByteStreams.copy(jarFile.getInputStream(jarEntry), jarOut);
-          nonClassCount++;
+          pendingEntries.add(new PendingEntry(jarEntry, task));
+          if (pendingEntries.size() >= maxPendingEntries) {
+            writeEntry(jarOut, pendingEntries.remove());
+          }
+        }
+        while (!pendingEntries.isEmpty()) {
+          writeEntry(jarOut, pendingEntries.remove());
+        }
+      } finally {
+        for (PendingEntry pendingEntry : pendingEntries) {
+          if (pendingEntry.task != null) {
+            pendingEntry.task.cancel(false);
+          }
+        }
+      }
+    }
+
+    private void writeEntry(JarOutputStream jarOut, PendingEntry pendingEntry)
+        throws IOException, ClassNotFoundException {
+      JarEntry jarEntry = pendingEntry.jarEntry;
+      String name = jarEntry.getName();
+      if (name.endsWith("/")) {
+        jarOut.putNextEntry(createJarEntry(jarEntry));
+      } else if (pendingEntry.task != null) {
+        ClassOutput output = await(pendingEntry.task);
+        if (output == null) {
+          return;
+        }
+        jarOut.putNextEntry(createJarEntry(jarEntry));
+        jarOut.write(output.bytes);
+        index.put(name, sourceClasses.get(name).hash, output.crc);
+        classCount++;
+        if (output.reused) {
+          reusedClassCount++;
+        }
+      } else {
+        // resources & stuff
+        jarOut.putNextEntry(createJarEntry(jarEntry));
+        ByteStreams.copy(jarFile.getInputStream(jarEntry), jarOut);
+        nonClassCount++;
+      }
+    }
+
+    /** Returns the bytes to write for a class entry, or null if it should be skipped. */
+    private ClassOutput processClass(JarEntry jarEntry) throws IOException, ClassNotFoundException {
+      String name = jarEntry.getName();
+      byte[] reusedBytes = readReusableEntry(name);
+      if (reusedBytes != null) {
+        return new ClassOutput(reusedBytes, true);
+      }
+
+      String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+      try {
+        byte[] classBytes = getClassBytes(className, jarFile);
+        ClassDetails classDetails = new ClassDetails(classBytes);
+        byte[] outBytes = classBytes;
+        if (instrumentationConfiguration.shouldInstrument(classDetails)) {
+          outBytes =
+              classInstrumentor.instrument(
+                  classDetails, instrumentationConfiguration, classNodeProvider);
+        }
+        return new ClassOutput(outBytes, false);
+      } catch (NegativeArraySizeException e) {
+        System.err.println(
+            "Skipping instrumenting due to NegativeArraySizeException for class: " + className);
+        return null;
+      }
+    }
+
+    private byte[] readReusableEntry(String name) throws IOException {
+      Index.Entry previous = previousIndex.get(name);
+      if (previous == null || !previous.sourceHash.equals(sourceClasses.get(name).hash)) {
+        return null;
+      }
+      ZipEntry previousEntry = previousJar.getEntry(name);
+      if (previousEntry == null || previousEntry.getCrc() != previous.outputCrc) {
+        return null;
+      }
+      try (InputStream in = previousJar.getInputStream(previousEntry)) {
+        return ByteStreams.toByteArray(in);
+      }
+    }
+  }
+
+  /** An entry of the source JAR, and the task producing its output if it's a class. */
+  private static final class PendingEntry {
+    final JarEntry jarEntry;
+    final ForkJoinTask<ClassOutput> task;
+
+    PendingEntry(JarEntry jarEntry, ForkJoinTask<ClassOutput> task) {
+      this.jarEntry = jarEntry;
+      this.task = task;
+    }
+  }
+
+  private static final class ClassOutput {
+    final byte[] bytes;
+    final long crc;
+    final boolean reused;
+
+    ClassOutput(byte[] bytes, boolean reused) {
+      this.bytes = bytes;
+      CRC32 crc32 = new CRC32();
+      crc32.update(bytes, 0, bytes.length);
+      this.crc = crc32.getValue();
+      this.reused = reused;
+    }
+  }
+
+  /** A class of the source JAR. */
+  private static final class SourceClass {
+    final String name;
+    final String hash;
+
+    /** The parts of the class that other classes' stack map frames may depend on. */
+    final String hierarchy;
+
+    SourceClass(String name, byte[] bytes) {
+      this.name = name;
+      this.hash = Hashing.sha256().hashBytes(bytes).toString();
+      ClassReader classReader = new ClassReader(bytes);
+      this.hierarchy =
+          ((classReader.getAccess() & Opcodes.ACC_INTERFACE) != 0 ? "interface " : "class ")
+              + classReader.getSuperName()
+              + " "
+              + String.join(",", classReader.getInterfaces());
+    }
+  }
+
+  /**
+   * Records, for each class written to a destination JAR, the hash of its source bytes and the CRC
+   * of its output, so that unchanged classes can be copied by the next incremental run.
+   */
+  private static final class Index {
+    static final Index EMPTY = new Index();
+
+    private static final String HEADER = "robolectric-jar-instrumentor-index";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Reads the index written alongside a previous destination JAR, or returns an empty index if
+     * there is none or if it was written with a different stamp.
+     */
+    static Index read(File file, String stamp) throws IOException {
+      if (!file.exists()) {
+        return EMPTY;
+      }
+      List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+      if (lines.size() < 2
+          || !lines.get(0).equals(HEADER + " " + INDEX_FORMAT_VERSION)
+          || !lines.get(1).equals("stamp " + stamp)) {
+        return EMPTY;
+      }
+      Index index = new Index();
+      for (String line : lines.subList(2, lines.size())) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length != 3) {
+          return EMPTY;
         }
+        index.put(parts[0], parts[1], Long.parseLong(parts[2], 16));
       }
+      return index;
     }
 
-    long elapsedNs = System.nanoTime() - startNs;
-    System.out.println(
-        String.format(
-            Locale.getDefault(),
-            "Wrote %d classes and %d resources in %1.2f seconds",
-            classCount,
-            nonClassCount,
-            elapsedNs / 1000000000.0));
+    boolean isEmpty() {
+      return entries.isEmpty();
+    }
+
+    Entry get(String name) {
+      return entries.get(name);
+    }
+
+    void put(String name, String sourceHash, long outputCrc) {
+      entries.put(name, new Entry(sourceHash, outputCrc));
+    }
+
+    void write(File file, String stamp) throws IOException {
+      try (Writer writer =
+          new BufferedWriter(
+              new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+        writer.write(HEADER + " " + INDEX_FORMAT_VERSION + "\n");
+        writer.write("stamp " + stamp + "\n");
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          writer.write(
+              entry.getKey()
+                  + "\t"
+                  + entry.getValue().sourceHash
+                  + "\t"
+                  + Long.toHexString(entry.getValue().outputCrc)
+                  + "\n");
+        }
+      }
+    }
+
+    static final class Entry {
+      final String sourceHash;
+      final long outputCrc;
+
+      Entry(String sourceHash, long outputCrc) {
+        this.sourceHash = sourceHash;
+        this.outputCrc = outputCrc;
+      }
+    }
   }
 
   private static byte[] getClassBytes(String className, JarFile jarFile)
@@ -1,20 +1,43 @@
 package org.robolectric.preinstrumented;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
+import com.google.common.collect.ImmutableMap;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 /** Test for {@link JarInstrumentor}. */
 @RunWith(JUnit4.class)
 public class JarInstrumentorTest {
 
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
   private JarInstrumentor spyDummyInstrumentor;
 
   @Before
@@ -27,6 +50,11 @@ public class JarInstrumentorTest {
             // instrumention.
           }
 
+          @Override
+          protected void instrumentJarIncrementally(File sourceJarFile, File destJarFile) {
+            // No-op.
+          }
+
           @Override
           protected void exit(int status) {
             // No-op. Tests should never call system.exit().
@@ -41,10 +69,147 @@ public class JarInstrumentorTest {
     verify(spyDummyInstrumentor).instrumentJar(new File("source.jar"), new File("dest.jar"));
   }
 
+  @Test
+  public void processCommandLine_incremental() throws Exception {
+    spyDummyInstrumentor.processCommandLine(
+        new String[] {"source.jar", "dest.jar", "--incremental"});
+    verify(spyDummyInstrumentor)
+        .instrumentJarIncrementally(new File("source.jar"), new File("dest.jar"));
+    verify(spyDummyInstrumentor, never()).instrumentJar(any(File.class), any(File.class));
+  }
+
   @Test
   public void processCommandLine_unknownArguments() throws Exception {
     spyDummyInstrumentor.processCommandLine(new String[] {"source.jar", "dest.jar", "--some-flag"});
     verify(spyDummyInstrumentor, never()).instrumentJar(any(File.class), any(File.class));
     verify(spyDummyInstrumentor).exit(1);
   }
+
+  @Test
+  public void instrumentJar_writesEntriesInSourceOrderDeterministically() throws Exception {
+    File sourceJar =
+        writeSourceJar(
+            "source.jar",
+            ImmutableMap.of(
+                "android/testing/Zebra", createClass("android/testing/Zebra", 1),
+                "android/testing/Aardvark", createClass("android/testing/Aardvark", 2),
+                "android/testing/Moose", createClass("android/testing/Moose", 3)));
+    File firstJar = new File(tempFolder.getRoot(), "first.jar");
+    File secondJar = new File(tempFolder.getRoot(), "second.jar");
+
+    new JarInstrumentor().instrumentJar(sourceJar, firstJar);
+    new JarInstrumentor().instrumentJar(sourceJar, secondJar);
+
+    assertEquals(getEntryNames(sourceJar), getEntryNames(firstJar));
+    assertArrayEquals(
+        Files.readAllBytes(firstJar.toPath()), Files.readAllBytes(secondJar.toPath()));
+    assertFalse(new File(firstJar.getPath() + ".index").exists());
+  }
+
+  @Test
+  public void instrumentJarIncrementally_reusesUnchangedClasses() throws Exception {
+    File destJar = new File(tempFolder.getRoot(), "dest.jar");
+    JarInstrumentor instrumentor = new JarInstrumentor();
+    instrumentor.instrumentJarIncrementally(
+        writeSourceJar(
+            "v1.jar",
+            ImmutableMap.of(
+                "android/testing/Changed", createClass("android/testing/Changed", 1),
+                "android/testing/Unchanged", createClass("android/testing/Unchanged", 1))),
+        destJar);
+    assertTrue(new File(destJar.getPath() + ".index").exists());
+    assertEquals(0, instrumentor.getLastReusedClassCount());
+
+    File v2Jar =
+        writeSourceJar(
+            "v2.jar",
+            ImmutableMap.of(
+                "android/testing/Changed", createClass("android/testing/Changed", 2),
+                "android/testing/Unchanged", createClass("android/testing/Unchanged", 1)));
+    instrumentor.instrumentJarIncrementally(v2Jar, destJar);
+
+    assertEquals(2, instrumentor.getLastClassCount());
+    assertEquals(1, instrumentor.getLastReusedClassCount());
+    File fullJar = new File(tempFolder.getRoot(), "full.jar");
+    new JarInstrumentor().instrumentJar(v2Jar, fullJar);
+    assertArrayEquals(Files.readAllBytes(fullJar.toPath()), Files.readAllBytes(destJar.toPath()));
+  }
+
+  @Test
+  public void instrumentJarIncrementally_rebuildsAllClassesWhenStampChanges() throws Exception {
+    File destJar = new File(tempFolder.getRoot(), "dest.jar");
+    JarInstrumentor instrumentor = new JarInstrumentor();
+    File v1Jar =
+        writeSourceJar(
+            "v1.jar",
+            ImmutableMap.of(
+                "android/testing/Unchanged", createClass("android/testing/Unchanged", 1)));
+    instrumentor.instrumentJarIncrementally(v1Jar, destJar);
+
+    // adding a class changes the type hierarchy, which is part of the stamp
+    instrumentor.instrumentJarIncrementally(
+        writeSourceJar(
+            "v2.jar",
+            ImmutableMap.of(
+                "android/testing/Added", createClass("android/testing/Added", 1),
+                "android/testing/Unchanged", createClass("android/testing/Unchanged", 1))),
+        destJar);
+
+    assertEquals(2, instrumentor.getLastClassCount());
+    assertEquals(0, instrumentor.getLastReusedClassCount());
+  }
+
+  private File writeSourceJar(String name, Map<String, byte[]> classes) throws IOException {
+    File jar = new File(tempFolder.getRoot(), name);
+    try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+      JarEntry buildProp = new JarEntry("build.prop");
+      buildProp.setTime(0);
+      out.putNextEntry(buildProp);
+      out.write(
+          ("ro.build.version.sdk=33\n"
+                  + "ro.build.version.release=13\n"
+                  + "ro.build.version.codename=REL\n")
+              .getBytes(StandardCharsets.UTF_8));
+      for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+        JarEntry classEntry = new JarEntry(entry.getKey() + ".class");
+        classEntry.setTime(0);
+        out.putNextEntry(classEntry);
+        out.write(entry.getValue());
+      }
+    }
+    return jar;
+  }
+
+  /** Returns the bytes of a class with a method returning {@code value}. */
+  private static byte[] createClass(String internalName, int value) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.visit(
+        Opcodes.V1_8, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+    MethodVisitor init = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(Opcodes.ALOAD, 0);
+    init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitInsn(Opcodes.RETURN);
+    init.visitMaxs(1, 1);
+    init.visitEnd();
+    MethodVisitor getValue =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "getValue", "()I", null, null);
+    getValue.visitCode();
+    getValue.visitLdcInsn(value);
+    getValue.visitInsn(Opcodes.IRETURN);
+    getValue.visitMaxs(1, 1);
+    getValue.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static List<String> getEntryNames(File jar) throws IOException {
+    List<String> names = new ArrayList<>();
+    try (JarFile jarFile = new JarFile(jar)) {
+      for (JarEntry entry : Collections.list(jarFile.entries())) {
+        names.add(entry.getName());
+      }
+    }
+    return names;
+  }
 }
@@ -5,8 +5,12 @@ import static com.google.common.collect.Lists.newArrayList;
 import com.google.common.base.Equivalence;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -18,6 +22,9 @@ import javax.lang.model.element.Name;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.SimpleAnnotationValueVisitor6;
@@ -208,6 +215,78 @@ public class Helpers {
     return name == null ? null : name.toString();
   }
 
+  /** Returns the classes and interfaces that {@code type} extends or implements, transitively. */
+  Set<TypeElement> getAllSupertypes(TypeElement type) {
+    Set<TypeElement> supertypes = new LinkedHashSet<>();
+    Deque<TypeMirror> pending = new ArrayDeque<>(types.directSupertypes(type.asType()));
+    while (!pending.isEmpty()) {
+      TypeMirror supertype = pending.pop();
+      if (supertype.getKind() == TypeKind.DECLARED
+          && supertypes.add((TypeElement) types.asElement(supertype))) {
+        pending.addAll(types.directSupertypes(supertype));
+      }
+    }
+    return supertypes;
+  }
+
+  /** Returns true if {@code overrider} overrides {@code overridden} as a member of {@code type}. */
+  boolean overrides(ExecutableElement overrider, ExecutableElement overridden, TypeElement type) {
+    return elements.overrides(overrider, overridden, type);
+  }
+
+  /**
+   * Returns the JVM descriptor of the erased parameter types of a method, e.g. {@code "(I[J)"}, or
+   * null if a parameter type can't be resolved.
+   */
+  String getParameterDescriptor(ExecutableElement method) {
+    StringBuilder descriptor = new StringBuilder("(");
+    for (VariableElement parameter : method.getParameters()) {
+      if (!appendDescriptor(descriptor, types.erasure(parameter.asType()))) {
+        return null;
+      }
+    }
+    return descriptor.append(')').toString();
+  }
+
+  private boolean appendDescriptor(StringBuilder descriptor, TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        descriptor.append('Z');
+        return true;
+      case BYTE:
+        descriptor.append('B');
+        return true;
+      case CHAR:
+        descriptor.append('C');
+        return true;
+      case SHORT:
+        descriptor.append('S');
+        return true;
+      case INT:
+        descriptor.append('I');
+        return true;
+      case LONG:
+        descriptor.append('J');
+        return true;
+      case FLOAT:
+        descriptor.append('F');
+        return true;
+      case DOUBLE:
+        descriptor.append('D');
+        return true;
+      case ARRAY:
+        descriptor.append('[');
+        return appendDescriptor(
+            descriptor, types.erasure(((ArrayType) type).getComponentType()));
+      case DECLARED:
+        String binaryName = getBinaryName((TypeElement) types.asElement(type));
+        descriptor.append('L').append(binaryName.replace('.', '/')).append(';');
+        return true;
+      default:
+        return false;
+    }
+  }
+
   public void appendParameterList(StringBuilder message,
       List<? extends TypeParameterElement> tpeList) {
     boolean first = true;
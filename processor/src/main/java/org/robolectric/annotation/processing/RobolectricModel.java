@@ -20,6 +20,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ElementVisitor;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
@@ -27,10 +28,12 @@ import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVisitor;
 import javax.lang.model.util.SimpleElementVisitor6;
 import javax.lang.model.util.SimpleTypeVisitor6;
+import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.shadow.api.ShadowPicker;
 
@@ -130,7 +133,8 @@ public class RobolectricModel {
       extraShadowPickers.put(sdkClassName, helpers.getBinaryName(pickerTypeElement));
     }
 
-    public void addResetter(TypeElement shadowTypeElement, ExecutableElement elem) {
+    public void addResetter(
+        TypeElement shadowTypeElement, ExecutableElement elem, boolean selfContained) {
       checkState(
           !resetterMap.containsKey(shadowTypeElement.getQualifiedName().toString()),
           "Trying to register a duplicate resetter on %s",
@@ -138,7 +142,7 @@ public class RobolectricModel {
       registerType(shadowTypeElement);
 
       resetterMap.put(shadowTypeElement.getQualifiedName().toString(),
-          new ResetterInfo(shadowTypeElement, elem));
+          new ResetterInfo(shadowTypeElement, elem, selfContained));
     }
 
     public void documentPackage(String name, String documentation) {
@@ -243,6 +247,7 @@ public class RobolectricModel {
       imports.add("java.util.List");
       imports.add("java.util.Map");
       imports.add("javax.annotation.Generated");
+      imports.add("org.robolectric.internal.IndexedShadow");
       imports.add("org.robolectric.internal.ShadowProvider");
       imports.add("org.robolectric.shadow.api.Shadow");
 
@@ -386,6 +391,7 @@ public class RobolectricModel {
     private String shadowBinaryName;
     private String shadowPickerBinaryName;
     private String shadowBaseName;
+    private String encodedMethods;
 
     ShadowInfo(TypeElement shadowType, TypeElement actualType, TypeElement shadowPickerType,
         TypeElement shadowBaseClass) {
@@ -433,6 +439,70 @@ public class RobolectricModel {
       shadowBinaryName = helpers.getBinaryName(shadowType);
       shadowPickerBinaryName = helpers.getBinaryName(shadowPickerType);
       shadowBaseName = referentResolver.getReferentFor(shadowBaseClass);
+      encodedMethods = encodeMethods(shadowType, helpers);
+    }
+
+    /**
+     * Returns the public and protected methods declared by the shadow and its superclasses, i.e.
+     * every method that could be selected as the implementation of a shadowed method at runtime,
+     * encoded as described by {@code IndexedShadow}. A method which overrides a supertype method
+     * with different erased parameter types is also encoded with the supertype method's parameters,
+     * since the compiler generates a bridge method with those. Returns null if a parameter type
+     * can't be resolved.
+     */
+    private static String encodeMethods(TypeElement shadowType, Helpers helpers) {
+      Set<TypeElement> supertypes = helpers.getAllSupertypes(shadowType);
+      TreeSet<String> methods = new TreeSet<>();
+      TypeElement type = shadowType;
+      while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")) {
+        for (Element element : type.getEnclosedElements()) {
+          if (element.getKind() == ElementKind.METHOD
+              && (element.getModifiers().contains(Modifier.PUBLIC)
+                  || element.getModifiers().contains(Modifier.PROTECTED))) {
+            ExecutableElement method = (ExecutableElement) element;
+            String parameterDescriptor = helpers.getParameterDescriptor(method);
+            if (parameterDescriptor == null) {
+              return null;
+            }
+            int minSdk = Implementation.DEFAULT_SDK;
+            int maxSdk = Implementation.DEFAULT_SDK;
+            Implementation implementation = element.getAnnotation(Implementation.class);
+            if (implementation != null) {
+              minSdk = implementation.minSdk();
+              maxSdk = implementation.maxSdk();
+            }
+            String sdkRange = minSdk + ":" + maxSdk;
+            methods.add(element.getSimpleName() + parameterDescriptor + sdkRange);
+            for (TypeElement supertype : supertypes) {
+              for (Element superElement : supertype.getEnclosedElements()) {
+                if (superElement.getKind() == ElementKind.METHOD
+                    && superElement.getSimpleName().equals(element.getSimpleName())
+                    && helpers.overrides(method, (ExecutableElement) superElement, shadowType)) {
+                  String bridgeDescriptor =
+                      helpers.getParameterDescriptor((ExecutableElement) superElement);
+                  if (bridgeDescriptor == null) {
+                    return null;
+                  }
+                  methods.add(element.getSimpleName() + bridgeDescriptor + sdkRange);
+                }
+              }
+            }
+          }
+        }
+        TypeMirror superclass = type.getSuperclass();
+        type =
+            superclass.getKind() == TypeKind.DECLARED ? MoreTypes.asTypeElement(superclass) : null;
+      }
+      return String.join(" ", methods);
+    }
+
+    public Implements getImplements() {
+      return shadowType.getAnnotation(Implements.class);
+    }
+
+    /** Returns the encoded methods of the shadow class, or null if they couldn't be determined. */
+    public String getEncodedMethods() {
+      return encodedMethods;
     }
 
     public String getActualBinaryName() {
@@ -496,11 +566,14 @@ public class RobolectricModel {
 
     private final TypeElement shadowType;
     private final ExecutableElement executableElement;
+    private final boolean selfContained;
     private String shadowTypeReferent;
 
-    ResetterInfo(TypeElement shadowType, ExecutableElement executableElement) {
+    ResetterInfo(
+        TypeElement shadowType, ExecutableElement executableElement, boolean selfContained) {
       this.shadowType = shadowType;
       this.executableElement = executableElement;
+      this.selfContained = selfContained;
     }
 
     void prepare(ReferentResolver referentResolver) {
@@ -515,6 +588,18 @@ public class RobolectricModel {
       return shadowTypeReferent + "." + executableElement.getSimpleName() + "();";
     }
 
+    public String getShadowTypeReferent() {
+      return shadowTypeReferent;
+    }
+
+    /**
+     * Returns true if the resetter only resets state which the shadow's own {@code @Implementation}
+     * methods and constructors can change, so it may be skipped while the shadow is unused.
+     */
+    public boolean isSelfContained() {
+      return selfContained;
+    }
+
     public int getMinSdk() {
       return getImplementsAnnotation().minSdk();
     }
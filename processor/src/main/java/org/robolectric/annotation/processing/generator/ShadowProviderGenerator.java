@@ -3,7 +3,9 @@ package org.robolectric.annotation.processing.generator;
 import com.google.common.base.Joiner;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -12,6 +14,7 @@ import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
+import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.processing.RobolectricModel;
 import org.robolectric.annotation.processing.RobolectricModel.ShadowInfo;
 import org.robolectric.annotation.processing.RobolectricProcessor;
@@ -180,7 +183,17 @@ public class ShadowProviderGenerator extends Generator {
       } else {
         ifClause = "";
       }
-      writer.println("    " + ifClause + resetterInfo.getMethodCall());
+      String methodCall = resetterInfo.getMethodCall();
+      writer.println(
+          "    "
+              + ifClause
+              + (resetterInfo.isSelfContained()
+                  ? "ShadowProvider.runResetterIfDirty("
+                  : "ShadowProvider.runResetter(")
+              + resetterInfo.getShadowTypeReferent()
+              + ".class, () -> "
+              + methodCall.substring(0, methodCall.length() - 1)
+              + ");");
     }
     writer.println("  }");
     writer.println();
@@ -203,6 +216,8 @@ public class ShadowProviderGenerator extends Generator {
     writer.println("  }");
     writer.println();
 
+    generateIndexedShadows(writer);
+
     TreeMap<String, ShadowInfo> shadowPickers = model.getShadowPickers();
     if (!shadowPickers.isEmpty()) {
       writer.println(
@@ -250,4 +265,54 @@ public class ShadowProviderGenerator extends Generator {
 
     writer.println('}');
   }
+
+  private void generateIndexedShadows(PrintWriter writer) {
+    List<ShadowInfo> indexedShadows = new ArrayList<>();
+    for (ShadowInfo shadowInfo : model.getAllShadowTypes()) {
+      if (shadowInfo.getShadowPickerBinaryName() == null) {
+        indexedShadows.add(shadowInfo);
+      }
+    }
+    if (indexedShadows.isEmpty()) {
+      return;
+    }
+
+    writer.println(
+        "  private static final Map<String, IndexedShadow> INDEXED_SHADOWS = new HashMap<>("
+            + indexedShadows.size()
+            + ");");
+    writer.println();
+
+    writer.println("  static {");
+    for (ShadowInfo shadowInfo : indexedShadows) {
+      Implements implementsAnnotation = shadowInfo.getImplements();
+      String encodedMethods = shadowInfo.getEncodedMethods();
+      writer.println(
+          "    INDEXED_SHADOWS.put(\""
+              + shadowInfo.getShadowBinaryName()
+              + "\", new IndexedShadow(\""
+              + shadowInfo.getActualBinaryName()
+              + "\", "
+              + implementsAnnotation.callThroughByDefault()
+              + ", "
+              + implementsAnnotation.callNativeMethodsByDefault()
+              + ", "
+              + implementsAnnotation.looseSignatures()
+              + ", "
+              + implementsAnnotation.minSdk()
+              + ", "
+              + implementsAnnotation.maxSdk()
+              + ", "
+              + (encodedMethods == null ? "null" : '"' + encodedMethods + '"')
+              + "));");
+    }
+    writer.println("  }");
+    writer.println();
+
+    writer.println("  @Override");
+    writer.println("  public Map<String, IndexedShadow> getIndexedShadows() {");
+    writer.println("    return INDEXED_SHADOWS;");
+    writer.println("  }");
+    writer.println();
+  }
 }
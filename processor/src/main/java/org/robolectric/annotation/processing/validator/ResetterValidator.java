@@ -1,15 +1,33 @@
 package org.robolectric.annotation.processing.validator;
 
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Resetter;
 import org.robolectric.annotation.processing.RobolectricModel;
 
 /**
@@ -18,9 +36,11 @@ import org.robolectric.annotation.processing.RobolectricModel;
 public class ResetterValidator extends FoundOnImplementsValidator {
 
   private final Map<TypeElement, ExecutableElement> resetterMethodsByClass = new HashMap<>();
+  private final ProcessingEnvironment env;
 
   public ResetterValidator(RobolectricModel.Builder modelBuilder, ProcessingEnvironment env) {
     super(modelBuilder, env, "org.robolectric.annotation.Resetter");
+    this.env = env;
   }
 
   @Override
@@ -54,9 +74,154 @@ public class ResetterValidator extends FoundOnImplementsValidator {
       }
       if (!error) {
         resetterMethodsByClass.put(parent, elem);
-        modelBuilder.addResetter(parent, elem);
+        modelBuilder.addResetter(parent, elem, isSelfContained(parent, elem));
       }
     }
     return null;
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns true if the only static state {@code resetter} touches is its shadow's own, and that
+   * state is only reachable through the shadow's own code, which marks the shadow dirty whenever it
+   * reads or writes one of its static fields. Such a resetter may be skipped when the shadow wasn't
+   * used since it last ran.
+   *
+   * <p>That's the case if the shadow has no non-private static fields, no nested classes, no
+   * non-private methods other than {@code @Implementation}s and the resetter, and the resetter
+   * only assigns and calls methods on the shadow's own fields. Anything else, e.g. a resetter which
+   * clears a framework static through a reflector, always runs.
+   */
+  private boolean isSelfContained(TypeElement shadowType, ExecutableElement resetter) {
+    for (Element member : shadowType.getEnclosedElements()) {
+      Set<Modifier> modifiers = member.getModifiers();
+      switch (member.getKind()) {
+        case FIELD:
+          if (modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+          }
+          break;
+        case METHOD:
+          if (!modifiers.contains(Modifier.PRIVATE)
+              && member.getAnnotation(Implementation.class) == null
+              && member.getAnnotation(Resetter.class) == null) {
+            return false;
+          }
+          break;
+        case CONSTRUCTOR:
+          break;
+        case INTERFACE:
+        case ANNOTATION_TYPE:
+          // e.g. @ForType reflector interfaces, which have no state of their own
+          break;
+        default:
+          return false;
+      }
+    }
+
+    TreePath resetterPath;
+    try {
+      Trees trees = Trees.instance(env);
+      resetterPath = trees.getPath(resetter);
+      if (resetterPath == null) {
+        return false;
+      }
+      SelfContainedResetterScanner scanner = new SelfContainedResetterScanner(trees, shadowType);
+      scanner.scan(resetterPath, null);
+      return scanner.selfContained;
+    } catch (IllegalArgumentException e) {
+      // Trees relies on javac APIs and is not available in all annotation processing
+      // implementations
+      return false;
+    }
+  }
+
+  /** Checks that a resetter body only assigns, and calls methods on, fields of its shadow. */
+  private static class SelfContainedResetterScanner extends TreePathScanner<Void, Void> {
+    private final Trees trees;
+    private final TypeElement shadowType;
+    private boolean selfContained = true;
+
+    SelfContainedResetterScanner(Trees trees, TypeElement shadowType) {
+      this.trees = trees;
+      this.shadowType = shadowType;
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+      ExpressionTree methodSelect = node.getMethodSelect();
+      if (!(methodSelect instanceof MemberSelectTree)
+          || !isShadowField(((MemberSelectTree) methodSelect).getExpression())) {
+        selfContained = false;
+        return null;
+      }
+      return super.visitMethodInvocation(node, unused);
+    }
+
+    @Override
+    public Void visitAssignment(AssignmentTree node, Void unused) {
+      checkAssignable(node.getVariable());
+      return super.visitAssignment(node, unused);
+    }
+
+    @Override
+    public Void visitCompoundAssignment(CompoundAssignmentTree node, Void unused) {
+      checkAssignable(node.getVariable());
+      return super.visitCompoundAssignment(node, unused);
+    }
+
+    @Override
+    public Void visitUnary(UnaryTree node, Void unused) {
+      switch (node.getKind()) {
+        case PREFIX_INCREMENT:
+        case PREFIX_DECREMENT:
+        case POSTFIX_INCREMENT:
+        case POSTFIX_DECREMENT:
+          checkAssignable(node.getExpression());
+          break;
+        default:
+          break;
+      }
+      return super.visitUnary(node, unused);
+    }
+
+    @Override
+    public Void visitClass(ClassTree node, Void unused) {
+      selfContained = false;
+      return null;
+    }
+
+    @Override
+    public Void visitLambdaExpression(LambdaExpressionTree node, Void unused) {
+      selfContained = false;
+      return null;
+    }
+
+    @Override
+    public Void visitMemberReference(MemberReferenceTree node, Void unused) {
+      selfContained = false;
+      return null;
+    }
+
+    private void checkAssignable(ExpressionTree variable) {
+      Element element = elementOf(variable);
+      if (element == null
+          || (element.getKind() != ElementKind.LOCAL_VARIABLE && !isShadowField(variable))) {
+        selfContained = false;
+      }
+    }
+
+    private boolean isShadowField(ExpressionTree expression) {
+      if (!(expression instanceof IdentifierTree) && !(expression instanceof MemberSelectTree)) {
+        return false;
+      }
+      Element element = elementOf(expression);
+      return element != null
+          && element.getKind() == ElementKind.FIELD
+          && element.getEnclosingElement().equals(shadowType);
+    }
+
+    private Element elementOf(Tree tree) {
+      return trees.getElement(new TreePath(getCurrentPath(), tree));
+    }
+  }
+}
@@ -198,6 +198,21 @@ public class RobolectricProcessorTest {
         .generatesSources(forResource("org/robolectric/Robolectric_Parameterized.java"));
   }
 
+  @Test
+  public void shouldIndexBridgeMethodSignatures() {
+    assertAbout(javaSources())
+        .that(
+            ImmutableList.of(
+                SHADOW_PROVIDER_SOURCE,
+                SHADOW_EXTRACTOR_SOURCE,
+                forResource(
+                    "org/robolectric/annotation/processing/shadows/ShadowGenericOverride.java")))
+        .processedWith(new RobolectricProcessor(DEFAULT_OPTS))
+        .compilesWithoutError()
+        .and()
+        .generatesSources(forResource("org/robolectric/Robolectric_GenericOverride.java"));
+  }
+
   @Test
   public void generatedShadowProvider_canConfigureInstrumentingPackages() {
     Map<String, String> options = new HashMap<>(DEFAULT_OPTS);
@@ -50,15 +50,34 @@ public class ShadowProviderGeneratorTest {
         .contains(
             "if (org.robolectric.RuntimeEnvironment.getApiLevel() >= 19"
                 + " && org.robolectric.RuntimeEnvironment.getApiLevel() <= 20)"
-                + " ShadowThing.reset19To20();");
+                + " ShadowProvider.runResetter(ShadowThing.class,"
+                + " () -> ShadowThing.reset19To20());");
     assertThat(writer.toString())
         .contains(
             "if (org.robolectric.RuntimeEnvironment.getApiLevel() >= 21)"
-                + " ShadowThing.resetMin21();");
+                + " ShadowProvider.runResetter(ShadowThing.class,"
+                + " () -> ShadowThing.resetMin21());");
     assertThat(writer.toString())
         .contains(
             "if (org.robolectric.RuntimeEnvironment.getApiLevel() <= 18)"
-                + " ShadowThing.resetMax18();");
+                + " ShadowProvider.runResetter(ShadowThing.class,"
+                + " () -> ShadowThing.resetMax18());");
+  }
+
+  @Test
+  public void selfContainedResettersAreOnlyCalledIfDirty() throws Exception {
+    when(model.getVisibleShadowTypes()).thenReturn(Collections.emptyList());
+
+    ResetterInfo resetterInfo = resetterInfo("ShadowThing", -1, -1, "reset");
+    when(resetterInfo.isSelfContained()).thenReturn(true);
+    when(model.getResetters()).thenReturn(Collections.singletonList(resetterInfo));
+
+    generator.generate(new PrintWriter(writer));
+
+    assertThat(writer.toString())
+        .contains(
+            "    ShadowProvider.runResetterIfDirty(ShadowThing.class,"
+                + " () -> ShadowThing.reset());");
   }
 
   private ResetterInfo resetterInfo(String shadowName, int minSdk, int maxSdk, String methodName) {
@@ -66,6 +85,7 @@ public class ShadowProviderGeneratorTest {
     when(resetterInfo.getMinSdk()).thenReturn(minSdk);
     when(resetterInfo.getMaxSdk()).thenReturn(maxSdk);
     when(resetterInfo.getMethodCall()).thenReturn(shadowName + "." + methodName + "();");
+    when(resetterInfo.getShadowTypeReferent()).thenReturn(shadowName);
     return resetterInfo;
   }
 }
@@ -15,4 +15,12 @@ public interface ShadowProvider {
   default Map<String, String> getShadowPickerMap() {
     return Collections.emptyMap();
   }
+
+  default Map<String, IndexedShadow> getIndexedShadows() {
+    return Collections.emptyMap();
+  }
+
+  static void runResetter(Class<?> shadowClass, Runnable resetter) {}
+
+  static void runResetterIfDirty(Class<?> shadowClass, Runnable resetter) {}
 }
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import javax.annotation.Generated;
 import org.robolectric.annotation.processing.shadows.ShadowDummy;
+import org.robolectric.internal.IndexedShadow;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.shadow.api.Shadow;
 
@@ -29,7 +30,7 @@ public class Shadows implements ShadowProvider {
 
   @Override
   public void reset() {
-    ShadowDummy.resetter_method();
+    ShadowProvider.runResetter(ShadowDummy.class, () -> ShadowDummy.resetter_method());
   }
 
   @Override
@@ -43,4 +44,14 @@ public class Shadows implements ShadowProvider {
     };
   }
 
+  private static final Map<String, IndexedShadow> INDEXED_SHADOWS = new HashMap<>(1);
+
+  static {
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowDummy", new IndexedShadow("com.example.objects.Dummy", true, false, false, -1, -1, "resetter_method()-1:-1"));
+  }
+
+  @Override
+  public Map<String, IndexedShadow> getIndexedShadows() {
+    return INDEXED_SHADOWS;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package org.robolectric;
+import com.example.objects.AnyObject;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Generated;
+import org.robolectric.annotation.processing.shadows.ShadowGenericOverride;
+import org.robolectric.internal.IndexedShadow;
+import org.robolectric.internal.ShadowProvider;
+import org.robolectric.shadow.api.Shadow;
+
+/**
+ * Shadow mapper. Automatically generated by the Robolectric Annotation Processor.
+ */
+@Generated("org.robolectric.annotation.processing.RobolectricProcessor")
+@SuppressWarnings({"unchecked","deprecation"})
+public class Shadows implements ShadowProvider {
+  private static final List<Map.Entry<String, String>> SHADOWS = new ArrayList<>(1);
+
+  static {
+    SHADOWS.add(new AbstractMap.SimpleImmutableEntry<>("com.example.objects.AnyObject", "org.robolectric.annotation.processing.shadows.ShadowGenericOverride"));
+  }
+
+  public static ShadowGenericOverride shadowOf(AnyObject actual) {
+    return (ShadowGenericOverride) Shadow.extract(actual);
+  }
+
+  @Override
+  public void reset() {
+  }
+
+  @Override
+  public Collection<Map.Entry<String, String>> getShadows() {
+    return SHADOWS;
+  }
+
+  @Override
+  public String[] getProvidedPackageNames() {
+    return new String[] {
+        "com.example.objects"
+    };
+  }
+
+  private static final Map<String, IndexedShadow> INDEXED_SHADOWS = new HashMap<>(1);
+
+  static {
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowGenericOverride", new IndexedShadow("com.example.objects.AnyObject", true, false, false, -1, -1, "accept(Ljava/lang/Object;)-1:-1 accept(Ljava/lang/String;)-1:-1"));
+  }
+
+  @Override
+  public Map<String, IndexedShadow> getIndexedShadows() {
+    return INDEXED_SHADOWS;
+  }
+}
@@ -13,6 +13,7 @@ import org.robolectric.annotation.processing.shadows.ShadowOuterDummy2;
 import org.robolectric.annotation.processing.shadows.ShadowOuterDummy2.ShadowInnerPackage;
 import org.robolectric.annotation.processing.shadows.ShadowOuterDummy2.ShadowInnerProtected;
 import org.robolectric.annotation.processing.shadows.ShadowPrivate;
+import org.robolectric.internal.IndexedShadow;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.shadow.api.Shadow;
 
@@ -43,8 +44,8 @@ public class Shadows implements ShadowProvider {
 
   @Override
   public void reset() {
-    ShadowDummy.resetter_method();
-    ShadowPrivate.resetMethod();
+    ShadowProvider.runResetter(ShadowDummy.class, () -> ShadowDummy.resetter_method());
+    ShadowProvider.runResetterIfDirty(ShadowPrivate.class, () -> ShadowPrivate.resetMethod());
   }
 
   @Override
@@ -59,4 +60,18 @@ public class Shadows implements ShadowProvider {
     };
   }
 
+  private static final Map<String, IndexedShadow> INDEXED_SHADOWS = new HashMap<>(5);
+
+  static {
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowDummy", new IndexedShadow("com.example.objects.Dummy", true, false, false, -1, -1, "resetter_method()-1:-1"));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowOuterDummy2", new IndexedShadow("com.example.objects.OuterDummy2", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowOuterDummy2$ShadowInnerPackage", new IndexedShadow("com.example.objects.OuterDummy2$InnerPackage", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowOuterDummy2$ShadowInnerProtected", new IndexedShadow("com.example.objects.OuterDummy2$InnerProtected", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowPrivate", new IndexedShadow("com.example.objects.Private", true, false, false, -1, -1, "resetMethod()-1:-1"));
+  }
+
+  @Override
+  public Map<String, IndexedShadow> getIndexedShadows() {
+    return INDEXED_SHADOWS;
+  }
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import org.robolectric.annotation.processing.shadows.ShadowDummy;
 import org.robolectric.annotation.processing.shadows.ShadowOuterDummy;
 import org.robolectric.annotation.processing.shadows.ShadowUniqueDummy;
 import org.robolectric.annotation.processing.shadows.ShadowUniqueDummy.ShadowUniqueInnerDummy;
+import org.robolectric.internal.IndexedShadow;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.shadow.api.Shadow;
 
@@ -60,7 +61,7 @@ public class Shadows implements ShadowProvider {
 
   @Override
   public void reset() {
-    ShadowDummy.resetter_method();
+    ShadowProvider.runResetter(ShadowDummy.class, () -> ShadowDummy.resetter_method());
   }
 
   @Override
@@ -75,4 +76,19 @@ public class Shadows implements ShadowProvider {
     };
   }
 
+  private static final Map<String, IndexedShadow> INDEXED_SHADOWS = new HashMap<>(6);
+
+  static {
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowDummy", new IndexedShadow("com.example.objects.Dummy", true, false, false, -1, -1, "resetter_method()-1:-1"));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowOuterDummy", new IndexedShadow("com.example.objects.OuterDummy", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowOuterDummy$ShadowInnerDummy", new IndexedShadow("com.example.objects.OuterDummy$InnerDummy", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowUniqueDummy", new IndexedShadow("com.example.objects.UniqueDummy", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowUniqueDummy$ShadowInnerDummy", new IndexedShadow("com.example.objects.UniqueDummy$InnerDummy", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowUniqueDummy$ShadowUniqueInnerDummy", new IndexedShadow("com.example.objects.UniqueDummy$UniqueInnerDummy", true, false, false, -1, -1, ""));
+  }
+
+  @Override
+  public Map<String, IndexedShadow> getIndexedShadows() {
+    return INDEXED_SHADOWS;
+  }
 }
\ No newline at end of file
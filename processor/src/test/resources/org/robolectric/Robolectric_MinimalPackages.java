@@ -12,6 +12,7 @@ import org.robolectric.annotation.processing.shadows.ShadowClassNameOnly;
 import org.robolectric.annotation.processing.shadows.ShadowDummy;
 import org.robolectric.annotation.processing.shadows.ShadowDummy2;
 import org.robolectric.annotation.processing.shadows.ShadowInnerPackageDummy;
+import org.robolectric.internal.IndexedShadow;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.shadow.api.Shadow;
 
@@ -48,8 +49,8 @@ public class Shadows implements ShadowProvider {
 
   @Override
   public void reset() {
-    ShadowClassNameOnly.anotherResetter();
-    ShadowDummy.resetter_method();
+    ShadowProvider.runResetter(ShadowClassNameOnly.class, () -> ShadowClassNameOnly.anotherResetter());
+    ShadowProvider.runResetter(ShadowDummy.class, () -> ShadowDummy.resetter_method());
   }
 
   @Override
@@ -65,4 +66,17 @@ public class Shadows implements ShadowProvider {
     };
   }
 
+  private static final Map<String, IndexedShadow> INDEXED_SHADOWS = new HashMap<>(4);
+
+  static {
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowClassNameOnly", new IndexedShadow("com.example.objects.AnyObject", true, false, false, -1, -1, "anotherResetter()-1:-1"));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowDummy", new IndexedShadow("com.example.objects.Dummy", true, false, false, -1, -1, "resetter_method()-1:-1"));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowDummy2", new IndexedShadow("org.example.objects.Dummy", true, false, false, -1, -1, ""));
+    INDEXED_SHADOWS.put("org.robolectric.annotation.processing.shadows.ShadowInnerPackageDummy", new IndexedShadow("com.example.objects.innerpackage.InnerPackageDummy", true, false, false, -1, -1, ""));
+  }
+
+  @Override
+  public Map<String, IndexedShadow> getIndexedShadows() {
+    return INDEXED_SHADOWS;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package org.robolectric.annotation.processing.shadows;
+
+import com.example.objects.AnyObject;
+import java.util.function.Consumer;
+import org.robolectric.annotation.Implements;
+
+@Implements(AnyObject.class)
+public class ShadowGenericOverride implements Consumer<String> {
+  // the compiler also generates a bridge accept(Object) method
+  @Override
+  public void accept(String value) {}
+}
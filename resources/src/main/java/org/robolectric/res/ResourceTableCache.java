@@ -0,0 +1,591 @@
+package org.robolectric.res;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.Util;
+
+/**
+ * A persistent cache of the resources parsed from a resource directory in legacy resources mode.
+ *
+ * <p>Parsing a resource directory adds a sequence of resources to a {@link PackageResourceTable};
+ * the cache stores that sequence in a binary snapshot, which is memory-mapped and replayed into
+ * the table instead of parsing the XML files again. Replaying the same sequence assigns the same
+ * generated ids to framework resources. Each snapshot records a hash of the paths, sizes and
+ * modification times of the files in the directory (or, for directories in jars, the CRCs of their
+ * entries), along with a fingerprint of the loaders; it's rebuilt when any of them change.
+ *
+ * <p>The cache is enabled by setting the {@code robolectric.resourceTableCacheDirectory} system
+ * property. There's one snapshot per package and resource directory, which is overwritten when it's
+ * rebuilt. Snapshots are written to a temporary file and atomically renamed into place, so
+ * concurrent test processes can share a directory.
+ */
+@SuppressWarnings("NewApi")
+class ResourceTableCache {
+  static final String CACHE_DIRECTORY_PROPERTY = "robolectric.resourceTableCacheDirectory";
+
+  /** Bumped whenever the snapshot format changes. */
+  private static final int CACHE_FORMAT_VERSION = 1;
+
+  private static final int MAGIC = 0x52544331; // "RTC1"
+  private static final String ENTRY_SUFFIX = ".restable";
+
+  private static final byte KIND_VALUE = 0;
+  private static final byte KIND_ARRAY = 1;
+  private static final byte KIND_PLURALS = 2;
+  private static final byte KIND_ATTR = 3;
+  private static final byte KIND_STYLE = 4;
+  private static final byte KIND_FILE = 5;
+  private static final byte KIND_IMAGE = 6;
+
+  private static final Class<?>[] LOADER_CLASSES = {
+    ResourceTableCache.class,
+    ResourceTableFactory.class,
+    DocumentLoader.class,
+    StaxDocumentLoader.class,
+    StaxValueLoader.class,
+    StaxArrayLoader.class,
+    StaxPluralsLoader.class,
+    StaxAttrLoader.class,
+    StaxStyleLoader.class,
+    StringResources.class,
+    DrawableResourceLoader.class,
+    RawResourceLoader.class,
+  };
+
+  private static String loaderFingerprint;
+
+  private final Path cacheDirectory;
+
+  ResourceTableCache(Path cacheDirectory) {
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  /** Returns the cache configured by system properties, or null if it's disabled. */
+  @Nullable
+  static ResourceTableCache fromSystemProperties() {
+    String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY, "");
+    if (Strings.isNullOrEmpty(directory)) {
+      return null;
+    }
+    return new ResourceTableCache(Paths.get(directory).toAbsolutePath());
+  }
+
+  /**
+   * Adds the resources in {@code resourceBase} to {@code resourceTable}, from the snapshot if it's
+   * up to date, or else by calling {@code parser} and saving a new snapshot of what it added.
+   */
+  void load(
+      Path resourceBase,
+      PackageResourceTable resourceTable,
+      Consumer<PackageResourceTable> parser) {
+    String packageName = resourceTable.getPackageName();
+    Path entry = entryPath(packageName, resourceBase);
+    String inputsHash;
+    try {
+      inputsHash = hashInputs(packageName, resourceBase);
+    } catch (IOException e) {
+      Logger.debug("couldn't hash resources in %s: %s", resourceBase, e);
+      parser.accept(resourceTable);
+      return;
+    }
+
+    List<Resource> resources = read(entry, inputsHash, resourceBase);
+    if (resources != null) {
+      PerfStatsCollector.getInstance().incrementCount("resource table cache hit");
+      for (Resource resource : resources) {
+        resourceTable.addResource(resource.type, resource.name, resource.value);
+      }
+      return;
+    }
+
+    PerfStatsCollector.getInstance().incrementCount("resource table cache miss");
+    RecordingResourceTable recordingTable = new RecordingResourceTable(resourceTable);
+    parser.accept(recordingTable);
+    write(entry, inputsHash, resourceBase, recordingTable.resources);
+  }
+
+  Path entryPath(String packageName, Path resourceBase) {
+    String name =
+        Hashing.sha256()
+            .newHasher()
+            .putString(packageName, StandardCharsets.UTF_8)
+            .putString(resourceBase.toUri().toString(), StandardCharsets.UTF_8)
+            .hash()
+            .toString();
+    return cacheDirectory.resolve(name + ENTRY_SUFFIX);
+  }
+
+  /** Hashes the inputs of parsing: the files in {@code resourceBase} and the loaders. */
+  static String hashInputs(String packageName, Path resourceBase) throws IOException {
+    boolean defaultFileSystem = resourceBase.getFileSystem() == FileSystems.getDefault();
+    List<String> files = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(resourceBase)) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attrs.isRegularFile()) {
+          files.add(
+              resourceBase.relativize(path)
+                  + ":"
+                  + attrs.size()
+                  + ":"
+                  + (defaultFileSystem
+                      ? Long.toString(attrs.lastModifiedTime().toMillis())
+                      : contentKey(path)));
+        }
+      }
+    }
+    files.sort(null);
+
+    Hasher hasher =
+        Hashing.sha256()
+            .newHasher()
+            .putInt(CACHE_FORMAT_VERSION)
+            .putString(getLoaderFingerprint(), StandardCharsets.UTF_8)
+            .putString(packageName, StandardCharsets.UTF_8);
+    for (String file : files) {
+      hasher.putString(file, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Identifies the contents of a file in a jar or other non-default file system, where modification
+   * times are often normalized by the build and can't be relied on: the CRC of its zip entry, or a
+   * hash of its contents if the file system doesn't report one.
+   */
+  private static String contentKey(Path path) throws IOException {
+    try {
+      Object crc = Files.getAttribute(path, "zip:crc");
+      if (crc instanceof Long) {
+        return "crc" + Long.toHexString((Long) crc);
+      }
+    } catch (UnsupportedOperationException | IllegalArgumentException e) {
+      // not a zip file system
+    }
+    return Hashing.sha256().hashBytes(Files.readAllBytes(path)).toString();
+  }
+
+  /**
+   * Computes a fingerprint of the code that parses resources, so that snapshots written by a
+   * different Robolectric version are never reused.
+   */
+  private static synchronized String getLoaderFingerprint() {
+    if (loaderFingerprint == null) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      for (Class<?> clazz : LOADER_CLASSES) {
+        Package pkg = clazz.getPackage();
+        String version = pkg == null ? null : pkg.getImplementationVersion();
+        hasher.putString(Strings.nullToEmpty(version), StandardCharsets.UTF_8);
+        String resourceName = clazz.getName().replace('.', '/') + ".class";
+        try (InputStream in = clazz.getClassLoader().getResourceAsStream(resourceName)) {
+          if (in != null) {
+            hasher.putBytes(Util.readBytes(in));
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException("couldn't read " + resourceName, e);
+        }
+      }
+      loaderFingerprint = hasher.hash().toString();
+    }
+    return loaderFingerprint;
+  }
+
+  /**
+   * Returns the resources in the snapshot at {@code entry}, or null if there is none or it's out of
+   * date.
+   */
+  @Nullable
+  private static List<Resource> read(Path entry, String inputsHash, Path resourceBase) {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      Logger.debug("couldn't read resource table cache entry %s: %s", entry, e);
+      return null;
+    }
+
+    // A snapshot is decoded completely before it's applied, so that a damaged one doesn't leave
+    // the resource table partially loaded.
+    try {
+      return PerfStatsCollector.getInstance()
+          .measure(
+              "read resource table cache",
+              () -> new SnapshotReader(buffer, resourceBase).read(inputsHash));
+    } catch (RuntimeException e) {
+      Logger.debug("couldn't decode resource table cache entry %s: %s", entry, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes a snapshot of {@code resources}. Failures are logged and otherwise ignored, since the
+   * cache is purely an optimization.
+   */
+  private static void write(
+      Path entry, String inputsHash, Path resourceBase, List<Resource> resources) {
+    byte[] bytes;
+    try {
+      bytes = new SnapshotWriter(resourceBase).write(inputsHash, resources);
+    } catch (IOException | IllegalArgumentException e) {
+      Logger.debug("couldn't encode resources from %s: %s", resourceBase, e);
+      return;
+    }
+
+    Path tempFile = null;
+    try {
+      Files.createDirectories(entry.getParent());
+      tempFile = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+      Files.write(tempFile, bytes);
+      try {
+        Files.move(
+            tempFile, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+      tempFile = null;
+    } catch (IOException e) {
+      Logger.debug("couldn't write resource table cache entry %s: %s", entry, e);
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /** A resource added to a resource table while parsing. */
+  private static class Resource {
+    final String type;
+    final String name;
+    final TypedResource<?> value;
+
+    Resource(String type, String name, TypedResource<?> value) {
+      this.type = type;
+      this.name = name;
+      this.value = value;
+    }
+  }
+
+  /** Forwards resources to another resource table, and records them. */
+  private static class RecordingResourceTable extends PackageResourceTable {
+    private final PackageResourceTable resourceTable;
+    private final List<Resource> resources = new ArrayList<>();
+
+    RecordingResourceTable(PackageResourceTable resourceTable) {
+      super(resourceTable.getPackageName());
+      this.resourceTable = resourceTable;
+    }
+
+    @Override
+    void addResource(String type, String name, TypedResource value) {
+      resources.add(new Resource(type, name, value));
+      resourceTable.addResource(type, name, value);
+    }
+  }
+
+  /**
+   * Encodes a snapshot: a header, a table of the distinct strings, and the resources, which refer
+   * to strings by their index in the table. Paths are stored relative to the resource directory.
+   */
+  private static class SnapshotWriter {
+    private final Path resourceBase;
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(body);
+
+    SnapshotWriter(Path resourceBase) {
+      this.resourceBase = resourceBase;
+    }
+
+    byte[] write(String inputsHash, List<Resource> resources) throws IOException {
+      out.writeInt(resources.size());
+      for (Resource resource : resources) {
+        writeString(resource.type);
+        writeString(resource.name);
+        writeValue(resource.value);
+      }
+      out.flush();
+
+      ByteArrayOutputStream snapshot = new ByteArrayOutputStream(body.size() * 2);
+      DataOutputStream header = new DataOutputStream(snapshot);
+      header.writeInt(MAGIC);
+      writeBytes(header, inputsHash.getBytes(StandardCharsets.UTF_8));
+      header.writeInt(strings.size());
+      for (String string : strings.keySet()) {
+        writeBytes(header, string.getBytes(StandardCharsets.UTF_8));
+      }
+      header.flush();
+      body.writeTo(snapshot);
+      return snapshot.toByteArray();
+    }
+
+    private void writeValue(TypedResource<?> value) throws IOException {
+      Class<?> valueClass = value.getClass();
+      Object data = value.getData();
+      if (valueClass == FileTypedResource.Image.class) {
+        out.writeByte(KIND_IMAGE);
+        out.writeBoolean(((FileTypedResource.Image) value).isNinePatch());
+        writePath(((FileTypedResource) value).getPath());
+      } else if (valueClass == FileTypedResource.class) {
+        out.writeByte(KIND_FILE);
+        writeString(value.getResType().name());
+        writePath(((FileTypedResource) value).getPath());
+      } else if (valueClass == PluralRules.class) {
+        out.writeByte(KIND_PLURALS);
+        writeString(value.getResType().name());
+        List<Plural> plurals = ((PluralRules) value).getData();
+        out.writeInt(plurals.size());
+        for (Plural plural : plurals) {
+          writeString(plural.quantity);
+          writeString(plural.string);
+        }
+      } else if (valueClass != TypedResource.class) {
+        throw new IllegalArgumentException("unsupported resource " + value);
+      } else if (data instanceof String) {
+        out.writeByte(KIND_VALUE);
+        writeString(value.getResType().name());
+        writeString((String) data);
+      } else if (data instanceof List) {
+        out.writeByte(KIND_ARRAY);
+        writeString(value.getResType().name());
+        List<?> items = (List<?>) data;
+        out.writeInt(items.size());
+        for (Object item : items) {
+          writeValue((TypedResource<?>) item);
+        }
+      } else if (data instanceof AttrData) {
+        out.writeByte(KIND_ATTR);
+        writeString(value.getResType().name());
+        writeAttrData((AttrData) data);
+      } else if (data instanceof StyleData) {
+        out.writeByte(KIND_STYLE);
+        writeString(value.getResType().name());
+        writeStyleData((StyleData) data);
+      } else {
+        throw new IllegalArgumentException("unsupported resource " + value);
+      }
+      writeXmlContext(value.getXmlContext());
+    }
+
+    private void writeAttrData(AttrData attrData) throws IOException {
+      writeString(attrData.getName());
+      writeString(attrData.getFormat());
+      List<AttrData.Pair> pairs = attrData.getPairs();
+      out.writeInt(pairs == null ? -1 : pairs.size());
+      if (pairs != null) {
+        for (AttrData.Pair pair : pairs) {
+          writeString(pair.getName());
+          writeString(pair.getValue());
+        }
+      }
+    }
+
+    private void writeStyleData(StyleData styleData) throws IOException {
+      writeString(styleData.getPackageName());
+      writeString(styleData.getName());
+      writeString(styleData.getParent());
+      List<AttributeResource> attributeResources = new ArrayList<>();
+      styleData.visit(attributeResources::add);
+      out.writeInt(attributeResources.size());
+      for (AttributeResource attributeResource : attributeResources) {
+        writeString(attributeResource.resName.getFullyQualifiedName());
+        writeString(attributeResource.value);
+        writeString(attributeResource.contextPackageName);
+        Integer referenceResId = attributeResource.getReferenceResId();
+        out.writeBoolean(referenceResId != null);
+        if (referenceResId != null) {
+          out.writeInt(referenceResId);
+        }
+      }
+    }
+
+    private void writeXmlContext(XmlContext xmlContext) throws IOException {
+      writeString(xmlContext.getPackageName());
+      writePath(xmlContext.getXmlFile());
+      writeString(xmlContext.getQualifiers().toString());
+    }
+
+    private void writePath(Path path) throws IOException {
+      if (path == null) {
+        writeString(null);
+      } else if (!path.startsWith(resourceBase)) {
+        throw new IllegalArgumentException(path + " isn't in " + resourceBase);
+      } else {
+        writeString(resourceBase.relativize(path).toString());
+      }
+    }
+
+    private void writeString(String string) throws IOException {
+      out.writeInt(string == null ? -1 : strings.computeIfAbsent(string, s -> strings.size()));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /** Decodes a snapshot written by {@link SnapshotWriter} from a (memory-mapped) buffer. */
+  private static class SnapshotReader {
+    private final ByteBuffer buffer;
+    private final Path resourceBase;
+    private final Map<String, Qualifiers> qualifiers = new HashMap<>();
+    private String[] strings;
+
+    SnapshotReader(ByteBuffer buffer, Path resourceBase) {
+      this.buffer = buffer;
+      this.resourceBase = resourceBase;
+    }
+
+    /** Returns the resources in the snapshot, or null if it's for different inputs. */
+    @Nullable
+    List<Resource> read(String inputsHash) {
+      if (buffer.getInt() != MAGIC || !inputsHash.equals(readUtf8())) {
+        return null;
+      }
+      strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = readUtf8();
+      }
+
+      int count = buffer.getInt();
+      List<Resource> resources = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String type = readString();
+        String name = readString();
+        resources.add(new Resource(type, name, readValue()));
+      }
+      if (buffer.hasRemaining()) {
+        throw new IllegalStateException("unexpected data at " + buffer.position());
+      }
+      return resources;
+    }
+
+    private TypedResource<?> readValue() {
+      byte kind = buffer.get();
+      if (kind == KIND_IMAGE) {
+        boolean isNinePatch = buffer.get() != 0;
+        Path path = readPath();
+        return new FileTypedResource.Image(path, isNinePatch, readXmlContext());
+      }
+
+      ResType resType = ResType.valueOf(readString());
+      switch (kind) {
+        case KIND_FILE:
+          Path path = readPath();
+          return new FileTypedResource(path, resType, readXmlContext());
+        case KIND_PLURALS:
+          List<Plural> plurals = new ArrayList<>();
+          for (int i = buffer.getInt(); i > 0; i--) {
+            String quantity = readString();
+            plurals.add(new Plural(quantity, readString()));
+          }
+          return new PluralRules(plurals, resType, readXmlContext());
+        case KIND_VALUE:
+          String string = readString();
+          return new TypedResource<>(string, resType, readXmlContext());
+        case KIND_ARRAY:
+          List<TypedResource> items = new ArrayList<>();
+          for (int i = buffer.getInt(); i > 0; i--) {
+            items.add(readValue());
+          }
+          return new TypedResource<>(items, resType, readXmlContext());
+        case KIND_ATTR:
+          AttrData attrData = readAttrData();
+          return new TypedResource<>(attrData, resType, readXmlContext());
+        case KIND_STYLE:
+          StyleData styleData = readStyleData();
+          return new TypedResource<>(styleData, resType, readXmlContext());
+        default:
+          throw new IllegalStateException("unknown resource kind " + kind);
+      }
+    }
+
+    private AttrData readAttrData() {
+      String name = readString();
+      String format = readString();
+      int pairCount = buffer.getInt();
+      List<AttrData.Pair> pairs = null;
+      if (pairCount >= 0) {
+        pairs = new ArrayList<>(pairCount);
+        for (int i = 0; i < pairCount; i++) {
+          String pairName = readString();
+          pairs.add(new AttrData.Pair(pairName, readString()));
+        }
+      }
+      return new AttrData(name, format, pairs);
+    }
+
+    private StyleData readStyleData() {
+      String stylePackageName = readString();
+      String name = readString();
+      String parent = readString();
+      List<AttributeResource> attributeResources = new ArrayList<>();
+      for (int i = buffer.getInt(); i > 0; i--) {
+        ResName resName = new ResName(readString());
+        String value = readString();
+        String contextPackageName = readString();
+        Integer referenceResId = buffer.get() != 0 ? buffer.getInt() : null;
+        attributeResources.add(
+            new AttributeResource(resName, value, contextPackageName, referenceResId));
+      }
+      return new StyleData(stylePackageName, name, parent, attributeResources);
+    }
+
+    private XmlContext readXmlContext() {
+      String xmlPackageName = readString();
+      Path xmlFile = readPath();
+      Qualifiers xmlQualifiers = qualifiers.computeIfAbsent(readString(), Qualifiers::parse);
+      return new XmlContext(xmlPackageName, xmlFile, xmlQualifiers);
+    }
+
+    private Path readPath() {
+      String path = readString();
+      return path == null ? null : resourceBase.resolve(path);
+    }
+
+    private String readString() {
+      int index = buffer.getInt();
+      return index == -1 ? null : strings[index];
+    }
+
+    private String readUtf8() {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -124,6 +124,18 @@ public class ResourceTableFactory {
         "Loading resources for %s from %s...",
         resourceTable.getPackageName(), resourcePath.getResourceBase());
 
+    ResourceTableCache cache = ResourceTableCache.fromSystemProperties();
+    if (cache == null) {
+      loadResourceFiles(resourcePath, resourceTable);
+    } else {
+      cache.load(
+          resourcePath.getResourceBase(),
+          resourceTable,
+          table -> loadResourceFiles(resourcePath, table));
+    }
+  }
+
+  private void loadResourceFiles(ResourcePath resourcePath, PackageResourceTable resourceTable) {
     try {
       new StaxDocumentLoader(
               resourceTable.getPackageName(),
@@ -1,7 +1,17 @@
 package org.robolectric.res.android;
 
 import com.google.auto.value.AutoValue;
-import java.util.HashMap;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.function.LongConsumer;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
 
 /**
  * A global cache for ApkAssets (framework and app resources). This cache is shared between
@@ -12,22 +22,152 @@ import java.util.HashMap;
  * growing in size, and an increasing number of sandbox parameters, the memory usage did not scale
  * well as test suites increased in size.
  *
- * <p>Currently the items in this cache are not made available for GC. However, it would definitely
- * be possible to have a per-sdk-level reference counting mechanism where an item could be freed if
- * all sandboxes referencing that item are collected.
+ * <p>Each item is referenced by the sandboxes that loaded or reused it, identified by their class
+ * loader, until they're shut down (see {@link #release(Object)}). Items that are no longer
+ * referenced are kept for future sandboxes while the total size of the resource tables in the cache
+ * fits in the budget set by the {@code robolectric.apkAssetsCacheMaxBytes} system property (256MiB
+ * by default); beyond that, the least recently used ones are evicted. The size of the resource
+ * tables retained for each SDK is reported as the {@code apkAssetsCacheRetainedBytes sdk=<api
+ * level>} perf stat, where app resources, which are shared by all SDKs, are reported as SDK 0.
  */
 @SuppressWarnings("AndroidJdkLibsChecker")
 public final class ApkAssetsCache {
+  public static final String MAX_BYTES_PROPERTY = "robolectric.apkAssetsCacheMaxBytes";
 
-  private static final HashMap<Key, Long> cachedApkAssetsPtrs = new HashMap<>();
+  private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
 
-  public static void put(String path, boolean system, int apiLevel, long ptr) {
-    cachedApkAssetsPtrs.put(Key.newInstance(path, system, system ? apiLevel : 0), ptr);
+  private static final ApkAssetsCache instance =
+      new ApkAssetsCache(
+          Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES),
+          ptr -> Registries.NATIVE_APK_ASSETS_REGISTRY.unregister(ptr));
+
+  private final long maxBytes;
+  private final LongConsumer releaseApkAssets;
+
+  // access-ordered, so iteration starts at the least recently used item
+  private final LinkedHashMap<Key, CachedApkAssets> cachedApkAssets =
+      new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true);
+
+  private final Map<Integer, Long> retainedBytesBySdk = new TreeMap<>();
+  private long retainedBytes;
+
+  @VisibleForTesting
+  ApkAssetsCache(long maxBytes, LongConsumer releaseApkAssets) {
+    this.maxBytes = maxBytes;
+    this.releaseApkAssets = releaseApkAssets;
+  }
+
+  /**
+   * Adds the ApkAssets with the given native pointer to the cache, referenced by {@code owner}.
+   *
+   * @param sizeBytes the size of the ApkAssets' resource table
+   * @param owner the class loader of the sandbox which loaded the ApkAssets
+   * @return the native pointer to use, which is {@code ptr} unless another sandbox cached the same
+   *     ApkAssets in the meantime, in which case {@code ptr} has been released
+   */
+  public static long put(
+      String path, boolean system, int apiLevel, long ptr, long sizeBytes, Object owner) {
+    return instance.putApkAssets(Key.of(path, system, apiLevel), ptr, sizeBytes, owner);
+  }
+
+  /**
+   * Returns the native pointer of the cached ApkAssets, now also referenced by {@code owner}, or -1
+   * if they're not in the cache.
+   */
+  public static long get(String path, boolean system, int apiLevel, Object owner) {
+    return instance.getApkAssets(Key.of(path, system, apiLevel), owner);
+  }
+
+  /**
+   * Releases the references held by {@code owner}, typically when its sandbox is shut down, and
+   * evicts unreferenced ApkAssets if the cache is over budget.
+   */
+  public static void release(Object owner) {
+    instance.releaseOwner(owner);
+  }
+
+  @VisibleForTesting
+  synchronized long putApkAssets(Key key, long ptr, long sizeBytes, Object owner) {
+    CachedApkAssets cached = cachedApkAssets.get(key);
+    if (cached != null) {
+      releaseApkAssets.accept(ptr);
+    } else {
+      cached = new CachedApkAssets(ptr, sizeBytes);
+      cachedApkAssets.put(key, cached);
+      retain(key, sizeBytes);
+    }
+    cached.owners.add(owner);
+    evictIfNecessary();
+    return cached.ptr;
+  }
+
+  @VisibleForTesting
+  synchronized long getApkAssets(Key key, Object owner) {
+    CachedApkAssets cached = cachedApkAssets.get(key);
+    if (cached == null) {
+      return -1;
+    }
+    cached.owners.add(owner);
+    return cached.ptr;
+  }
+
+  @VisibleForTesting
+  synchronized void releaseOwner(Object owner) {
+    for (CachedApkAssets cached : cachedApkAssets.values()) {
+      cached.owners.remove(owner);
+    }
+    evictIfNecessary();
   }
 
-  public static long get(String path, boolean system, int apiLevel) {
-    return cachedApkAssetsPtrs.getOrDefault(
-        Key.newInstance(path, system, system ? apiLevel : 0), -1L);
+  @VisibleForTesting
+  synchronized long getRetainedBytes() {
+    return retainedBytes;
+  }
+
+  private void evictIfNecessary() {
+    Iterator<Map.Entry<Key, CachedApkAssets>> iterator = cachedApkAssets.entrySet().iterator();
+    while (retainedBytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<Key, CachedApkAssets> entry = iterator.next();
+      CachedApkAssets cached = entry.getValue();
+      // owners are weakly referenced, so a collected sandbox doesn't pin its ApkAssets
+      if (!cached.owners.isEmpty()) {
+        continue;
+      }
+      iterator.remove();
+      retain(entry.getKey(), -cached.sizeBytes);
+      releaseApkAssets.accept(cached.ptr);
+      PerfStatsCollector.getInstance().incrementCount("apkAssetsCacheEvict");
+      Logger.debug("Evicting ApkAssets %s (%d bytes)", entry.getKey(), cached.sizeBytes);
+    }
+  }
+
+  private void retain(Key key, long sizeBytes) {
+    retainedBytes += sizeBytes;
+    int apiLevel = key.apiLevel();
+    if (!retainedBytesBySdk.containsKey(apiLevel)) {
+      // the cache outlives tests, so its size is reported as a gauge, which isn't reset
+      PerfStatsCollector.getInstance()
+          .registerGauge(
+              "apkAssetsCacheRetainedBytes sdk=" + apiLevel,
+              () -> instance.getRetainedBytes(apiLevel));
+    }
+    retainedBytesBySdk.merge(apiLevel, sizeBytes, Long::sum);
+  }
+
+  @VisibleForTesting
+  synchronized long getRetainedBytes(int apiLevel) {
+    return retainedBytesBySdk.getOrDefault(apiLevel, 0L);
+  }
+
+  private static class CachedApkAssets {
+    final long ptr;
+    final long sizeBytes;
+    final Set<Object> owners = Collections.newSetFromMap(new WeakHashMap<>());
+
+    CachedApkAssets(long ptr, long sizeBytes) {
+      this.ptr = ptr;
+      this.sizeBytes = sizeBytes;
+    }
   }
 
   /** The cache key for this cache. */
@@ -42,7 +182,10 @@ public final class ApkAssetsCache {
     public static Key newInstance(String path, boolean system, int apiLevel) {
       return new AutoValue_ApkAssetsCache_Key(path, system, apiLevel);
     }
-  }
 
-  private ApkAssetsCache() {}
+    /** App resources are shared between SDKs; their key has an API level of 0. */
+    static Key of(String path, boolean system, int apiLevel) {
+      return newInstance(path, system, system ? apiLevel : 0);
+    }
+  }
 }
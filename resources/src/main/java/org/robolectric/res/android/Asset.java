@@ -12,6 +12,8 @@ import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.zip.ZipEntry;
@@ -117,6 +119,15 @@ public abstract class Asset {
      */
   public abstract byte[] getBuffer(boolean wordAligned);
 
+  /**
+   * Non-Android method. Returns a read-only view of the entire contents of the file, positioned at
+   * its start. Unlike {@link #getBuffer(boolean)}, this doesn't copy uncompressed data that's
+   * memory-mapped.
+   */
+  public ByteBuffer getByteBuffer() {
+    return ByteBuffer.wrap(getBuffer(true)).asReadOnlyBuffer();
+  }
+
   /*
    * Get the total amount of data that can be read.
    */
@@ -730,7 +741,7 @@ static Asset createFromCompressedMap(FileMap dataMap,
       mLength = dataMap.getDataLength();
       assert(mOffset == 0);
 
-      mBuf = dataMap.getDataPtr();
+      // the data is read from the map when it's needed
 
       return NO_ERROR;
     }
@@ -752,7 +763,7 @@ static Asset createFromCompressedMap(FileMap dataMap,
            * using the buffer or because what they're doing has appropriate
            * performance needs and access patterns.
            */
-        if (mBuf == null)
+        if (mBuf == null && mMap == null)
           getBuffer(false);
       }
 
@@ -769,7 +780,9 @@ static Asset createFromCompressedMap(FileMap dataMap,
           /* copy from mapped area */
         //printf("map read\n");
         // memcpy(buf, (String)mMap.getDataPtr() + mOffset, count);
-        System.arraycopy(mMap.getDataPtr(), toIntExact(mOffset), buf, bufOffset, count);
+        ByteBuffer data = mMap.getDataBuffer();
+        ((Buffer) data).position(toIntExact(mOffset));
+        data.get(buf, bufOffset, count);
         actual = count;
       } else if (mBuf != null) {
           /* copy from buffer */
@@ -944,6 +957,14 @@ static Asset createFromCompressedMap(FileMap dataMap,
       }
     }
 
+    @Override
+    public ByteBuffer getByteBuffer() {
+      if (mBuf == null && mMap != null) {
+        return mMap.getDataBuffer();
+      }
+      return super.getByteBuffer();
+    }
+
     /**
      * Return the file on disk representing this asset.
      *
@@ -64,11 +64,16 @@ public class CppApkAssets {
   public CppApkAssets(ZipArchiveHandle zip_handle_, String path_) {
     this.zip_handle_ = zip_handle_;
     this.path_ = path_;
-    this.zipFileRO = new ZipFileRO(zip_handle_, zip_handle_.zipFile.getName());
+    this.zipFileRO = new ZipFileRO(zip_handle_, zip_handle_.fileName);
   }
 
   public String GetPath() { return path_; }
 
+  // Not in the native ApkAssets: the size of the resource table, used to budget ApkAssetsCache.
+  public long GetResourcesSize() {
+    return resources_asset_ == null ? 0 : resources_asset_.getLength();
+  }
+
   // This is never nullptr.
   public LoadedArsc GetLoadedArsc() {
     return loaded_arsc_;
@@ -280,9 +285,9 @@ public class CppApkAssets {
   // const StringPiece data(
   //       reinterpret_cast<const char*>(loaded_apk.resources_asset_.getBuffer(true /*wordAligned*/)),
   //       loaded_apk.resources_asset_.getLength());
+    // Parse the resource table directly from the mapped APK when it's stored uncompressed.
     StringPiece data = new StringPiece(
-        ByteBuffer.wrap(loaded_apk.resources_asset_.getBuffer(true /*wordAligned*/))
-            .order(ByteOrder.LITTLE_ENDIAN),
+        loaded_apk.resources_asset_.getByteBuffer().order(ByteOrder.LITTLE_ENDIAN),
         0 /*(int) loaded_apk.resources_asset_.getLength()*/);
     loaded_apk.loaded_arsc_ =
         LoadedArsc.Load(data, loaded_idmap, system, load_as_shared_library);
@@ -366,7 +371,7 @@ public class CppApkAssets {
     }
 
     String prefix = root_path_full;
-    Enumeration<? extends ZipEntry> entries = zip_handle_.zipFile.entries();
+    Enumeration<? extends ZipEntry> entries = zip_handle_.entries();
     // if (StartIteration(zip_handle_.get(), &cookie, &prefix, null) != 0) {
     //   return false;
     // }
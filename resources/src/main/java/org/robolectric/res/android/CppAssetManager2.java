@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -40,6 +41,7 @@ import org.robolectric.res.android.ResourceTypes.ResTable_map_entry;
 import org.robolectric.res.android.ResourceTypes.ResTable_type;
 import org.robolectric.res.android.ResourceTypes.Res_value;
 import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
 
 // transliterated from https://android.googlesource.com/platform/frameworks/base/+/android-9.0.0_r12/libs/androidfw/include/androidfw/AssetManager2.h
 // and https://android.googlesource.com/platform/frameworks/base/+/android-9.0.0_r12/libs/androidfw/AssetManager2.cpp
@@ -206,6 +208,16 @@ public class CppAssetManager2 {
   // which involves some calculation.
 //  private std.unordered_map<int, util.unique_cptr<ResolvedBag>> cached_bags_;
   final private Map<Integer, ResolvedBag> cached_bags_ = new HashMap<>();
+
+  // Not in the native AssetManager2: the most recently used results of FindEntry, keyed by
+  // resource ID and density override. Purged along with cached_bags_ by InvalidateCaches().
+  final private Map<Long, CachedEntry> cached_entries_ =
+      new LinkedHashMap<Long, CachedEntry>(16, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedEntry> eldest) {
+          return size() > MAX_CACHED_ENTRIES;
+        }
+      };
   //  };
 
   // final ResolvedBag.Entry* begin(final ResolvedBag* bag) { return bag.entries; }
@@ -260,6 +272,23 @@ public class CppAssetManager2 {
     StringPoolRef entry_string_ref;
   }
 
+  private static final int MAX_CACHED_ENTRIES = 4096;
+
+  private static final MetricHandle FIND_ENTRY_CACHE_HIT =
+      PerfStatsCollector.getInstance().getMetricHandle("findEntryCacheHit");
+  private static final MetricHandle FIND_ENTRY_CACHE_MISS =
+      PerfStatsCollector.getInstance().getMetricHandle("findEntryCacheMiss");
+
+  private static class CachedEntry {
+    final ApkAssetsCookie cookie;
+    final FindEntryResult entry;
+
+    CachedEntry(ApkAssetsCookie cookie, FindEntryResult entry) {
+      this.cookie = cookie;
+      this.entry = entry;
+    }
+  }
+
 //  AssetManager2() { memset(&configuration_, 0, sizeof(configuration_)); }
 
   // Sets/resets the underlying ApkAssets for this AssetManager. The ApkAssets
@@ -624,6 +653,24 @@ public class CppAssetManager2 {
 //                            int* out_flags);
   private ApkAssetsCookie FindEntry(int resid, short density_override,
       final Ref<FindEntryResult> out_entry) {
+    final long key = ((long) resid << 16) | (density_override & 0xffff);
+    CachedEntry cached = cached_entries_.get(key);
+    if (cached != null) {
+      FIND_ENTRY_CACHE_HIT.incrementCount();
+      out_entry.set(cached.entry);
+      return cached.cookie;
+    }
+    FIND_ENTRY_CACHE_MISS.incrementCount();
+
+    ApkAssetsCookie cookie = FindEntryUncached(resid, density_override, out_entry);
+    if (cookie.intValue() != kInvalidCookie) {
+      cached_entries_.put(key, new CachedEntry(cookie, out_entry.get()));
+    }
+    return cookie;
+  }
+
+  private ApkAssetsCookie FindEntryUncached(int resid, short density_override,
+      final Ref<FindEntryResult> out_entry) {
     ATRACE_CALL();
 
     // Might use this if density_override != 0.
@@ -632,7 +679,8 @@ public class CppAssetManager2 {
     // Select our configuration or generate a density override configuration.
     ResTable_config desired_config = configuration_;
     if (density_override != 0 && density_override != configuration_.density) {
-      density_override_config = configuration_;
+      // copy, so that configuration_ (and cached entries) aren't affected by the override
+      density_override_config = new ResTable_config(configuration_);
       density_override_config.density = density_override;
       desired_config = density_override_config;
     }
@@ -1342,6 +1390,7 @@ public class CppAssetManager2 {
     if (diff == 0xffffffff) {
       // Everything must go.
       cached_bags_.clear();
+      cached_entries_.clear();
       return;
     }
 
@@ -1355,6 +1404,8 @@ public class CppAssetManager2 {
         cached_bags_.remove(key);
       }
     }
+
+    cached_entries_.values().removeIf(cached -> isTruthy(diff & cached.entry.type_flags));
   }
 
   // Creates a new Theme from this AssetManager.
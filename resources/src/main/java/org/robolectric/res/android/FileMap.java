@@ -3,21 +3,27 @@ package org.robolectric.res.android;
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.robolectric.res.android.Asset.toIntExact;
+import static org.robolectric.res.android.Util.ALOGE;
 import static org.robolectric.res.android.Util.ALOGV;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.primitives.Ints;
-import com.google.common.primitives.Longs;
-import com.google.common.primitives.Shorts;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
 public class FileMap {
 
@@ -33,14 +39,27 @@ public class FileMap {
   /** ZIP64 archive central directory end header signature. */
   private static final int ENDSIG64 = 0x6064b50;
 
+  /** ZIP64 archive central directory end locator signature. */
+  private static final int ZIP64_LOCSIG = 0x7064b50;
+
+  /** ZIP archive central directory file header signature. */
+  private static final int CENSIG = 0x2014b50;
+
+  /** Value of a field whose actual value is in the ZIP64 extended information extra field. */
+  private static final long ZIP64_MAGICVAL = 0xffffffffL;
+
+  /** Header ID of the ZIP64 extended information extra field. */
+  private static final int ZIP64_EXTID = 0x0001;
+
   private static final int MAX_COMMENT_SIZE = 64 * 1024; // 64k
 
   /** the maximum size of the end of central directory sections in bytes */
   private static final int MAXIMUM_ZIP_EOCD_SIZE =
       MAX_COMMENT_SIZE + EOCD_SIZE + ZIP64_EOCD_SIZE + ZIP64_EOCD_LOCATOR_SIZE;
 
-  private ZipFile zipFile;
   private ZipEntry zipEntry;
+  // for zip entries, the entry's (possibly compressed) data in the mapped file
+  private ByteBuffer mZipData;
 
   @SuppressWarnings("unused")
   private boolean readOnly;
@@ -156,13 +175,12 @@ public class FileMap {
 
   boolean createFromZip(
       String origFileName,
-      ZipFile zipFile,
+      ByteBuffer fileData,
       ZipEntry entry,
       long offset,
       int length,
       boolean readOnly) {
     isFromZip = true;
-    this.zipFile = zipFile;
     this.zipEntry = entry;
 
     assert(fd >= 0);
@@ -195,6 +213,17 @@ public class FileMap {
     // }
     // mBasePtr = ptr;
 
+    // The whole file is already mapped, so just take a view of the entry's (possibly compressed)
+    // data.
+    if (offset + length > fileData.capacity()) {
+      ALOGE("Entry %s in %s extends beyond the end of the file\n", entry.getName(), origFileName);
+      return false;
+    }
+    ByteBuffer data = fileData.duplicate();
+    ((Buffer) data).position(toIntExact(offset));
+    ((Buffer) data).limit(toIntExact(offset + length));
+    mZipData = data.slice();
+
     mFileName = origFileName != null ? origFileName : null;
     //mBaseLength = adjLength;
     mDataOffset = offset;
@@ -209,84 +238,101 @@ public class FileMap {
     return true;
   }
 
-  static ImmutableMap<String, Long> guessDataOffsets(File zipFile, int length) {
-    ImmutableMap.Builder<String, Long> result = ImmutableMap.builder();
-
-    // Parse the zip file entry offsets from the central directory section.
+  /**
+   * Maps {@code file} and parses its central directory in a single pass. Only the central directory
+   * is read; local headers, which are needed to find the data of an entry, are read when the entry
+   * is opened (see {@link #readDataOffset}).
+   */
+  static ZipArchiveHandle openZip(File file) throws IOException {
+    // Parse the zip file entries from the central directory section.
     // See https://en.wikipedia.org/wiki/Zip_(file_format)
 
-    try (RandomAccessFile randomAccessFile = new RandomAccessFile(zipFile, "r")) {
-
-      // First read the 'end of central directory record' in order to find the start of the central
-      // directory
-      int endOfCdSize = Math.min(MAXIMUM_ZIP_EOCD_SIZE, length);
-      int endofCdOffset = length - endOfCdSize;
-      randomAccessFile.seek(endofCdOffset);
-      byte[] buffer = new byte[endOfCdSize];
-      randomAccessFile.readFully(buffer);
-
-      int centralDirOffset = findCentralDir(buffer);
-      if (centralDirOffset == -1) {
-        // If the zip file contains > 2^16 entries, a Zip64 EOCD is written, and the central
-        // dir offset in the regular EOCD may be -1.
-        centralDirOffset = findCentralDir64(buffer);
-      }
-      int offset = centralDirOffset - endofCdOffset;
-      if (offset < 0) {
-        // read the entire central directory record into memory
-        // for the framework jars this max of 5MB for Q
-        // TODO: consider using a smaller buffer size and re-reading as necessary
-        offset = 0;
-        randomAccessFile.seek(centralDirOffset);
-        final int cdSize = length - centralDirOffset;
-        buffer = new byte[cdSize];
-        randomAccessFile.readFully(buffer);
-      } else {
-        // the central directory is already in the buffer, no need to reread
-      }
+    ByteBuffer fileData;
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      // the mapping stays valid after the channel is closed
+      fileData =
+          channel.map(MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
 
-      // now read the entries
+    Map<String, ZipArchiveHandle.Entry> entries = new LinkedHashMap<>();
+    int offset = findCentralDir(fileData);
+    try {
       while (true) {
         // Instead of trusting numRecords, read until we find the
         // end-of-central-directory signature.  numRecords may wrap
         // around with >64K entries.
-        int sig = readInt(buffer, offset);
+        int sig = fileData.getInt(offset);
         if (sig == ENDSIG || sig == ENDSIG64) {
           break;
         }
+        if (sig != CENSIG) {
+          throw new ZipException("Invalid central directory entry in " + file);
+        }
 
-        int bitFlag = readShort(buffer, offset + 8);
-        int fileNameLength = readShort(buffer, offset + 28);
-        int extraLength = readShort(buffer, offset + 30);
-        int fieldCommentLength = readShort(buffer, offset + 32);
-        int relativeOffsetOfLocalFileHeader = readInt(buffer, offset + 42);
-
-        byte[] nameBytes = copyBytes(buffer, offset + 46, fileNameLength);
-        Charset encoding = getEncoding(bitFlag);
-        String fileName = new String(nameBytes, encoding);
-        byte[] localHeaderBuffer = new byte[30];
-        randomAccessFile.seek(relativeOffsetOfLocalFileHeader);
-        randomAccessFile.readFully(localHeaderBuffer);
-        // There are two extra field lengths stored in the zip - one in the central directory,
-        // one in the local header. And we should use one in local header to calculate the
-        // correct file content offset, because they are different some times.
-        int localHeaderExtraLength = readShort(localHeaderBuffer, 28);
-        int fileOffset =
-            relativeOffsetOfLocalFileHeader + 30 + fileNameLength + localHeaderExtraLength;
-        result.put(fileName, (long) fileOffset);
+        int bitFlag = readShort(fileData, offset + 8);
+        int method = readShort(fileData, offset + 10);
+        long crc = readInt(fileData, offset + 16);
+        long compressedSize = readInt(fileData, offset + 20);
+        long size = readInt(fileData, offset + 24);
+        int fileNameLength = readShort(fileData, offset + 28);
+        int extraLength = readShort(fileData, offset + 30);
+        int fieldCommentLength = readShort(fileData, offset + 32);
+        long localHeaderOffset = readInt(fileData, offset + 42);
+
+        byte[] nameBytes = new byte[fileNameLength];
+        ByteBuffer name = fileData.duplicate();
+        ((Buffer) name).position(offset + 46);
+        name.get(nameBytes);
+        String fileName = new String(nameBytes, getEncoding(bitFlag));
+
+        if (size == ZIP64_MAGICVAL
+            || compressedSize == ZIP64_MAGICVAL
+            || localHeaderOffset == ZIP64_MAGICVAL) {
+          // the actual values are in the zip64 extended information extra field, in this order
+          int extra = findExtraField(fileData, offset + 46 + fileNameLength, extraLength);
+          if (extra != -1) {
+            if (size == ZIP64_MAGICVAL) {
+              size = fileData.getLong(extra);
+              extra += 8;
+            }
+            if (compressedSize == ZIP64_MAGICVAL) {
+              compressedSize = fileData.getLong(extra);
+              extra += 8;
+            }
+            if (localHeaderOffset == ZIP64_MAGICVAL) {
+              localHeaderOffset = fileData.getLong(extra);
+            }
+          }
+        }
+
+        ZipArchiveHandle.Entry entry =
+            new ZipArchiveHandle.Entry(fileName, toIntExact(localHeaderOffset));
+        if (method == ZipEntry.STORED || method == ZipEntry.DEFLATED) {
+          entry.setMethod(method);
+        }
+        entry.setCrc(crc);
+        entry.setCompressedSize(compressedSize);
+        entry.setSize(size);
+        entries.put(fileName, entry);
         offset += 46 + fileNameLength + extraLength + fieldCommentLength;
       }
-
-      return result.build();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+    } catch (IndexOutOfBoundsException e) {
+      throw new ZipException("Truncated central directory in " + file);
     }
+
+    // like ZipFile, the last of duplicate entries wins
+    return new ZipArchiveHandle(file.getPath(), fileData, ImmutableMap.copyOf(entries));
   }
 
-  private static byte[] copyBytes(byte[] buffer, int offset, int length) {
-    byte[] result = new byte[length];
-    System.arraycopy(buffer, offset, result, 0, length);
-    return result;
+  /** Returns the offset of the data of the entry whose local header is at the given offset. */
+  static long readDataOffset(ByteBuffer fileData, int localHeaderOffset) {
+    // There are two extra field lengths stored in the zip - one in the central directory,
+    // one in the local header. And we should use one in local header to calculate the
+    // correct file content offset, because they are different some times.
+    int fileNameLength = readShort(fileData, localHeaderOffset + 26);
+    int localHeaderExtraLength = readShort(fileData, localHeaderOffset + 28);
+    return (long) localHeaderOffset + 30 + fileNameLength + localHeaderExtraLength;
   }
 
   private static Charset getEncoding(int bitFlags) {
@@ -295,74 +341,64 @@ public class FileMap {
     return (0 != ((bitFlags >>> 11) & 1)) ? UTF_8 : ISO_8859_1;
   }
 
-  private static int findCentralDir(byte[] buffer) throws IOException {
-    // find start of central directory by scanning backwards
-    int scanOffset = buffer.length - EOCD_SIZE;
-
+  /** Returns the offset of the first central directory entry. */
+  private static int findCentralDir(ByteBuffer fileData) throws IOException {
+    // find start of end of central directory record by scanning backwards, past any comment
+    int length = fileData.capacity();
+    int minOffset = Math.max(0, length - MAXIMUM_ZIP_EOCD_SIZE);
+    int scanOffset = length - EOCD_SIZE;
     while (true) {
-      int val = readInt(buffer, scanOffset);
-      if (val == ENDSIG) {
+      if (scanOffset < minOffset) {
+        throw new ZipException("ZIP directory not found, not a ZIP archive.");
+      }
+      if (fileData.getInt(scanOffset) == ENDSIG) {
         break;
       }
-
       // Ok, keep backing up looking for the ZIP end central directory
       // signature.
       --scanOffset;
-      if (scanOffset < 0) {
-        throw new ZipException("ZIP directory not found, not a ZIP archive.");
-      }
     }
-    // scanOffset is now start of end of central directory record
-    // the 'offset to central dir' data is at position 16 in the record
-    int offsetToCentralDir = readInt(buffer, scanOffset + 16);
-    return offsetToCentralDir;
-  }
 
-  private static int findCentralDir64(byte[] buffer) throws IOException {
-    // find start of central directory by scanning backwards
-    int scanOffset = buffer.length - EOCD_SIZE - ZIP64_EOCD_LOCATOR_SIZE - ZIP64_EOCD_SIZE;
-
-    while (true) {
-      int val = readInt(buffer, scanOffset);
-      if (val == ENDSIG64) {
-        break;
+    // the 'offset to central dir' data is at position 16 in the record
+    long offsetToCentralDir = readInt(fileData, scanOffset + 16);
+    if (offsetToCentralDir == ZIP64_MAGICVAL) {
+      // If the zip file contains > 2^16 entries, a Zip64 EOCD is written, and the central
+      // dir offset in the regular EOCD may be -1. The Zip64 EOCD locator precedes the EOCD.
+      int locatorOffset = scanOffset - ZIP64_EOCD_LOCATOR_SIZE;
+      if (locatorOffset < 0 || fileData.getInt(locatorOffset) != ZIP64_LOCSIG) {
+        throw new ZipException("ZIP64 directory not found.");
       }
-
-      // Ok, keep backing up looking for the ZIP end central directory
-      // signature.
-      --scanOffset;
-      if (scanOffset < 0) {
-        throw new ZipException("ZIP directory not found, not a ZIP archive.");
+      int zip64EocdOffset = toIntExact(fileData.getLong(locatorOffset + 8));
+      if (fileData.getInt(zip64EocdOffset) != ENDSIG64) {
+        throw new ZipException("ZIP64 directory not found.");
       }
+      offsetToCentralDir = fileData.getLong(zip64EocdOffset + 48);
     }
-    // scanOffset is now start of end of central directory record
-    // the 'offset to central dir' data is at position 16 in the record
-    long offsetToCentralDir = readLong(buffer, scanOffset + 48);
-    return (int) offsetToCentralDir;
+    return toIntExact(offsetToCentralDir);
   }
 
-  /** Read a 32-bit integer from a bytebuffer in little-endian order. */
-  private static int readInt(byte[] buffer, int offset) {
-    return Ints.fromBytes(
-        buffer[offset + 3], buffer[offset + 2], buffer[offset + 1], buffer[offset]);
+  /** Returns the offset of the data of the zip64 extra field, or -1 if there's none. */
+  private static int findExtraField(ByteBuffer fileData, int offset, int length) {
+    int end = offset + length;
+    while (offset + 4 <= end) {
+      int headerId = readShort(fileData, offset);
+      int dataSize = readShort(fileData, offset + 2);
+      if (headerId == ZIP64_EXTID) {
+        return offset + 4;
+      }
+      offset += 4 + dataSize;
+    }
+    return -1;
   }
 
-  /** Read a 64-bit integer from a bytebuffer in little-endian order. */
-  private static long readLong(byte[] buffer, int offset) {
-    return Longs.fromBytes(
-        buffer[offset + 7],
-        buffer[offset + 6],
-        buffer[offset + 5],
-        buffer[offset + 4],
-        buffer[offset + 3],
-        buffer[offset + 2],
-        buffer[offset + 1],
-        buffer[offset]);
+  /** Read an unsigned 32-bit integer from a little-endian bytebuffer. */
+  private static long readInt(ByteBuffer buffer, int offset) {
+    return buffer.getInt(offset) & 0xffffffffL;
   }
 
-  /** Read a 16-bit short from a bytebuffer in little-endian order. */
-  private static short readShort(byte[] buffer, int offset) {
-    return Shorts.fromBytes(buffer[offset + 1], buffer[offset]);
+  /** Read an unsigned 16-bit short from a little-endian bytebuffer. */
+  private static int readShort(ByteBuffer buffer, int offset) {
+    return buffer.getShort(offset) & 0xffff;
   }
 
   /*
@@ -412,18 +448,17 @@ public class FileMap {
     if (mDataPtr == null) {
       mDataPtr = new byte[mDataLength];
 
-      InputStream is;
-      try {
-        if (isFromZip) {
-          is = zipFile.getInputStream(zipEntry);
+      if (isFromZip) {
+        if (zipEntry.getMethod() == ZipEntry.DEFLATED) {
+          inflate(mDataPtr);
         } else {
-          is = new FileInputStream(getFileName());
-        }
-        try {
-          readFully(is, mDataPtr);
-        } finally {
-          is.close();
+          getDataBuffer().get(mDataPtr);
         }
+        return mDataPtr;
+      }
+
+      try (InputStream is = new FileInputStream(getFileName())) {
+        readFully(is, mDataPtr);
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
@@ -431,6 +466,49 @@ public class FileMap {
     return mDataPtr;
   }
 
+  /**
+   * Non-Android method. Returns a read-only view of the data, positioned at its start. The data of
+   * an uncompressed zip entry is read directly from the mapped file, without copying it to the
+   * heap.
+   */
+  ByteBuffer getDataBuffer() {
+    if (isFromZip && zipEntry.getMethod() != ZipEntry.DEFLATED) {
+      return mZipData.asReadOnlyBuffer();
+    }
+    return ByteBuffer.wrap(getDataPtr()).asReadOnlyBuffer();
+  }
+
+  private void inflate(byte[] out) {
+    byte[] compressed = new byte[mZipData.capacity()];
+    mZipData.duplicate().get(compressed);
+    Inflater inflater = new Inflater(/* nowrap= */ true);
+    try {
+      inflater.setInput(compressed);
+      int inflated = 0;
+      boolean addedDummyByte = false;
+      while (inflated < out.length) {
+        int count = inflater.inflate(out, inflated, out.length - inflated);
+        if (count == 0) {
+          if (!inflater.needsInput() || addedDummyByte) {
+            break;
+          }
+          // with nowrap, zlib may need an extra dummy byte to finish
+          inflater.setInput(new byte[1]);
+          addedDummyByte = true;
+        }
+        inflated += count;
+      }
+      if (inflated < out.length) {
+        throw new RuntimeException(
+            "failed to inflate " + out.length + " (" + (out.length - inflated) + " bytes unread)");
+      }
+    } catch (DataFormatException e) {
+      throw new RuntimeException("failed to inflate " + zipEntry.getName() + " in " + mFileName, e);
+    } finally {
+      inflater.end();
+    }
+  }
+
   public static void readFully(InputStream is, byte[] bytes) throws IOException {
     int size = bytes.length;
     int remaining = size;
@@ -496,7 +574,7 @@ public class FileMap {
   public String toString() {
     if (isFromZip) {
       return "FileMap{" +
-          "zipFile=" + zipFile.getName() +
+          "zipFile=" + mFileName +
           ", zipEntry=" + zipEntry +
           '}';
     } else {
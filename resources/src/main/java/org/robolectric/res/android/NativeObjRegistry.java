@@ -2,27 +2,65 @@ package org.robolectric.res.android;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A unique id per object registry. Used to emulate android platform behavior of storing a long
  * which represents a pointer to an object.
+ *
+ * <p>Objects are stored in a table of slots, which are reused once their object is unregistered.
+ * An id encodes the index of its slot along with a generation, which is incremented whenever the
+ * slot is freed, so that stale ids are detected rather than resolving to the slot's next object.
+ * Freed slots are reused in the order they were freed, and only once 64 others have been freed
+ * since, so a slot's generation advances slowly; a slot whose generation wraps around is retired
+ * rather than reused, so a stale id never resolves again. Lookups don't take a lock; registration
+ * does.
+ *
+ * <p>By default ids fit in an {@code int}, for platforms which store pointers in ints (before
+ * Lollipop): they have an 8-bit generation, and at most 2^23 slots. Registries of objects only used
+ * on later platforms can use {@code long} ids, with a 32-bit generation.
+ *
+ * <p>Only in debug mode does the registry maintain a map from objects to their ids, which is used
+ * to detect objects that are registered twice.
  */
 public class NativeObjRegistry<T> {
 
-  private static final int INITIAL_ID = 1;
+  private static final int INT_ID_GENERATION_BITS = 8;
+  private static final int LONG_ID_GENERATION_BITS = 32;
+  private static final int MAX_INT_ID_SLOTS = (1 << (31 - INT_ID_GENERATION_BITS)) - 1;
+  private static final int MIN_FREE_SLOTS = 64;
+  private static final int INITIAL_CAPACITY = 16;
 
   private final String name;
   private final boolean debug;
-  private final BiMap<Long, T> nativeObjToIdMap = HashBiMap.create();
+  private final int generationBits;
+  private final long generationMask;
+  private final int maxSlots;
+  private final Map<T, Long> objToIdMap;
   private final Map<Long, DebugInfo> idToDebugInfoMap;
 
-  private long nextId = INITIAL_ID;
+  private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+
+  // a FIFO queue of free slots, in a circular buffer
+  @GuardedBy("this")
+  private int[] freeSlots = new int[INITIAL_CAPACITY];
+
+  @GuardedBy("this")
+  private int firstFreeSlot;
+
+  @GuardedBy("this")
+  private int freeSlotCount;
+
+  // slots at or beyond this index have never been used
+  @GuardedBy("this")
+  private int usedSlotCount;
 
   public NativeObjRegistry(Class<T> theClass) {
     this(theClass, false);
@@ -37,8 +75,28 @@ public class NativeObjRegistry<T> {
   }
 
   public NativeObjRegistry(String name, boolean debug) {
+    this(name, debug, /* intIds= */ true);
+  }
+
+  /**
+   * @param intIds whether ids must fit in an {@code int}; false for registries of objects which are
+   *     only used on platforms that store pointers in longs (Lollipop and later)
+   */
+  public NativeObjRegistry(Class<T> theClass, boolean debug, boolean intIds) {
+    this(theClass.getSimpleName(), debug, intIds);
+  }
+
+  /**
+   * @param intIds whether ids must fit in an {@code int}; false for registries of objects which are
+   *     only used on platforms that store pointers in longs (Lollipop and later)
+   */
+  public NativeObjRegistry(String name, boolean debug, boolean intIds) {
     this.name = name;
     this.debug = debug;
+    this.generationBits = intIds ? INT_ID_GENERATION_BITS : LONG_ID_GENERATION_BITS;
+    this.generationMask = (1L << generationBits) - 1;
+    this.maxSlots = intIds ? MAX_INT_ID_SLOTS : Integer.MAX_VALUE - 1;
+    this.objToIdMap = debug ? new HashMap<>() : null;
     this.idToDebugInfoMap = debug ? new HashMap<>() : null;
   }
 
@@ -46,19 +104,19 @@ public class NativeObjRegistry<T> {
    * Retrieve the native id for given object. Assigns a new unique id to the object if not
    * previously registered.
    *
+   * <p>Outside of debug mode, this scans the whole registry.
+   *
    * @deprecated Use {@link #register(Object)} instead.
    */
   @Deprecated
   public synchronized long getNativeObjectId(T o) {
     checkNotNull(o);
-    Long nativeId = nativeObjToIdMap.inverse().get(o);
-    if (nativeId == null) {
-      nativeId = nextId;
+    long nativeId = findNativeObjectId(o);
+    if (nativeId == 0) {
+      nativeId = add(o);
       if (debug) {
         System.out.printf("NativeObjRegistry %s: register %d -> %s%n", name, nativeId, o);
       }
-      nativeObjToIdMap.put(nativeId, o);
-      nextId++;
     }
     return nativeId;
   }
@@ -66,30 +124,29 @@ public class NativeObjRegistry<T> {
   /**
    * Register and assign a new unique native id for given object (representing a C memory pointer).
    *
-   * @throws IllegalStateException if the object was previously registered
+   * @throws IllegalStateException if the object was previously registered (only detected in debug
+   *     mode)
    */
   public synchronized long register(T o) {
     checkNotNull(o);
-    Long nativeId = nativeObjToIdMap.inverse().get(o);
-    if (nativeId != null) {
-      if (debug) {
+    if (debug) {
+      Long nativeId = objToIdMap.get(o);
+      if (nativeId != null) {
         DebugInfo debugInfo = idToDebugInfoMap.get(nativeId);
         if (debugInfo != null) {
           System.out.printf(
               "NativeObjRegistry %s: register %d -> %s already registered:%n", name, nativeId, o);
           debugInfo.registrationTrace.printStackTrace(System.out);
         }
+        throw new IllegalStateException("Object was previously registered with id " + nativeId);
       }
-      throw new IllegalStateException("Object was previously registered with id " + nativeId);
     }
 
-    nativeId = nextId;
+    long nativeId = add(o);
     if (debug) {
       System.out.printf("NativeObjRegistry %s: register %d -> %s%n", name, nativeId, o);
       idToDebugInfoMap.put(nativeId, new DebugInfo(new Trace()));
     }
-    nativeObjToIdMap.put(nativeId, o);
-    nextId++;
     return nativeId;
   }
 
@@ -101,7 +158,7 @@ public class NativeObjRegistry<T> {
    *     unregistered.
    */
   public synchronized T unregister(long nativeId) {
-    T o = nativeObjToIdMap.remove(nativeId);
+    T o = remove(nativeId);
     if (debug) {
       System.out.printf("NativeObjRegistry %s: unregister %d -> %s%n", name, nativeId, o);
       new RuntimeException("unregister debug").printStackTrace(System.out);
@@ -124,23 +181,28 @@ public class NativeObjRegistry<T> {
   }
 
   /**
+   * Outside of debug mode, this scans the whole registry.
+   *
    * @deprecated Use {@link #unregister(long)} instead.
    */
   @Deprecated
   public synchronized void unregister(T removed) {
-    nativeObjToIdMap.inverse().remove(removed);
+    long nativeId = findNativeObjectId(removed);
+    if (nativeId != 0) {
+      remove(nativeId);
+    }
   }
 
   /** Retrieve the native object for given id. Throws if object with that id cannot be found */
-  public synchronized T getNativeObject(long nativeId) {
-    T object = nativeObjToIdMap.get(nativeId);
+  public T getNativeObject(long nativeId) {
+    T object = peekNativeObject(nativeId);
     if (object != null) {
       return object;
     } else {
       throw new NullPointerException(
           String.format(
               "Could not find object with nativeId: %d. Currently registered ids: %s",
-              nativeId, nativeObjToIdMap.keySet()));
+              nativeId, getNativeObjectIds()));
     }
   }
 
@@ -150,29 +212,173 @@ public class NativeObjRegistry<T> {
    * @throws IllegalStateException if no object was registered with the given id before
    */
   public synchronized void update(long nativeId, T o) {
-    T previous = nativeObjToIdMap.get(nativeId);
+    checkNotNull(o);
+    T previous = peekNativeObject(nativeId);
     if (previous == null) {
       throw new IllegalStateException("Native id " + nativeId + " was never registered");
     }
     if (debug) {
       System.out.printf("NativeObjRegistry %s: update %d -> %s%n", name, nativeId, o);
       idToDebugInfoMap.put(nativeId, new DebugInfo(new Trace()));
+      objToIdMap.remove(previous);
+      objToIdMap.put(o, nativeId);
     }
-    nativeObjToIdMap.put(nativeId, o);
+    slots.objects.set(slotOf(nativeId), o);
   }
 
   /**
    * Similar to {@link #getNativeObject(long)} but returns null if object with given id cannot be
    * found.
    */
-  public synchronized T peekNativeObject(long nativeId) {
-    return nativeObjToIdMap.get(nativeId);
+  @SuppressWarnings("unchecked")
+  public T peekNativeObject(long nativeId) {
+    Slots slots = this.slots;
+    int slot = slotOf(nativeId);
+    if (slot < 0 || slot >= slots.capacity()) {
+      return null;
+    }
+    // The object is read before the id, and (un)registration writes them in the opposite order,
+    // so an object is only returned if it is the one registered with this id.
+    Object object = slots.objects.get(slot);
+    return slots.nativeIds.get(slot) == nativeId ? (T) object : null;
   }
 
   /** WARNING -- dangerous! Call {@link #unregister(long)} instead! */
   public synchronized void clear() {
-    nextId = INITIAL_ID;
-    nativeObjToIdMap.clear();
+    slots = new Slots(INITIAL_CAPACITY);
+    freeSlots = new int[INITIAL_CAPACITY];
+    firstFreeSlot = 0;
+    freeSlotCount = 0;
+    usedSlotCount = 0;
+    if (debug) {
+      objToIdMap.clear();
+    }
+  }
+
+  @GuardedBy("this")
+  private long add(T o) {
+    int slot;
+    if (freeSlotCount > MIN_FREE_SLOTS || (freeSlotCount > 0 && usedSlotCount == maxSlots)) {
+      slot = freeSlots[firstFreeSlot];
+      firstFreeSlot = (firstFreeSlot + 1) % freeSlots.length;
+      freeSlotCount--;
+    } else if (usedSlotCount < maxSlots) {
+      slot = usedSlotCount++;
+      if (slot == slots.capacity()) {
+        slots = slots.grow();
+      }
+    } else {
+      throw new IllegalStateException(
+          "NativeObjRegistry " + name + " has no free ids, too many objects are registered");
+    }
+    Slots slots = this.slots;
+    long nativeId =
+        ((long) (slot + 1) << generationBits) | (slots.generations[slot] & generationMask);
+    slots.objects.set(slot, o);
+    slots.nativeIds.set(slot, nativeId);
+    if (debug) {
+      objToIdMap.put(o, nativeId);
+    }
+    return nativeId;
+  }
+
+  @GuardedBy("this")
+  private T remove(long nativeId) {
+    T o = peekNativeObject(nativeId);
+    if (o == null) {
+      return null;
+    }
+    Slots slots = this.slots;
+    int slot = slotOf(nativeId);
+    slots.nativeIds.set(slot, 0);
+    slots.objects.set(slot, null);
+    int generation = (int) ((slots.generations[slot] + 1) & generationMask);
+    slots.generations[slot] = generation;
+    // once its generation wraps around, the slot would give out the ids it gave out before
+    if (generation != 0) {
+      addFreeSlot(slot);
+    }
+    if (debug) {
+      objToIdMap.remove(o);
+    }
+    return o;
+  }
+
+  @GuardedBy("this")
+  private void addFreeSlot(int slot) {
+    if (freeSlotCount == freeSlots.length) {
+      int[] grown = new int[freeSlots.length * 2];
+      for (int i = 0; i < freeSlotCount; i++) {
+        grown[i] = freeSlots[(firstFreeSlot + i) % freeSlots.length];
+      }
+      freeSlots = grown;
+      firstFreeSlot = 0;
+    }
+    freeSlots[(firstFreeSlot + freeSlotCount++) % freeSlots.length] = slot;
+  }
+
+  /** Returns the id of {@code o}, or 0 if it isn't registered. */
+  @GuardedBy("this")
+  private long findNativeObjectId(T o) {
+    if (debug) {
+      Long nativeId = objToIdMap.get(o);
+      return nativeId == null ? 0 : nativeId;
+    }
+    Slots slots = this.slots;
+    for (int slot = 0; slot < usedSlotCount; slot++) {
+      long nativeId = slots.nativeIds.get(slot);
+      if (nativeId != 0 && Objects.equals(slots.objects.get(slot), o)) {
+        return nativeId;
+      }
+    }
+    return 0;
+  }
+
+  private synchronized List<Long> getNativeObjectIds() {
+    List<Long> nativeIds = new ArrayList<>();
+    for (int slot = 0; slot < usedSlotCount; slot++) {
+      long nativeId = slots.nativeIds.get(slot);
+      if (nativeId != 0) {
+        nativeIds.add(nativeId);
+      }
+    }
+    return nativeIds;
+  }
+
+  private int slotOf(long nativeId) {
+    long slot = (nativeId >>> generationBits) - 1;
+    return slot > Integer.MAX_VALUE ? -1 : (int) slot;
+  }
+
+  /**
+   * The slots of the registry. Lookups read the objects and ids without locking; generations are
+   * only accessed while registering and unregistering.
+   */
+  private static class Slots {
+    final AtomicReferenceArray<Object> objects;
+    // the id of each slot's object, or 0 if the slot is free
+    final AtomicLongArray nativeIds;
+    final int[] generations;
+
+    Slots(int capacity) {
+      objects = new AtomicReferenceArray<>(capacity);
+      nativeIds = new AtomicLongArray(capacity);
+      generations = new int[capacity];
+    }
+
+    int capacity() {
+      return generations.length;
+    }
+
+    Slots grow() {
+      Slots grown = new Slots(capacity() * 2);
+      for (int slot = 0; slot < capacity(); slot++) {
+        grown.objects.set(slot, objects.get(slot));
+        grown.nativeIds.set(slot, nativeIds.get(slot));
+        grown.generations[slot] = generations[slot];
+      }
+      return grown;
+    }
   }
 
   private static class DebugInfo {
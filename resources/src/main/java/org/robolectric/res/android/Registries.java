@@ -8,9 +8,9 @@ public class Registries {
   public static final NativeObjRegistry<Asset> NATIVE_ASSET_REGISTRY =
       new NativeObjRegistry<>(Asset.class);
   public static final NativeObjRegistry<CppAssetManager2> NATIVE_ASSET_MANAGER_REGISTRY =
-      new NativeObjRegistry<>(CppAssetManager2.class);
+      new NativeObjRegistry<>(CppAssetManager2.class, /* debug= */ false, /* intIds= */ false);
   public static final NativeObjRegistry<CppApkAssets> NATIVE_APK_ASSETS_REGISTRY =
-      new NativeObjRegistry<>(CppApkAssets.class);
+      new NativeObjRegistry<>(CppApkAssets.class, /* debug= */ false, /* intIds= */ false);
   public static final NativeObjRegistry<ResTableTheme> NATIVE_THEME_REGISTRY =
       new NativeObjRegistry<>(ResTableTheme.class);
   public static final NativeObjRegistry<ResXMLTree> NATIVE_RES_XML_TREES =
@@ -20,5 +20,5 @@ public class Registries {
   static final NativeObjRegistry<WeakReference<ResStringPool>> NATIVE_STRING_POOLS =
       new NativeObjRegistry<>("ResStringPool");
   public static final NativeObjRegistry<Theme> NATIVE_THEME9_REGISTRY =
-      new NativeObjRegistry<>(Theme.class);
+      new NativeObjRegistry<>(Theme.class, /* debug= */ false, /* intIds= */ false);
 }
@@ -14,9 +14,11 @@ import static org.robolectric.res.android.Util.ALOGW;
 import static org.robolectric.res.android.Util.SIZEOF_INT;
 import static org.robolectric.res.android.Util.isTruthy;
 
+import com.google.common.collect.Maps;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Map;
 import java.util.Objects;
 import org.robolectric.res.android.ResourceTypes.ResChunk_header;
 import org.robolectric.res.android.ResourceTypes.ResStringPool_header;
@@ -50,8 +52,13 @@ public class ResStringPool {
 //    const void*                 mStrings;
     private int                 mStrings;
   //private List<String> mStrings;
-  //private String[] mCache;
   //private char16_t mutable**          mCache;
+  // Strings decoded by stringAt(), indexed by string id. Pools may be shared by sandboxes (e.g.
+  // through ApkAssetsCache), so this is populated without locking: Strings are immutable, so a
+  // thread that doesn't see another thread's entry just decodes the string again.
+  private volatile String[] mCache;
+  // Maps strings to their ids, built by the first call to indexOfString().
+  private volatile Map<String, Integer> mIndex;
     private int                    mStringPoolSize;    // number of uint16_t
 //    const uint32_t*             mStyles;
     private int             mStyles;
@@ -322,10 +329,28 @@ public class ResStringPool {
   void uninit() {
     setError(NO_INIT);
     mHeader = null;
+    mCache = null;
+    mIndex = null;
   }
 
   public String stringAt(int idx) {
-    if (mError == NO_ERROR && idx < mHeader.stringCount) {
+    if (mError == NO_ERROR && idx >= 0 && idx < mHeader.stringCount) {
+      String[] cache = mCache;
+      if (cache == null) {
+        cache = new String[mHeader.stringCount];
+        mCache = cache;
+      }
+      String s = cache[idx];
+      if (s == null) {
+        s = decodeStringAt(idx);
+        cache[idx] = s;
+      }
+      return s;
+    }
+    return null;
+  }
+
+  private String decodeStringAt(int idx) {
         final boolean isUTF8 = (mHeader.flags&ResStringPool_header.UTF8_FLAG) != 0;
 //        const uint32_t off = mEntries[idx]/(isUTF8?sizeof(uint8_t):sizeof(uint16_t));
       ByteBuffer buf = mHeader.myBuf();
@@ -438,7 +463,6 @@ public class ResStringPool {
             (int)idx, (int)(off*2/*sizeof(uint16_t)*/),
             (int)(mStringPoolSize*2/*sizeof(uint16_t)*/));
       }
-    }
     return null;
   }
 
@@ -484,6 +508,13 @@ public class ResStringPool {
       ALOGI("indexOfString : %s", str);
     }
 
+    if (str != null) {
+      // Rather than searching the pool, which decodes strings on every call, look the string up
+      // in an index of the whole pool.
+      Integer index = getIndex().get(str);
+      return index != null ? index : NAME_NOT_FOUND;
+    }
+
     if ( (mHeader.flags&ResStringPoolHeader.SORTED_FLAG) != 0) {
       // Do a binary search for the string...  this is a little tricky,
       // because the strings are sorted with strzcmp16().  So to match
@@ -534,6 +565,23 @@ public class ResStringPool {
 
     return NAME_NOT_FOUND;
   }
+
+  private Map<String, Integer> getIndex() {
+    Map<String, Integer> index = mIndex;
+    if (index == null) {
+      int stringCount = mHeader.stringCount;
+      index = Maps.newHashMapWithExpectedSize(stringCount);
+      // Later duplicates win, matching the search from the back of unsorted pools.
+      for (int i = 0; i < stringCount; i++) {
+        String s = stringAt(i);
+        if (s != null) {
+          index.put(s, i);
+        }
+      }
+      mIndex = index;
+    }
+    return index;
+  }
 //
     public int size() {
       return mError == NO_ERROR ? mHeader.stringCount : 0;
@@ -1,14 +1,50 @@
 package org.robolectric.res.android;
 
 import com.google.common.collect.ImmutableMap;
-import java.util.zip.ZipFile;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
 
+/**
+ * An open zip archive. The file is memory-mapped, and its central directory is parsed once, when
+ * the archive is opened; entries are then read directly from the mapped file.
+ */
 public class ZipArchiveHandle {
-  final ZipFile zipFile;
-  final ImmutableMap<String, Long> dataOffsets;
+  final String fileName;
 
-  public ZipArchiveHandle(ZipFile zipFile, ImmutableMap<String, Long> dataOffsets) {
-    this.zipFile = zipFile;
-    this.dataOffsets = dataOffsets;
+  /** The whole file, read-only and in little-endian order. */
+  final ByteBuffer fileData;
+
+  final ImmutableMap<String, Entry> entries;
+
+  ZipArchiveHandle(String fileName, ByteBuffer fileData, ImmutableMap<String, Entry> entries) {
+    this.fileName = fileName;
+    this.fileData = fileData;
+    this.entries = entries;
+  }
+
+  ZipEntry getEntry(String name) {
+    return entries.get(name);
+  }
+
+  /** Returns the entries in the order of the central directory. */
+  Enumeration<? extends ZipEntry> entries() {
+    return Collections.enumeration(entries.values());
+  }
+
+  /** Returns the offset of the entry's data in the file, which follows its local header. */
+  long getDataOffset(ZipEntry entry) {
+    return FileMap.readDataOffset(fileData, ((Entry) entry).localHeaderOffset);
+  }
+
+  /** A zip entry, along with the offset of its local header in the file. */
+  static final class Entry extends ZipEntry {
+    final int localHeaderOffset;
+
+    Entry(String name, int localHeaderOffset) {
+      super(name);
+      this.localHeaderOffset = localHeaderOffset;
+    }
   }
 }
@@ -10,7 +10,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 public class ZipFileRO {
 
@@ -54,12 +53,7 @@ public class ZipFileRO {
 
   static int OpenArchive(String zipFileName, Ref<ZipArchiveHandle> mHandle) {
     try {
-      File file = new File(zipFileName);
-      // TODO: consider moving away from ZipFile. By using ZipFile and guessDataOffsets, the zip
-      // central directory is being read twice
-      ZipFile zipFile = new ZipFile(file);
-      mHandle.set(
-          new ZipArchiveHandle(zipFile, FileMap.guessDataOffsets(file, (int) file.length())));
+      mHandle.set(FileMap.openZip(new File(zipFileName)));
       return NO_ERROR;
     } catch (IOException e) {
       return NAME_NOT_FOUND;
@@ -75,7 +69,7 @@ public class ZipFileRO {
   }
 
   static int FindEntry(ZipArchiveHandle mHandle, String name, Ref<ZipEntry> zipEntryRef) {
-    ZipEntry entry = mHandle.zipFile.getEntry(name);
+    ZipEntry entry = mHandle.getEntry(name);
     zipEntryRef.set(entry);
     if (entry == null) {
       return NAME_NOT_FOUND;
@@ -120,11 +114,6 @@ public class ZipFileRO {
     ZipEntryRO data = new ZipEntryRO();
     data.name = String(entryName);
 
-    if (mHandle.dataOffsets.get(entryName) == null) {
-      return null;
-    }
-    data.dataOffset = mHandle.dataOffsets.get(entryName);
-
     final Ref<ZipEntry> zipEntryRef = new Ref<>(data.entry);
     final int error = FindEntry(mHandle, data.name, zipEntryRef);
     if (isTruthy(error)) {
@@ -132,6 +121,7 @@ public class ZipFileRO {
     }
 
     data.entry = zipEntryRef.get();
+    data.dataOffset = mHandle.getDataOffset(data.entry);
     return data;
   }
 
@@ -177,7 +167,7 @@ public class ZipFileRO {
 
   boolean startIteration(/* void** */ Ref<Enumeration<? extends ZipEntry>> cookie, final String prefix, final String suffix)
   {
-    cookie.set(this.mHandle.zipFile.entries());
+    cookie.set(this.mHandle.entries());
 //    ZipEntryRO* ze = new ZipEntryRO;
 //    String pe(prefix ? prefix : "");
 //    String se(suffix ? suffix : "");
@@ -284,7 +274,7 @@ public class ZipFileRO {
     FileMap newMap = new FileMap();
     if (!newMap.createFromZip(
         mFileName,
-        mHandle.zipFile,
+        mHandle.fileData,
         entry.entry,
         entry.dataOffset,
         toIntExact(entry.entry.getCompressedSize()),
@@ -0,0 +1,130 @@
+package org.robolectric.res;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+@SuppressWarnings("NewApi")
+public class ResourceTableCacheTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path resourceBase;
+  private Path stringsXml;
+
+  @Before
+  public void setUp() throws Exception {
+    System.setProperty(
+        ResourceTableCache.CACHE_DIRECTORY_PROPERTY, tempFolder.newFolder("cache").toString());
+    resourceBase = tempFolder.newFolder("res").toPath();
+    stringsXml =
+        write(
+            "values/strings.xml",
+            "<resources>"
+                + "<string name=\"greeting\">hello</string>"
+                + "<plurals name=\"songs\"><item quantity=\"one\">one song</item>"
+                + "<item quantity=\"other\">%d songs</item></plurals>"
+                + "<string-array name=\"colors\"><item>red</item><item>blue</item></string-array>"
+                + "<attr name=\"size\" format=\"dimension\"/>"
+                + "<style name=\"Theme.Big\"><item name=\"size\">10dp</item></style>"
+                + "</resources>");
+    write(
+        "values-fr/strings.xml", "<resources><string name=\"greeting\">salut</string></resources>");
+    write("layout/main.xml", "<LinearLayout/>");
+    write("drawable/icon.9.png", "png");
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(ResourceTableCache.CACHE_DIRECTORY_PROPERTY);
+  }
+
+  @Test
+  public void shouldLoadSameResourcesFromCache() throws Exception {
+    PackageResourceTable parsed = newResourceTable();
+    PackageResourceTable cached = newResourceTable();
+
+    assertThat(stringValue(cached, "string/greeting", "")).isEqualTo("hello");
+    assertThat(stringValue(cached, "string/greeting", "fr")).isEqualTo("salut");
+
+    PluralRules plurals = (PluralRules) value(cached, "plurals/songs", "");
+    assertThat(plurals.find(1).getString()).isEqualTo("one song");
+    assertThat(plurals.find(2).getString()).isEqualTo("%d songs");
+
+    List<?> colors = (List<?>) value(cached, "array/colors", "").getData();
+    assertThat(((TypedResource<?>) colors.get(1)).getData()).isEqualTo("blue");
+
+    AttrData attrData = (AttrData) value(cached, "attr/size", "").getData();
+    assertThat(attrData.getFormat()).isEqualTo("dimension");
+
+    StyleData styleData = (StyleData) value(cached, "style/Theme.Big", "").getData();
+    assertThat(styleData.getParent()).isEqualTo("Theme");
+    assertThat(styleData.getAttrValue(new ResName("pkg:attr/size")).value).isEqualTo("10dp");
+
+    FileTypedResource layout = (FileTypedResource) value(cached, "layout/main", "");
+    assertThat(layout.getPath()).isEqualTo(resourceBase.resolve("layout/main.xml"));
+    FileTypedResource.Image icon = (FileTypedResource.Image) value(cached, "drawable/icon", "");
+    assertThat(icon.isNinePatch()).isTrue();
+
+    assertThat(value(cached, "string/greeting", "").getXmlContext().getXmlFile())
+        .isEqualTo(stringsXml);
+    assertThat(cached.getResourceId(new ResName("pkg:string/greeting")))
+        .isEqualTo(parsed.getResourceId(new ResName("pkg:string/greeting")));
+  }
+
+  @Test
+  public void shouldNotParseUnchangedResources() throws Exception {
+    FileTime lastModifiedTime = Files.getLastModifiedTime(stringsXml);
+    newResourceTable();
+
+    // same size and modification time
+    String contents = new String(Files.readAllBytes(stringsXml), UTF_8);
+    Files.write(stringsXml, contents.replace("hello", "howdy").getBytes(UTF_8));
+    Files.setLastModifiedTime(stringsXml, lastModifiedTime);
+
+    assertThat(stringValue(newResourceTable(), "string/greeting", "")).isEqualTo("hello");
+  }
+
+  @Test
+  public void shouldParseChangedResources() throws Exception {
+    newResourceTable();
+
+    write("values/more.xml", "<resources><string name=\"farewell\">bye</string></resources>");
+
+    assertThat(stringValue(newResourceTable(), "string/farewell", "")).isEqualTo("bye");
+  }
+
+  private PackageResourceTable newResourceTable() {
+    return new ResourceTableFactory()
+        .newResourceTable("pkg", new ResourcePath(null, resourceBase, null));
+  }
+
+  private static TypedResource<?> value(
+      PackageResourceTable resourceTable, String name, String qualifiers) {
+    return resourceTable.getValue(
+        ResName.qualifyResName(name, "pkg", null), Qualifiers.parse(qualifiers).getConfig());
+  }
+
+  private static String stringValue(
+      PackageResourceTable resourceTable, String name, String qualifiers) {
+    return value(resourceTable, name, qualifiers).asString();
+  }
+
+  private Path write(String path, String contents) throws IOException {
+    Path file = resourceBase.resolve(path);
+    Files.createDirectories(file.getParent());
+    return Files.write(file, contents.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,74 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.android.ApkAssetsCache.Key;
+
+@RunWith(JUnit4.class)
+public class ApkAssetsCacheTest {
+  private final List<Long> released = new ArrayList<>();
+  private final ApkAssetsCache cache = new ApkAssetsCache(100, released::add);
+  private final Object sandbox1 = new Object();
+  private final Object sandbox2 = new Object();
+
+  @Test
+  public void get_shouldReturnCachedPtr() {
+    cache.putApkAssets(key("framework", 33), 1, 10, sandbox1);
+
+    assertThat(cache.getApkAssets(key("framework", 33), sandbox2)).isEqualTo(1);
+    assertThat(cache.getApkAssets(key("framework", 34), sandbox2)).isEqualTo(-1);
+  }
+
+  @Test
+  public void put_shouldKeepPtrCachedByAnotherSandbox() {
+    cache.putApkAssets(key("framework", 33), 1, 10, sandbox1);
+
+    assertThat(cache.putApkAssets(key("framework", 33), 2, 10, sandbox2)).isEqualTo(1);
+    assertThat(released).containsExactly(2L);
+    assertThat(cache.getRetainedBytes()).isEqualTo(10);
+  }
+
+  @Test
+  public void shouldNotEvictReferencedApkAssets() {
+    cache.putApkAssets(key("framework", 33), 1, 60, sandbox1);
+    cache.putApkAssets(key("framework", 34), 2, 60, sandbox2);
+
+    assertThat(released).isEmpty();
+    assertThat(cache.getRetainedBytes()).isEqualTo(120);
+  }
+
+  @Test
+  public void release_shouldEvictLeastRecentlyUsedUnreferencedApkAssets() {
+    cache.putApkAssets(key("framework", 33), 1, 40, sandbox1);
+    cache.putApkAssets(key("framework", 34), 2, 40, sandbox1);
+    cache.putApkAssets(key("framework", 35), 3, 40, sandbox2);
+    cache.getApkAssets(key("framework", 33), sandbox1);
+
+    cache.releaseOwner(sandbox1);
+
+    assertThat(released).containsExactly(2L);
+    assertThat(cache.getRetainedBytes()).isEqualTo(80);
+    assertThat(cache.getRetainedBytes(34)).isEqualTo(0);
+    assertThat(cache.getApkAssets(key("framework", 33), sandbox2)).isEqualTo(1);
+  }
+
+  @Test
+  public void release_shouldKeepApkAssetsWithinBudget() {
+    cache.putApkAssets(key("framework", 33), 1, 40, sandbox1);
+    cache.putApkAssets(key("framework", 34), 2, 40, sandbox1);
+
+    cache.releaseOwner(sandbox1);
+
+    assertThat(released).isEmpty();
+    assertThat(cache.getApkAssets(key("framework", 33), sandbox2)).isEqualTo(1);
+  }
+
+  private static Key key(String path, int apiLevel) {
+    return Key.of(path, true, apiLevel);
+  }
+}
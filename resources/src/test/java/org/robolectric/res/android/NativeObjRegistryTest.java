@@ -0,0 +1,114 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class NativeObjRegistryTest {
+  private final NativeObjRegistry<String> registry = new NativeObjRegistry<>("test");
+
+  @Test
+  public void register_shouldAssignDistinctIds() {
+    long first = registry.register("first");
+    long second = registry.register("second");
+
+    assertThat(first).isNotEqualTo(second);
+    assertThat(registry.getNativeObject(first)).isEqualTo("first");
+    assertThat(registry.getNativeObject(second)).isEqualTo("second");
+  }
+
+  @Test
+  public void register_shouldAssignIdsThatFitInAnInt() {
+    for (int i = 0; i < 10_000; i++) {
+      long nativeId = registry.register("object" + i);
+      assertThat((long) (int) nativeId).isEqualTo(nativeId);
+      assertThat(nativeId).isGreaterThan(0L);
+    }
+  }
+
+  @Test
+  public void unregister_shouldRemoveObject() {
+    long nativeId = registry.register("first");
+
+    assertThat(registry.unregister(nativeId)).isEqualTo("first");
+    assertThat(registry.peekNativeObject(nativeId)).isNull();
+    assertThrows(IllegalStateException.class, () -> registry.unregister(nativeId));
+    assertThrows(NullPointerException.class, () -> registry.getNativeObject(nativeId));
+  }
+
+  @Test
+  public void staleId_shouldNotResolveToObjectInReusedSlot() {
+    long staleId = registry.register("first");
+    registry.unregister(staleId);
+
+    long nativeId = registry.register("second");
+
+    assertThat(nativeId).isNotEqualTo(staleId);
+    assertThat(registry.peekNativeObject(staleId)).isNull();
+    assertThat(registry.getNativeObject(nativeId)).isEqualTo("second");
+  }
+
+  @Test
+  public void staleId_shouldStayDeadAfterItsSlotIsReused256Times() {
+    long staleId = registry.register("first");
+    registry.unregister(staleId);
+
+    // with at most one live object, slots are cycled through, each reused many more than 256 times
+    for (int i = 0; i < 100_000; i++) {
+      long nativeId = registry.register("object" + i);
+      assertThat(nativeId).isNotEqualTo(staleId);
+      assertThat(registry.peekNativeObject(staleId)).isNull();
+      registry.unregister(nativeId);
+    }
+  }
+
+  @Test
+  public void register_withLongIds_shouldAssignIdsThatDoNotFitInAnInt() {
+    NativeObjRegistry<String> longIdRegistry =
+        new NativeObjRegistry<>("test", /* debug= */ false, /* intIds= */ false);
+    long nativeId = longIdRegistry.register("first");
+
+    assertThat(nativeId).isGreaterThan((long) Integer.MAX_VALUE);
+    assertThat(longIdRegistry.getNativeObject(nativeId)).isEqualTo("first");
+  }
+
+  @Test
+  public void peekNativeObject_shouldReturnNullForUnknownIds() {
+    registry.register("first");
+
+    assertThat(registry.peekNativeObject(0)).isNull();
+    assertThat(registry.peekNativeObject(-1)).isNull();
+    assertThat(registry.peekNativeObject(Long.MAX_VALUE)).isNull();
+  }
+
+  @Test
+  public void update_shouldReplaceObject() {
+    long nativeId = registry.register("first");
+
+    registry.update(nativeId, "second");
+
+    assertThat(registry.getNativeObject(nativeId)).isEqualTo("second");
+  }
+
+  @Test
+  public void register_inDebugMode_shouldRejectObjectRegisteredTwice() {
+    NativeObjRegistry<String> debugRegistry = new NativeObjRegistry<>("test", true);
+    debugRegistry.register("first");
+
+    assertThrows(IllegalStateException.class, () -> debugRegistry.register("first"));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void getNativeObjectId_shouldReturnExistingId() {
+    long nativeId = registry.register("first");
+
+    assertThat(registry.getNativeObjectId("first")).isEqualTo(nativeId);
+    registry.unregister("first");
+    assertThat(registry.peekNativeObject(nativeId)).isNull();
+  }
+}
@@ -0,0 +1,59 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.res.android.Errors.NAME_NOT_FOUND;
+import static org.robolectric.res.android.Errors.NO_ERROR;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.android.ResourceTypes.ResStringPool_header;
+
+@RunWith(JUnit4.class)
+public class ResStringPoolTest {
+
+  private ResStringPool pool;
+
+  @Before
+  public void setUp() {
+    ResStringPool_header.Writer writer = new ResStringPool_header.Writer();
+    writer.string("first");
+    writer.string("second");
+    writer.uniqueString("first");
+    writer.string("ümlaut");
+    ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    writer.write(buf);
+
+    pool = new ResStringPool();
+    assertThat(pool.setTo(buf, 0, buf.position(), false)).isEqualTo(NO_ERROR);
+  }
+
+  @Test
+  public void stringAt_shouldDecodeStrings() {
+    assertThat(pool.stringAt(0)).isEqualTo("first");
+    assertThat(pool.stringAt(1)).isEqualTo("second");
+    assertThat(pool.stringAt(3)).isEqualTo("ümlaut");
+    assertThat(pool.stringAt(4)).isNull();
+    assertThat(pool.stringAt(-1)).isNull();
+  }
+
+  @Test
+  public void stringAt_shouldReturnCachedString() {
+    assertThat(pool.stringAt(1)).isSameInstanceAs(pool.stringAt(1));
+  }
+
+  @Test
+  public void indexOfString_shouldFindStrings() {
+    assertThat(pool.indexOfString("second")).isEqualTo(1);
+    assertThat(pool.indexOfString("ümlaut")).isEqualTo(3);
+    assertThat(pool.indexOfString("third")).isEqualTo(NAME_NOT_FOUND);
+  }
+
+  @Test
+  public void indexOfString_shouldFindLastDuplicate() {
+    assertThat(pool.indexOfString("first")).isEqualTo(2);
+  }
+}
@@ -1,13 +1,16 @@
 package org.robolectric.res.android;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.base.Strings;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import org.junit.Test;
@@ -57,6 +60,34 @@ public final class ZipFileROTest {
     assertThat(fileMap.getDataOffset()).isEqualTo(0x64);
   }
 
+  @Test
+  public void createEntryFileMap_readsStoredAndDeflatedEntries() throws Exception {
+    byte[] stored = "stored contents".getBytes(UTF_8);
+    byte[] deflated = Strings.repeat("deflated contents\n", 1000).getBytes(UTF_8);
+    File blob = File.createTempFile("prefix", "zip");
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(blob))) {
+      ZipEntry storedEntry = new ZipEntry("stored");
+      storedEntry.setMethod(ZipEntry.STORED);
+      storedEntry.setSize(stored.length);
+      CRC32 crc = new CRC32();
+      crc.update(stored);
+      storedEntry.setCrc(crc.getValue());
+      zip.putNextEntry(storedEntry);
+      zip.write(stored);
+      zip.putNextEntry(new ZipEntry("deflated"));
+      zip.write(deflated);
+    }
+
+    ZipFileRO zipFile = ZipFileRO.open(blob.toString());
+    FileMap storedMap = zipFile.createEntryFileMap(zipFile.findEntryByName("stored"));
+    FileMap deflatedMap = zipFile.createEntryFileMap(zipFile.findEntryByName("deflated"));
+
+    // stored entries are read directly from the mapped file
+    assertThat(storedMap.getDataBuffer().isDirect()).isTrue();
+    assertThat(storedMap.getDataPtr()).isEqualTo(stored);
+    assertThat(deflatedMap.getDataPtr()).isEqualTo(deflated);
+  }
+
   @Test
   public void open_emptyZip() throws Exception {
     // ensure ZipFileRO cam handle an empty zip file with no central directory
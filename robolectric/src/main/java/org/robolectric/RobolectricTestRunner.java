@@ -10,12 +10,21 @@ import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.Priority;
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Ordering;
+import org.junit.runner.manipulation.Sorter;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
@@ -32,8 +41,10 @@ import org.robolectric.internal.DefaultManifestFactory;
 import org.robolectric.internal.ManifestFactory;
 import org.robolectric.internal.ManifestIdentifier;
 import org.robolectric.internal.MavenManifestFactory;
+import org.robolectric.internal.ParallelSandboxScheduler;
 import org.robolectric.internal.ResourcesMode;
 import org.robolectric.internal.SandboxManager;
+import org.robolectric.internal.SandboxManager.SandboxKey;
 import org.robolectric.internal.SandboxTestRunner;
 import org.robolectric.internal.TestEnvironment;
 import org.robolectric.internal.bytecode.ClassHandler;
@@ -62,8 +73,20 @@ import org.robolectric.util.inject.Injector;
 public class RobolectricTestRunner extends SandboxTestRunner {
 
   public static final String CONFIG_PROPERTIES = "robolectric.properties";
+
+  /**
+   * System property which, when true, makes each test class run its tests grouped by the sandbox
+   * they need, and enables {@link SandboxAffinity} ordering of suites.
+   */
+  public static final String SANDBOX_AFFINITY_ORDERING_PROPERTY =
+      "robolectric.sandboxAffinityOrdering";
   private static final Injector DEFAULT_INJECTOR = defaultInjector().build();
   private static final Map<ManifestIdentifier, AndroidManifest> appManifestsCache = new HashMap<>();
+  // The sandboxes the children of each runner which hasn't started yet need, keyed by the runner's
+  // description, if ordering by affinity. Read by SandboxAffinity to order the classes of a suite.
+  private static final Map<Description, Map<Description, SandboxKey>> pendingSandboxKeys =
+      new ConcurrentHashMap<>();
+  private static final Map<SandboxKey, SandboxKey> canonicalSandboxKeys = new ConcurrentHashMap<>();
 
   static {
     // This starts up the Poller SunPKCS11-Darwin thread early, outside of any Robolectric
@@ -90,6 +113,11 @@ public class RobolectricTestRunner extends SandboxTestRunner {
       Boolean.parseBoolean(
           System.getProperty("robolectric.alwaysIncludeVariantMarkersInTestName", "false"));
 
+  // The sandbox each child needs, if ordering by affinity.
+  private final Map<Description, SandboxKey> sandboxKeysByDescription = new HashMap<>();
+  private final boolean orderChildrenBySandboxAffinity =
+      Boolean.parseBoolean(System.getProperty(SANDBOX_AFFINITY_ORDERING_PROPERTY, "false"));
+
   /**
    * Creates a runner to run {@code testClass}. Use the {@link Config} annotation to configure.
    *
@@ -217,9 +245,70 @@ public class RobolectricTestRunner extends SandboxTestRunner {
             e);
       }
     }
+    if (orderChildrenBySandboxAffinity) {
+      for (FrameworkMethod child : children) {
+        sandboxKeysByDescription.put(describeChild(child), getSandboxKey(child));
+      }
+      // getDescription() would compute the children again; descriptions are equal by name
+      pendingSandboxKeys.put(
+          Description.createSuiteDescription(getName()), sandboxKeysByDescription);
+    }
     return children;
   }
 
+  @Override
+  protected Statement classBlock(RunNotifier notifier) {
+    if (orderChildrenBySandboxAffinity) {
+      // JUnit computes the children once, possibly long before the class runs (e.g. in a suite),
+      // so they're ordered by the sandboxes cached at the time the class actually starts.
+      Description description = getDescription();
+      pendingSandboxKeys.remove(description);
+      sort(new Sorter(sandboxAffinityComparator(description.getChildren())));
+    }
+    return super.classBlock(notifier);
+  }
+
+  /**
+   * Returns a comparator which orders children so that children which need the same sandbox run
+   * consecutively, starting with those whose sandbox is already cached (most recently used first,
+   * as left behind by previously run test classes), followed by the rest in their current order.
+   *
+   * <p>Without this, a test class that needs more sandboxes than the cache can keep alive cycles
+   * through them in the same order as the previous class, evicting each sandbox just before it's
+   * needed again.
+   */
+  private Comparator<Description> sandboxAffinityComparator(List<Description> children) {
+    Map<SandboxKey, Integer> recencyRanks = new HashMap<>();
+    Map<SandboxKey, Integer> firstPositions = new HashMap<>();
+    for (Description child : children) {
+      SandboxKey sandboxKey = sandboxKeysByDescription.get(child);
+      if (sandboxKey != null && !firstPositions.containsKey(sandboxKey)) {
+        int rank = sandboxManager.getRecencyRank(sandboxKey);
+        recencyRanks.put(sandboxKey, rank < 0 ? Integer.MAX_VALUE : rank);
+        firstPositions.put(sandboxKey, firstPositions.size());
+      }
+    }
+    Function<Description, SandboxKey> sandboxKeys = sandboxKeysByDescription::get;
+    return Comparator.comparing(
+            sandboxKeys.andThen(key -> recencyRanks.getOrDefault(key, Integer.MAX_VALUE)))
+        .thenComparing(
+            sandboxKeys.andThen(key -> firstPositions.getOrDefault(key, Integer.MAX_VALUE)));
+  }
+
+  private SandboxKey getSandboxKey(FrameworkMethod method) {
+    RobolectricFrameworkMethod roboMethod = (RobolectricFrameworkMethod) method;
+    SandboxKey sandboxKey =
+        new SandboxKey(
+            createClassLoaderConfig(method),
+            roboMethod.getSdk(),
+            roboMethod.getResourcesMode(),
+            getLooperMode(roboMethod),
+            getGraphicsMode(roboMethod));
+    // Share one key (and instrumentation configuration) between children with the same sandbox.
+    SandboxKey existingKey = canonicalSandboxKeys.putIfAbsent(sandboxKey, sandboxKey);
+    return existingKey == null ? sandboxKey : existingKey;
+  }
+
   @Override
   @Nonnull
   protected AndroidSandbox getSandbox(FrameworkMethod method) {
@@ -229,24 +318,49 @@ public class RobolectricTestRunner extends SandboxTestRunner {
     InstrumentationConfiguration classLoaderConfig = createClassLoaderConfig(method);
     ResourcesMode resourcesMode = roboMethod.getResourcesMode();
 
-    LooperMode.Mode looperMode =
-        roboMethod.configuration == null
-            ? Mode.LEGACY
-            : roboMethod.configuration.get(LooperMode.Mode.class);
+    LooperMode.Mode looperMode = getLooperMode(roboMethod);
 
     SQLiteMode.Mode sqliteMode =
         roboMethod.configuration == null
             ? SQLiteMode.Mode.LEGACY
             : roboMethod.configuration.get(SQLiteMode.Mode.class);
 
-    GraphicsMode.Mode graphicsMode =
-        roboMethod.configuration == null
-            ? GraphicsMode.Mode.LEGACY
-            : roboMethod.configuration.get(GraphicsMode.Mode.class);
+    GraphicsMode.Mode graphicsMode = getGraphicsMode(roboMethod);
 
     sdk.verifySupportedSdk(method.getDeclaringClass().getName());
     return sandboxManager.getAndroidSandbox(
-        classLoaderConfig, sdk, resourcesMode, looperMode, sqliteMode, graphicsMode);
+        classLoaderConfig,
+        sdk,
+        resourcesMode,
+        looperMode,
+        sqliteMode,
+        graphicsMode,
+        ParallelSandboxScheduler.currentWorkerIndex());
+  }
+
+  private static LooperMode.Mode getLooperMode(RobolectricFrameworkMethod roboMethod) {
+    return roboMethod.configuration == null
+        ? Mode.LEGACY
+        : roboMethod.configuration.get(LooperMode.Mode.class);
+  }
+
+  private static GraphicsMode.Mode getGraphicsMode(RobolectricFrameworkMethod roboMethod) {
+    return roboMethod.configuration == null
+        ? GraphicsMode.Mode.LEGACY
+        : roboMethod.configuration.get(GraphicsMode.Mode.class);
+  }
+
+  /**
+   * Tests set the default locale from their qualifiers (see {@link
+   * org.robolectric.android.internal.AndroidTestEnvironment#setUpApplicationState}), so tests with
+   * different qualifiers mustn't run at the same time.
+   */
+  @Override
+  protected Object getGlobalStateKey(FrameworkMethod method) {
+    RobolectricFrameworkMethod roboMethod = (RobolectricFrameworkMethod) method;
+    return roboMethod.configuration == null
+        ? ""
+        : roboMethod.configuration.get(Config.class).qualifiers();
   }
 
   @Override
@@ -278,9 +392,13 @@ public class RobolectricTestRunner extends SandboxTestRunner {
 
     AndroidManifest appManifest = roboMethod.getAppManifest();
 
-    roboMethod
-        .getTestEnvironment()
-        .setUpApplicationState(bootstrappedMethod, roboMethod.getConfiguration(), appManifest);
+    perfStatsCollector.measure(
+        "set up application state",
+        () ->
+            roboMethod
+                .getTestEnvironment()
+                .setUpApplicationState(
+                    bootstrappedMethod, roboMethod.getConfiguration(), appManifest));
 
     roboMethod.testLifecycle.beforeTest(bootstrappedMethod);
   }
@@ -434,6 +552,51 @@ public class RobolectricTestRunner extends SandboxTestRunner {
     return new Config.Builder().build();
   }
 
+  /**
+   * Orders the test classes of a suite so that classes whose first test needs the same sandbox
+   * run consecutively, in the order the first of them appears. Annotate the suite with {@code
+   * OrderWith(RobolectricTestRunner.SandboxAffinity.class)}, or pass this ordering to {@link
+   * org.junit.runner.Request#orderWith(Ordering)}.
+   *
+   * <p>JUnit runs one test class at a time, so reordering the tests of each class can't group
+   * tests of different classes; this ordering groups the classes themselves. The tests of each
+   * class are grouped the same way. It only has an effect if {@link
+   * #SANDBOX_AFFINITY_ORDERING_PROPERTY} is true, and otherwise keeps the original order.
+   */
+  public static final class SandboxAffinity implements Ordering.Factory {
+    @Override
+    public Ordering create(Ordering.Context context) {
+      return new Ordering() {
+        @Override
+        protected List<Description> orderItems(Collection<Description> descriptions) {
+          Map<SandboxKey, List<Description>> descriptionsBySandbox = new LinkedHashMap<>();
+          for (Description description : descriptions) {
+            descriptionsBySandbox
+                .computeIfAbsent(findSandboxKey(description), k -> new ArrayList<>())
+                .add(description);
+          }
+          List<Description> ordered = new ArrayList<>(descriptions.size());
+          descriptionsBySandbox.values().forEach(ordered::addAll);
+          return ordered;
+        }
+      };
+    }
+
+    /** Returns the sandbox of the first test in {@code description}, or null if unknown. */
+    @Nullable
+    private static SandboxKey findSandboxKey(Description description) {
+      Map<Description, SandboxKey> sandboxKeys = pendingSandboxKeys.get(description);
+      for (Description child : description.getChildren()) {
+        SandboxKey sandboxKey =
+            sandboxKeys == null ? findSandboxKey(child) : sandboxKeys.get(child);
+        if (sandboxKey != null) {
+          return sandboxKey;
+        }
+      }
+      return null;
+    }
+  }
+
   @AutoService(GlobalConfigProvider.class)
   @Priority(Integer.MIN_VALUE)
   @Deprecated
@@ -28,8 +28,12 @@ public class AndroidSdkShadowMatcher implements ShadowMatcher {
   @Override
   public boolean matches(Method method) {
     Implementation implementation = getImplementationAnnotation(method);
-    return implementation.minSdk() <= sdkLevel &&
-        (implementation.maxSdk() == -1 || implementation.maxSdk() >= sdkLevel);
+    return matchesSdkRange(implementation.minSdk(), implementation.maxSdk());
+  }
+
+  @Override
+  public boolean matchesSdkRange(int minSdk, int maxSdk) {
+    return minSdk <= sdkLevel && (maxSdk == -1 || maxSdk >= sdkLevel);
   }
 
   private static Implementation getImplementationAnnotation(Method method) {
@@ -1,5 +1,6 @@
 package org.robolectric.android.internal;
 
+import static android.os.Build.VERSION_CODES.O_MR1;
 import static android.os.Build.VERSION_CODES.P;
 import static android.os.Build.VERSION_CODES.Q;
 import static org.robolectric.shadow.api.Shadow.newInstanceOf;
@@ -27,6 +28,7 @@ import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Parcel;
 import android.provider.FontsContract;
 import android.util.DisplayMetrics;
 import androidx.test.platform.app.InstrumentationRegistry;
@@ -41,7 +43,9 @@ import java.security.Security;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.inject.Named;
 import javax.net.ssl.HostnameVerifier;
@@ -61,6 +65,7 @@ import org.robolectric.annotation.LooperMode;
 import org.robolectric.annotation.SQLiteMode;
 import org.robolectric.annotation.experimental.LazyApplication.LazyLoad;
 import org.robolectric.config.ConfigurationRegistry;
+import org.robolectric.internal.ParallelSandboxScheduler;
 import org.robolectric.internal.ResourcesMode;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.internal.TestEnvironment;
@@ -110,6 +115,15 @@ public class AndroidTestEnvironment implements TestEnvironment {
   private static final String CONSCRYPT_PROVIDER = "Conscrypt";
   private static final int MAX_DATA_DIR_NAME_LENGTH = 120;
 
+  /**
+   * If true, the app package is parsed once per sandbox and cached in parcelled form; each
+   * subsequent test unparcels a copy instead of re-parsing the APK.
+   */
+  private static final boolean CACHE_PARSED_PACKAGES =
+      Boolean.parseBoolean(System.getProperty("robolectric.cacheParsedAppPackage", "false"));
+
+  private static final byte[] UNCACHEABLE_PACKAGE = new byte[0];
+
   private final Sdk runtimeSdk;
   private final Sdk compileSdk;
 
@@ -122,6 +136,7 @@ public class AndroidTestEnvironment implements TestEnvironment {
   private final ShadowProvider[] shadowProviders;
   private final TestEnvironmentLifecyclePlugin[] testEnvironmentLifecyclePlugins;
   private final Locale initialLocale = Locale.getDefault();
+  private final Map<Path, byte[]> parsedPackageCache = new HashMap<>();
 
   public AndroidTestEnvironment(
       @Named("runtimeSdk") Sdk runtimeSdk,
@@ -444,7 +459,7 @@ public class AndroidTestEnvironment implements TestEnvironment {
 
       Path packageFile = appManifest.getApkFile();
       if (packageFile != null) {
-        parsedPackage = ShadowPackageParser.callParsePackage(packageFile);
+        parsedPackage = parsePackagePreferringCache(packageFile);
       } else {
         parsedPackage = new Package("org.robolectric.default");
         parsedPackage.applicationInfo.targetSdkVersion = appManifest.getTargetSdkVersion();
@@ -458,6 +473,69 @@ public class AndroidTestEnvironment implements TestEnvironment {
     return parsedPackage;
   }
 
+  /**
+   * Parses the package at {@code packageFile}, or unparcels a copy of it from this sandbox's parsed
+   * package cache. Caching is only supported on O_MR1 and above, where {@link Package} is {@link
+   * android.os.Parcelable}; if a package can't be parcelled it is re-parsed for every test.
+   *
+   * <p>Parsing is measured as "parse app package" and cache hits as "unparcel cached app package",
+   * so the two can be compared with and without the cache.
+   */
+  private Package parsePackagePreferringCache(Path packageFile) {
+    if (!CACHE_PARSED_PACKAGES || apiLevel < O_MR1) {
+      return parsePackage(packageFile);
+    }
+
+    byte[] parcelledPackage = parsedPackageCache.get(packageFile);
+    if (parcelledPackage != null && parcelledPackage != UNCACHEABLE_PACKAGE) {
+      return unparcelPackage(parcelledPackage);
+    }
+
+    Package parsedPackage = parsePackage(packageFile);
+    if (parcelledPackage == null) {
+      try {
+        parsedPackageCache.put(packageFile, parcelPackage(parsedPackage));
+      } catch (RuntimeException e) {
+        Logger.warn("Unable to cache package %s, it will be re-parsed: %s", packageFile, e);
+        parsedPackageCache.put(packageFile, UNCACHEABLE_PACKAGE);
+      }
+    }
+    return parsedPackage;
+  }
+
+  private static Package parsePackage(Path packageFile) {
+    return PerfStatsCollector.getInstance()
+        .measure("parse app package", () -> ShadowPackageParser.callParsePackage(packageFile));
+  }
+
+  @VisibleForTesting
+  static byte[] parcelPackage(Package parsedPackage) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parsedPackage.writeToParcel(parcel, 0);
+      return parcel.marshall();
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  @VisibleForTesting
+  static Package unparcelPackage(byte[] parcelledPackage) {
+    return PerfStatsCollector.getInstance()
+        .measure(
+            "unparcel cached app package",
+            () -> {
+              Parcel parcel = Parcel.obtain();
+              try {
+                parcel.unmarshall(parcelledPackage, 0, parcelledPackage.length);
+                parcel.setDataPosition(0);
+                return new Package(parcel);
+              } finally {
+                parcel.recycle();
+              }
+            });
+  }
+
   private synchronized PackageResourceTable getSystemResourceTable() {
     if (systemResourceTable == null) {
       ResourcePath resourcePath = createRuntimeSdkResourcePath();
@@ -680,7 +758,11 @@ public class AndroidTestEnvironment implements TestEnvironment {
 
   @Override
   public void resetState() {
-    Locale.setDefault(initialLocale);
+    // Tests running in parallel share the default locale; the scheduler restores it once none of
+    // them is running.
+    if (!ParallelSandboxScheduler.isEnabled()) {
+      Locale.setDefault(initialLocale);
+    }
     for (ShadowProvider provider : shadowProviders) {
       provider.reset();
     }
@@ -20,6 +20,7 @@ import org.robolectric.internal.bytecode.SandboxClassLoader;
 import org.robolectric.internal.bytecode.ShadowProviders;
 import org.robolectric.internal.bytecode.UrlResourceProvider;
 import org.robolectric.pluginapi.Sdk;
+import org.robolectric.res.android.ApkAssetsCache;
 import org.robolectric.shadows.SQLiteShadowPicker;
 import org.robolectric.util.inject.Injector;
 
@@ -86,6 +87,16 @@ public class AndroidSandbox extends Sandbox {
     return testEnvironment;
   }
 
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    // a main thread that's still running may still use its ApkAssets; they're released once the
+    // class loader is collected instead
+    if (isMainThreadTerminated()) {
+      ApkAssetsCache.release(getRobolectricClassLoader());
+    }
+  }
+
   @Override
   public String toString() {
     return "AndroidSandbox[SDK " + sdk + "]";
@@ -122,10 +133,17 @@ public class AndroidSandbox extends Sandbox {
 
   /** Adapter from Sdk to ResourceLoader. */
   public static class SdkSandboxClassLoader extends SandboxClassLoader {
+    private final Sdk runtimeSdk;
 
     public SdkSandboxClassLoader(InstrumentationConfiguration config,
         @Named("runtimeSdk") Sdk runtimeSdk, ClassInstrumentor classInstrumentor) {
       super(config, new UrlResourceProvider(toUrl(runtimeSdk.getJarPath())), classInstrumentor);
+      this.runtimeSdk = runtimeSdk;
+    }
+
+    @Override
+    protected String getInstrumentedClassCacheQualifier() {
+      return "sdk=" + runtimeSdk.getApiLevel();
     }
 
     private static URL toUrl(Path path) {
@@ -1,9 +1,17 @@
 package org.robolectric.internal;
 
 import android.annotation.SuppressLint;
+import com.google.common.annotations.VisibleForTesting;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.LongSupplier;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.robolectric.annotation.GraphicsMode;
@@ -12,13 +20,28 @@ import org.robolectric.annotation.SQLiteMode;
 import org.robolectric.internal.bytecode.InstrumentationConfiguration;
 import org.robolectric.pluginapi.Sdk;
 import org.robolectric.plugins.SdkCollection;
+import org.robolectric.util.Logger;
 import org.robolectric.util.PerfStatsCollector;
 import org.robolectric.util.inject.AutoFactory;
 
-/** Manager of sandboxes. */
+/**
+ * Manager of sandboxes.
+ *
+ * <p>Sandboxes are kept in an LRU cache. By default the cache holds a fixed number of sandboxes per
+ * supported SDK; if the {@code robolectric.sandboxCacheMaxHeapFraction} system property is set,
+ * it's instead bounded by heap usage (see {@link #MAX_HEAP_FRACTION_PROPERTY}). The sandbox each
+ * worker most recently asked for is in use, so it's never evicted.
+ */
 @SuppressLint("NewApi")
 public class SandboxManager {
 
+  /**
+   * If set to a fraction between 0 and 1, the least recently used sandbox is evicted whenever a
+   * sandbox is created while the heap still in use after the last garbage collection exceeds that
+   * fraction of the maximum heap size, rather than when the cache exceeds a fixed size.
+   */
+  public static final String MAX_HEAP_FRACTION_PROPERTY = "robolectric.sandboxCacheMaxHeapFraction";
+
   /**
    * The factor for cache size. See {@link #sandboxesByKey} for details.
    */
@@ -26,30 +49,44 @@ public class SandboxManager {
 
   private final SandboxBuilder sandboxBuilder;
   private final SdkCollection sdkCollection;
+  private final EvictionPolicy evictionPolicy;
 
   // Simple LRU Cache. AndroidSandboxes are unique across InstrumentationConfiguration and Sdk
-  private final LinkedHashMap<SandboxKey, AndroidSandbox> sandboxesByKey;
+  private final LinkedHashMap<SandboxKey, AndroidSandbox> sandboxesByKey =
+      new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true);
+
+  // A worker runs one test at a time, so the sandbox it most recently asked for is the one in use.
+  private final Map<Integer, SandboxKey> activeSandboxKeysByWorker = new HashMap<>();
 
   @Inject
   public SandboxManager(SandboxBuilder sandboxBuilder, SdkCollection sdkCollection) {
+    this(sandboxBuilder, sdkCollection, createEvictionPolicy(sdkCollection));
+  }
+
+  @VisibleForTesting
+  SandboxManager(
+      SandboxBuilder sandboxBuilder, SdkCollection sdkCollection, EvictionPolicy evictionPolicy) {
     this.sandboxBuilder = sandboxBuilder;
     this.sdkCollection = sdkCollection;
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  private static EvictionPolicy createEvictionPolicy(SdkCollection sdkCollection) {
+    String maxHeapFraction = System.getProperty(MAX_HEAP_FRACTION_PROPERTY, "");
+    if (!maxHeapFraction.isEmpty()) {
+      return new HeapUsageEvictionPolicy(
+          Double.parseDouble(maxHeapFraction),
+          HeapUsageEvictionPolicy::liveHeapBytes,
+          Runtime.getRuntime().maxMemory());
+    }
 
     // We need to set the cache size of class loaders more than the number of supported APIs as
-    // different tests may have different configurations.
-    final int cacheSize = sdkCollection.getSupportedSdks().size() * CACHE_SIZE_FACTOR;
-    sandboxesByKey =
-        new LinkedHashMap<SandboxKey, AndroidSandbox>() {
-          @Override
-          protected boolean removeEldestEntry(Map.Entry<SandboxKey, AndroidSandbox> eldest) {
-            boolean toRemove = size() > cacheSize;
-            if (toRemove) {
-              PerfStatsCollector.getInstance().incrementCount("evictSandbox");
-              eldest.getValue().shutdown();
-            }
-            return toRemove;
-          }
-        };
+    // different tests may have different configurations. When test methods run in parallel, each
+    // worker needs its own sandbox per configuration.
+    return new SizeEvictionPolicy(
+        sdkCollection.getSupportedSdks().size()
+            * CACHE_SIZE_FACTOR
+            * ParallelSandboxScheduler.getPoolSize());
   }
 
   public synchronized AndroidSandbox getAndroidSandbox(
@@ -59,20 +96,150 @@ public class SandboxManager {
       LooperMode.Mode looperMode,
       SQLiteMode.Mode sqliteMode,
       GraphicsMode.Mode graphicsMode) {
+    return getAndroidSandbox(
+        instrumentationConfig, sdk, resourcesMode, looperMode, sqliteMode, graphicsMode, 0);
+  }
+
+  /**
+   * Returns the sandbox for the given configuration owned by the worker with index {@code
+   * workerIndex}. Sandboxes for different workers are independent, so workers can run tests with
+   * the same configuration concurrently.
+   *
+   * @see ParallelSandboxScheduler#currentWorkerIndex()
+   */
+  public synchronized AndroidSandbox getAndroidSandbox(
+      InstrumentationConfiguration instrumentationConfig,
+      Sdk sdk,
+      ResourcesMode resourcesMode,
+      LooperMode.Mode looperMode,
+      SQLiteMode.Mode sqliteMode,
+      GraphicsMode.Mode graphicsMode,
+      int workerIndex) {
     SandboxKey key =
-        new SandboxKey(instrumentationConfig, sdk, resourcesMode, looperMode, graphicsMode);
+        new SandboxKey(
+            instrumentationConfig, sdk, resourcesMode, looperMode, graphicsMode, workerIndex);
 
+    PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
+    activeSandboxKeysByWorker.put(workerIndex, key);
     AndroidSandbox androidSandbox = sandboxesByKey.get(key);
     if (androidSandbox == null) {
+      perfStatsCollector.incrementCount("sandboxCacheMiss");
       Sdk compileSdk = sdkCollection.getMaxSupportedSdk();
       androidSandbox =
           sandboxBuilder.build(instrumentationConfig, sdk, compileSdk, resourcesMode, sqliteMode);
       sandboxesByKey.put(key, androidSandbox);
+      evictIfNecessary();
+    } else {
+      perfStatsCollector.incrementCount("sandboxCacheHit");
     }
     androidSandbox.updateModes(sqliteMode);
     return androidSandbox;
   }
 
+  /**
+   * Returns how recently a sandbox with the configuration of {@code key} was used by any worker,
+   * where 0 is the most recently used sandbox, or -1 if there is no such sandbox in the cache.
+   */
+  public synchronized int getRecencyRank(SandboxKey key) {
+    int rank = -1;
+    int position = sandboxesByKey.size();
+    // Iteration goes from least to most recently used, so the last match wins.
+    for (SandboxKey cachedKey : sandboxesByKey.keySet()) {
+      position--;
+      if (cachedKey.hasSameConfiguration(key)) {
+        rank = position;
+      }
+    }
+    return rank;
+  }
+
+  private void evictIfNecessary() {
+    int toEvict = evictionPolicy.sandboxesToEvict(sandboxesByKey.size());
+    Iterator<Map.Entry<SandboxKey, AndroidSandbox>> iterator =
+        sandboxesByKey.entrySet().iterator();
+    // Never evict a sandbox in use, including the one that was just created.
+    while (toEvict > 0 && iterator.hasNext()) {
+      Map.Entry<SandboxKey, AndroidSandbox> eldest = iterator.next();
+      if (activeSandboxKeysByWorker.containsValue(eldest.getKey())) {
+        continue;
+      }
+      iterator.remove();
+      toEvict--;
+      PerfStatsCollector.getInstance().incrementCount("evictSandbox");
+      PerfStatsCollector.getInstance().incrementCount("evictSandbox " + evictionPolicy.reason());
+      Logger.debug(
+          "Evicting sandbox for %s (%d sandboxes cached)", eldest.getKey(), sandboxesByKey.size());
+      eldest.getValue().shutdown();
+    }
+  }
+
+  /** Decides how many of the least recently used sandboxes to evict after creating a sandbox. */
+  interface EvictionPolicy {
+    int sandboxesToEvict(int cachedSandboxes);
+
+    /** A short description of the policy, used in eviction telemetry. */
+    String reason();
+  }
+
+  /** Keeps at most a fixed number of sandboxes. */
+  static class SizeEvictionPolicy implements EvictionPolicy {
+    private final int maxSandboxes;
+
+    SizeEvictionPolicy(int maxSandboxes) {
+      this.maxSandboxes = maxSandboxes;
+    }
+
+    @Override
+    public int sandboxesToEvict(int cachedSandboxes) {
+      return Math.max(0, cachedSandboxes - maxSandboxes);
+    }
+
+    @Override
+    public String reason() {
+      return "for cache size";
+    }
+  }
+
+  /**
+   * Evicts a sandbox whenever the live heap exceeds a fraction of the maximum heap size.
+   *
+   * <p>The live heap is measured as the usage of the heap memory pools after their last
+   * collection, which doesn't change until the next garbage collection; so at most one sandbox is
+   * evicted per sandbox created, letting the collector reclaim it before deciding again.
+   */
+  static class HeapUsageEvictionPolicy implements EvictionPolicy {
+    private final double maxHeapFraction;
+    private final LongSupplier liveHeapBytes;
+    private final long maxHeapBytes;
+
+    HeapUsageEvictionPolicy(double maxHeapFraction, LongSupplier liveHeapBytes, long maxHeapBytes) {
+      this.maxHeapFraction = maxHeapFraction;
+      this.liveHeapBytes = liveHeapBytes;
+      this.maxHeapBytes = maxHeapBytes;
+    }
+
+    @Override
+    public int sandboxesToEvict(int cachedSandboxes) {
+      return liveHeapBytes.getAsLong() > maxHeapFraction * maxHeapBytes ? 1 : 0;
+    }
+
+    @Override
+    public String reason() {
+      return "for heap usage";
+    }
+
+    static long liveHeapBytes() {
+      long used = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+        if (usage != null) {
+          used += usage.getUsed();
+        }
+      }
+      return used;
+    }
+  }
+
   /** Factory interface for AndroidSandbox. */
   @AutoFactory
   public interface SandboxBuilder {
@@ -84,24 +251,40 @@ public class SandboxManager {
         SQLiteMode.Mode sqLiteMode);
   }
 
-  static class SandboxKey {
+  /**
+   * Identifies a sandbox in the cache: sandboxes are unique across configurations and workers.
+   */
+  public static final class SandboxKey {
     private final Sdk sdk;
     private final InstrumentationConfiguration instrumentationConfiguration;
     private final ResourcesMode resourcesMode;
     private final LooperMode.Mode looperMode;
     private final GraphicsMode.Mode graphicsMode;
+    private final int workerIndex;
 
+    /** Creates a key for the sandbox with the given configuration owned by the first worker. */
     public SandboxKey(
         InstrumentationConfiguration instrumentationConfiguration,
         Sdk sdk,
         ResourcesMode resourcesMode,
         LooperMode.Mode looperMode,
         GraphicsMode.Mode graphicsMode) {
+      this(instrumentationConfiguration, sdk, resourcesMode, looperMode, graphicsMode, 0);
+    }
+
+    public SandboxKey(
+        InstrumentationConfiguration instrumentationConfiguration,
+        Sdk sdk,
+        ResourcesMode resourcesMode,
+        LooperMode.Mode looperMode,
+        GraphicsMode.Mode graphicsMode,
+        int workerIndex) {
       this.sdk = sdk;
       this.instrumentationConfiguration = instrumentationConfiguration;
       this.resourcesMode = resourcesMode;
       this.looperMode = looperMode;
       this.graphicsMode = graphicsMode;
+      this.workerIndex = workerIndex;
     }
 
     @Override
@@ -117,13 +300,38 @@ public class SandboxManager {
           && Objects.equals(sdk, that.sdk)
           && Objects.equals(instrumentationConfiguration, that.instrumentationConfiguration)
           && looperMode == that.looperMode
-          && graphicsMode == that.graphicsMode;
+          && graphicsMode == that.graphicsMode
+          && workerIndex == that.workerIndex;
     }
 
     @Override
     public int hashCode() {
       return Objects.hash(
-          sdk, instrumentationConfiguration, resourcesMode, looperMode, graphicsMode);
+          sdk, instrumentationConfiguration, resourcesMode, looperMode, graphicsMode, workerIndex);
+    }
+
+    /** Returns true if this key has the same configuration as {@code that}, for any worker. */
+    boolean hasSameConfiguration(SandboxKey that) {
+      return resourcesMode == that.resourcesMode
+          && Objects.equals(sdk, that.sdk)
+          && Objects.equals(instrumentationConfiguration, that.instrumentationConfiguration)
+          && looperMode == that.looperMode
+          && graphicsMode == that.graphicsMode;
+    }
+
+    @Override
+    public String toString() {
+      return "SandboxKey{sdk="
+          + sdk
+          + ", resourcesMode="
+          + resourcesMode
+          + ", looperMode="
+          + looperMode
+          + ", graphicsMode="
+          + graphicsMode
+          + ", workerIndex="
+          + workerIndex
+          + "}";
     }
   }
 }
@@ -20,8 +20,10 @@ import java.nio.file.Paths;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -49,6 +51,7 @@ import org.robolectric.annotation.experimental.LazyApplication;
 import org.robolectric.annotation.experimental.LazyApplication.LazyLoad;
 import org.robolectric.config.ConfigurationRegistry;
 import org.robolectric.internal.AndroidSandbox.TestEnvironmentSpec;
+import org.robolectric.internal.ParallelSandboxScheduler;
 import org.robolectric.internal.ResourcesMode;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.manifest.AndroidManifest;
@@ -77,7 +80,7 @@ public class RobolectricTestRunnerTest {
   @Before
   public void setUp() throws Exception {
     notifier = new RunNotifier();
-    events = new ArrayList<>();
+    events = Collections.synchronizedList(new ArrayList<>());
     notifier.addListener(new MyRunListener());
 
     priorEnabledSdks = System.getProperty("robolectric.enabledSdks");
@@ -274,6 +277,26 @@ public class RobolectricTestRunnerTest {
     );
   }
 
+  @Test
+  public void parallelWorkers_withDifferentLocales_shouldNotInterfere() throws Exception {
+    Locale priorLocale = Locale.getDefault();
+    String priorPoolSize = System.getProperty(ParallelSandboxScheduler.POOL_SIZE_PROPERTY);
+    System.setProperty(ParallelSandboxScheduler.POOL_SIZE_PROPERTY, "2");
+    try {
+      RobolectricTestRunner runner =
+          new SingleSdkRobolectricTestRunner(TestWithDifferentLocales.class);
+      runner.run(notifier);
+    } finally {
+      TestUtil.resetSystemProperty(ParallelSandboxScheduler.POOL_SIZE_PROPERTY, priorPoolSize);
+    }
+
+    assertThat(events.stream().filter(event -> event.startsWith("failure:")).count())
+        .isEqualTo(0);
+    assertThat(events.stream().filter(event -> event.startsWith("finished:")).count())
+        .isEqualTo(6);
+    assertThat(Locale.getDefault()).isEqualTo(priorLocale);
+  }
+
   @Test
   public void shouldDiagnoseUnexecutedRunnables() throws Exception {
     RobolectricTestRunner runner =
@@ -432,6 +455,53 @@ public class RobolectricTestRunnerTest {
     }
   }
 
+  /** Fixture for #parallelWorkers_withDifferentLocales_shouldNotInterfere() */
+  @Ignore
+  public static class TestWithDifferentLocales {
+    @Test
+    @Config(qualifiers = "fr")
+    public void french1() throws Exception {
+      assertDefaultLanguageStays("fr");
+    }
+
+    @Test
+    @Config(qualifiers = "ja")
+    public void japanese1() throws Exception {
+      assertDefaultLanguageStays("ja");
+    }
+
+    @Test
+    @Config(qualifiers = "fr")
+    public void french2() throws Exception {
+      assertDefaultLanguageStays("fr");
+    }
+
+    @Test
+    @Config(qualifiers = "ja")
+    public void japanese2() throws Exception {
+      assertDefaultLanguageStays("ja");
+    }
+
+    @Test
+    @Config(qualifiers = "fr")
+    public void french3() throws Exception {
+      assertDefaultLanguageStays("fr");
+    }
+
+    @Test
+    @Config(qualifiers = "ja")
+    public void japanese3() throws Exception {
+      assertDefaultLanguageStays("ja");
+    }
+
+    private static void assertDefaultLanguageStays(String language) throws InterruptedException {
+      for (int i = 0; i < 10; i++) {
+        assertThat(Locale.getDefault().getLanguage()).isEqualTo(language);
+        Thread.sleep(10);
+      }
+    }
+  }
+
   /** Fixture for #shouldDiagnoseUnexecutedRunnables() */
   @Ignore
   @FixMethodOrder(MethodSorters.NAME_ASCENDING)
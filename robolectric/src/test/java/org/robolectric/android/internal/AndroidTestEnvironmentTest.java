@@ -1,6 +1,7 @@
 package org.robolectric.android.internal;
 
 import static android.os.Build.VERSION_CODES.O;
+import static android.os.Build.VERSION_CODES.O_MR1;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.TruthJUnit.assume;
 import static org.junit.Assert.fail;
@@ -11,6 +12,7 @@ import static org.robolectric.annotation.LooperMode.Mode.LEGACY;
 import android.app.Application;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageParser.Package;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.os.Build;
@@ -44,11 +46,13 @@ import org.robolectric.annotation.experimental.LazyApplication;
 import org.robolectric.annotation.experimental.LazyApplication.LazyLoad;
 import org.robolectric.manifest.AndroidManifest;
 import org.robolectric.manifest.RoboNotFoundException;
+import org.robolectric.pluginapi.perf.Metric;
 import org.robolectric.plugins.HierarchicalConfigurationStrategy.ConfigurationImpl;
 import org.robolectric.res.ResourceTable;
 import org.robolectric.shadow.api.Shadow;
 import org.robolectric.shadows.ShadowApplication;
 import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.PerfStatsCollector;
 
 @RunWith(BootstrapDeferringRobolectricTestRunner.class)
 @LooperMode(LEGACY)
@@ -364,4 +368,44 @@ public class AndroidTestEnvironmentTest {
     assertThat(applicationInfo.dataDir).isNotNull();
     assertThat(new File(applicationInfo.dataDir).isDirectory()).isTrue();
   }
+
+  @Test
+  @Config(minSdk = O_MR1)
+  public void parsedPackageCache_roundTripsPackage() {
+    Package original = new Package("org.robolectric.cached");
+    original.applicationInfo.targetSdkVersion = 27;
+    original.applicationInfo.className = "org.robolectric.cached.App";
+
+    Package restored =
+        AndroidTestEnvironment.unparcelPackage(AndroidTestEnvironment.parcelPackage(original));
+
+    assertThat(restored).isNotSameInstanceAs(original);
+    assertThat(restored.packageName).isEqualTo("org.robolectric.cached");
+    assertThat(restored.applicationInfo.targetSdkVersion).isEqualTo(27);
+    assertThat(restored.applicationInfo.className).isEqualTo("org.robolectric.cached.App");
+  }
+
+  @Test
+  @Config(minSdk = O_MR1)
+  public void parsedPackageCache_measuresUnparcelTime() {
+    PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
+    boolean wasEnabled = perfStatsCollector.isEnabled();
+    perfStatsCollector.setEnabled(true);
+    try {
+      byte[] parcelledPackage =
+          AndroidTestEnvironment.parcelPackage(new Package("org.robolectric.cached"));
+
+      AndroidTestEnvironment.unparcelPackage(parcelledPackage);
+
+      Metric metric =
+          perfStatsCollector.getMetrics().stream()
+              .filter(m -> m.getName().equals("unparcel cached app package"))
+              .findFirst()
+              .orElseThrow(AssertionError::new);
+      assertThat(metric.getCount()).isEqualTo(1);
+      assertThat(metric.getElapsedNs()).isGreaterThan(0L);
+    } finally {
+      perfStatsCollector.setEnabled(wasEnabled);
+    }
+  }
 }
@@ -0,0 +1,100 @@
+package org.robolectric.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.internal.ParallelSandboxScheduler.GlobalStateGate;
+
+@RunWith(JUnit4.class)
+public class ParallelSandboxSchedulerTest {
+
+  @Test
+  public void currentWorkerIndex_isZeroOffWorkerThreads() {
+    assertThat(ParallelSandboxScheduler.currentWorkerIndex()).isEqualTo(0);
+  }
+
+  @Test
+  public void finished_waitsForAllScheduledChildren() {
+    ParallelSandboxScheduler scheduler = new ParallelSandboxScheduler(2);
+    AtomicInteger completed = new AtomicInteger();
+    Set<Integer> workerIndices = ConcurrentHashMap.newKeySet();
+    for (int i = 0; i < 20; i++) {
+      scheduler.schedule(
+          () -> {
+            workerIndices.add(ParallelSandboxScheduler.currentWorkerIndex());
+            completed.incrementAndGet();
+          });
+    }
+
+    scheduler.finished();
+
+    assertThat(completed.get()).isEqualTo(20);
+    assertThat(workerIndices).isNotEmpty();
+    for (int index : workerIndices) {
+      assertThat(index).isAtLeast(0);
+      assertThat(index).isLessThan(2);
+    }
+  }
+
+  @Test
+  public void getPoolSize_defaultsToOne() {
+    String prior = System.getProperty(ParallelSandboxScheduler.POOL_SIZE_PROPERTY);
+    System.clearProperty(ParallelSandboxScheduler.POOL_SIZE_PROPERTY);
+    try {
+      assertThat(ParallelSandboxScheduler.getPoolSize()).isEqualTo(1);
+    } finally {
+      if (prior != null) {
+        System.setProperty(ParallelSandboxScheduler.POOL_SIZE_PROPERTY, prior);
+      }
+    }
+  }
+
+  @Test
+  public void globalStateGate_letsEqualKeysOverlap() throws Exception {
+    GlobalStateGate gate = new GlobalStateGate();
+
+    gate.enter("fr");
+    gate.enter("fr");
+    gate.exit("fr");
+    gate.exit("fr");
+  }
+
+  @Test
+  public void globalStateGate_blocksDifferentKeysAndRestoresLocale() throws Exception {
+    Locale priorLocale = Locale.getDefault();
+    GlobalStateGate gate = new GlobalStateGate();
+    gate.enter("fr");
+    Locale.setDefault(Locale.FRENCH);
+
+    CountDownLatch entered = new CountDownLatch(1);
+    Thread other =
+        new Thread(
+            () -> {
+              try {
+                gate.enter("ja");
+                entered.countDown();
+                gate.exit("ja");
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    other.start();
+
+    try {
+      assertThat(entered.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    } finally {
+      gate.exit("fr");
+    }
+    assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+    other.join();
+    assertThat(Locale.getDefault()).isEqualTo(priorLocale);
+  }
+}
@@ -0,0 +1,176 @@
+package org.robolectric.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.SQLiteMode;
+import org.robolectric.internal.SandboxManager.HeapUsageEvictionPolicy;
+import org.robolectric.internal.SandboxManager.SandboxBuilder;
+import org.robolectric.internal.SandboxManager.SandboxKey;
+import org.robolectric.internal.SandboxManager.SizeEvictionPolicy;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.pluginapi.Sdk;
+import org.robolectric.plugins.SdkCollection;
+import org.robolectric.plugins.StubSdk;
+
+@RunWith(JUnit4.class)
+public class SandboxManagerTest {
+  private final InstrumentationConfiguration config =
+      InstrumentationConfiguration.newBuilder().build();
+  private final Sdk sdk1 = new StubSdk(1, true);
+  private final Sdk sdk2 = new StubSdk(2, true);
+  private final Sdk sdk3 = new StubSdk(3, true);
+
+  private SandboxBuilder sandboxBuilder;
+  private SdkCollection sdkCollection;
+
+  @Before
+  public void setUp() {
+    sandboxBuilder = mock(SandboxBuilder.class);
+    when(sandboxBuilder.build(any(), any(), any(), any(), any()))
+        .thenAnswer(invocation -> mock(AndroidSandbox.class));
+    sdkCollection = mock(SdkCollection.class);
+    when(sdkCollection.getMaxSupportedSdk()).thenReturn(sdk3);
+  }
+
+  @Test
+  public void sizeEvictionPolicy_shouldEvictLeastRecentlyUsedSandbox() {
+    SandboxManager sandboxManager =
+        new SandboxManager(sandboxBuilder, sdkCollection, new SizeEvictionPolicy(2));
+
+    AndroidSandbox sandbox1 = getSandbox(sandboxManager, sdk1);
+    AndroidSandbox sandbox2 = getSandbox(sandboxManager, sdk2);
+    assertThat(getSandbox(sandboxManager, sdk1)).isSameInstanceAs(sandbox1);
+    getSandbox(sandboxManager, sdk3);
+
+    verify(sandbox1, never()).shutdown();
+    verify(sandbox2).shutdown();
+    assertThat(getSandbox(sandboxManager, sdk1)).isSameInstanceAs(sandbox1);
+  }
+
+  @Test
+  public void sizeEvictionPolicy_shouldNotEvictSandboxInUseByAnotherWorker() {
+    SandboxManager sandboxManager =
+        new SandboxManager(sandboxBuilder, sdkCollection, new SizeEvictionPolicy(2));
+
+    AndroidSandbox worker0Sandbox = getSandbox(sandboxManager, sdk1, 0);
+    AndroidSandbox worker1Sandbox = getSandbox(sandboxManager, sdk2, 1);
+    AndroidSandbox worker1NextSandbox = getSandbox(sandboxManager, sdk3, 1);
+
+    // worker 0's sandbox is the least recently used, but it's still running a test.
+    verify(worker0Sandbox, never()).shutdown();
+    verify(worker1Sandbox).shutdown();
+    verify(worker1NextSandbox, never()).shutdown();
+  }
+
+  @Test
+  public void heapUsageEvictionPolicy_shouldEvictOneSandboxPerCreationWhileOverLimit() {
+    AtomicLong liveHeapBytes = new AtomicLong(10);
+    SandboxManager sandboxManager =
+        new SandboxManager(
+            sandboxBuilder,
+            sdkCollection,
+            new HeapUsageEvictionPolicy(0.5, liveHeapBytes::get, 100));
+
+    AndroidSandbox sandbox1 = getSandbox(sandboxManager, sdk1);
+    AndroidSandbox sandbox2 = getSandbox(sandboxManager, sdk2);
+    verify(sandbox1, never()).shutdown();
+
+    liveHeapBytes.set(60);
+    AndroidSandbox sandbox3 = getSandbox(sandboxManager, sdk3);
+
+    verify(sandbox1).shutdown();
+    verify(sandbox2, never()).shutdown();
+    verify(sandbox3, never()).shutdown();
+  }
+
+  @Test
+  public void heapUsageEvictionPolicy_shouldNeverEvictTheNewSandbox() {
+    SandboxManager sandboxManager =
+        new SandboxManager(
+            sandboxBuilder, sdkCollection, new HeapUsageEvictionPolicy(0.5, () -> 100, 100));
+
+    AndroidSandbox sandbox1 = getSandbox(sandboxManager, sdk1);
+
+    verify(sandbox1, never()).shutdown();
+    assertThat(getSandbox(sandboxManager, sdk1)).isSameInstanceAs(sandbox1);
+  }
+
+  @Test
+  public void heapUsageEvictionPolicy_shouldNotEvictSandboxInUseByAnotherWorker() {
+    SandboxManager sandboxManager =
+        new SandboxManager(
+            sandboxBuilder, sdkCollection, new HeapUsageEvictionPolicy(0.5, () -> 100, 100));
+
+    AndroidSandbox worker0Sandbox = getSandbox(sandboxManager, sdk1, 0);
+    AndroidSandbox worker1Sandbox = getSandbox(sandboxManager, sdk2, 1);
+    AndroidSandbox worker1NextSandbox = getSandbox(sandboxManager, sdk3, 1);
+
+    // worker 0's sandbox is the least recently used, but it's still running a test.
+    verify(worker0Sandbox, never()).shutdown();
+    verify(worker1Sandbox).shutdown();
+    verify(worker1NextSandbox, never()).shutdown();
+  }
+
+  @Test
+  public void getRecencyRank_shouldMatchSandboxesOfAnyWorker() {
+    SandboxManager sandboxManager =
+        new SandboxManager(sandboxBuilder, sdkCollection, new SizeEvictionPolicy(10));
+
+    getSandbox(sandboxManager, sdk1, 1);
+
+    assertThat(getRecencyRank(sandboxManager, sdk1)).isEqualTo(0);
+  }
+
+  @Test
+  public void getRecencyRank_shouldRankMostRecentlyUsedFirst() {
+    SandboxManager sandboxManager =
+        new SandboxManager(sandboxBuilder, sdkCollection, new SizeEvictionPolicy(10));
+
+    getSandbox(sandboxManager, sdk1);
+    getSandbox(sandboxManager, sdk2);
+    getSandbox(sandboxManager, sdk1);
+
+    assertThat(getRecencyRank(sandboxManager, sdk1)).isEqualTo(0);
+    assertThat(getRecencyRank(sandboxManager, sdk2)).isEqualTo(1);
+    assertThat(getRecencyRank(sandboxManager, sdk3)).isEqualTo(-1);
+  }
+
+  private AndroidSandbox getSandbox(SandboxManager sandboxManager, Sdk sdk) {
+    return sandboxManager.getAndroidSandbox(
+        config,
+        sdk,
+        ResourcesMode.BINARY,
+        LooperMode.Mode.PAUSED,
+        SQLiteMode.Mode.NATIVE,
+        GraphicsMode.Mode.LEGACY);
+  }
+
+  private AndroidSandbox getSandbox(SandboxManager sandboxManager, Sdk sdk, int workerIndex) {
+    return sandboxManager.getAndroidSandbox(
+        config,
+        sdk,
+        ResourcesMode.BINARY,
+        LooperMode.Mode.PAUSED,
+        SQLiteMode.Mode.NATIVE,
+        GraphicsMode.Mode.LEGACY,
+        workerIndex);
+  }
+
+  private int getRecencyRank(SandboxManager sandboxManager, Sdk sdk) {
+    return sandboxManager.getRecencyRank(
+        new SandboxKey(
+            config, sdk, ResourcesMode.BINARY, LooperMode.Mode.PAUSED, GraphicsMode.Mode.LEGACY));
+  }
+}
@@ -4,6 +4,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -14,6 +15,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.robolectric.android.AndroidSdkShadowMatcher;
 import org.robolectric.annotation.Implements;
+import org.robolectric.internal.IndexedShadow;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.shadows.ShadowActivity;
@@ -142,6 +144,61 @@ public class ShadowMapTest {
         .isEqualTo(ShadowActivity30.class.getName());
   }
 
+  @Test
+  public void indexedShadows_shouldNotLoadShadowClass() {
+    String shadowName = "org.robolectric.internal.bytecode.NonexistentShadowActivity";
+    ImmutableList<ShadowProvider> shadowProviders =
+        ImmutableList.of(
+            new ShadowProvider() {
+              @Override
+              public void reset() {}
+
+              @Override
+              public String[] getProvidedPackageNames() {
+                return new String[0];
+              }
+
+              @Override
+              public List<Map.Entry<String, String>> getShadows() {
+                return Collections.singletonList(
+                    new AbstractMap.SimpleImmutableEntry<>(
+                        Activity.class.getCanonicalName(), shadowName));
+              }
+
+              @Override
+              public Map<String, IndexedShadow> getIndexedShadows() {
+                IndexedShadow indexedShadow =
+                    new IndexedShadow(
+                        Activity.class.getName(),
+                        false,
+                        false,
+                        false,
+                        30,
+                        -1,
+                        "foo(ILjava/lang/String;)-1:-1 bar([J)31:-1 baz(Ljava/lang/Object;)-1:-1");
+                return Collections.singletonMap(shadowName, indexedShadow);
+              }
+            });
+    ShadowMap map = ShadowMap.createFromShadowProviders(shadowProviders);
+
+    assertThat(map.getShadowInfo(Activity.class, new AndroidSdkShadowMatcher(29))).isNull();
+    ShadowInfo shadowInfo = map.getShadowInfo(Activity.class, new AndroidSdkShadowMatcher(30));
+    assertThat(shadowInfo.shadowClassName).isEqualTo(shadowName);
+    assertThat(shadowInfo.callThroughByDefault).isFalse();
+    ShadowMatcher sdk30 = new AndroidSdkShadowMatcher(30);
+    ShadowMatcher sdk31 = new AndroidSdkShadowMatcher(31);
+    Class<?>[] intAndString = {int.class, String.class};
+    Class<?>[] longArray = {long[].class};
+    assertThat(shadowInfo.mayImplementMethod("foo", intAndString, sdk30)).isTrue();
+    assertThat(shadowInfo.mayImplementMethod("foo", new Class<?>[] {int.class}, sdk30)).isFalse();
+    assertThat(shadowInfo.mayImplementMethod("bar", longArray, sdk30)).isFalse();
+    assertThat(shadowInfo.mayImplementMethod("bar", longArray, sdk31)).isTrue();
+    // loose signatures accept any parameter types of the same arity
+    assertThat(shadowInfo.mayImplementMethod("baz", new Class<?>[] {Activity.class}, sdk30))
+        .isTrue();
+    assertThat(shadowInfo.mayImplementMethod("qux", new Class<?>[0], sdk31)).isFalse();
+  }
+
   static class Activity {}
 
   static class A {}
@@ -0,0 +1,110 @@
+package org.robolectric.res.android;
+
+import static android.os.Build.VERSION_CODES.P;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.TruthJUnit.assume;
+import static org.robolectric.shadows.ShadowAssetManager.useLegacy;
+import static org.robolectric.util.reflector.Reflector.reflector;
+
+import android.content.res.ApkAssets;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.R;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.pluginapi.perf.Metric;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+import org.robolectric.util.reflector.ForType;
+
+/** Tests for the FindEntry cache of {@link CppAssetManager2}. */
+@RunWith(AndroidJUnit4.class)
+@Config(minSdk = P)
+public class CppAssetManager2Test {
+  private Resources resources;
+
+  @Before
+  public void setUp() {
+    assume().that(useLegacy()).isFalse();
+    resources = ApplicationProvider.getApplicationContext().getResources();
+    // the runner only collects perf stats if there are reporters; it resets them after each test
+    PerfStatsCollector.getInstance().setEnabled(true);
+  }
+
+  @Test
+  public void findEntry_shouldHitCacheForRepeatedLookups() {
+    assertThat(resources.getString(R.string.hello)).isEqualTo("Hello");
+    long hits = count("findEntryCacheHit");
+
+    assertThat(resources.getString(R.string.hello)).isEqualTo("Hello");
+
+    assertThat(count("findEntryCacheHit")).isGreaterThan(hits);
+  }
+
+  @Test
+  public void setConfiguration_shouldInvalidateEntriesAffectedByTheChange() {
+    assertThat(resources.getString(R.string.hello)).isEqualTo("Hello");
+    assertThat(resources.getString(R.string.hello)).isEqualTo("Hello");
+
+    RuntimeEnvironment.setQualifiers("fr");
+
+    assertThat(resources.getString(R.string.hello)).isEqualTo("Bonjour");
+  }
+
+  @Test
+  public void setApkAssets_shouldInvalidateAllEntries() {
+    assertThat(resources.getString(R.string.hello)).isEqualTo("Hello");
+    AssetManager assetManager = resources.getAssets();
+    ApkAssets[] apkAssets = reflector(AssetManagerReflector.class, assetManager).getApkAssets();
+    ReflectionHelpers.callInstanceMethod(
+        assetManager,
+        "setApkAssets",
+        ClassParameter.from(ApkAssets[].class, apkAssets),
+        ClassParameter.from(boolean.class, true));
+    long hits = count("findEntryCacheHit");
+    long misses = count("findEntryCacheMiss");
+
+    assertThat(resources.getString(R.string.hello)).isEqualTo("Hello");
+
+    assertThat(count("findEntryCacheHit")).isEqualTo(hits);
+    assertThat(count("findEntryCacheMiss")).isGreaterThan(misses);
+  }
+
+  @Test
+  public void findEntry_withDensityOverride_shouldNotChangeConfiguration() {
+    int densityDpi = resources.getConfiguration().densityDpi;
+    assertThat(densityDpi).isEqualTo(DisplayMetrics.DENSITY_MEDIUM);
+
+    TypedValue value = new TypedValue();
+    resources.getValueForDensity(R.drawable.robolectric, DisplayMetrics.DENSITY_HIGH, value, true);
+    assertThat(value.string.toString()).contains("hdpi");
+
+    // an_image has a default and an hdpi version, and hasn't been looked up yet
+    resources.getValue(R.drawable.an_image, value, true);
+    assertThat(value.string.toString()).doesNotContain("hdpi");
+    assertThat(resources.getConfiguration().densityDpi).isEqualTo(densityDpi);
+  }
+
+  private static long count(String metricName) {
+    long count = 0;
+    for (Metric metric : PerfStatsCollector.getInstance().getMetrics()) {
+      if (metric.getName().equals(metricName)) {
+        count += metric.getCount();
+      }
+    }
+    return count;
+  }
+
+  @ForType(AssetManager.class)
+  interface AssetManagerReflector {
+    ApkAssets[] getApkAssets();
+  }
+}
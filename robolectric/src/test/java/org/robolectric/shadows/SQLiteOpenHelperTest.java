@@ -10,6 +10,7 @@ import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,6 +29,7 @@ public class SQLiteOpenHelperTest {
   @After
   public void tearDown() {
     helper.close();
+    ShadowSQLiteOpenHelper.clearTemplates();
   }
 
   @Test
@@ -143,6 +145,114 @@ public class SQLiteOpenHelperTest {
     helper2.close();
   }
 
+  @Test
+  public void saveTemplate_laterDatabasesWithSameNameAndVersionShouldStartFromTemplate() {
+    SQLiteDatabase database = helper.getWritableDatabase();
+    setupTable(database, "table1");
+    insertData(database, "table1", new int[] {1, 2});
+    ShadowSQLiteOpenHelper.saveTemplate(helper);
+    helper.close();
+    ApplicationProvider.getApplicationContext().deleteDatabase("path");
+
+    TestOpenHelper helper2 =
+        new TestOpenHelper(ApplicationProvider.getApplicationContext(), "path", null, 1);
+    SQLiteDatabase database2 = helper2.getWritableDatabase();
+
+    assertThat(helper2.onCreateCalled).isFalse();
+    assertThat(helper2.onOpenCalled).isTrue();
+    Cursor cursor = database2.rawQuery("SELECT COUNT(*) FROM table1", null);
+    assertThat(cursor.moveToFirst()).isTrue();
+    assertThat(cursor.getInt(0)).isEqualTo(2);
+    cursor.close();
+    helper2.close();
+  }
+
+  @Test
+  public void saveTemplate_shouldNotApplyToOtherVersions() {
+    setupTable(helper.getWritableDatabase(), "table1");
+    ShadowSQLiteOpenHelper.saveTemplate(helper);
+    helper.close();
+    ApplicationProvider.getApplicationContext().deleteDatabase("path");
+
+    TestOpenHelper helper2 =
+        new TestOpenHelper(ApplicationProvider.getApplicationContext(), "path", null, 2);
+    helper2.getWritableDatabase();
+
+    assertThat(helper2.onCreateCalled).isTrue();
+    helper2.close();
+  }
+
+  @Test
+  public void saveTemplate_shouldNotApplyToOtherOpenHelperClasses() {
+    setupTable(helper.getWritableDatabase(), "table1");
+    ShadowSQLiteOpenHelper.saveTemplate(helper);
+    helper.close();
+    ApplicationProvider.getApplicationContext().deleteDatabase("path");
+
+    TestOpenHelper helper2 =
+        new OtherTestOpenHelper(ApplicationProvider.getApplicationContext(), "path", null, 1);
+    helper2.getWritableDatabase();
+
+    assertThat(helper2.onCreateCalled).isTrue();
+    helper2.close();
+  }
+
+  @Test
+  public void saveTemplate_withoutOwner_shouldApplyToAnyOpenHelperClass() {
+    SQLiteDatabase database = helper.getWritableDatabase();
+    setupTable(database, "table1");
+    File databaseFile = new File(database.getPath());
+    helper.close();
+    ShadowSQLiteOpenHelper.saveTemplate(null, "path", 1, databaseFile);
+    ApplicationProvider.getApplicationContext().deleteDatabase("path");
+
+    TestOpenHelper helper2 =
+        new OtherTestOpenHelper(ApplicationProvider.getApplicationContext(), "path", null, 1);
+    helper2.getWritableDatabase();
+
+    assertThat(helper2.onCreateCalled).isFalse();
+    helper2.close();
+  }
+
+  @Test
+  public void saveTemplate_withOwner_shouldOnlyApplyToThatOpenHelperClass() {
+    SQLiteDatabase database = helper.getWritableDatabase();
+    setupTable(database, "table1");
+    File databaseFile = new File(database.getPath());
+    helper.close();
+    ShadowSQLiteOpenHelper.saveTemplate(
+        OtherTestOpenHelper.class.getName(), "path", 1, databaseFile);
+    ApplicationProvider.getApplicationContext().deleteDatabase("path");
+
+    TestOpenHelper helper2 =
+        new TestOpenHelper(ApplicationProvider.getApplicationContext(), "path", null, 1);
+    helper2.getWritableDatabase();
+    helper2.close();
+    ApplicationProvider.getApplicationContext().deleteDatabase("path");
+    TestOpenHelper helper3 =
+        new OtherTestOpenHelper(ApplicationProvider.getApplicationContext(), "path", null, 1);
+    helper3.getWritableDatabase();
+
+    assertThat(helper2.onCreateCalled).isTrue();
+    assertThat(helper3.onCreateCalled).isFalse();
+    helper3.close();
+  }
+
+  @Test
+  public void saveTemplate_shouldNotOverwriteExistingDatabase() {
+    setupTable(helper.getWritableDatabase(), "table1");
+    ShadowSQLiteOpenHelper.saveTemplate(helper);
+    setupTable(helper.getWritableDatabase(), "table2");
+    helper.close();
+
+    SQLiteDatabase database = helper.getWritableDatabase();
+
+    Cursor cursor =
+        database.rawQuery("SELECT name FROM sqlite_master WHERE name = 'table2'", null);
+    assertThat(cursor.getCount()).isEqualTo(1);
+    cursor.close();
+  }
+
   private void setupTable(SQLiteDatabase db, String table) {
     db.execSQL("CREATE TABLE " + table + " (" +
         "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -270,4 +380,10 @@ public class SQLiteOpenHelperTest {
       super.close();
     }
   }
+
+  private static class OtherTestOpenHelper extends TestOpenHelper {
+    public OtherTestOpenHelper(Context context, String name, CursorFactory factory, int version) {
+      super(context, name, factory, version);
+    }
+  }
 }
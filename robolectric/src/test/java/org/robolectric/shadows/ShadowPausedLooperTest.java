@@ -380,6 +380,39 @@ public class ShadowPausedLooperTest {
     verify(mockRunnable, times(1)).run();
   }
 
+  @Test
+  public void backgroundLooper_executesDelayedTaskWhenClockReachesItsTime() {
+    Runnable mockRunnable = mock(Runnable.class);
+    new Handler(handlerThread.getLooper()).postDelayed(mockRunnable, 100);
+
+    SystemClock.setCurrentTimeMillis(SystemClock.uptimeMillis() + 50);
+    SystemClock.setCurrentTimeMillis(SystemClock.uptimeMillis() + 50);
+
+    verify(mockRunnable, timeout(1000)).run();
+  }
+
+  @Test
+  public void idleFor_longSpanWithRepeatingTask_backgroundLooper() {
+    // like a repeating 16ms Choreographer frame callback, over an hour of virtual time
+    Handler handler = new Handler(handlerThread.getLooper());
+    AtomicInteger frames = new AtomicInteger();
+    Runnable frame =
+        new Runnable() {
+          @Override
+          public void run() {
+            frames.incrementAndGet();
+            handler.postDelayed(this, 16);
+          }
+        };
+    handler.postDelayed(frame, 16);
+
+    long startTimeMs = SystemClock.uptimeMillis();
+    shadowOf(handlerThread.getLooper()).idleFor(Duration.ofHours(1));
+
+    assertThat(frames.get()).isEqualTo(Duration.ofHours(1).toMillis() / 16);
+    assertThat(SystemClock.uptimeMillis()).isEqualTo(startTimeMs + Duration.ofHours(1).toMillis());
+  }
+
   @Test
   public void idleExecutesPostedRunnables() {
     ShadowPausedLooper shadowLooper = Shadow.extract(getMainLooper());
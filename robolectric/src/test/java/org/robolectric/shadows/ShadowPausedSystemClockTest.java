@@ -8,6 +8,9 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.robolectric.annotation.LooperMode.Mode.PAUSED;
 
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.SystemClock;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import java.time.DateTimeException;
@@ -17,6 +20,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.annotation.Config;
@@ -135,6 +139,76 @@ public class ShadowPausedSystemClockTest {
     assertThat(listenerCalled.get()).isTrue();
   }
 
+  @Test
+  public void setDueTime_notifiesListenerOnceDue() {
+    AtomicInteger listenerCalls = new AtomicInteger();
+    ShadowPausedSystemClock.Listener listener = listenerCalls::incrementAndGet;
+    ShadowPausedSystemClock.setDueTime(listener, SystemClock.uptimeMillis() + 100);
+
+    SystemClock.sleep(50);
+    assertThat(listenerCalls.get()).isEqualTo(0);
+    SystemClock.sleep(50);
+    assertThat(listenerCalls.get()).isEqualTo(1);
+    SystemClock.sleep(50);
+    assertThat(listenerCalls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void clearDueTime_doesNotNotifyListener() {
+    AtomicBoolean listenerCalled = new AtomicBoolean();
+    ShadowPausedSystemClock.Listener listener = () -> listenerCalled.set(true);
+    ShadowPausedSystemClock.setDueTime(listener, SystemClock.uptimeMillis() + 100);
+
+    ShadowPausedSystemClock.clearDueTime(listener);
+    SystemClock.sleep(100);
+
+    assertThat(listenerCalled.get()).isFalse();
+  }
+
+  @Test
+  public void getNextDueTimeMillis_returnsNextMessageTimeAcrossLoopers() throws Exception {
+    HandlerThread handlerThread = new HandlerThread("getNextDueTimeMillis");
+    handlerThread.start();
+    try {
+      long now = SystemClock.uptimeMillis();
+      new Handler(Looper.getMainLooper()).postDelayed(() -> {}, 200);
+      new Handler(handlerThread.getLooper()).postDelayed(() -> {}, 100);
+
+      assertThat(ShadowPausedSystemClock.getNextDueTimeMillis()).isEqualTo(now + 100);
+    } finally {
+      handlerThread.quit();
+      handlerThread.join();
+    }
+  }
+
+  @Test
+  public void getNextDueTimeMillis_ignoresQuitLoopers() throws Exception {
+    HandlerThread handlerThread = new HandlerThread("getNextDueTimeMillis");
+    handlerThread.start();
+    new Handler(handlerThread.getLooper()).postDelayed(() -> {}, 100);
+
+    handlerThread.quit();
+    handlerThread.join();
+
+    assertThat(ShadowPausedSystemClock.getNextDueTimeMillis()).isEqualTo(0);
+  }
+
+  @Test
+  public void getNextDueTimeMillis_ignoresLoopersWhoseThreadDied() throws Exception {
+    Thread thread =
+        new Thread(
+            () -> {
+              Looper.prepare();
+              new Handler(Looper.myLooper()).postDelayed(() -> {}, 100);
+            });
+    thread.start();
+    thread.join();
+
+    SystemClock.sleep(100);
+
+    assertThat(ShadowPausedSystemClock.getNextDueTimeMillis()).isEqualTo(0);
+  }
+
   @SuppressWarnings("FutureReturnValueIgnored")
   @Test
   public void setCurrentTimeMillis_concurrentAccess() throws Exception {
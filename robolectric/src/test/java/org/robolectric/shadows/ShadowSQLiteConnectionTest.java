@@ -232,6 +232,51 @@ public class ShadowSQLiteConnectionTest {
     statement2.execute();
   }
 
+  @Test
+  public void query_largerThanCursorWindow_shouldPageThroughAllRows() {
+    assume().that(SQLiteLibraryLoader.isOsSupported()).isTrue();
+    // about 3MB of rows, more than the default 2MB cursor window
+    String padding = new String(new char[1000]).replace('\0', 'x');
+    database.beginTransaction();
+    for (int i = 0; i < 3000; i++) {
+      database.execSQL("insert into routine(name) values (?)", new Object[] {i + padding});
+    }
+    database.setTransactionSuccessful();
+    database.endTransaction();
+
+    Cursor cursor = database.rawQuery("SELECT id, name FROM routine ORDER BY id", null);
+    assertThat(cursor.getCount()).isEqualTo(3000);
+    for (int i = 0; i < 3000; i++) {
+      assertThat(cursor.moveToNext()).isTrue();
+      assertThat(cursor.getString(1)).isEqualTo(i + padding);
+    }
+    assertThat(cursor.moveToPosition(10)).isTrue();
+    assertThat(cursor.getLong(0)).isEqualTo(11);
+    cursor.close();
+  }
+
+  @Test
+  public void perConnectionWorkers_shouldKeepConnectionsIndependent() {
+    assume().that(SQLiteLibraryLoader.isOsSupported()).isTrue();
+    ShadowLegacySQLiteConnection.Connections perConnectionWorkers =
+        new ShadowLegacySQLiteConnection.Connections(true);
+    long first = perConnectionWorkers.open(":memory:");
+    long second = perConnectionWorkers.open(":memory:");
+
+    long create = perConnectionWorkers.prepareStatement(first, "CREATE TABLE t (x INTEGER)");
+    perConnectionWorkers.executeStatement(first, create);
+    long insert = perConnectionWorkers.prepareStatement(first, "INSERT INTO t VALUES (1)");
+    assertThat(perConnectionWorkers.executeForLastInsertedRowId(first, insert)).isEqualTo(1);
+    assertThrows(
+        android.database.sqlite.SQLiteException.class,
+        () -> perConnectionWorkers.prepareStatement(second, "SELECT x FROM t"));
+
+    perConnectionWorkers.close(first);
+    assertThrows(IllegalStateException.class, () -> perConnectionWorkers.getConnection(first));
+    assertThat(perConnectionWorkers.getConnection(second).isOpen()).isTrue();
+    perConnectionWorkers.reset();
+  }
+
   private SQLiteDatabase createDatabase(String filename) {
     databasePath = ApplicationProvider.getApplicationContext().getDatabasePath(filename);
     databasePath.getParentFile().mkdirs();
@@ -0,0 +1,57 @@
+package org.robolectric.shadows;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import dalvik.system.VMRuntime;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadow.api.Shadow;
+
+@RunWith(AndroidJUnit4.class)
+public class ShadowVMRuntimeTest {
+  private final ShadowVMRuntime shadowVMRuntime = Shadow.extract(VMRuntime.getRuntime());
+
+  @Test
+  public void addressOf_shouldReturnSameAddressForSameObject() {
+    int[] array = new int[4];
+
+    long address = VMRuntime.getRuntime().addressOf(array);
+
+    assertThat(VMRuntime.getRuntime().addressOf(array)).isEqualTo(address);
+    assertThat(shadowVMRuntime.getObjectForAddress(address)).isSameInstanceAs(array);
+  }
+
+  @Test
+  public void addressOf_shouldReturnDistinctAddressesForEqualObjects() {
+    int[] array1 = new int[4];
+    int[] array2 = new int[4];
+
+    long address1 = VMRuntime.getRuntime().addressOf(array1);
+    long address2 = VMRuntime.getRuntime().addressOf(array2);
+
+    assertThat(address1).isNotEqualTo(address2);
+    assertThat(shadowVMRuntime.getObjectForAddress(address1)).isSameInstanceAs(array1);
+    assertThat(shadowVMRuntime.getObjectForAddress(address2)).isSameInstanceAs(array2);
+  }
+
+  @Test
+  public void addressOf_shouldReclaimAddressesOfEnqueuedReferences() {
+    long liveAddressCount = shadowVMRuntime.getLiveAddressCount();
+    int[] firstArray = new int[4];
+    long firstAddress = VMRuntime.getRuntime().addressOf(firstArray);
+
+    // enqueueing a reference is what the garbage collector does once its object is collected
+    int[] array = firstArray;
+    for (int i = 0; i < 1000; i++) {
+      shadowVMRuntime.getAddressReference(array).enqueue();
+      array = new int[4];
+      VMRuntime.getRuntime().addressOf(array);
+    }
+
+    assertThat(shadowVMRuntime.getLiveAddressCount()).isAtMost(liveAddressCount + 1);
+    assertThrows(
+        NullPointerException.class, () -> shadowVMRuntime.getObjectForAddress(firstAddress));
+  }
+}
@@ -6,22 +6,107 @@ import java.util.Map;
 import java.util.WeakHashMap;
 
 /**
- * {@link java.lang.ClassValue} doesn't exist in Android, so provide a trivial impl.
+ * Lazily computes and caches a value per class.
  *
- * Note that if T contains references to Class, this won't really be weak. That's okay.
+ * <p>On the JVM this is backed by {@link java.lang.ClassValue}, which stores values on the class
+ * itself and so can be read without locking. {@link java.lang.ClassValue} doesn't exist on older
+ * versions of Android, so there a synchronized {@link WeakHashMap} is used instead.
+ *
+ * <p>Note that if T contains references to Class, this won't really be weak. That's okay.
  */
 abstract class ClassValueMap<T> {
-  private final Map<Class<?>, T> map = Collections.synchronizedMap(new WeakHashMap<>());
+  private static final boolean HAS_CLASS_VALUE = hasClassValue();
+
+  private final Storage<T> storage =
+      HAS_CLASS_VALUE ? new ClassValueStorage<>(this) : new WeakHashMapStorage<>(this);
 
   protected abstract T computeValue(Class<?> type);
 
-  @SuppressWarnings("AndroidJdkLibsChecker")
   public T get(Class<?> type) {
-    return map.computeIfAbsent(type, this::computeValue);
+    return storage.get(type);
   }
 
   @VisibleForTesting
   void clear() {
-    map.clear();
+    storage.clear();
+  }
+
+  private static boolean hasClassValue() {
+    try {
+      Class.forName("java.lang.ClassValue");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private interface Storage<T> {
+    T get(Class<?> type);
+
+    void clear();
+  }
+
+  /**
+   * Stores values using {@link ClassValue}. Kept in its own class so that it's never loaded where
+   * {@link ClassValue} isn't available.
+   */
+  private static class ClassValueStorage<T> implements Storage<T> {
+    private final ClassValueMap<T> owner;
+    private volatile ClassValue<T> classValue;
+
+    ClassValueStorage(ClassValueMap<T> owner) {
+      this.owner = owner;
+      this.classValue = newClassValue();
+    }
+
+    private ClassValue<T> newClassValue() {
+      return new ClassValue<T>() {
+        @Override
+        protected T computeValue(Class<?> type) {
+          return owner.computeValue(type);
+        }
+      };
+    }
+
+    @Override
+    public T get(Class<?> type) {
+      return classValue.get(type);
+    }
+
+    @Override
+    public void clear() {
+      // ClassValue can only remove values for known classes, so just start over.
+      classValue = newClassValue();
+    }
+  }
+
+  private static class WeakHashMapStorage<T> implements Storage<T> {
+    // null values are stored as NULL, since computeIfAbsent doesn't cache nulls
+    private static final Object NULL = new Object();
+
+    private final ClassValueMap<T> owner;
+    private final Map<Class<?>, Object> map = Collections.synchronizedMap(new WeakHashMap<>());
+
+    WeakHashMapStorage(ClassValueMap<T> owner) {
+      this.owner = owner;
+    }
+
+    @Override
+    @SuppressWarnings({"AndroidJdkLibsChecker", "unchecked"})
+    public T get(Class<?> type) {
+      Object value =
+          map.computeIfAbsent(
+              type,
+              t -> {
+                T computed = owner.computeValue(t);
+                return computed == null ? NULL : computed;
+              });
+      return value == NULL ? null : (T) value;
+    }
+
+    @Override
+    public void clear() {
+      map.clear();
+    }
   }
 }
@@ -13,6 +13,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.robolectric.annotation.internal.DoNotInstrument;
@@ -42,6 +44,15 @@ public class InstrumentationConfiguration {
   static final ImmutableSet<String> RESOURCES_TO_ALWAYS_ACQUIRE =
       ImmutableSet.of("build.prop", "usr/share/zoneinfo/tzdata");
 
+  private static final int MAX_CACHED_ACQUIRE_DECISIONS = 1 << 16;
+
+  // android.R and com.android.internal.R classes must be loaded from the framework jar
+  private static final Pattern FRAMEWORK_R_CLASS =
+      Pattern.compile("(android|com\\.android\\.internal)\\.R(\\$.+)?");
+
+  // R classes must be loaded from system CP
+  private static final Pattern R_CLASS = Pattern.compile(".*\\.R(|\\$[a-z]+)$");
+
   private final List<String> instrumentedPackages;
   private final Set<String> instrumentedClasses;
   private final Set<String> classesToNotInstrument;
@@ -51,7 +62,20 @@ public class InstrumentationConfiguration {
   private final Set<String> classesToNotAcquire;
   private final Set<String> packagesToNotAcquire;
   private final Set<String> packagesToNotInstrument;
+
+  // The rules above, compiled for matching. Every class loaded by a sandbox is checked against
+  // them, so each lookup should be independent of the number of configured packages.
+  private final PrefixTrie instrumentedPackagesTrie;
+  private final PrefixTrie packagesToNotInstrumentTrie;
+  private final PrefixTrie packagesToNotAcquireTrie;
+  private final Pattern classesToNotInstrumentPattern;
+  // Decisions for the classes that sandboxes using this configuration load, usually some thousands.
+  // The configuration lives as long as those sandboxes, so beyond the limit decisions are
+  // recomputed rather than cached, to bound the memory it retains.
+  private final Map<String, Boolean> shouldAcquireCache = new ConcurrentHashMap<>();
+
   private int cachedHashCode;
+  private String cachedFingerprint;
 
   private final TypeMapper typeMapper;
   private final Set<MethodRef> methodsToIntercept;
@@ -75,6 +99,11 @@ public class InstrumentationConfiguration {
     this.classesToNotInstrument = ImmutableSet.copyOf(classesToNotInstrument);
     this.packagesToNotInstrument = ImmutableSet.copyOf(packagesToNotInstrument);
     this.classesToNotInstrumentRegex = classesToNotInstrumentRegex;
+    this.instrumentedPackagesTrie = new PrefixTrie(this.instrumentedPackages);
+    this.packagesToNotInstrumentTrie = new PrefixTrie(this.packagesToNotInstrument);
+    this.packagesToNotAcquireTrie = new PrefixTrie(this.packagesToNotAcquire);
+    this.classesToNotInstrumentPattern =
+        classesToNotInstrumentRegex == null ? null : Pattern.compile(classesToNotInstrumentRegex);
     this.cachedHashCode = 0;
 
     this.typeMapper = new TypeMapper(classNameTranslations());
@@ -100,7 +129,8 @@ public class InstrumentationConfiguration {
   }
 
   private boolean classMatchesExclusionRegex(String className) {
-    return classesToNotInstrumentRegex != null && className.matches(classesToNotInstrumentRegex);
+    return classesToNotInstrumentPattern != null
+        && classesToNotInstrumentPattern.matcher(className).matches();
   }
 
   /**
@@ -110,6 +140,17 @@ public class InstrumentationConfiguration {
    * @return  True if the class should be loaded.
    */
   public boolean shouldAcquire(String name) {
+    Boolean cached = shouldAcquireCache.get(name);
+    if (cached == null) {
+      cached = computeShouldAcquire(name);
+      if (shouldAcquireCache.size() < MAX_CACHED_ACQUIRE_DECISIONS) {
+        shouldAcquireCache.put(name, cached);
+      }
+    }
+    return cached;
+  }
+
+  private boolean computeShouldAcquire(String name) {
     if (CLASSES_TO_ALWAYS_ACQUIRE.contains(name)) {
       return true;
     }
@@ -118,8 +159,7 @@ public class InstrumentationConfiguration {
       return true;
     }
 
-    // android.R and com.android.internal.R classes must be loaded from the framework jar
-    if (name.matches("(android|com\\.android\\.internal)\\.R(\\$.+)?")) {
+    if (FRAMEWORK_R_CLASS.matcher(name).matches()) {
       return true;
     }
 
@@ -129,12 +169,11 @@ public class InstrumentationConfiguration {
       return true;
     }
 
-    for (String packageName : packagesToNotAcquire) {
-      if (name.startsWith(packageName)) return false;
+    if (packagesToNotAcquireTrie.matchesPrefixOf(name)) {
+      return false;
     }
 
-    // R classes must be loaded from system CP
-    boolean isRClass = name.matches(".*\\.R(|\\$[a-z]+)$");
+    boolean isRClass = R_CLASS.matcher(name).matches();
     return !isRClass && !classesToNotAcquire.contains(name);
   }
 
@@ -162,21 +201,11 @@ public class InstrumentationConfiguration {
   }
 
   private boolean isInInstrumentedPackage(String className) {
-    for (String instrumentedPackage : instrumentedPackages) {
-      if (className.startsWith(instrumentedPackage)) {
-        return true;
-      }
-    }
-    return false;
+    return instrumentedPackagesTrie.matchesPrefixOf(className);
   }
 
   private boolean isInPackagesToNotInstrument(String className) {
-    for (String notInstrumentedPackage : packagesToNotInstrument) {
-      if (className.startsWith(notInstrumentedPackage)) {
-        return true;
-      }
-    }
-    return false;
+    return packagesToNotInstrumentTrie.matchesPrefixOf(className);
   }
 
   @Override
@@ -211,6 +240,36 @@ public class InstrumentationConfiguration {
     return result;
   }
 
+  /**
+   * Returns a stable string identifying every rule in this configuration, suitable for use as part
+   * of a persistent cache key. Unlike {@link #hashCode()}, this is identical across JVMs.
+   */
+  public String fingerprint() {
+    if (cachedFingerprint == null) {
+      StringBuilder sb = new StringBuilder();
+      appendSorted(sb, "instrumentedPackages", instrumentedPackages);
+      appendSorted(sb, "instrumentedClasses", instrumentedClasses);
+      appendSorted(sb, "classesToNotInstrument", classesToNotInstrument);
+      appendSorted(sb, "packagesToNotInstrument", packagesToNotInstrument);
+      appendSorted(sb, "classesToNotAcquire", classesToNotAcquire);
+      appendSorted(sb, "packagesToNotAcquire", packagesToNotAcquire);
+      appendSorted(sb, "classNameTranslations", classNameTranslations.entrySet());
+      appendSorted(sb, "interceptedMethods", interceptedMethods);
+      sb.append("classesToNotInstrumentRegex=").append(classesToNotInstrumentRegex);
+      cachedFingerprint = sb.toString();
+    }
+    return cachedFingerprint;
+  }
+
+  private static void appendSorted(StringBuilder sb, String name, Collection<?> values) {
+    List<String> sorted = new ArrayList<>();
+    for (Object value : values) {
+      sorted.add(String.valueOf(value));
+    }
+    Collections.sort(sorted);
+    sb.append(name).append('=').append(sorted).append(';');
+  }
+
   public String remapParamType(String desc) {
     return typeMapper.remapParamType(desc);
   }
@@ -0,0 +1,405 @@
+package org.robolectric.internal.bytecode;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.objectweb.asm.tree.ClassNode;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.Util;
+
+/**
+ * A persistent, content-addressed cache of instrumented class bytes.
+ *
+ * <p>Entries are keyed by a hash of the original class bytes and a salt describing everything else
+ * that influences instrumentation (the {@link InstrumentationConfiguration}, and the jars
+ * containing the instrumentor and ASM). Because keys are content-addressed, concurrent writers from
+ * different JVMs always produce identical entries; entries are written to a temporary file and
+ * atomically renamed into place so readers never observe partially-written files.
+ *
+ * <p>Stack map frames of instrumented classes depend on the hierarchy of the other classes they
+ * refer to, so each entry also records a hash of every class resolved through the {@link
+ * ClassNodeProvider} while instrumenting it. An entry is only reused if all of those classes are
+ * unchanged.
+ *
+ * <p>The cache is enabled by setting the {@code robolectric.instrumentedClassCacheDirectory} system
+ * property. Its size is bounded by {@code robolectric.instrumentedClassCacheMaxSizeMb} (512 MB by
+ * default); least recently used entries are evicted once the limit is exceeded.
+ */
+class InstrumentedClassCache {
+  static final String CACHE_DIRECTORY_PROPERTY = "robolectric.instrumentedClassCacheDirectory";
+  static final String CACHE_MAX_SIZE_PROPERTY = "robolectric.instrumentedClassCacheMaxSizeMb";
+  private static final long DEFAULT_MAX_SIZE_MB = 512;
+
+  /** Bumped whenever the on-disk format or keying scheme changes. */
+  private static final int CACHE_FORMAT_VERSION = 2;
+
+  private static final String ENTRY_SUFFIX = ".class";
+  private static final long TOUCH_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+  /** The hash recorded for dependencies which couldn't be found. */
+  static final String MISSING_DEPENDENCY = "missing";
+
+  private static final ConcurrentHashMap<Path, InstrumentedClassCache> INSTANCES =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, String> CODE_SOURCE_FINGERPRINTS =
+      new ConcurrentHashMap<>();
+
+  private final Path cacheDirectory;
+  private final long maxSizeBytes;
+  private final AtomicLong bytesWrittenSinceEviction = new AtomicLong();
+
+  InstrumentedClassCache(Path cacheDirectory, long maxSizeBytes) {
+    this.cacheDirectory = cacheDirectory;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the cache configured by system properties, or null if caching of instrumented classes
+   * is disabled. Instances are shared per cache directory within a JVM.
+   */
+  @Nullable
+  static InstrumentedClassCache fromSystemProperties() {
+    String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY, "");
+    if (Strings.isNullOrEmpty(directory)) {
+      return null;
+    }
+    long maxSizeMb =
+        Long.parseLong(
+            System.getProperty(CACHE_MAX_SIZE_PROPERTY, Long.toString(DEFAULT_MAX_SIZE_MB)));
+    Path path = Paths.get(directory).toAbsolutePath();
+    return INSTANCES.computeIfAbsent(
+        path,
+        p -> {
+          InstrumentedClassCache cache = new InstrumentedClassCache(p, maxSizeMb * 1024 * 1024);
+          // Evict once up front so a cache shared by many runs can't grow unbounded.
+          cache.evictIfNecessary();
+          return cache;
+        });
+  }
+
+  /**
+   * Computes the cache key for a class.
+   *
+   * @param originalClassBytes the uninstrumented class bytes
+   * @param salt a string describing everything other than the class bytes that affects the
+   *     instrumented output
+   */
+  static String keyFor(byte[] originalClassBytes, String salt) {
+    return Hashing.sha256()
+        .newHasher()
+        .putInt(CACHE_FORMAT_VERSION)
+        .putString(salt, StandardCharsets.UTF_8)
+        .putBytes(originalClassBytes)
+        .hash()
+        .toString();
+  }
+
+  /**
+   * Computes a fingerprint of the code that performs instrumentation, so that entries written by a
+   * different Robolectric version (or a locally modified instrumentor) are never reused.
+   *
+   * <p>This covers the whole jar (or class directory) each of the given classes was loaded from, so
+   * that changes to any helper of the instrumentor are detected too.
+   */
+  static String fingerprintOf(Class<?>... classes) {
+    Set<String> locations = new TreeSet<>();
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Class<?> clazz : classes) {
+      CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+      Path location = codeSource == null ? null : toPath(codeSource.getLocation());
+      if (location == null) {
+        hasher.putString(clazz.getName(), StandardCharsets.UTF_8);
+        hasher.putBytes(classBytesOf(clazz));
+      } else {
+        locations.add(location.toString());
+      }
+    }
+    for (String location : locations) {
+      hasher.putString(
+          CODE_SOURCE_FINGERPRINTS.computeIfAbsent(
+              location, l -> fingerprintOfCodeSource(Paths.get(l))),
+          StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static String fingerprintOfCodeSource(Path location) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    try {
+      if (Files.isDirectory(location)) {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(location)) {
+          files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+          hasher.putString(location.relativize(file).toString(), StandardCharsets.UTF_8);
+          hasher.putBytes(Files.readAllBytes(file));
+        }
+      } else {
+        hasher.putBytes(Files.readAllBytes(location));
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("couldn't read " + location, e);
+    }
+    return hasher.hash().toString();
+  }
+
+  @Nullable
+  private static Path toPath(@Nullable URL url) {
+    if (url == null || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    try {
+      Path path = Paths.get(url.toURI());
+      return Files.exists(path) ? path : null;
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static byte[] classBytesOf(Class<?> clazz) {
+    String resourceName = clazz.getName().replace('.', '/') + ".class";
+    ClassLoader classLoader = clazz.getClassLoader();
+    try (InputStream in =
+        classLoader == null
+            ? ClassLoader.getSystemResourceAsStream(resourceName)
+            : classLoader.getResourceAsStream(resourceName)) {
+      return in == null ? new byte[0] : Util.readBytes(in);
+    } catch (IOException e) {
+      throw new IllegalStateException("couldn't read " + resourceName, e);
+    }
+  }
+
+  /** Returns the hash recorded for a dependency with the given class bytes. */
+  static String dependencyHash(byte[] classBytes) {
+    return Hashing.sha256().hashBytes(classBytes).toString();
+  }
+
+  /**
+   * Returns the cached instrumented bytes for {@code key}, or null if there is no entry, or if any
+   * of the dependencies recorded for the entry has changed.
+   *
+   * @param dependencyHashes returns the current {@link #dependencyHash} of a class, given its
+   *     internal name, or {@link #MISSING_DEPENDENCY} if it can't be found
+   */
+  @Nullable
+  byte[] get(String key, Function<String, String> dependencyHashes) {
+    Path entry = entryPath(key);
+    try (DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(entry)))) {
+      int dependencyCount = in.readInt();
+      for (int i = 0; i < dependencyCount; i++) {
+        String className = in.readUTF();
+        String hash = in.readUTF();
+        if (!hash.equals(dependencyHashes.apply(className))) {
+          PerfStatsCollector.getInstance().incrementCount("instrumented class cache stale");
+          return null;
+        }
+      }
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      maybeTouch(entry);
+      PerfStatsCollector.getInstance().incrementCount("instrumented class cache hit");
+      return bytes;
+    } catch (NoSuchFileException e) {
+      PerfStatsCollector.getInstance().incrementCount("instrumented class cache miss");
+      return null;
+    } catch (IOException e) {
+      Logger.debug("couldn't read instrumented class cache entry %s: %s", entry, e);
+      PerfStatsCollector.getInstance().incrementCount("instrumented class cache miss");
+      return null;
+    }
+  }
+
+  /**
+   * Stores the instrumented bytes for {@code key}. Failures are logged and otherwise ignored, since
+   * the cache is purely an optimization.
+   *
+   * @param dependencyHashes the {@link #dependencyHash} of each class resolved while instrumenting,
+   *     by internal name
+   */
+  void put(String key, Map<String, String> dependencyHashes, byte[] instrumentedBytes) {
+    Path entry = entryPath(key);
+    Path tempFile = null;
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(instrumentedBytes.length + 256);
+      try (DataOutputStream out = new DataOutputStream(buffer)) {
+        out.writeInt(dependencyHashes.size());
+        for (Map.Entry<String, String> dependency : new TreeMap<>(dependencyHashes).entrySet()) {
+          out.writeUTF(dependency.getKey());
+          out.writeUTF(dependency.getValue());
+        }
+        out.writeInt(instrumentedBytes.length);
+        out.write(instrumentedBytes);
+      }
+
+      Files.createDirectories(entry.getParent());
+      tempFile = Files.createTempFile(entry.getParent(), key, ".tmp");
+      Files.write(tempFile, buffer.toByteArray());
+      try {
+        Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+      tempFile = null;
+    } catch (IOException e) {
+      Logger.debug("couldn't write instrumented class cache entry %s: %s", entry, e);
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+
+    if (bytesWrittenSinceEviction.addAndGet(instrumentedBytes.length) > maxSizeBytes / 10) {
+      bytesWrittenSinceEviction.set(0);
+      evictIfNecessary();
+    }
+  }
+
+  /**
+   * Deletes least recently used entries until the cache fits within its size budget. Safe to call
+   * concurrently from several JVMs; entries that disappear while evicting are skipped.
+   */
+  void evictIfNecessary() {
+    if (!Files.isDirectory(cacheDirectory)) {
+      return;
+    }
+    List<Entry> entries = new ArrayList<>();
+    long totalSize = 0;
+    try (Stream<Path> paths = Files.walk(cacheDirectory, 2)) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        if (!path.getFileName().toString().endsWith(ENTRY_SUFFIX)) {
+          continue;
+        }
+        try {
+          BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+          entries.add(new Entry(path, attrs.size(), attrs.lastModifiedTime().toMillis()));
+          totalSize += attrs.size();
+        } catch (IOException e) {
+          // deleted concurrently, ignore
+        }
+      }
+    } catch (IOException e) {
+      Logger.debug("couldn't scan instrumented class cache %s: %s", cacheDirectory, e);
+      return;
+    }
+
+    if (totalSize <= maxSizeBytes) {
+      return;
+    }
+
+    entries.sort(Comparator.comparingLong(entry -> entry.lastModifiedMs));
+    int evicted = 0;
+    for (Entry entry : entries) {
+      if (totalSize <= maxSizeBytes) {
+        break;
+      }
+      try {
+        Files.deleteIfExists(entry.path);
+        evicted++;
+      } catch (IOException e) {
+        // ignore, another JVM may be evicting at the same time
+      }
+      totalSize -= entry.size;
+    }
+    if (evicted > 0) {
+      PerfStatsCollector.getInstance()
+          .incrementCount("instrumented class cache evictions", evicted);
+    }
+    Logger.debug("evicted %d entries from instrumented class cache %s", evicted, cacheDirectory);
+  }
+
+  Path entryPath(String key) {
+    return cacheDirectory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+  }
+
+  /** Updates the entry's modification time (coarsely, to limit I/O) so eviction is LRU. */
+  private static void maybeTouch(Path entry) {
+    try {
+      long now = System.currentTimeMillis();
+      if (now - Files.getLastModifiedTime(entry).toMillis() > TOUCH_INTERVAL_MS) {
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(now));
+      }
+    } catch (IOException e) {
+      // ignore, the entry may have been evicted concurrently
+    }
+  }
+
+  /**
+   * A {@link ClassNodeProvider} which records the classes resolved through it while instrumenting a
+   * single class, so that they can be stored as the dependencies of its cache entry.
+   */
+  static class DependencyRecordingClassNodeProvider extends ClassNodeProvider {
+    private final ClassNodeProvider delegate;
+    private final Set<String> classNames = ConcurrentHashMap.newKeySet();
+
+    DependencyRecordingClassNodeProvider(ClassNodeProvider delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    ClassNode getClassNode(String internalClassName) throws ClassNotFoundException {
+      classNames.add(internalClassName);
+      return delegate.getClassNode(internalClassName);
+    }
+
+    @Override
+    protected byte[] getClassBytes(String className) throws ClassNotFoundException {
+      return delegate.getClassBytes(className);
+    }
+
+    /** Returns the internal names of the classes resolved so far. */
+    Set<String> getClassNames() {
+      return classNames;
+    }
+  }
+
+  private static class Entry {
+    private final Path path;
+    private final long size;
+    private final long lastModifiedMs;
+
+    Entry(Path path, long size, long lastModifiedMs) {
+      this.path = path;
+      this.size = size;
+      this.lastModifiedMs = lastModifiedMs;
+    }
+  }
+}
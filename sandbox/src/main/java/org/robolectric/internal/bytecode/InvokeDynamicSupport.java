@@ -19,6 +19,7 @@ import java.lang.invoke.MethodType;
 import java.lang.invoke.SwitchPoint;
 import java.lang.invoke.WrongMethodTypeException;
 import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
 import org.robolectric.util.ReflectionHelpers;
 
 @SuppressWarnings("RethrowReflectiveOperationExceptionAsLinkageError")
@@ -31,6 +32,15 @@ public class InvokeDynamicSupport {
   private static final MethodHandle EXCEPTION_HANDLER;
   private static final MethodHandle GET_SHADOW;
 
+  private static final MetricHandle BOOTSTRAP_INIT_METRIC =
+      PerfStatsCollector.getInstance().getMetricHandle("invokedynamic bootstrap init");
+  private static final MetricHandle BOOTSTRAP_METRIC =
+      PerfStatsCollector.getInstance().getMetricHandle("invokedynamic bootstrap");
+  private static final MetricHandle BOOTSTRAP_STATIC_METRIC =
+      PerfStatsCollector.getInstance().getMetricHandle("invokedynamic bootstrap static");
+  private static final MetricHandle BOOTSTRAP_INTRINSIC_METRIC =
+      PerfStatsCollector.getInstance().getMetricHandle("invokedynamic bootstrap intrinsic");
+
   /**
    * Represents the boolean 'true' as an integer. Due to a JVM bug, invokedynamic bootstrap methods
    * currently do not support extra primitive boolean parameters. Integers are required to convey
@@ -70,16 +80,14 @@ public class InvokeDynamicSupport {
 
   @SuppressWarnings("UnusedDeclaration")
   public static CallSite bootstrapInit(MethodHandles.Lookup caller, String name, MethodType type) {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap init",
-            () -> {
-              RoboCallSite site = new RoboCallSite(type, caller.lookupClass());
+    return BOOTSTRAP_INIT_METRIC.measure(
+        () -> {
+          RoboCallSite site = new RoboCallSite(type, caller.lookupClass());
 
-              bindInitCallSite(site);
+          bindInitCallSite(site);
 
-              return site;
-            });
+          return site;
+        });
   }
 
   @SuppressWarnings("UnusedDeclaration")
@@ -90,23 +98,21 @@ public class InvokeDynamicSupport {
       MethodHandle original,
       int isNative /* 1 == originally native, 0 == not originally native */)
       throws IllegalAccessException {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap",
-            () -> {
-              MethodCallSite site =
-                  new MethodCallSite(
-                      caller.lookupClass(),
-                      type,
-                      name,
-                      original,
-                      REGULAR,
-                      isNative == BOOLEAN_TRUE);
-
-              bindCallSite(site);
-
-              return site;
-            });
+    return BOOTSTRAP_METRIC.measure(
+        () -> {
+          MethodCallSite site =
+              new MethodCallSite(
+                  caller.lookupClass(),
+                  type,
+                  name,
+                  original,
+                  REGULAR,
+                  isNative == BOOLEAN_TRUE);
+
+          bindCallSite(site);
+
+          return site;
+        });
   }
 
   @SuppressWarnings("UnusedDeclaration")
@@ -117,35 +123,31 @@ public class InvokeDynamicSupport {
       MethodHandle original,
       int isNative /* 1 == originally native, 0 == not originally native */)
       throws IllegalAccessException {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap static",
-            () -> {
-              MethodCallSite site =
-                  new MethodCallSite(
-                      caller.lookupClass(), type, name, original, STATIC, isNative == BOOLEAN_TRUE);
-
-              bindCallSite(site);
-
-              return site;
-            });
+    return BOOTSTRAP_STATIC_METRIC.measure(
+        () -> {
+          MethodCallSite site =
+              new MethodCallSite(
+                  caller.lookupClass(), type, name, original, STATIC, isNative == BOOLEAN_TRUE);
+
+          bindCallSite(site);
+
+          return site;
+        });
   }
 
   @SuppressWarnings("UnusedDeclaration")
   public static CallSite bootstrapIntrinsic(
       MethodHandles.Lookup caller, String name, MethodType type, String callee)
       throws IllegalAccessException {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap intrinsic",
-            () -> {
-              MethodHandle mh = getMethodHandle(callee, name, type);
-              if (mh == null) {
-                throw new IllegalArgumentException(
-                    "Could not find intrinsic for " + callee + ":" + name);
-              }
-              return new ConstantCallSite(mh.asType(type));
-            });
+    return BOOTSTRAP_INTRINSIC_METRIC.measure(
+        () -> {
+          MethodHandle mh = getMethodHandle(callee, name, type);
+          if (mh == null) {
+            throw new IllegalArgumentException(
+                "Could not find intrinsic for " + callee + ":" + name);
+          }
+          return new ConstantCallSite(mh.asType(type));
+        });
   }
 
   private static final MethodHandle NOTHING =
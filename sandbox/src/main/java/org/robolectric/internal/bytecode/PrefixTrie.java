@@ -0,0 +1,71 @@
+package org.robolectric.internal.bytecode;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable set of string prefixes that can tell whether a string starts with any of them in time
+ * proportional to the length of the matched prefix, independent of the number of prefixes.
+ */
+final class PrefixTrie {
+  private final Node root = new Node();
+
+  PrefixTrie(Collection<String> prefixes) {
+    for (String prefix : prefixes) {
+      Node node = root;
+      for (int i = 0; i < prefix.length(); i++) {
+        node = node.getOrAddChild(prefix.charAt(i));
+      }
+      node.terminal = true;
+    }
+  }
+
+  /** Returns true if {@code s} starts with any of the prefixes, i.e. {@code s.startsWith(p)}. */
+  boolean matchesPrefixOf(String s) {
+    Node node = root;
+    for (int i = 0; ; i++) {
+      if (node.terminal) {
+        return true;
+      }
+      if (i == s.length()) {
+        return false;
+      }
+      node = node.getChild(s.charAt(i));
+      if (node == null) {
+        return false;
+      }
+    }
+  }
+
+  private static final class Node {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    // package names branch very little, so a linear scan beats hashing here
+    private char[] keys = NO_KEYS;
+    private Node[] children = NO_CHILDREN;
+    private boolean terminal;
+
+    Node getChild(char c) {
+      char[] keys = this.keys;
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == c) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    Node getOrAddChild(char c) {
+      Node child = getChild(c);
+      if (child == null) {
+        child = new Node();
+        keys = Arrays.copyOf(keys, keys.length + 1);
+        children = Arrays.copyOf(children, children.length + 1);
+        keys[keys.length - 1] = c;
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+  }
+}
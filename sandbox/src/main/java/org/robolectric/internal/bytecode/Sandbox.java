@@ -122,6 +122,14 @@ public class Sandbox {
     }
   }
 
+  /**
+   * Returns true if the main thread has finished running, which is only the case after {@link
+   * #shutdown()} unless the main thread was still busy when it gave up waiting.
+   */
+  protected boolean isMainThreadTerminated() {
+    return executorService.isTerminated();
+  }
+
   public <T> T runOnMainThread(Callable<T> callable) {
     Future<T> future = executorService.submit(callable);
     try {
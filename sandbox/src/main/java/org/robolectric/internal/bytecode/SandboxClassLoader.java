@@ -15,10 +15,19 @@ import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.tree.ClassNode;
+import org.robolectric.annotation.Implements;
+import org.robolectric.internal.ShadowResetTracker;
 import org.robolectric.util.Logger;
 import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
 import org.robolectric.util.Util;
 
 /**
@@ -29,12 +38,17 @@ public class SandboxClassLoader extends URLClassLoader {
   // The directory where instrumented class files will be dumped
   private static final String DUMP_CLASSES_PROPERTY = "robolectric.dumpClassesDirectory";
   private static final AtomicInteger DUMP_CLASSES_COUNTER = new AtomicInteger();
+  private static final MetricHandle LOAD_SANDBOXED_CLASS_METRIC =
+      PerfStatsCollector.getInstance().getMetricHandle("load sandboxed class");
 
   private final InstrumentationConfiguration config;
   private final ResourceProvider resourceProvider;
   private final ClassInstrumentor classInstrumentor;
   private final ClassNodeProvider classNodeProvider;
   private final String dumpClassesDirectory;
+  private final InstrumentedClassCache instrumentedClassCache;
+  private String instrumentedClassCacheSalt;
+  private final Map<String, String> dependencyHashes = new ConcurrentHashMap<>();
   private boolean isClosed;
 
   /** Constructor for use by tests. */
@@ -74,6 +88,7 @@ public class SandboxClassLoader extends URLClassLoader {
           }
         };
     this.dumpClassesDirectory = System.getProperty(DUMP_CLASSES_PROPERTY, "");
+    this.instrumentedClassCache = InstrumentedClassCache.fromSystemProperties();
   }
 
   private static URL[] getClassPathUrls(ClassLoader classloader) {
@@ -131,9 +146,7 @@ public class SandboxClassLoader extends URLClassLoader {
         throw new ClassNotFoundException("This ClassLoader is closed");
       }
       if (config.shouldAcquire(name)) {
-        loadedClass =
-            PerfStatsCollector.getInstance()
-                .measure("load sandboxed class", () -> maybeInstrumentClass(name));
+        loadedClass = LOAD_SANDBOXED_CLASS_METRIC.measure(() -> maybeInstrumentClass(name));
       } else {
         loadedClass = getParent().loadClass(name);
       }
@@ -150,14 +163,17 @@ public class SandboxClassLoader extends URLClassLoader {
     final byte[] origClassBytes = getByteCode(className);
 
     try {
-      final byte[] bytes;
+      byte[] bytes;
       ClassDetails classDetails = new ClassDetails(origClassBytes);
       if (config.shouldInstrument(classDetails)) {
-        bytes = classInstrumentor.instrument(classDetails, config, classNodeProvider);
+        bytes = instrumentPreferringCache(classDetails);
         maybeDumpClassBytes(classDetails, bytes);
       } else {
         bytes = postProcessUninstrumentedClass(classDetails);
       }
+      if (ShadowResetTracker.isEnabled() && classDetails.hasAnnotation(Implements.class)) {
+        bytes = ShadowDirtyMarker.markStaticFieldAccesses(bytes);
+      }
       ensurePackage(className);
       return defineClass(className, bytes, 0, bytes.length);
     } catch (Exception e) {
@@ -168,6 +184,65 @@ public class SandboxClassLoader extends URLClassLoader {
     }
   }
 
+  private byte[] instrumentPreferringCache(ClassDetails classDetails) {
+    if (instrumentedClassCache == null) {
+      return classInstrumentor.instrument(classDetails, config, classNodeProvider);
+    }
+    String salt = getInstrumentedClassCacheSalt();
+    String key = InstrumentedClassCache.keyFor(classDetails.getClassBytes(), salt);
+    byte[] bytes = instrumentedClassCache.get(key, this::getDependencyHash);
+    if (bytes == null) {
+      InstrumentedClassCache.DependencyRecordingClassNodeProvider recordingClassNodeProvider =
+          new InstrumentedClassCache.DependencyRecordingClassNodeProvider(classNodeProvider);
+      bytes = classInstrumentor.instrument(classDetails, config, recordingClassNodeProvider);
+      Map<String, String> dependencyHashes = new HashMap<>();
+      for (String className : recordingClassNodeProvider.getClassNames()) {
+        dependencyHashes.put(className, getDependencyHash(className));
+      }
+      instrumentedClassCache.put(key, dependencyHashes, bytes);
+    }
+    return bytes;
+  }
+
+  private String getDependencyHash(String internalClassName) {
+    return dependencyHashes.computeIfAbsent(
+        internalClassName,
+        className -> {
+          try {
+            return InstrumentedClassCache.dependencyHash(getByteCode(className));
+          } catch (ClassNotFoundException e) {
+            return InstrumentedClassCache.MISSING_DEPENDENCY;
+          }
+        });
+  }
+
+  private String getInstrumentedClassCacheSalt() {
+    if (instrumentedClassCacheSalt == null) {
+      instrumentedClassCacheSalt =
+          InstrumentedClassCache.fingerprintOf(
+                  ClassInstrumentor.class,
+                  classInstrumentor.getClass(),
+                  classInstrumentor.decorator.getClass(),
+                  ClassWriter.class,
+                  GeneratorAdapter.class,
+                  ClassNode.class)
+              + ";"
+              + config.fingerprint()
+              + ";"
+              + getInstrumentedClassCacheQualifier();
+    }
+    return instrumentedClassCacheSalt;
+  }
+
+  /**
+   * Returns a string identifying any additional state that affects instrumentation in this class
+   * loader (e.g. the SDK level), used to qualify entries in the persistent instrumented class
+   * cache.
+   */
+  protected String getInstrumentedClassCacheQualifier() {
+    return "";
+  }
+
   private void maybeDumpClassBytes(ClassDetails classDetails, byte[] classBytes) {
     if (!Strings.isNullOrEmpty(dumpClassesDirectory)) {
       String outputClassName =
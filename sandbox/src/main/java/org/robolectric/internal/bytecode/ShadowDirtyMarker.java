@@ -0,0 +1,96 @@
+package org.robolectric.internal.bytecode;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.robolectric.internal.ShadowResetTracker;
+
+/**
+ * Rewrites a shadow class so that every read or write of one of its own mutable static fields first
+ * calls {@link ShadowResetTracker#markDirty(Class)}.
+ *
+ * <p>Marking the shadow from its own code, rather than from the call sites which the class handler
+ * binds, also covers static {@code @Implementation} methods that are called directly, and methods
+ * called on a shadow obtained with {@code Shadow.extract}. Static final fields of primitive or
+ * {@link String} type can't change, so accessing them doesn't mark the shadow.
+ */
+final class ShadowDirtyMarker extends ClassVisitor {
+  private static final String TRACKER_INTERNAL_NAME =
+      Type.getInternalName(ShadowResetTracker.class);
+  private static final String MARK_DIRTY_DESCRIPTOR =
+      Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Class.class));
+
+  private final Set<String> immutableFields = new HashSet<>();
+  private String className;
+
+  private ShadowDirtyMarker(ClassVisitor classVisitor) {
+    super(Opcodes.ASM9, classVisitor);
+  }
+
+  /** Returns the bytes of the given shadow class, rewritten to mark itself dirty. */
+  static byte[] markStaticFieldAccesses(byte[] classBytes) {
+    ClassReader classReader = new ClassReader(classBytes);
+    // the inserted calls don't change the stack at branch targets, so frames stay valid
+    ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPUTE_MAXS);
+    classReader.accept(new ShadowDirtyMarker(classWriter), 0);
+    return classWriter.toByteArray();
+  }
+
+  @Override
+  public void visit(
+      int version,
+      int access,
+      String name,
+      String signature,
+      String superName,
+      String[] interfaces) {
+    className = name;
+    super.visit(version, access, name, signature, superName, interfaces);
+  }
+
+  @Override
+  public FieldVisitor visitField(
+      int access, String name, String descriptor, String signature, Object value) {
+    int sort = Type.getType(descriptor).getSort();
+    boolean immutableType =
+        (sort != Type.OBJECT && sort != Type.ARRAY) || descriptor.equals("Ljava/lang/String;");
+    if ((access & Opcodes.ACC_STATIC) != 0 && (access & Opcodes.ACC_FINAL) != 0 && immutableType) {
+      immutableFields.add(name);
+    }
+    return super.visitField(access, name, descriptor, signature, value);
+  }
+
+  @Override
+  public MethodVisitor visitMethod(
+      int access, String name, String descriptor, String signature, String[] exceptions) {
+    MethodVisitor methodVisitor =
+        super.visitMethod(access, name, descriptor, signature, exceptions);
+    if (name.equals("<clinit>")) {
+      // shadows start out dirty
+      return methodVisitor;
+    }
+    return new MethodVisitor(Opcodes.ASM9, methodVisitor) {
+      @Override
+      public void visitFieldInsn(int opcode, String owner, String fieldName, String fieldDesc) {
+        if ((opcode == Opcodes.GETSTATIC || opcode == Opcodes.PUTSTATIC)
+            && owner.equals(className)
+            && !immutableFields.contains(fieldName)) {
+          super.visitLdcInsn(Type.getObjectType(className));
+          super.visitMethodInsn(
+              Opcodes.INVOKESTATIC,
+              TRACKER_INTERNAL_NAME,
+              "markDirty",
+              MARK_DIRTY_DESCRIPTOR,
+              /* isInterface= */ false);
+        }
+        super.visitFieldInsn(opcode, owner, fieldName, fieldDesc);
+      }
+    };
+  }
+}
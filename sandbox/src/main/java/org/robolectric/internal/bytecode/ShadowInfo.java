@@ -1,8 +1,12 @@
 package org.robolectric.internal.bytecode;
 
 import java.util.Objects;
+import javax.annotation.Nullable;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Implements.DefaultShadowPicker;
+import org.robolectric.internal.IndexedShadow;
+import org.robolectric.internal.IndexedShadow.IndexedMethod;
+import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.shadow.api.ShadowPicker;
 
 @SuppressWarnings("NewApi")
@@ -17,6 +21,8 @@ public class ShadowInfo {
   private final int minSdk;
   private final int maxSdk;
   private final Class<? extends ShadowPicker<?>> shadowPickerClass;
+  // null if the shadow class wasn't summarized at build time
+  @Nullable private final IndexedShadow indexedShadow;
 
   ShadowInfo(
       String shadowedClassName,
@@ -27,6 +33,28 @@ public class ShadowInfo {
       int minSdk,
       int maxSdk,
       Class<? extends ShadowPicker<?>> shadowPickerClass) {
+    this(
+        shadowedClassName,
+        shadowClassName,
+        callThroughByDefault,
+        callNativeMethodsByDefault,
+        looseSignatures,
+        minSdk,
+        maxSdk,
+        shadowPickerClass,
+        null);
+  }
+
+  private ShadowInfo(
+      String shadowedClassName,
+      String shadowClassName,
+      boolean callThroughByDefault,
+      boolean callNativeMethodsByDefault,
+      boolean looseSignatures,
+      int minSdk,
+      int maxSdk,
+      Class<? extends ShadowPicker<?>> shadowPickerClass,
+      @Nullable IndexedShadow indexedShadow) {
     this.shadowedClassName = shadowedClassName;
     this.shadowClassName = shadowClassName;
     this.callThroughByDefault = callThroughByDefault;
@@ -38,6 +66,7 @@ public class ShadowInfo {
         DefaultShadowPicker.class.equals(shadowPickerClass)
             ? null
             : shadowPickerClass;
+    this.indexedShadow = indexedShadow;
   }
 
   ShadowInfo(String shadowedClassName, String shadowClassName, Implements annotation) {
@@ -52,6 +81,20 @@ public class ShadowInfo {
         annotation.shadowPicker());
   }
 
+  /** Creates a ShadowInfo from a build-time summary, without loading the shadow class. */
+  static ShadowInfo fromIndex(String shadowClassName, IndexedShadow indexedShadow) {
+    return new ShadowInfo(
+        indexedShadow.shadowedClassName,
+        shadowClassName,
+        indexedShadow.callThroughByDefault,
+        indexedShadow.callNativeMethodsByDefault,
+        indexedShadow.looseSignatures,
+        indexedShadow.minSdk,
+        indexedShadow.maxSdk,
+        null,
+        indexedShadow);
+  }
+
   public boolean supportsSdk(int sdkInt) {
     return minSdk <= sdkInt && (maxSdk == -1 || maxSdk >= sdkInt);
   }
@@ -60,6 +103,29 @@ public class ShadowInfo {
     return shadowedClassName.equals(clazz.getName());
   }
 
+  /**
+   * Returns false if the build-time summary of the shadow class shows that neither it nor its
+   * superclasses declare a public or protected method with the given name and parameter types (or
+   * a loose signature of the same arity) which {@code shadowMatcher} accepts, in which case the
+   * shadow class can't shadow such a method.
+   */
+  boolean mayImplementMethod(String name, Class<?>[] paramTypes, ShadowMatcher shadowMatcher) {
+    if (indexedShadow == null || !indexedShadow.hasMethods()) {
+      return true;
+    }
+    String descriptor = null;
+    for (IndexedMethod method : indexedShadow.getMethods(name)) {
+      if (descriptor == null) {
+        descriptor = IndexedShadow.getParameterDescriptor(paramTypes);
+      }
+      if (method.acceptsParameters(descriptor, paramTypes.length)
+          && shadowMatcher.matchesSdkRange(method.minSdk, method.maxSdk)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public boolean hasShadowPicker() {
     return shadowPickerClass != null && !DefaultShadowPicker.class.equals(shadowPickerClass);
   }
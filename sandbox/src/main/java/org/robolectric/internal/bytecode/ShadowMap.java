@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.robolectric.annotation.Implements;
+import org.robolectric.internal.IndexedShadow;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.shadow.api.ShadowPicker;
@@ -31,6 +32,7 @@ public class ShadowMap {
   static final ShadowMap EMPTY = new ShadowMap(ImmutableListMultimap.of(), ImmutableMap.of());
 
   private final ImmutableListMultimap<String, String> defaultShadows;
+  private final ImmutableMap<String, IndexedShadow> indexedShadows;
   private final ImmutableMap<String, ShadowInfo> overriddenShadows;
   private final ImmutableMap<String, String> shadowPickers;
 
@@ -38,6 +40,7 @@ public class ShadowMap {
   public static ShadowMap createFromShadowProviders(List<ShadowProvider> sortedProviders) {
     final ArrayListMultimap<String, String> shadowMap = ArrayListMultimap.create();
     final Map<String, String> shadowPickerMap = new HashMap<>();
+    final Map<String, IndexedShadow> indexedShadows = new HashMap<>();
 
     // These are sorted in descending order (higher priority providers are first).
     for (ShadowProvider provider : sortedProviders) {
@@ -46,9 +49,11 @@ public class ShadowMap {
         shadowMap.put(entry.getKey(), entry.getValue());
       }
       provider.getShadowPickerMap().forEach(shadowPickerMap::putIfAbsent);
+      provider.getIndexedShadows().forEach(indexedShadows::putIfAbsent);
     }
     return new ShadowMap(
         ImmutableListMultimap.copyOf(shadowMap),
+        ImmutableMap.copyOf(indexedShadows),
         Collections.emptyMap(),
         ImmutableMap.copyOf(shadowPickerMap));
   }
@@ -56,14 +61,16 @@ public class ShadowMap {
   ShadowMap(
       ImmutableListMultimap<String, String> defaultShadows,
       Map<String, ShadowInfo> overriddenShadows) {
-    this(defaultShadows, overriddenShadows, Collections.emptyMap());
+    this(defaultShadows, ImmutableMap.of(), overriddenShadows, Collections.emptyMap());
   }
 
   private ShadowMap(
       ImmutableListMultimap<String, String> defaultShadows,
+      ImmutableMap<String, IndexedShadow> indexedShadows,
       Map<String, ShadowInfo> overriddenShadows,
       Map<String, String> shadowPickers) {
     this.defaultShadows = ImmutableListMultimap.copyOf(defaultShadows);
+    this.indexedShadows = indexedShadows;
     this.overriddenShadows = ImmutableMap.copyOf(overriddenShadows);
     this.shadowPickers = ImmutableMap.copyOf(shadowPickers);
   }
@@ -87,8 +94,14 @@ public class ShadowMap {
         final ImmutableList<String> shadowNames = defaultShadows.get(clazz.getCanonicalName());
         for (String shadowName : shadowNames) {
           if (shadowName != null) {
-            Class<?> shadowClass = clazz.getClassLoader().loadClass(shadowName);
-            shadowInfo = obtainShadowInfo(shadowClass);
+            IndexedShadow indexedShadow = indexedShadows.get(shadowName);
+            if (indexedShadow != null) {
+              // summarized at build time, so there's no need to load the shadow class yet
+              shadowInfo = ShadowInfo.fromIndex(shadowName, indexedShadow);
+            } else {
+              Class<?> shadowClass = clazz.getClassLoader().loadClass(shadowName);
+              shadowInfo = obtainShadowInfo(shadowClass);
+            }
             if (!shadowInfo.shadowedClassName.equals(instrumentedClassName)) {
               // somehow we got the wrong shadow class?
               shadowInfo = null;
@@ -233,17 +246,20 @@ public class ShadowMap {
 
   public static class Builder {
     private final ImmutableListMultimap<String, String> defaultShadows;
+    private final ImmutableMap<String, IndexedShadow> indexedShadows;
     private final Map<String, ShadowInfo> overriddenShadows;
     private final Map<String, String> shadowPickers;
 
     public Builder() {
       defaultShadows = ImmutableListMultimap.of();
+      indexedShadows = ImmutableMap.of();
       overriddenShadows = new HashMap<>();
       shadowPickers = new HashMap<>();
     }
 
     public Builder(ShadowMap shadowMap) {
       this.defaultShadows = shadowMap.defaultShadows;
+      this.indexedShadows = shadowMap.indexedShadows;
       this.overriddenShadows = new HashMap<>(shadowMap.overriddenShadows);
       this.shadowPickers = new HashMap<>(shadowMap.shadowPickers);
     }
@@ -288,7 +304,7 @@ public class ShadowMap {
     }
 
     public ShadowMap build() {
-      return new ShadowMap(defaultShadows, overriddenShadows, shadowPickers);
+      return new ShadowMap(defaultShadows, indexedShadows, overriddenShadows, shadowPickers);
     }
   }
 }
@@ -0,0 +1,89 @@
+package org.robolectric.internal.bytecode;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.robolectric.sandbox.ShadowMatcher;
+
+/**
+ * Lookup table of the methods declared on a single shadow class that may implement a shadowed
+ * method, i.e. public or protected methods accepted by the {@link ShadowMatcher}.
+ *
+ * <p>Building the index costs one {@link Class#getDeclaredMethods()} call per shadow class;
+ * afterwards, each lookup only compares the parameter types of the methods with the requested
+ * name, instead of copying and scanning every declared method of the shadow.
+ */
+class ShadowMethodIndex {
+  private final Map<String, Candidates> candidatesByName = new HashMap<>();
+
+  ShadowMethodIndex(Class<?> shadowClass, ShadowMatcher shadowMatcher) {
+    for (Method method : shadowClass.getDeclaredMethods()) {
+      int modifiers = method.getModifiers();
+      if (!Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers)) {
+        continue;
+      }
+      if (!shadowMatcher.matches(method)) {
+        continue;
+      }
+      candidatesByName.computeIfAbsent(method.getName(), name -> new Candidates()).add(method);
+    }
+  }
+
+  /**
+   * Returns the method with the given name and exact parameter types. If there is none and {@code
+   * looseSignatures} is true, returns a method with the same name and number of parameters whose
+   * parameters are all declared as {@link Object}. Returns null if no method matches.
+   */
+  @Nullable
+  Method find(String name, Class<?>[] paramTypes, boolean looseSignatures) {
+    Candidates candidates = candidatesByName.get(name);
+    if (candidates == null) {
+      return null;
+    }
+    Method method = candidates.findExact(paramTypes);
+    if (method == null && looseSignatures) {
+      method = candidates.looseByArity.get(paramTypes.length);
+    }
+    return method;
+  }
+
+  /** The indexed methods sharing a single name. */
+  private static class Candidates {
+    private final List<Method> methods = new ArrayList<>(1);
+    private final List<Class<?>[]> parameterTypes = new ArrayList<>(1);
+    /** Methods whose parameters are all Object; as before, the last declared one wins. */
+    private final Map<Integer, Method> looseByArity = new HashMap<>();
+
+    void add(Method method) {
+      Class<?>[] types = method.getParameterTypes();
+      methods.add(method);
+      parameterTypes.add(types);
+
+      boolean allParameterTypesAreObject = true;
+      for (Class<?> type : types) {
+        if (!type.equals(Object.class)) {
+          allParameterTypesAreObject = false;
+          break;
+        }
+      }
+      if (allParameterTypesAreObject) {
+        looseByArity.put(types.length, method);
+      }
+    }
+
+    @Nullable
+    Method findExact(Class<?>[] paramTypes) {
+      for (int i = 0; i < methods.size(); i++) {
+        if (Arrays.equals(parameterTypes.get(i), paramTypes)) {
+          return methods.get(i);
+        }
+      }
+      return null;
+    }
+  }
+}
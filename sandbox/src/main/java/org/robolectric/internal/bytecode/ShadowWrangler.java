@@ -18,7 +18,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Priority;
@@ -27,6 +26,7 @@ import org.robolectric.annotation.ReflectorObject;
 import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.util.Function;
 import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
 import org.robolectric.util.Util;
 
 /**
@@ -69,6 +69,9 @@ public class ShadowWrangler implements ClassHandler {
 
   private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
 
+  private static final MetricHandle FIND_SHADOW_METHOD_HANDLE_METRIC =
+      PerfStatsCollector.getInstance().getMetricHandle("find shadow method handle");
+
   // Required to support the equivalent of MethodHandles.privateLookupIn in Java 8. It allows
   // calling protected constructors using incokespecial.
   private static final boolean HAS_PRIVATE_LOOKUP_IN = Util.getJavaVersion() >= 9;
@@ -104,6 +107,19 @@ public class ShadowWrangler implements ClassHandler {
         }
       };
 
+  /** key is instrumented class, value is the shadow info of it or its nearest shadowed ancestor */
+  private final ClassValueMap<ShadowInfo> cachedInheritedShadowInfos =
+      new ClassValueMap<ShadowInfo>() {
+        @Override
+        protected ShadowInfo computeValue(Class<?> type) {
+          ShadowInfo shadowInfo = getExactShadowInfo(type);
+          if (shadowInfo == null && type.getSuperclass() != null) {
+            shadowInfo = get(type.getSuperclass());
+          }
+          return shadowInfo;
+        }
+      };
+
   /** key is shadow class */
   private final ClassValueMap<ShadowMetadata> cachedShadowMetadata =
       new ClassValueMap<ShadowMetadata>() {
@@ -114,6 +130,15 @@ public class ShadowWrangler implements ClassHandler {
         }
       };
 
+  /** key is shadow class */
+  private final ClassValueMap<ShadowMethodIndex> cachedShadowMethodIndexes =
+      new ClassValueMap<ShadowMethodIndex>() {
+        @Override
+        protected ShadowMethodIndex computeValue(Class<?> type) {
+          return new ShadowMethodIndex(type, shadowMatcher);
+        }
+      };
+
   public ShadowWrangler(
       ShadowMap shadowMap, ShadowMatcher shadowMatcher, Interceptors interceptors) {
     this.shadowMap = shadowMap;
@@ -202,59 +227,57 @@ public class ShadowWrangler implements ClassHandler {
       boolean isStatic,
       boolean isNative)
       throws IllegalAccessException {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "find shadow method handle",
-            () -> {
-              MethodType actualType = isStatic ? methodType : methodType.dropParameterTypes(0, 1);
-              Class<?>[] paramTypes = actualType.parameterArray();
-
-              Method shadowMethod = pickShadowMethod(definingClass, name, paramTypes);
-
-              if (shadowMethod == CALL_REAL_CODE) {
-                ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
-                if (isNative && shadowInfo != null && shadowInfo.callNativeMethodsByDefault) {
-                  try {
-                    Method method =
-                        definingClass.getDeclaredMethod(
-                            ShadowConstants.ROBO_PREFIX + name + "$nativeBinding", paramTypes);
-                    method.setAccessible(true);
-                    return LOOKUP.unreflect(method);
-                  } catch (NoSuchMethodException e) {
-                    throw new LinkageError("Missing native binding method", e);
-                  }
-                }
-                return null;
-              } else if (shadowMethod == DO_NOTHING_METHOD) {
-                return DO_NOTHING;
+    return FIND_SHADOW_METHOD_HANDLE_METRIC.measure(
+        () -> {
+          MethodType actualType = isStatic ? methodType : methodType.dropParameterTypes(0, 1);
+          Class<?>[] paramTypes = actualType.parameterArray();
+
+          Method shadowMethod = pickShadowMethod(definingClass, name, paramTypes);
+
+          if (shadowMethod == CALL_REAL_CODE) {
+            ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
+            if (isNative && shadowInfo != null && shadowInfo.callNativeMethodsByDefault) {
+              try {
+                Method method =
+                    definingClass.getDeclaredMethod(
+                        ShadowConstants.ROBO_PREFIX + name + "$nativeBinding", paramTypes);
+                method.setAccessible(true);
+                return LOOKUP.unreflect(method);
+              } catch (NoSuchMethodException e) {
+                throw new LinkageError("Missing native binding method", e);
               }
+            }
+            return null;
+          } else if (shadowMethod == DO_NOTHING_METHOD) {
+            return DO_NOTHING;
+          }
 
-              shadowMethod.setAccessible(true);
-
-              MethodHandle mh;
-              if (name.equals(ShadowConstants.CONSTRUCTOR_METHOD_NAME)) {
-                if (Modifier.isStatic(shadowMethod.getModifiers())) {
-                  throw new UnsupportedOperationException(
-                      "static __constructor__ shadow methods are not supported");
-                }
-                // Use invokespecial to call constructor shadow methods. If invokevirtual is used,
-                // the wrong constructor may be called in situations where constructors with
-                // identical signatures are shadowed in object hierarchies.
-                mh =
-                    privateLookupFor(shadowMethod.getDeclaringClass())
-                        .unreflectSpecial(shadowMethod, shadowMethod.getDeclaringClass());
-              } else {
-                mh = LOOKUP.unreflect(shadowMethod);
-              }
+          shadowMethod.setAccessible(true);
 
-              // Robolectric doesn't actually look for static, this for example happens
-              // in MessageQueue.nativeInit() which used to be void non-static in 4.2.
-              if (!isStatic && Modifier.isStatic(shadowMethod.getModifiers())) {
-                return dropArguments(mh, 0, Object.class);
-              } else {
-                return mh;
-              }
-            });
+          MethodHandle mh;
+          if (name.equals(ShadowConstants.CONSTRUCTOR_METHOD_NAME)) {
+            if (Modifier.isStatic(shadowMethod.getModifiers())) {
+              throw new UnsupportedOperationException(
+                  "static __constructor__ shadow methods are not supported");
+            }
+            // Use invokespecial to call constructor shadow methods. If invokevirtual is used,
+            // the wrong constructor may be called in situations where constructors with
+            // identical signatures are shadowed in object hierarchies.
+            mh =
+                privateLookupFor(shadowMethod.getDeclaringClass())
+                    .unreflectSpecial(shadowMethod, shadowMethod.getDeclaringClass());
+          } else {
+            mh = LOOKUP.unreflect(shadowMethod);
+          }
+
+          // Robolectric doesn't actually look for static, this for example happens
+          // in MessageQueue.nativeInit() which used to be void non-static in 4.2.
+          if (!isStatic && Modifier.isStatic(shadowMethod.getModifiers())) {
+            return dropArguments(mh, 0, Object.class);
+          } else {
+            return mh;
+          }
+        });
   }
 
   @SuppressWarnings({"AndroidJdkLibsChecker"})
@@ -274,6 +297,9 @@ public class ShadowWrangler implements ClassHandler {
     ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
     if (shadowInfo == null) {
       return CALL_REAL_CODE;
+    } else if (!shadowInfo.mayImplementMethod(name, paramTypes, shadowMatcher)) {
+      // known from the build-time index, no need to load and inspect the shadow class
+      return shadowInfo.callThroughByDefault ? CALL_REAL_CODE : DO_NOTHING_METHOD;
     } else {
       ClassLoader classLoader = definingClass.getClassLoader();
       Class<?> shadowClass;
@@ -331,38 +357,8 @@ public class ShadowWrangler implements ClassHandler {
 
   private Method findShadowMethodDeclaredOnClass(
       Class<?> shadowClass, String methodName, Class<?>[] paramClasses, boolean looseSignatures) {
-    Method foundMethod = null;
-    for (Method method : shadowClass.getDeclaredMethods()) {
-      if (!method.getName().equals(methodName)
-          || method.getParameterCount() != paramClasses.length) {
-        continue;
-      }
-
-      if (!Modifier.isPublic(method.getModifiers())
-          && !Modifier.isProtected(method.getModifiers())) {
-        continue;
-      }
-
-      if (Arrays.equals(method.getParameterTypes(), paramClasses)
-          && shadowMatcher.matches(method)) {
-        // Found an exact match, we can exit early.
-        foundMethod = method;
-        break;
-      }
-      if (looseSignatures) {
-        boolean allParameterTypesAreObject = true;
-        for (Class<?> paramClass : method.getParameterTypes()) {
-          if (!paramClass.equals(Object.class)) {
-            allParameterTypesAreObject = false;
-            break;
-          }
-        }
-        if (allParameterTypesAreObject && shadowMatcher.matches(method)) {
-          // Found a looseSignatures match, but continue looking for an exact match.
-          foundMethod = method;
-        }
-      }
-    }
+    Method foundMethod =
+        cachedShadowMethodIndexes.get(shadowClass).find(methodName, paramClasses, looseSignatures);
 
     if (foundMethod != null) {
       foundMethod.setAccessible(true);
@@ -372,7 +368,6 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
-
   @Override
   public Object intercept(String signature, Object instance, Object[] params, Class theClass)
       throws Throwable {
@@ -510,11 +505,7 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   private ShadowInfo getShadowInfo(Class<?> clazz) {
-    ShadowInfo shadowInfo = null;
-    for (; shadowInfo == null && clazz != null; clazz = clazz.getSuperclass()) {
-      shadowInfo = getExactShadowInfo(clazz);
-    }
-    return shadowInfo;
+    return cachedInheritedShadowInfos.get(clazz);
   }
 
   private ShadowInfo getExactShadowInfo(Class<?> clazz) {
@@ -14,4 +14,13 @@ public interface ShadowMatcher {
   boolean matches(ShadowInfo shadowInfo);
 
   boolean matches(Method method);
+
+  /**
+   * Returns true if a shadow method whose {@code @Implementation} annotation declares the given SDK
+   * range could match. Used to rule out shadow methods without loading the shadow class, so it must
+   * return true whenever {@link #matches(Method)} could return true for such a method.
+   */
+  default boolean matchesSdkRange(int minSdk, int maxSdk) {
+    return true;
+  }
 }
@@ -49,4 +49,27 @@ public class ClassValueMapTest {
     executor.shutdown();
     assertThat(failures.get()).isEqualTo(0);
   }
+
+  @Test
+  public void shouldComputeEachValueOnce() {
+    AtomicInteger computations = new AtomicInteger();
+    ClassValueMap<String> nullableMap =
+        new ClassValueMap<String>() {
+          @Override
+          protected String computeValue(Class<?> type) {
+            computations.incrementAndGet();
+            return type == String.class ? null : type.getName();
+          }
+        };
+
+    assertThat(nullableMap.get(Object.class)).isEqualTo("java.lang.Object");
+    assertThat(nullableMap.get(Object.class)).isEqualTo("java.lang.Object");
+    assertThat(nullableMap.get(String.class)).isNull();
+    assertThat(nullableMap.get(String.class)).isNull();
+    assertThat(computations.get()).isEqualTo(2);
+
+    nullableMap.clear();
+    assertThat(nullableMap.get(Object.class)).isEqualTo("java.lang.Object");
+    assertThat(computations.get()).isEqualTo(3);
+  }
 }
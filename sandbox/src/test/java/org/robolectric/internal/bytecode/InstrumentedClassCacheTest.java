@@ -0,0 +1,80 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassWriter;
+
+/** Tests for {@link InstrumentedClassCache} */
+@RunWith(JUnit4.class)
+public class InstrumentedClassCacheTest {
+  private static final Function<String, String> NO_DEPENDENCIES = className -> "";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void get_returnsNullForMissingEntry() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(tempFolder.getRoot().toPath(), 1024);
+    String key = InstrumentedClassCache.keyFor(new byte[] {1, 2, 3}, "salt");
+    assertThat(cache.get(key, NO_DEPENDENCIES)).isNull();
+  }
+
+  @Test
+  public void put_thenGet_returnsStoredBytes() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(tempFolder.getRoot().toPath(), 1024);
+    String key = InstrumentedClassCache.keyFor(new byte[] {1, 2, 3}, "salt");
+    cache.put(key, ImmutableMap.of(), new byte[] {4, 5, 6});
+    assertThat(cache.get(key, NO_DEPENDENCIES)).isEqualTo(new byte[] {4, 5, 6});
+  }
+
+  @Test
+  public void get_returnsNullWhenDependencyChanged() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(tempFolder.getRoot().toPath(), 1024);
+    String key = InstrumentedClassCache.keyFor(new byte[] {1, 2, 3}, "salt");
+    cache.put(key, ImmutableMap.of("com/example/Parent", "hash1"), new byte[] {4, 5, 6});
+
+    assertThat(cache.get(key, className -> "hash1")).isEqualTo(new byte[] {4, 5, 6});
+    assertThat(cache.get(key, className -> "hash2")).isNull();
+  }
+
+  @Test
+  public void fingerprintOf_coversWholeCodeSource() {
+    assertThat(InstrumentedClassCache.fingerprintOf(ClassInstrumentor.class))
+        .isEqualTo(InstrumentedClassCache.fingerprintOf(InstrumentingClassWriter.class));
+    assertThat(InstrumentedClassCache.fingerprintOf(ClassInstrumentor.class))
+        .isNotEqualTo(InstrumentedClassCache.fingerprintOf(ClassWriter.class));
+  }
+
+  @Test
+  public void keyFor_dependsOnBytesAndSalt() {
+    String key = InstrumentedClassCache.keyFor(new byte[] {1, 2, 3}, "salt");
+    assertThat(InstrumentedClassCache.keyFor(new byte[] {1, 2, 3}, "salt")).isEqualTo(key);
+    assertThat(InstrumentedClassCache.keyFor(new byte[] {1, 2, 4}, "salt")).isNotEqualTo(key);
+    assertThat(InstrumentedClassCache.keyFor(new byte[] {1, 2, 3}, "other")).isNotEqualTo(key);
+  }
+
+  @Test
+  public void evictIfNecessary_removesLeastRecentlyUsedEntries() throws Exception {
+    Path root = tempFolder.getRoot().toPath();
+    InstrumentedClassCache cache = new InstrumentedClassCache(root, 150);
+    String oldKey = InstrumentedClassCache.keyFor(new byte[] {1}, "salt");
+    String newKey = InstrumentedClassCache.keyFor(new byte[] {2}, "salt");
+    cache.put(oldKey, ImmutableMap.of(), new byte[100]);
+    cache.put(newKey, ImmutableMap.of(), new byte[100]);
+    Files.setLastModifiedTime(cache.entryPath(oldKey), FileTime.fromMillis(1000));
+
+    cache.evictIfNecessary();
+
+    assertThat(Files.exists(cache.entryPath(oldKey))).isFalse();
+    assertThat(Files.exists(cache.entryPath(newKey))).isTrue();
+  }
+}
@@ -0,0 +1,53 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link PrefixTrie} */
+@RunWith(JUnit4.class)
+public class PrefixTrieTest {
+
+  @Test
+  public void matchesPrefixOf_shouldMatchLikeStartsWith() {
+    PrefixTrie trie = new PrefixTrie(ImmutableList.of("android.", "androidx.test", "com.foo.Bar"));
+
+    assertThat(trie.matchesPrefixOf("android.os.Looper")).isTrue();
+    assertThat(trie.matchesPrefixOf("android.")).isTrue();
+    assertThat(trie.matchesPrefixOf("androidx.test.core.App")).isTrue();
+    assertThat(trie.matchesPrefixOf("androidx.testing.Thing")).isTrue();
+    assertThat(trie.matchesPrefixOf("com.foo.Bar$Inner")).isTrue();
+
+    assertThat(trie.matchesPrefixOf("android")).isFalse();
+    assertThat(trie.matchesPrefixOf("androidx.core.Thing")).isFalse();
+    assertThat(trie.matchesPrefixOf("com.foo.Baz")).isFalse();
+    assertThat(trie.matchesPrefixOf("")).isFalse();
+  }
+
+  @Test
+  public void matchesPrefixOf_shouldMatchOverlappingPrefixes() {
+    PrefixTrie trie = new PrefixTrie(ImmutableList.of("org.robolectric.internal.", "org."));
+
+    assertThat(trie.matchesPrefixOf("org.junit.Test")).isTrue();
+    assertThat(trie.matchesPrefixOf("org.robolectric.internal.Foo")).isTrue();
+  }
+
+  @Test
+  public void matchesPrefixOf_emptyTrieShouldMatchNothing() {
+    PrefixTrie trie = new PrefixTrie(ImmutableList.of());
+
+    assertThat(trie.matchesPrefixOf("android.os.Looper")).isFalse();
+    assertThat(trie.matchesPrefixOf("")).isFalse();
+  }
+
+  @Test
+  public void matchesPrefixOf_emptyPrefixShouldMatchEverything() {
+    PrefixTrie trie = new PrefixTrie(ImmutableList.of(""));
+
+    assertThat(trie.matchesPrefixOf("android.os.Looper")).isTrue();
+    assertThat(trie.matchesPrefixOf("")).isTrue();
+  }
+}
@@ -36,11 +36,13 @@ import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
+import org.robolectric.pluginapi.perf.Metric;
 import org.robolectric.shadow.api.Shadow;
 import org.robolectric.testing.AChild;
 import org.robolectric.testing.AClassThatCallsAMethodReturningAForgettableClass;
@@ -66,6 +68,7 @@ import org.robolectric.testing.AnExampleClass;
 import org.robolectric.testing.AnInstrumentedChild;
 import org.robolectric.testing.AnUninstrumentedClass;
 import org.robolectric.testing.AnUninstrumentedParent;
+import org.robolectric.util.PerfStatsCollector;
 import org.robolectric.util.ReflectionHelpers;
 import org.robolectric.util.Util;
 
@@ -76,10 +79,17 @@ public class SandboxClassLoaderTest {
   private List<String> transcript = new ArrayList<>();
   private MyClassHandler classHandler = new MyClassHandler(transcript);
   private ShadowImpl shadow;
+  private boolean perfStatsWereEnabled;
 
   @Before
   public void setUp() throws Exception {
     shadow = new ShadowImpl();
+    perfStatsWereEnabled = PerfStatsCollector.getInstance().isEnabled();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    PerfStatsCollector.getInstance().setEnabled(perfStatsWereEnabled);
   }
 
   @Test
@@ -727,4 +737,39 @@ public class SandboxClassLoaderTest {
       System.clearProperty("robolectric.dumpClassesDirectory");
     }
   }
+
+  @Test
+  public void shouldReuseInstrumentedClassesFromCacheWhenConfigured() throws Exception {
+    // Cache hits are counted by PerfStatsCollector, which drops counts while it's disabled.
+    PerfStatsCollector.getInstance().setEnabled(true);
+    Path tempDir = Files.createTempDirectory("SandboxClassLoaderTest");
+    System.setProperty(
+        InstrumentedClassCache.CACHE_DIRECTORY_PROPERTY, tempDir.toAbsolutePath().toString());
+    try {
+      ClassLoader classLoader = new SandboxClassLoader(configureBuilder().build());
+      classLoader.loadClass(AnExampleClass.class.getName());
+      List<Path> entries;
+      try (Stream<Path> stream = Files.walk(tempDir)) {
+        entries = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+      }
+      assertThat(entries).hasSize(1);
+
+      int hitsBefore = getCount("instrumented class cache hit");
+      ClassLoader secondClassLoader = new SandboxClassLoader(configureBuilder().build());
+      Class<?> exampleClass = secondClassLoader.loadClass(AnExampleClass.class.getName());
+      assertNotNull(exampleClass.getField(ShadowConstants.CLASS_HANDLER_DATA_FIELD_NAME));
+      assertThat(getCount("instrumented class cache hit")).isEqualTo(hitsBefore + 1);
+    } finally {
+      System.clearProperty(InstrumentedClassCache.CACHE_DIRECTORY_PROPERTY);
+    }
+  }
+
+  private static int getCount(String metricName) {
+    for (Metric metric : PerfStatsCollector.getInstance().getMetrics()) {
+      if (metric.getName().equals(metricName)) {
+        return metric.getCount();
+      }
+    }
+    return 0;
+  }
 }
@@ -0,0 +1,107 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** Tests for {@link ShadowDirtyMarker} */
+@RunWith(JUnit4.class)
+public class ShadowDirtyMarkerTest {
+
+  @Test
+  public void markStaticFieldAccesses_shouldMarkAccessesOfMutableStaticFields() throws Exception {
+    ClassNode classNode = markedClassNode();
+
+    assertThat(countMarkDirtyCalls(classNode, "increment")).isEqualTo(2); // read and write
+    assertThat(countMarkDirtyCalls(classNode, "add")).isEqualTo(1);
+  }
+
+  @Test
+  public void markStaticFieldAccesses_shouldNotMarkConstantsOrInstanceFields() throws Exception {
+    ClassNode classNode = markedClassNode();
+
+    assertThat(countMarkDirtyCalls(classNode, "tag")).isEqualTo(0);
+    assertThat(countMarkDirtyCalls(classNode, "setName")).isEqualTo(0);
+    assertThat(countMarkDirtyCalls(classNode, "<clinit>")).isEqualTo(0);
+  }
+
+  @Test
+  public void markStaticFieldAccesses_shouldProduceLoadableClass() throws Exception {
+    byte[] bytes = ShadowDirtyMarker.markStaticFieldAccesses(originalBytes());
+    Class<?> markedClass =
+        new ClassLoader(getClass().getClassLoader()) {
+          Class<?> define() {
+            return defineClass(ShadowThing.class.getName(), bytes, 0, bytes.length);
+          }
+        }.define();
+
+    assertThat(markedClass.getDeclaredMethod("increment").invoke(null)).isEqualTo(1);
+  }
+
+  private static ClassNode markedClassNode() throws Exception {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(ShadowDirtyMarker.markStaticFieldAccesses(originalBytes()))
+        .accept(classNode, 0);
+    return classNode;
+  }
+
+  private static byte[] originalBytes() throws Exception {
+    String resourceName = Type.getInternalName(ShadowThing.class) + ".class";
+    try (InputStream in = ShadowThing.class.getClassLoader().getResourceAsStream(resourceName)) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+  private static int countMarkDirtyCalls(ClassNode classNode, String methodName) {
+    int count = 0;
+    for (MethodNode method : classNode.methods) {
+      if (!method.name.equals(methodName)) {
+        continue;
+      }
+      for (AbstractInsnNode insn : method.instructions) {
+        if (insn.getOpcode() == Opcodes.INVOKESTATIC
+            && ((MethodInsnNode) insn).name.equals("markDirty")) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @SuppressWarnings("unused")
+  public static class ShadowThing {
+    private static final String TAG = "ShadowThing";
+    private static final List<String> items = new ArrayList<>();
+    private static int count;
+    private String name;
+
+    public static int increment() {
+      return ++count;
+    }
+
+    public static void add() {
+      items.add("item");
+    }
+
+    public static String tag() {
+      return TAG;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+}
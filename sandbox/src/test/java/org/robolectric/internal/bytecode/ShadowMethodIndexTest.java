@@ -0,0 +1,66 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.reflect.Method;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.sandbox.ShadowMatcher;
+
+/** Tests for {@link ShadowMethodIndex} */
+@RunWith(JUnit4.class)
+public class ShadowMethodIndexTest {
+
+  @Test
+  public void find_shouldReturnExactMatch() throws Exception {
+    ShadowMethodIndex index = new ShadowMethodIndex(ShadowThing.class, ShadowMatcher.MATCH_ALL);
+
+    assertThat(index.find("method", new Class<?>[] {String.class}, true))
+        .isEqualTo(ShadowThing.class.getDeclaredMethod("method", String.class));
+    assertThat(index.find("method", new Class<?>[] {int.class}, false))
+        .isEqualTo(ShadowThing.class.getDeclaredMethod("method", int.class));
+  }
+
+  @Test
+  public void find_shouldFallBackToLooseSignatureOnlyIfAllowed() throws Exception {
+    ShadowMethodIndex index = new ShadowMethodIndex(ShadowThing.class, ShadowMatcher.MATCH_ALL);
+
+    assertThat(index.find("method", new Class<?>[] {long.class}, false)).isNull();
+    assertThat(index.find("method", new Class<?>[] {long.class}, true))
+        .isEqualTo(ShadowThing.class.getDeclaredMethod("method", Object.class));
+    assertThat(index.find("method", new Class<?>[] {long.class, long.class}, true)).isNull();
+  }
+
+  @Test
+  public void find_shouldIgnorePrivateAndUnmatchedMethods() throws Exception {
+    ShadowMatcher rejectInt =
+        new ShadowMatcher() {
+          @Override
+          public boolean matches(ShadowInfo shadowInfo) {
+            return true;
+          }
+
+          @Override
+          public boolean matches(Method method) {
+            return method.getParameterCount() == 0 || method.getParameterTypes()[0] != int.class;
+          }
+        };
+    ShadowMethodIndex index = new ShadowMethodIndex(ShadowThing.class, rejectInt);
+
+    assertThat(index.find("privateMethod", new Class<?>[0], true)).isNull();
+    assertThat(index.find("method", new Class<?>[] {int.class}, false)).isNull();
+    assertThat(index.find("unknown", new Class<?>[0], true)).isNull();
+  }
+
+  @SuppressWarnings("unused")
+  public static class ShadowThing {
+    public void method(String s) {}
+
+    protected void method(int i) {}
+
+    public void method(Object o) {}
+
+    private void privateMethod() {}
+  }
+}
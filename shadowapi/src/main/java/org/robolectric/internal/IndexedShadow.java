@@ -0,0 +1,169 @@
+package org.robolectric.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Build-time summary of a shadow class, emitted by the Robolectric annotation processor.
+ *
+ * <p>It carries the attributes of the shadow's {@code @Implements} annotation and the signatures
+ * and SDK ranges of the public and protected methods declared by the shadow and its superclasses,
+ * so that Robolectric can decide that a method isn't shadowed without loading the shadow class and
+ * inspecting it reflectively. Methods which override a generic supertype method are also recorded
+ * with the parameter types of the bridge method that the compiler generates for them.
+ *
+ * <p>The methods are encoded in a single string, one {@code name(parameterDescriptor)minSdk:maxSdk}
+ * entry per method separated by spaces (e.g. {@code "setText(Ljava/lang/String;)-1:-1"}), and are
+ * only decoded when the shadow is first used. This keeps the static initializer of the generated
+ * provider small, no matter how many methods the shadows declare.
+ */
+public final class IndexedShadow {
+  public final String shadowedClassName;
+  public final boolean callThroughByDefault;
+  public final boolean callNativeMethodsByDefault;
+  public final boolean looseSignatures;
+  public final int minSdk;
+  public final int maxSdk;
+  @Nullable private final String encodedMethods;
+  @Nullable private volatile Map<String, List<IndexedMethod>> methodsByName;
+
+  /**
+   * @param encodedMethods the encoded methods of the shadow, or null if they couldn't be
+   *     determined at build time
+   */
+  public IndexedShadow(
+      String shadowedClassName,
+      boolean callThroughByDefault,
+      boolean callNativeMethodsByDefault,
+      boolean looseSignatures,
+      int minSdk,
+      int maxSdk,
+      @Nullable String encodedMethods) {
+    this.shadowedClassName = shadowedClassName;
+    this.callThroughByDefault = callThroughByDefault;
+    this.callNativeMethodsByDefault = callNativeMethodsByDefault;
+    this.looseSignatures = looseSignatures;
+    this.minSdk = minSdk;
+    this.maxSdk = maxSdk;
+    this.encodedMethods = encodedMethods;
+  }
+
+  /** Returns true if the methods of the shadow class were indexed at build time. */
+  public boolean hasMethods() {
+    return encodedMethods != null;
+  }
+
+  /**
+   * Returns the indexed methods with the given name, or an empty list if there are none or the
+   * methods of the shadow class weren't indexed (see {@link #hasMethods()}).
+   */
+  public List<IndexedMethod> getMethods(String name) {
+    Map<String, List<IndexedMethod>> methods = methodsByName;
+    if (methods == null) {
+      methods = decodeMethods(encodedMethods);
+      methodsByName = methods;
+    }
+    List<IndexedMethod> namedMethods = methods.get(name);
+    return namedMethods == null ? Collections.emptyList() : namedMethods;
+  }
+
+  private static Map<String, List<IndexedMethod>> decodeMethods(@Nullable String encodedMethods) {
+    if (encodedMethods == null || encodedMethods.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, List<IndexedMethod>> methods = new HashMap<>();
+    for (String encodedMethod : encodedMethods.split(" ")) {
+      int parametersStart = encodedMethod.indexOf('(');
+      int parametersEnd = encodedMethod.indexOf(')', parametersStart);
+      int sdkSeparator = encodedMethod.indexOf(':', parametersEnd);
+      String name = encodedMethod.substring(0, parametersStart);
+      IndexedMethod method =
+          new IndexedMethod(
+              encodedMethod.substring(parametersStart, parametersEnd + 1),
+              Integer.parseInt(encodedMethod.substring(parametersEnd + 1, sdkSeparator)),
+              Integer.parseInt(encodedMethod.substring(sdkSeparator + 1)));
+      methods.computeIfAbsent(name, k -> new ArrayList<>(1)).add(method);
+    }
+    return methods;
+  }
+
+  /** Returns the JVM descriptor of the given parameter types, e.g. {@code "(I[J)"}. */
+  public static String getParameterDescriptor(Class<?>[] parameterTypes) {
+    StringBuilder descriptor = new StringBuilder("(");
+    for (Class<?> type : parameterTypes) {
+      appendDescriptor(descriptor, type);
+    }
+    return descriptor.append(')').toString();
+  }
+
+  private static void appendDescriptor(StringBuilder descriptor, Class<?> type) {
+    if (type.isArray()) {
+      // Class.getName() of an array class is its descriptor, with dots instead of slashes
+      descriptor.append(type.getName().replace('.', '/'));
+    } else if (!type.isPrimitive()) {
+      descriptor.append('L').append(type.getName().replace('.', '/')).append(';');
+    } else if (type == boolean.class) {
+      descriptor.append('Z');
+    } else if (type == byte.class) {
+      descriptor.append('B');
+    } else if (type == char.class) {
+      descriptor.append('C');
+    } else if (type == short.class) {
+      descriptor.append('S');
+    } else if (type == int.class) {
+      descriptor.append('I');
+    } else if (type == long.class) {
+      descriptor.append('J');
+    } else if (type == float.class) {
+      descriptor.append('F');
+    } else {
+      descriptor.append('D');
+    }
+  }
+
+  /** A public or protected method declared by a shadow class or one of its superclasses. */
+  public static final class IndexedMethod {
+    private static final String OBJECT_DESCRIPTOR = "Ljava/lang/Object;";
+
+    public final String parameterDescriptor;
+    public final int minSdk;
+    public final int maxSdk;
+    // the number of parameters if they're all Object (i.e. a loose signature), otherwise -1
+    private final int looseArity;
+
+    IndexedMethod(String parameterDescriptor, int minSdk, int maxSdk) {
+      this.parameterDescriptor = parameterDescriptor;
+      this.minSdk = minSdk;
+      this.maxSdk = maxSdk;
+      this.looseArity = getLooseArity(parameterDescriptor);
+    }
+
+    /**
+     * Returns true if this method can implement a method with the given parameters, either because
+     * its parameter types are the same or because they're all {@link Object}.
+     *
+     * @param descriptor the parameter descriptor, see {@link #getParameterDescriptor(Class[])}
+     * @param parameterCount the number of parameters
+     */
+    public boolean acceptsParameters(String descriptor, int parameterCount) {
+      return looseArity == parameterCount || parameterDescriptor.equals(descriptor);
+    }
+
+    private static int getLooseArity(String parameterDescriptor) {
+      int length = parameterDescriptor.length() - 2;
+      if (length % OBJECT_DESCRIPTOR.length() != 0) {
+        return -1;
+      }
+      for (int offset = 1; offset <= length; offset += OBJECT_DESCRIPTOR.length()) {
+        if (!parameterDescriptor.startsWith(OBJECT_DESCRIPTOR, offset)) {
+          return -1;
+        }
+      }
+      return length / OBJECT_DESCRIPTOR.length();
+    }
+  }
+}
@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
+import org.robolectric.util.PerfStatsCollector;
 
 /**
  * Interface implemented by packages that provide shadows to Robolectric.
@@ -46,4 +47,33 @@ public interface ShadowProvider {
   default Map<String, String> getShadowPickerMap() {
     return Collections.emptyMap();
   }
+
+  /**
+   * Returns build-time summaries of the shadows provided by this package, keyed by shadow class
+   * binary name. Shadows without a summary are inspected reflectively.
+   */
+  default Map<String, IndexedShadow> getIndexedShadows() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Runs a shadow resetter on behalf of a generated {@link ShadowProvider}, recording its duration
+   * with {@link PerfStatsCollector}.
+   *
+   * @param shadowClass the shadow class declaring the resetter
+   * @param resetter invokes the resetter
+   */
+  static void runResetter(Class<?> shadowClass, Runnable resetter) {
+    ShadowResetTracker.runResetter(shadowClass, resetter, false);
+  }
+
+  /**
+   * Like {@link #runResetter(Class, Runnable)}, but skips the resetter if {@link
+   * ShadowResetTracker} is enabled and the shadow wasn't used since it last ran. Only for resetters
+   * which reset nothing but state that the shadow's own {@code @Implementation} methods and
+   * constructors can change.
+   */
+  static void runResetterIfDirty(Class<?> shadowClass, Runnable resetter) {
+    ShadowResetTracker.runResetter(shadowClass, resetter, true);
+  }
 }
@@ -0,0 +1,77 @@
+package org.robolectric.internal;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
+
+/**
+ * Tracks which shadow classes have been used since their resetters last ran, so that resetters of
+ * shadows a test didn't use can be skipped.
+ *
+ * <p>Tracking is opt-in, enabled by setting the {@code robolectric.resetOnlyDirtyShadows} system
+ * property to true. The sandbox class loader rewrites shadow classes so that they mark themselves
+ * dirty whenever their code reads or writes one of their own mutable static fields, however that
+ * code was called: through the class handler, directly as a static method, or on a shadow obtained
+ * with {@code Shadow.extract}. Shadow classes are keyed by {@link Class}, so each sandbox tracks
+ * its own shadows.
+ */
+public final class ShadowResetTracker {
+
+  /** System property which, when true, enables skipping resetters of unused shadows. */
+  public static final String RESET_ONLY_DIRTY_SHADOWS_PROPERTY =
+      "robolectric.resetOnlyDirtyShadows";
+
+  private static final boolean ENABLED = Boolean.getBoolean(RESET_ONLY_DIRTY_SHADOWS_PROPERTY);
+
+  private static final MetricHandle SKIPPED_RESETTERS =
+      PerfStatsCollector.getInstance().getMetricHandle("skip resetter for unused shadow");
+
+  @SuppressWarnings("AndroidJdkLibsChecker")
+  private static final ClassValue<ShadowState> shadowStates =
+      new ClassValue<ShadowState>() {
+        @Override
+        protected ShadowState computeValue(Class<?> shadowClass) {
+          return new ShadowState(shadowClass);
+        }
+      };
+
+  private ShadowResetTracker() {}
+
+  /** Returns true if resetters of unused shadows are skipped. */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Marks {@code shadowClass} as used since its resetter last ran. Called by shadow classes, as
+   * rewritten by the sandbox class loader. Shadows start out dirty, so the first reset in a sandbox
+   * always runs every resetter.
+   */
+  public static void markDirty(Class<?> shadowClass) {
+    AtomicBoolean dirty = shadowStates.get(shadowClass).dirty;
+    // avoid writing to flags which are already set, since they're shared between threads
+    if (!dirty.get()) {
+      dirty.set(true);
+    }
+  }
+
+  static void runResetter(Class<?> shadowClass, Runnable resetter, boolean onlyIfDirty) {
+    ShadowState shadowState = shadowStates.get(shadowClass);
+    if (onlyIfDirty && ENABLED && !shadowState.dirty.get()) {
+      SKIPPED_RESETTERS.incrementCount();
+      return;
+    }
+    shadowState.resetMetric.measure(resetter::run);
+    shadowState.dirty.set(false);
+  }
+
+  private static final class ShadowState {
+    final AtomicBoolean dirty = new AtomicBoolean(true);
+    final MetricHandle resetMetric;
+
+    ShadowState(Class<?> shadowClass) {
+      resetMetric =
+          PerfStatsCollector.getInstance().getMetricHandle("reset " + shadowClass.getName());
+    }
+  }
+}
@@ -117,7 +117,10 @@ public class ShadowArscApkAssets9 extends ShadowApkAssets {
       return 0;
     }
 
-    long cachedApkAssetsPtr = ApkAssetsCache.get(path, system, RuntimeEnvironment.getApiLevel());
+    // the sandbox's class loader, so that the cache can release its ApkAssets once it's shut down
+    ClassLoader owner = ShadowArscApkAssets9.class.getClassLoader();
+    long cachedApkAssetsPtr =
+        ApkAssetsCache.get(path, system, RuntimeEnvironment.getApiLevel(), owner);
     if (cachedApkAssetsPtr != -1) {
       return cachedApkAssetsPtr;
     }
@@ -144,8 +147,8 @@ public class ShadowArscApkAssets9 extends ShadowApkAssets {
       throw new IOException(error_msg);
     }
     long ptr = Registries.NATIVE_APK_ASSETS_REGISTRY.register(apk_assets);
-    ApkAssetsCache.put(path, system, RuntimeEnvironment.getApiLevel(), ptr);
-    return ptr;
+    return ApkAssetsCache.put(
+        path, system, RuntimeEnvironment.getApiLevel(), ptr, apk_assets.GetResourcesSize(), owner);
   }
 
   @Implementation(minSdk = R)
@@ -21,7 +21,7 @@ public class ShadowGainmap {
   @RealObject Gainmap realGainmap;
 
   static final NativeObjRegistry<NativeGainmap> nativeObjectRegistry =
-      new NativeObjRegistry<>(NativeGainmap.class);
+      new NativeObjRegistry<>(NativeGainmap.class, /* debug= */ false, /* intIds= */ false);
 
   @Implementation
   protected static long nCreateEmpty() {
@@ -41,7 +41,7 @@ public class ShadowHardwareBuffer {
   }
 
   private static final NativeObjRegistry<BufferState> BUFFER_STATE_REGISTRY =
-      new NativeObjRegistry<>(BufferState.class);
+      new NativeObjRegistry<>(BufferState.class, /* debug= */ false, /* intIds= */ false);
 
   static {
     long usageFlags = 0;
@@ -95,7 +95,7 @@ public class ShadowImageDecoder {
   }
 
   private static final NativeObjRegistry<CppImageDecoder> NATIVE_IMAGE_DECODER_REGISTRY =
-      new NativeObjRegistry<>(CppImageDecoder.class);
+      new NativeObjRegistry<>(CppImageDecoder.class, /* debug= */ false, /* intIds= */ false);
 
   private static ImageDecoder jniCreateDecoder(ImgStream imgStream) {
     CppImageDecoder cppImageDecoder = new CppImageDecoder(imgStream);
@@ -11,9 +11,7 @@ import com.almworks.sqlite4java.SQLiteConstants;
 import com.almworks.sqlite4java.SQLiteException;
 import com.almworks.sqlite4java.SQLiteStatement;
 import com.google.common.base.Preconditions;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -47,23 +45,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static byte[] nativeGetBlob(long windowPtr, int row, int column) {
-    Value value = WINDOW_DATA.get(windowPtr).value(row, column);
-
-    switch (value.type) {
-      case Cursor.FIELD_TYPE_NULL:
-        return null;
-      case Cursor.FIELD_TYPE_BLOB:
-        // This matches Android's behavior, which does not match the SQLite spec
-        byte[] blob = (byte[])value.value;
-        return blob == null ? new byte[]{} : blob;
-      case Cursor.FIELD_TYPE_STRING:
-        // Matches the Android behavior to contain a zero-byte at the end
-        byte[] stringBytes = ((String) value.value).getBytes(UTF_8);
-        return Arrays.copyOf(stringBytes, stringBytes.length + 1);
-      default:
-        throw new android.database.sqlite.SQLiteException(
-            "Getting blob when column is non-blob. Row " + row + ", col " + column);
-    }
+    return WINDOW_DATA.get(windowPtr).getBlob(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -73,13 +55,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static String nativeGetString(long windowPtr, int row, int column) {
-    Value val = WINDOW_DATA.get(windowPtr).value(row, column);
-    if (val.type == Cursor.FIELD_TYPE_BLOB) {
-      throw new android.database.sqlite.SQLiteException(
-          "Getting string when column is blob. Row " + row + ", col " + column);
-    }
-    Object value = val.value;
-    return value == null ? null : String.valueOf(value);
+    return WINDOW_DATA.get(windowPtr).getString(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -89,7 +65,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static long nativeGetLong(long windowPtr, int row, int column) {
-    return nativeGetNumber(windowPtr, row, column).longValue();
+    return WINDOW_DATA.get(windowPtr).getLong(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -99,7 +75,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static double nativeGetDouble(long windowPtr, int row, int column) {
-    return nativeGetNumber(windowPtr, row, column).doubleValue();
+    return WINDOW_DATA.get(windowPtr).getDouble(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -109,7 +85,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static int nativeGetType(long windowPtr, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).value(row, column).type;
+    return WINDOW_DATA.get(windowPtr).getType(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -141,7 +117,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
   protected static boolean nativePutBlob(long windowPtr, byte[] value, int row, int column) {
     // Real Android will crash in native code if putString is called with a null value.
     Preconditions.checkNotNull(value);
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_BLOB), row, column);
+    return WINDOW_DATA.get(windowPtr).putBlob(value, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -153,7 +129,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
   protected static boolean nativePutString(long windowPtr, String value, int row, int column) {
     // Real Android will crash in native code if putString is called with a null value.
     Preconditions.checkNotNull(value);
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_STRING), row, column);
+    return WINDOW_DATA.get(windowPtr).putString(value, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -163,7 +139,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutLong(long windowPtr, long value, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_INTEGER), row, column);
+    return WINDOW_DATA.get(windowPtr).putLong(value, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -173,7 +149,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutDouble(long windowPtr, double value, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(value, Cursor.FIELD_TYPE_FLOAT), row, column);
+    return WINDOW_DATA.get(windowPtr).putDouble(value, row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -183,7 +159,7 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
 
   @Implementation(minSdk = LOLLIPOP)
   protected static boolean nativePutNull(long windowPtr, int row, int column) {
-    return WINDOW_DATA.get(windowPtr).putValue(new Value(null, Cursor.FIELD_TYPE_NULL), row, column);
+    return WINDOW_DATA.get(windowPtr).putNull(row, column);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -216,135 +192,318 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
     return WINDOW_DATA.get(windowPtr).getName();
   }
 
-  protected static int setData(long windowPtr, SQLiteStatement stmt) throws SQLiteException {
-    return WINDOW_DATA.setData(windowPtr, stmt);
-  }
+  /**
+   * Fills the window with the rows of {@code stmt}, like the native {@code
+   * SQLiteConnection.nativeExecuteForCursorWindow}: rows before {@code startPos} are skipped, rows
+   * are copied until the window is full, and the remaining rows are only counted if {@code
+   * countAllRows} is set.
+   *
+   * @return the position of the first row in the window in the upper 32 bits, and the number of
+   *     rows counted in the lower 32 bits
+   */
+  protected static long setData(
+      long windowPtr, SQLiteStatement stmt, int startPos, int requiredPos, boolean countAllRows)
+      throws SQLiteException {
+    return WINDOW_DATA.setData(windowPtr, stmt, startPos, requiredPos, countAllRows);
+  }
+
+  /**
+   * The contents of a window, stored in primitive arrays in row-major order, so that filling a
+   * window doesn't allocate an object per row or field.
+   *
+   * <p>Each field has a {@code Cursor.FIELD_TYPE_*} in {@link #types} and a value in {@link
+   * #values}: an INTEGER's value, a FLOAT's raw bits, or the offset and length of a TEXT's UTF-8
+   * bytes or a BLOB's bytes in {@link #arena}. Space is accounted like in the native window, which
+   * determines how many rows of a query fit in it.
+   */
+  private static class Data {
+    // sizes of a row slot and a field slot in the native window
+    private static final int ROW_SLOT_SIZE = 4;
+    private static final int FIELD_SLOT_SIZE = 12;
 
-  private static Number nativeGetNumber(long windowPtr, int row, int column) {
-    Value value = WINDOW_DATA.get(windowPtr).value(row, column);
-    switch (value.type) {
-      case Cursor.FIELD_TYPE_NULL:
-      case SQLiteConstants.SQLITE_NULL:
-        return 0;
-      case Cursor.FIELD_TYPE_INTEGER:
-      case Cursor.FIELD_TYPE_FLOAT:
-        return (Number) value.value;
-      case Cursor.FIELD_TYPE_STRING: {
-        try {
-          return Double.parseDouble((String) value.value);
-        } catch (NumberFormatException e) {
-          return 0;
-        }
-      }
-      case Cursor.FIELD_TYPE_BLOB:
-        throw new android.database.sqlite.SQLiteException("could not convert "+value);
-      default:
-        throw new android.database.sqlite.SQLiteException("unknown type: "+value.type);
-    }
-  }
+    private static final byte[] EMPTY_BYTES = new byte[0];
 
-  private static class Data {
-    private final List<Row> rows;
     private final String name;
+    private final int windowSize;
     private int numColumns;
+    private int numRows;
+    private int usedBytes;
+
+    private byte[] types = EMPTY_BYTES;
+    private long[] values = new long[0];
+    private byte[] arena = EMPTY_BYTES;
+    private int arenaSize;
 
     public Data(String name, int cursorWindowSize) {
       this.name = name;
-      this.rows = new ArrayList<Row>();
+      this.windowSize = cursorWindowSize;
     }
 
-    public Value value(int rowN, int colN) {
-      Row row = rows.get(rowN);
-      if (row == null) {
-        throw new IllegalArgumentException("Bad row number: " + rowN + ", count: " + rows.size());
+    private int field(int row, int column) {
+      if (row < 0 || row >= numRows || column < 0 || column >= numColumns) {
+        throw new IllegalStateException(
+            "Couldn't read row "
+                + row
+                + ", col "
+                + column
+                + " from CursorWindow.  Make sure the Cursor is initialized correctly before"
+                + " accessing data from it.");
       }
-      return row.get(colN);
+      return row * numColumns + column;
     }
 
-    public int numRows() {
-      return rows.size();
+    public int getType(int row, int column) {
+      return types[field(row, column)];
+    }
+
+    public byte[] getBlob(int row, int column) {
+      int field = field(row, column);
+      switch (types[field]) {
+        case Cursor.FIELD_TYPE_NULL:
+          return null;
+        case Cursor.FIELD_TYPE_BLOB:
+          return Arrays.copyOfRange(arena, offset(values[field]), end(values[field]));
+        case Cursor.FIELD_TYPE_STRING:
+          // Matches the Android behavior to contain a zero-byte at the end
+          return Arrays.copyOfRange(arena, offset(values[field]), end(values[field]) + 1);
+        default:
+          throw new android.database.sqlite.SQLiteException(
+              "Getting blob when column is non-blob. Row " + row + ", col " + column);
+      }
     }
 
-    public boolean putValue(Value value, int rowN, int colN) {
-      return rows.get(rowN).set(colN, value);
+    public String getString(int row, int column) {
+      int field = field(row, column);
+      switch (types[field]) {
+        case Cursor.FIELD_TYPE_NULL:
+          return null;
+        case Cursor.FIELD_TYPE_INTEGER:
+          return Long.toString(values[field]);
+        case Cursor.FIELD_TYPE_FLOAT:
+          return Double.toString(Double.longBitsToDouble(values[field]));
+        case Cursor.FIELD_TYPE_STRING:
+          return decodeString(values[field]);
+        default:
+          throw new android.database.sqlite.SQLiteException(
+              "Getting string when column is blob. Row " + row + ", col " + column);
+      }
     }
 
-    public void fillWith(SQLiteStatement stmt) throws SQLiteException {
-      //Android caches results in the WindowedCursor to allow moveToPrevious() to function.
-      //Robolectric will have to cache the results too. In the rows list.
-      while (stmt.step()) {
-        rows.add(fillRowValues(stmt));
+    public long getLong(int row, int column) {
+      int field = field(row, column);
+      switch (types[field]) {
+        case Cursor.FIELD_TYPE_INTEGER:
+          return values[field];
+        case Cursor.FIELD_TYPE_FLOAT:
+          return (long) Double.longBitsToDouble(values[field]);
+        default:
+          return (long) getNonNumeric(field);
       }
     }
 
-    private static int cursorValueType(final int sqliteType) {
-      switch (sqliteType) {
-        case SQLiteConstants.SQLITE_NULL:    return Cursor.FIELD_TYPE_NULL;
-        case SQLiteConstants.SQLITE_INTEGER: return Cursor.FIELD_TYPE_INTEGER;
-        case SQLiteConstants.SQLITE_FLOAT:   return Cursor.FIELD_TYPE_FLOAT;
-        case SQLiteConstants.SQLITE_TEXT:    return Cursor.FIELD_TYPE_STRING;
-        case SQLiteConstants.SQLITE_BLOB:    return Cursor.FIELD_TYPE_BLOB;
+    public double getDouble(int row, int column) {
+      int field = field(row, column);
+      switch (types[field]) {
+        case Cursor.FIELD_TYPE_INTEGER:
+          return values[field];
+        case Cursor.FIELD_TYPE_FLOAT:
+          return Double.longBitsToDouble(values[field]);
         default:
-          throw new IllegalArgumentException(
-              "Bad SQLite type " + sqliteType + ". See possible values in SQLiteConstants.");
+          return getNonNumeric(field);
       }
     }
 
-    private static Row fillRowValues(SQLiteStatement stmt) throws SQLiteException {
-      final int columnCount = stmt.columnCount();
-      Row row = new Row(columnCount);
-      for (int index = 0; index < columnCount; index++) {
-        row.set(index, new Value(stmt.columnValue(index), cursorValueType(stmt.columnType(index))));
+    private double getNonNumeric(int field) {
+      switch (types[field]) {
+        case Cursor.FIELD_TYPE_NULL:
+          return 0;
+        case Cursor.FIELD_TYPE_STRING:
+          try {
+            return Double.parseDouble(decodeString(values[field]));
+          } catch (NumberFormatException e) {
+            return 0;
+          }
+        default:
+          throw new android.database.sqlite.SQLiteException(
+              "could not convert blob of length " + length(values[field]));
       }
-      return row;
     }
 
-    public void clear() {
-      rows.clear();
+    public int numRows() {
+      return numRows;
     }
 
-    public boolean allocRow() {
-      rows.add(new Row(numColumns));
+    public boolean putNull(int row, int column) {
+      int field = field(row, column);
+      types[field] = Cursor.FIELD_TYPE_NULL;
+      values[field] = 0;
       return true;
     }
 
-    public boolean setNumColumns(int numColumns) {
-      this.numColumns = numColumns;
+    public boolean putLong(long value, int row, int column) {
+      int field = field(row, column);
+      types[field] = Cursor.FIELD_TYPE_INTEGER;
+      values[field] = value;
       return true;
     }
 
-    public String getName() {
-      return name;
+    public boolean putDouble(double value, int row, int column) {
+      int field = field(row, column);
+      types[field] = Cursor.FIELD_TYPE_FLOAT;
+      values[field] = Double.doubleToRawLongBits(value);
+      return true;
+    }
+
+    public boolean putString(String value, int row, int column) {
+      int field = field(row, column);
+      byte[] bytes = value.getBytes(UTF_8);
+      types[field] = Cursor.FIELD_TYPE_STRING;
+      // the native window also stores the terminating zero-byte
+      values[field] = append(bytes, bytes.length + 1);
+      return true;
+    }
+
+    public boolean putBlob(byte[] value, int row, int column) {
+      int field = field(row, column);
+      types[field] = Cursor.FIELD_TYPE_BLOB;
+      values[field] = append(value, value.length);
+      return true;
+    }
+
+    /**
+     * Appends {@code bytes} to the arena, followed by zero-bytes up to {@code size}, and returns
+     * their offset and length packed into a long.
+     */
+    private long append(byte[] bytes, int size) {
+      if (arenaSize + size > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(arenaSize + size, arena.length * 2));
+      }
+      int offset = arenaSize;
+      System.arraycopy(bytes, 0, arena, offset, bytes.length);
+      if (size > bytes.length) {
+        Arrays.fill(arena, offset + bytes.length, offset + size, (byte) 0);
+      }
+      arenaSize += size;
+      usedBytes += size;
+      return ((long) offset << 32) | bytes.length;
+    }
+
+    private String decodeString(long value) {
+      return new String(arena, offset(value), length(value), UTF_8);
+    }
+
+    private static int offset(long value) {
+      return (int) (value >>> 32);
+    }
+
+    private static int length(long value) {
+      return (int) value;
+    }
+
+    private static int end(long value) {
+      return offset(value) + length(value);
     }
-  }
 
-  private static class Row {
-    private final List<Value> values;
+    long fillWith(SQLiteStatement stmt, int startPos, int requiredPos, boolean countAllRows)
+        throws SQLiteException {
+      // Like Android, only the rows that fit in the window are kept; the cursor refills the window
+      // from another start position when it moves outside of it.
+      clear();
+      setNumColumns(stmt.columnCount());
+      int totalRows = 0;
+      int addedRows = 0;
+      boolean windowFull = false;
+      while ((!windowFull || countAllRows) && stmt.step()) {
+        totalRows += 1;
+        if (startPos >= totalRows || windowFull) {
+          continue;
+        }
+        int previousArenaSize = arenaSize;
+        int previousUsedBytes = usedBytes;
+        copyRow(stmt);
+        // unlike Android, a row that doesn't fit in an empty window is kept rather than dropped
+        if (usedBytes > windowSize && addedRows > 0) {
+          numRows -= 1;
+          arenaSize = previousArenaSize;
+          usedBytes = previousUsedBytes;
+          if (startPos + addedRows <= requiredPos) {
+            // We filled the window before we got to the one row that we really wanted.
+            // Clear the window and start filling it again from here.
+            clear();
+            startPos += addedRows;
+            addedRows = 0;
+            copyRow(stmt);
+          } else {
+            windowFull = true;
+            continue;
+          }
+        }
+        addedRows += 1;
+      }
+      return ((long) startPos << 32) | totalRows;
+    }
 
-    public Row(int length) {
-      values = new ArrayList<Value>(length);
-      for (int i=0; i<length; i++) {
-        values.add(new Value(null, Cursor.FIELD_TYPE_NULL));
+    private void copyRow(SQLiteStatement stmt) throws SQLiteException {
+      allocRow();
+      int row = numRows - 1;
+      for (int column = 0; column < numColumns; column++) {
+        int sqliteType = stmt.columnType(column);
+        switch (sqliteType) {
+          case SQLiteConstants.SQLITE_NULL:
+            break;
+          case SQLiteConstants.SQLITE_INTEGER:
+            putLong(stmt.columnLong(column), row, column);
+            break;
+          case SQLiteConstants.SQLITE_FLOAT:
+            putDouble(stmt.columnDouble(column), row, column);
+            break;
+          case SQLiteConstants.SQLITE_TEXT:
+            putString(stmt.columnString(column), row, column);
+            break;
+          case SQLiteConstants.SQLITE_BLOB:
+            byte[] blob = stmt.columnBlob(column);
+            // This matches Android's behavior, which does not match the SQLite spec
+            putBlob(blob == null ? EMPTY_BYTES : blob, row, column);
+            break;
+          default:
+            throw new IllegalArgumentException(
+                "Bad SQLite type " + sqliteType + ". See possible values in SQLiteConstants.");
+        }
       }
     }
 
-    public Value get(int n) {
-      return values.get(n);
+    public void clear() {
+      numRows = 0;
+      arenaSize = 0;
+      usedBytes = 0;
     }
 
-    public boolean set(int colN, Value value) {
-      values.set(colN, value);
+    public boolean allocRow() {
+      int firstField = numRows * numColumns;
+      int fieldCount = firstField + numColumns;
+      if (fieldCount > types.length) {
+        int capacity = Math.max(fieldCount, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      Arrays.fill(types, firstField, fieldCount, (byte) Cursor.FIELD_TYPE_NULL);
+      Arrays.fill(values, firstField, fieldCount, 0);
+      numRows += 1;
+      usedBytes += ROW_SLOT_SIZE + numColumns * FIELD_SLOT_SIZE;
       return true;
     }
-  }
 
-  private static class Value {
-    private final Object value;
-    private final int type;
+    public boolean setNumColumns(int numColumns) {
+      if (numRows > 0 && numColumns != this.numColumns) {
+        // like Android, the number of columns can't change once rows have been added
+        return false;
+      }
+      this.numColumns = numColumns;
+      return true;
+    }
 
-    public Value(final Object value, final int type) {
-      this.value = value;
-      this.type = type;
+    public String getName() {
+      return name;
     }
   }
 
@@ -361,10 +520,14 @@ public class ShadowLegacyCursorWindow extends ShadowCursorWindow {
       return data;
     }
 
-    public int setData(final long ptr, final SQLiteStatement stmt) throws SQLiteException {
-      Data data = get(ptr);
-      data.fillWith(stmt);
-      return data.numRows();
+    public long setData(
+        final long ptr,
+        final SQLiteStatement stmt,
+        final int startPos,
+        final int requiredPos,
+        final boolean countAllRows)
+        throws SQLiteException {
+      return get(ptr).fillWith(stmt, startPos, requiredPos, countAllRows);
     }
 
     public void close(final long ptr) {
@@ -36,10 +36,11 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -320,7 +321,8 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       final int startPos,
       final int requiredPos,
       final boolean countAllRows) {
-    return CONNECTIONS.executeForCursorWindow(connectionPtr, statementPtr, windowPtr);
+    return CONNECTIONS.executeForCursorWindow(
+        connectionPtr, statementPtr, windowPtr, startPos, requiredPos, countAllRows);
   }
 
   @Implementation(maxSdk = KITKAT_WATCH)
@@ -390,148 +392,212 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
 // VisibleForTesting
 static class Connections {
 
+  /**
+   * If set to {@code true}, each connection is confined to its own worker thread and guarded by its
+   * own lock, so that operations on different databases don't wait for each other. By default all
+   * connections share a single worker thread and lock.
+   */
+  static final String PER_CONNECTION_WORKERS_PROPERTY = "robolectric.sqlite.perConnectionWorkers";
+
+  private final boolean perConnectionWorkers;
   private final Object lock = new Object();
   private final AtomicLong pointerCounter = new AtomicLong(0);
-  private final Map<Long, SQLiteStatement> statementsMap = new HashMap<>();
-  private final Map<Long, SQLiteConnection> connectionsMap = new HashMap<>();
-  private final Map<Long, List<Long>> statementPtrsForConnection = new HashMap<>();
-
-    private ExecutorService dbExecutor = Executors.newSingleThreadExecutor(threadFactory());
-
-    static ThreadFactory threadFactory() {
-      ThreadFactory delegate = Executors.defaultThreadFactory();
-      return r -> {
-        Thread worker = delegate.newThread(r);
-        worker.setName(ShadowLegacySQLiteConnection.class.getSimpleName() + " worker");
-        return worker;
-      };
-    }
+  private final Map<Long, SQLiteStatement> statementsMap = new ConcurrentHashMap<>();
+  private final Map<Long, ConnectionState> connectionsMap = new ConcurrentHashMap<>();
+
+  // guarded by lock; null if each connection has its own worker
+  private ExecutorService dbExecutor;
+
+  Connections() {
+    this(Boolean.getBoolean(PER_CONNECTION_WORKERS_PROPERTY));
+  }
+
+  Connections(boolean perConnectionWorkers) {
+    this.perConnectionWorkers = perConnectionWorkers;
+    this.dbExecutor = perConnectionWorkers ? null : newWorker();
+  }
+
+  static ThreadFactory threadFactory() {
+    ThreadFactory delegate = Executors.defaultThreadFactory();
+    return r -> {
+      Thread worker = delegate.newThread(r);
+      worker.setName(ShadowLegacySQLiteConnection.class.getSimpleName() + " worker");
+      return worker;
+    };
+  }
+
+  private static ExecutorService newWorker() {
+    return Executors.newSingleThreadExecutor(threadFactory());
+  }
 
   SQLiteConnection getConnection(final long connectionPtr) {
-    synchronized (lock) {
-      final SQLiteConnection connection = connectionsMap.get(connectionPtr);
-      if (connection == null) {
-          throw new IllegalStateException(
-              "Illegal connection pointer "
-                  + connectionPtr
-                  + ". Current pointers for thread "
-                  + Thread.currentThread()
-                  + " "
-                  + connectionsMap.keySet());
-      }
-      return connection;
+    return getConnectionState(connectionPtr).connection;
+  }
+
+  private ConnectionState getConnectionState(final long connectionPtr) {
+    final ConnectionState state = connectionsMap.get(connectionPtr);
+    if (state == null) {
+      throw illegalConnectionPointer(connectionPtr);
+    }
+    return state;
+  }
+
+  private IllegalStateException illegalConnectionPointer(final long connectionPtr) {
+    return new IllegalStateException(
+        "Illegal connection pointer "
+            + connectionPtr
+            + ". Current pointers for thread "
+            + Thread.currentThread()
+            + " "
+            + connectionsMap.keySet());
+  }
+
+  private SQLiteStatement getStatement(final long statementPtr) {
+    final SQLiteStatement statement = statementsMap.get(statementPtr);
+    if (statement == null) {
+      throw new IllegalArgumentException(
+          "Invalid prepared statement pointer: "
+              + statementPtr
+              + ". Current pointers: "
+              + statementsMap.keySet());
+    }
+    if (statement.isDisposed()) {
+      throw new IllegalStateException(
+          "Statement " + statementPtr + " " + statement + " is disposed");
     }
+    return statement;
   }
 
-  SQLiteStatement getStatement(final long connectionPtr, final long statementPtr) {
-    synchronized (lock) {
-      // ensure connection is ok
-      getConnection(connectionPtr);
-
-      final SQLiteStatement statement = statementsMap.get(statementPtr);
-      if (statement == null) {
-          throw new IllegalArgumentException(
-              "Invalid prepared statement pointer: "
-                  + statementPtr
-                  + ". Current pointers: "
-                  + statementsMap.keySet());
-      }
-      if (statement.isDisposed()) {
-          throw new IllegalStateException(
-              "Statement " + statementPtr + " " + statement + " is disposed");
+  /** Calls {@code operation} while holding the lock guarding the given connection. */
+  private <T> T withConnection(final long connectionPtr, final ConnectionOperation<T> operation) {
+    final ConnectionState state = getConnectionState(connectionPtr);
+    synchronized (state.lock) {
+      if (state.closed) {
+        // closed while we were waiting for the lock
+        throw illegalConnectionPointer(connectionPtr);
       }
-      return statement;
+      return operation.call(state);
     }
   }
 
   long open(final String path) {
-    synchronized (lock) {
-        final SQLiteConnection dbConnection =
-            execute(
-                new Callable<SQLiteConnection>() {
-                  @Override
-                  public SQLiteConnection call() throws Exception {
-                    SQLiteConnection connection =
-                        useInMemoryDatabase.get() || IN_MEMORY_PATH.equals(path)
-                            ? new SQLiteConnection()
-                            : new SQLiteConnection(new File(path));
-
-                    connection.open();
-                    return connection;
-                  }
-                });
+    final Callable<SQLiteConnection> openConnection =
+        () -> {
+          SQLiteConnection connection =
+              useInMemoryDatabase.get() || IN_MEMORY_PATH.equals(path)
+                  ? new SQLiteConnection()
+                  : new SQLiteConnection(new File(path));
+
+          connection.open();
+          return connection;
+        };
+
+    if (perConnectionWorkers) {
+      final ExecutorService worker = newWorker();
+      final SQLiteConnection dbConnection;
+      try {
+        dbConnection = execute(worker, openConnection);
+      } catch (RuntimeException e) {
+        worker.shutdown();
+        throw e;
+      }
+      return register(new ConnectionState(dbConnection, worker, new Object()));
+    }
 
-      final long connectionPtr = pointerCounter.incrementAndGet();
-      connectionsMap.put(connectionPtr, dbConnection);
-      statementPtrsForConnection.put(connectionPtr, new ArrayList<>());
-      return connectionPtr;
+    synchronized (lock) {
+      final SQLiteConnection dbConnection = execute(dbExecutor, openConnection);
+      return register(new ConnectionState(dbConnection, dbExecutor, lock));
     }
   }
 
+  private long register(ConnectionState state) {
+    final long connectionPtr = pointerCounter.incrementAndGet();
+    connectionsMap.put(connectionPtr, state);
+    return connectionPtr;
+  }
+
   long prepareStatement(final long connectionPtr, final String sql) {
     // TODO: find a way to create collators
     if ("REINDEX LOCALIZED".equals(sql)) {
       return IGNORED_REINDEX_STMT;
     }
 
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-        final SQLiteStatement statement =
-            execute(
-                new Callable<SQLiteStatement>() {
-                  @Override
-                  public SQLiteStatement call() throws Exception {
-                    return connection.prepare(sql);
-                  }
-                });
-
-      final long statementPtr = pointerCounter.incrementAndGet();
-      statementsMap.put(statementPtr, statement);
-      statementPtrsForConnection.get(connectionPtr).add(statementPtr);
-      return statementPtr;
-    }
+    return withConnection(
+        connectionPtr,
+        state -> {
+          final SQLiteStatement statement =
+              execute(
+                  state,
+                  new Callable<SQLiteStatement>() {
+                    @Override
+                    public SQLiteStatement call() throws Exception {
+                      return state.connection.prepare(sql);
+                    }
+                  });
+
+          final long statementPtr = pointerCounter.incrementAndGet();
+          statementsMap.put(statementPtr, statement);
+          state.statementPtrs.add(statementPtr);
+          return statementPtr;
+        });
   }
 
   void close(final long connectionPtr) {
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-        execute(
-            () -> {
-              connection.dispose();
-              return null;
-            });
-      connectionsMap.remove(connectionPtr);
-      statementPtrsForConnection.remove(connectionPtr);
-    }
+    withConnection(
+        connectionPtr,
+        state -> {
+          execute(
+              state,
+              () -> {
+                state.connection.dispose();
+                return null;
+              });
+          state.closed = true;
+          connectionsMap.remove(connectionPtr);
+          // disposing the connection disposed its statements
+          statementsMap.keySet().removeAll(state.statementPtrs);
+          if (perConnectionWorkers) {
+            state.executor.shutdown();
+          }
+          return null;
+        });
   }
 
   void reset() {
     ExecutorService oldDbExecutor;
-    Collection<SQLiteConnection> openConnections;
+    Collection<ConnectionState> openConnections;
 
     synchronized (lock) {
       oldDbExecutor = dbExecutor;
       openConnections = new ArrayList<>(connectionsMap.values());
 
-        dbExecutor = Executors.newSingleThreadExecutor(threadFactory());
+      if (!perConnectionWorkers) {
+        dbExecutor = newWorker();
+      }
       connectionsMap.clear();
       statementsMap.clear();
-      statementPtrsForConnection.clear();
     }
 
-    shutdownDbExecutor(oldDbExecutor, openConnections);
-  }
-
-  private static void shutdownDbExecutor(ExecutorService executorService, Collection<SQLiteConnection> connections) {
-    for (final SQLiteConnection connection : connections) {
-        getFuture(
-            executorService.submit(
-                () -> {
-                  connection.dispose();
-                  return null;
-                }));
+    for (final ConnectionState state : openConnections) {
+      synchronized (state.lock) {
+        state.closed = true;
+      }
+      getFuture(
+          state.executor.submit(
+              () -> {
+                state.connection.dispose();
+                return null;
+              }));
+      if (state.executor != oldDbExecutor) {
+        shutdownDbExecutor(state.executor);
+      }
     }
+    if (oldDbExecutor != null) {
+      shutdownDbExecutor(oldDbExecutor);
+    }
+  }
 
+  private static void shutdownDbExecutor(ExecutorService executorService) {
     executorService.shutdown();
     try {
       executorService.awaitTermination(30, TimeUnit.SECONDS);
@@ -545,36 +611,42 @@ static class Connections {
       return;
     }
 
-    synchronized (lock) {
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-      statementsMap.remove(statementPtr);
-
-        execute(
-            () -> {
-              statement.dispose();
-              return null;
-            });
-    }
+    withConnection(
+        connectionPtr,
+        state -> {
+          final SQLiteStatement statement = getStatement(statementPtr);
+          statementsMap.remove(statementPtr);
+          state.statementPtrs.remove(statementPtr);
+
+          return execute(
+              state,
+              () -> {
+                statement.dispose();
+                return null;
+              });
+        });
   }
 
   void cancel(final long connectionPtr) {
-    synchronized (lock) {
-      getConnection(connectionPtr); // check connection
-
-      for (Long statementPtr : statementPtrsForConnection.get(connectionPtr)) {
-        final SQLiteStatement statement = statementsMap.get(statementPtr);
-        if (statement != null) {
-            execute(
-                new Callable<Void>() {
-                  @Override
-                  public Void call() throws Exception {
-                    statement.cancel();
-                    return null;
-                  }
-                });
-        }
-      }
-    }
+    withConnection(
+        connectionPtr,
+        state -> {
+          for (Long statementPtr : state.statementPtrs) {
+            final SQLiteStatement statement = statementsMap.get(statementPtr);
+            if (statement != null) {
+              execute(
+                  state,
+                  new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                      statement.cancel();
+                      return null;
+                    }
+                  });
+            }
+          }
+          return null;
+        });
   }
 
   int getParameterCount(final long connectionPtr, final long statementPtr) {
@@ -582,15 +654,15 @@ static class Connections {
       return 0;
     }
 
-      return executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Integer>() {
-            @Override
-            public Integer call(final SQLiteStatement statement) throws Exception {
-              return statement.getBindParameterCount();
-            }
-          });
+    return executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Integer>() {
+          @Override
+          public Integer call(final SQLiteStatement statement) throws Exception {
+            return statement.getBindParameterCount();
+          }
+        });
   }
 
   boolean isReadOnly(final long connectionPtr, final long statementPtr) {
@@ -598,31 +670,31 @@ static class Connections {
       return true;
     }
 
-      return executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Boolean>() {
-            @Override
-            public Boolean call(final SQLiteStatement statement) throws Exception {
-              return statement.isReadOnly();
-            }
-          });
+    return executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Boolean>() {
+          @Override
+          public Boolean call(final SQLiteStatement statement) throws Exception {
+            return statement.isReadOnly();
+          }
+        });
   }
 
   long executeForLong(final long connectionPtr, final long statementPtr) {
-      return executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Long>() {
-            @Override
-            public Long call(final SQLiteStatement statement) throws Exception {
-              if (!statement.step()) {
-                throw new SQLiteException(
-                    SQLiteConstants.SQLITE_DONE, "No rows returned from query");
-              }
-              return statement.columnLong(0);
+    return executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Long>() {
+          @Override
+          public Long call(final SQLiteStatement statement) throws Exception {
+            if (!statement.step()) {
+              throw new SQLiteException(
+                  SQLiteConstants.SQLITE_DONE, "No rows returned from query");
             }
-          });
+            return statement.columnLong(0);
+          }
+        });
   }
 
   void executeStatement(final long connectionPtr, final long statementPtr) {
@@ -630,339 +702,373 @@ static class Connections {
       return;
     }
 
-      executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Void>() {
-            @Override
-            public Void call(final SQLiteStatement statement) throws Exception {
-              statement.stepThrough();
-              return null;
-            }
-          });
+    executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Void>() {
+          @Override
+          public Void call(final SQLiteStatement statement) throws Exception {
+            statement.stepThrough();
+            return null;
+          }
+        });
   }
 
   String executeForString(final long connectionPtr, final long statementPtr) {
-      return executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<String>() {
-            @Override
-            public String call(final SQLiteStatement statement) throws Exception {
-              if (!statement.step()) {
-                throw new SQLiteException(
-                    SQLiteConstants.SQLITE_DONE, "No rows returned from query");
-              }
-              return statement.columnString(0);
+    return executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<String>() {
+          @Override
+          public String call(final SQLiteStatement statement) throws Exception {
+            if (!statement.step()) {
+              throw new SQLiteException(
+                  SQLiteConstants.SQLITE_DONE, "No rows returned from query");
             }
-          });
+            return statement.columnString(0);
+          }
+        });
   }
 
   int getColumnCount(final long connectionPtr, final long statementPtr) {
-      return executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Integer>() {
-            @Override
-            public Integer call(final SQLiteStatement statement) throws Exception {
-              return statement.columnCount();
-            }
-          });
+    return executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Integer>() {
+          @Override
+          public Integer call(final SQLiteStatement statement) throws Exception {
+            return statement.columnCount();
+          }
+        });
   }
 
   String getColumnName(final long connectionPtr, final long statementPtr, final int index) {
-      return executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<String>() {
-            @Override
-            public String call(final SQLiteStatement statement) throws Exception {
-              return statement.getColumnName(index);
-            }
-          });
+    return executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<String>() {
+          @Override
+          public String call(final SQLiteStatement statement) throws Exception {
+            return statement.getColumnName(index);
+          }
+        });
   }
 
   void bindNull(final long connectionPtr, final long statementPtr, final int index) {
-      executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Void>() {
-            @Override
-            public Void call(final SQLiteStatement statement) throws Exception {
-              statement.bindNull(index);
-              return null;
-            }
-          });
+    executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Void>() {
+          @Override
+          public Void call(final SQLiteStatement statement) throws Exception {
+            statement.bindNull(index);
+            return null;
+          }
+        });
   }
 
   void bindLong(final long connectionPtr, final long statementPtr, final int index, final long value) {
-      executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Void>() {
-            @Override
-            public Void call(final SQLiteStatement statement) throws Exception {
-              statement.bind(index, value);
-              return null;
-            }
-          });
+    executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Void>() {
+          @Override
+          public Void call(final SQLiteStatement statement) throws Exception {
+            statement.bind(index, value);
+            return null;
+          }
+        });
   }
 
   void bindDouble(final long connectionPtr, final long statementPtr, final int index, final double value) {
-      executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Void>() {
-            @Override
-            public Void call(final SQLiteStatement statement) throws Exception {
-              statement.bind(index, value);
-              return null;
-            }
-          });
+    executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Void>() {
+          @Override
+          public Void call(final SQLiteStatement statement) throws Exception {
+            statement.bind(index, value);
+            return null;
+          }
+        });
   }
 
   void bindString(final long connectionPtr, final long statementPtr, final int index, final String value) {
-      executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Void>() {
-            @Override
-            public Void call(final SQLiteStatement statement) throws Exception {
-              statement.bind(index, value);
-              return null;
-            }
-          });
+    executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Void>() {
+          @Override
+          public Void call(final SQLiteStatement statement) throws Exception {
+            statement.bind(index, value);
+            return null;
+          }
+        });
   }
 
   void bindBlob(final long connectionPtr, final long statementPtr, final int index, final byte[] value) {
-      executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Void>() {
-            @Override
-            public Void call(final SQLiteStatement statement) throws Exception {
-              statement.bind(index, value);
-              return null;
-            }
-          });
+    executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Void>() {
+          @Override
+          public Void call(final SQLiteStatement statement) throws Exception {
+            statement.bind(index, value);
+            return null;
+          }
+        });
   }
 
   int executeForChangedRowCount(final long connectionPtr, final long statementPtr) {
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-
-        return execute(
-            new Callable<Integer>() {
-              @Override
-              public Integer call() throws Exception {
-                if (statement.step()) {
-                  throw new android.database.sqlite.SQLiteException(
-                      "Queries can be performed using SQLiteDatabase query or rawQuery methods"
-                          + " only.");
+    return withConnection(
+        connectionPtr,
+        state -> {
+          final SQLiteStatement statement = getStatement(statementPtr);
+
+          return execute(
+              state,
+              new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                  if (statement.step()) {
+                    throw new android.database.sqlite.SQLiteException(
+                        "Queries can be performed using SQLiteDatabase query or rawQuery methods"
+                            + " only.");
+                  }
+                  return state.connection.getChanges();
                 }
-                return connection.getChanges();
-              }
-            });
-    }
+              });
+        });
   }
 
   long executeForLastInsertedRowId(final long connectionPtr, final long statementPtr) {
-    synchronized (lock) {
-      final SQLiteConnection connection = getConnection(connectionPtr);
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-
-        return execute(
-            new Callable<Long>() {
-              @Override
-              public Long call() throws Exception {
-                statement.stepThrough();
-                return connection.getChanges() > 0 ? connection.getLastInsertId() : -1L;
-              }
-            });
-    }
+    return withConnection(
+        connectionPtr,
+        state -> {
+          final SQLiteStatement statement = getStatement(statementPtr);
+
+          return execute(
+              state,
+              new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                  statement.stepThrough();
+                  return state.connection.getChanges() > 0
+                      ? state.connection.getLastInsertId()
+                      : -1L;
+                }
+              });
+        });
   }
 
-  long executeForCursorWindow(final long connectionPtr, final long statementPtr, final long windowPtr) {
-      return executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Integer>() {
-            @Override
-            public Integer call(final SQLiteStatement statement) throws Exception {
-              return ShadowLegacyCursorWindow.setData(windowPtr, statement);
-            }
-          });
+  long executeForCursorWindow(
+      final long connectionPtr,
+      final long statementPtr,
+      final long windowPtr,
+      final int startPos,
+      final int requiredPos,
+      final boolean countAllRows) {
+    return executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Long>() {
+          @Override
+          public Long call(final SQLiteStatement statement) throws Exception {
+            return ShadowLegacyCursorWindow.setData(
+                windowPtr, statement, startPos, requiredPos, countAllRows);
+          }
+        });
   }
 
   void resetStatementAndClearBindings(final long connectionPtr, final long statementPtr) {
-      executeStatementOperation(
-          connectionPtr,
-          statementPtr,
-          new StatementOperation<Void>() {
-            @Override
-            public Void call(final SQLiteStatement statement) throws Exception {
-              statement.reset(true);
-              return null;
-            }
-          });
+    executeStatementOperation(
+        connectionPtr,
+        statementPtr,
+        new StatementOperation<Void>() {
+          @Override
+          public Void call(final SQLiteStatement statement) throws Exception {
+            statement.reset(true);
+            return null;
+          }
+        });
   }
 
   interface StatementOperation<T> {
     T call(final SQLiteStatement statement) throws Exception;
   }
 
-    private <T> T executeStatementOperation(
-        final long connectionPtr,
-        final long statementPtr,
-        final StatementOperation<T> statementOperation) {
-    synchronized (lock) {
-      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-        return execute(
-            () -> {
-              return statementOperation.call(statement);
-            });
-      }
-    }
+  private interface ConnectionOperation<T> {
+    T call(ConnectionState state);
+  }
 
-    /**
-     * Any Callable passed in to execute must not synchronize on lock, as this will result in a
-     * deadlock
-     */
-    private <T> T execute(final Callable<T> work) {
-    synchronized (lock) {
-        return PerfStatsCollector.getInstance()
-            .measure("sqlite", () -> getFuture(dbExecutor.submit(work)));
-      }
+  /** An open connection, the worker it's confined to and the lock guarding its use. */
+  private static class ConnectionState {
+    final SQLiteConnection connection;
+    final ExecutorService executor;
+    final Object lock;
+    // guarded by lock
+    final Set<Long> statementPtrs = new LinkedHashSet<>();
+    boolean closed;
+
+    ConnectionState(SQLiteConnection connection, ExecutorService executor, Object lock) {
+      this.connection = connection;
+      this.executor = executor;
+      this.lock = lock;
     }
+  }
 
-    private static <T> T getFuture(final Future<T> future) {
-      try {
-        return Uninterruptibles.getUninterruptibly(future);
-        // No need to catch cancellationexception - we never cancel these futures
-      } catch (ExecutionException e) {
-        Throwable t = e.getCause();
-        if (t instanceof SQLiteException) {
-          SQLiteException sqliteException = (SQLiteException) t;
-          final RuntimeException sqlException =
-              getSqliteException(sqliteException.getMessage(), sqliteException.getErrorCode());
-          sqlException.initCause(e);
-          throw sqlException;
-        } else if (t instanceof android.database.sqlite.SQLiteException) {
-          throw (android.database.sqlite.SQLiteException) t;
-        } else {
-          throw new RuntimeException(e);
-        }
+  private <T> T executeStatementOperation(
+      final long connectionPtr,
+      final long statementPtr,
+      final StatementOperation<T> statementOperation) {
+    return withConnection(
+        connectionPtr,
+        state -> {
+          final SQLiteStatement statement = getStatement(statementPtr);
+          return execute(state, () -> statementOperation.call(statement));
+        });
+  }
+
+  /**
+   * Runs {@code work} on the worker thread the connection is confined to. Any Callable passed in
+   * to execute must not synchronize on the connection's lock, as this will result in a deadlock.
+   */
+  private static <T> T execute(final ConnectionState state, final Callable<T> work) {
+    return execute(state.executor, work);
+  }
+
+  private static <T> T execute(final ExecutorService executor, final Callable<T> work) {
+    return PerfStatsCollector.getInstance()
+        .measure("sqlite", () -> getFuture(executor.submit(work)));
+  }
+
+  private static <T> T getFuture(final Future<T> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+      // No need to catch cancellationexception - we never cancel these futures
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      if (t instanceof SQLiteException) {
+        SQLiteException sqliteException = (SQLiteException) t;
+        final RuntimeException sqlException =
+            getSqliteException(sqliteException.getMessage(), sqliteException.getErrorCode());
+        sqlException.initCause(e);
+        throw sqlException;
+      } else if (t instanceof android.database.sqlite.SQLiteException) {
+        throw (android.database.sqlite.SQLiteException) t;
+      } else {
+        throw new RuntimeException(e);
       }
     }
+  }
 
-    // These are from android_database_SQLiteCommon.cpp
-    private static final ImmutableMap<Integer, String> ERROR_CODE_MAP =
-        new ImmutableMap.Builder<Integer, String>()
-            .put(4, "SQLITE_ABORT")
-            .put(23, "SQLITE_AUTH")
-            .put(5, "SQLITE_BUSY")
-            .put(14, "SQLITE_CANTOPEN")
-            .put(19, "SQLITE_CONSTRAINT")
-            .put(11, "SQLITE_CORRUPT")
-            .put(101, "SQLITE_DONE")
-            .put(16, "SQLITE_EMPTY")
-            .put(1, "SQLITE_ERROR")
-            .put(24, "SQLITE_FORMAT")
-            .put(13, "SQLITE_FULL")
-            .put(2, "SQLITE_INTERNAL")
-            .put(9, "SQLITE_INTERRUPT")
-            .put(10, "SQLITE_IOERR")
-            .put(6, "SQLITE_LOCKED")
-            .put(20, "SQLITE_MISMATCH")
-            .put(21, "SQLITE_MISUSE")
-            .put(22, "SQLITE_NOLFS")
-            .put(7, "SQLITE_NOMEM")
-            .put(26, "SQLITE_NOTADB")
-            .put(12, "SQLITE_NOTFOUND")
-            .put(27, "SQLITE_NOTICE")
-            .put(0, "SQLITE_OK")
-            .put(3, "SQLITE_PERM")
-            .put(15, "SQLITE_PROTOCOL")
-            .put(25, "SQLITE_RANGE")
-            .put(8, "SQLITE_READONLY")
-            .put(100, "SQLITE_ROW")
-            .put(17, "SQLITE_SCHEMA")
-            .put(18, "SQLITE_TOOBIG")
-            .put(28, "SQLITE_WARNING")
-            // Extended Result Code List
-            .put(516, "SQLITE_ABORT_ROLLBACK")
-            .put(261, "SQLITE_BUSY_RECOVERY")
-            .put(517, "SQLITE_BUSY_SNAPSHOT")
-            .put(1038, "SQLITE_CANTOPEN_CONVPATH")
-            .put(782, "SQLITE_CANTOPEN_FULLPATH")
-            .put(526, "SQLITE_CANTOPEN_ISDIR")
-            .put(270, "SQLITE_CANTOPEN_NOTEMPDIR")
-            .put(275, "SQLITE_CONSTRAINT_CHECK")
-            .put(531, "SQLITE_CONSTRAINT_COMMITHOOK")
-            .put(787, "SQLITE_CONSTRAINT_FOREIGNKEY")
-            .put(1043, "SQLITE_CONSTRAINT_FUNCTION")
-            .put(1299, "SQLITE_CONSTRAINT_NOTNULL")
-            .put(1555, "SQLITE_CONSTRAINT_PRIMARYKEY")
-            .put(2579, "SQLITE_CONSTRAINT_ROWID")
-            .put(1811, "SQLITE_CONSTRAINT_TRIGGER")
-            .put(2067, "SQLITE_CONSTRAINT_UNIQUE")
-            .put(2323, "SQLITE_CONSTRAINT_VTAB")
-            .put(267, "SQLITE_CORRUPT_VTAB")
-            .put(3338, "SQLITE_IOERR_ACCESS")
-            .put(2826, "SQLITE_IOERR_BLOCKED")
-            .put(3594, "SQLITE_IOERR_CHECKRESERVEDLOCK")
-            .put(4106, "SQLITE_IOERR_CLOSE")
-            .put(6666, "SQLITE_IOERR_CONVPATH")
-            .put(2570, "SQLITE_IOERR_DELETE")
-            .put(5898, "SQLITE_IOERR_DELETE_NOENT")
-            .put(4362, "SQLITE_IOERR_DIR_CLOSE")
-            .put(1290, "SQLITE_IOERR_DIR_FSYNC")
-            .put(1802, "SQLITE_IOERR_FSTAT")
-            .put(1034, "SQLITE_IOERR_FSYNC")
-            .put(6410, "SQLITE_IOERR_GETTEMPPATH")
-            .put(3850, "SQLITE_IOERR_LOCK")
-            .put(6154, "SQLITE_IOERR_MMAP")
-            .put(3082, "SQLITE_IOERR_NOMEM")
-            .put(2314, "SQLITE_IOERR_RDLOCK")
-            .put(266, "SQLITE_IOERR_READ")
-            .put(5642, "SQLITE_IOERR_SEEK")
-            .put(5130, "SQLITE_IOERR_SHMLOCK")
-            .put(5386, "SQLITE_IOERR_SHMMAP")
-            .put(4618, "SQLITE_IOERR_SHMOPEN")
-            .put(4874, "SQLITE_IOERR_SHMSIZE")
-            .put(522, "SQLITE_IOERR_SHORT_READ")
-            .put(1546, "SQLITE_IOERR_TRUNCATE")
-            .put(2058, "SQLITE_IOERR_UNLOCK")
-            .put(778, "SQLITE_IOERR_WRITE")
-            .put(262, "SQLITE_LOCKED_SHAREDCACHE")
-            .put(539, "SQLITE_NOTICE_RECOVER_ROLLBACK")
-            .put(283, "SQLITE_NOTICE_RECOVER_WAL")
-            .put(256, "SQLITE_OK_LOAD_PERMANENTLY")
-            .put(520, "SQLITE_READONLY_CANTLOCK")
-            .put(1032, "SQLITE_READONLY_DBMOVED")
-            .put(264, "SQLITE_READONLY_RECOVERY")
-            .put(776, "SQLITE_READONLY_ROLLBACK")
-            .put(284, "SQLITE_WARNING_AUTOINDEX")
-            .build();
-
-    private static RuntimeException getSqliteException(
-        final String sqliteErrorMessage, final int errorCode) {
-      final int baseErrorCode = errorCode & 0xff;
-      // Remove redundant error code prefix from sqlite4java. The error code is added
-      // as a suffix below.
-      String errorMessageWithoutCode = sqliteErrorMessage.replaceAll("^\\[\\d+\\] ?", "");
-      StringBuilder fullMessage = new StringBuilder(errorMessageWithoutCode);
-      fullMessage.append(" (code ");
-      fullMessage.append(errorCode);
-      String errorCodeMessage = ERROR_CODE_MAP.getOrDefault(errorCode, "");
-      if (MoreObjects.firstNonNull(errorCodeMessage, "").length() > 0) {
-        fullMessage.append(" ").append(errorCodeMessage);
-      }
-      fullMessage.append(")");
-      String message = fullMessage.toString();
-      // Mapping is from throw_sqlite3_exception in android_database_SQLiteCommon.cpp
-      switch (baseErrorCode) {
+  // These are from android_database_SQLiteCommon.cpp
+  private static final ImmutableMap<Integer, String> ERROR_CODE_MAP =
+      new ImmutableMap.Builder<Integer, String>()
+          .put(4, "SQLITE_ABORT")
+          .put(23, "SQLITE_AUTH")
+          .put(5, "SQLITE_BUSY")
+          .put(14, "SQLITE_CANTOPEN")
+          .put(19, "SQLITE_CONSTRAINT")
+          .put(11, "SQLITE_CORRUPT")
+          .put(101, "SQLITE_DONE")
+          .put(16, "SQLITE_EMPTY")
+          .put(1, "SQLITE_ERROR")
+          .put(24, "SQLITE_FORMAT")
+          .put(13, "SQLITE_FULL")
+          .put(2, "SQLITE_INTERNAL")
+          .put(9, "SQLITE_INTERRUPT")
+          .put(10, "SQLITE_IOERR")
+          .put(6, "SQLITE_LOCKED")
+          .put(20, "SQLITE_MISMATCH")
+          .put(21, "SQLITE_MISUSE")
+          .put(22, "SQLITE_NOLFS")
+          .put(7, "SQLITE_NOMEM")
+          .put(26, "SQLITE_NOTADB")
+          .put(12, "SQLITE_NOTFOUND")
+          .put(27, "SQLITE_NOTICE")
+          .put(0, "SQLITE_OK")
+          .put(3, "SQLITE_PERM")
+          .put(15, "SQLITE_PROTOCOL")
+          .put(25, "SQLITE_RANGE")
+          .put(8, "SQLITE_READONLY")
+          .put(100, "SQLITE_ROW")
+          .put(17, "SQLITE_SCHEMA")
+          .put(18, "SQLITE_TOOBIG")
+          .put(28, "SQLITE_WARNING")
+          // Extended Result Code List
+          .put(516, "SQLITE_ABORT_ROLLBACK")
+          .put(261, "SQLITE_BUSY_RECOVERY")
+          .put(517, "SQLITE_BUSY_SNAPSHOT")
+          .put(1038, "SQLITE_CANTOPEN_CONVPATH")
+          .put(782, "SQLITE_CANTOPEN_FULLPATH")
+          .put(526, "SQLITE_CANTOPEN_ISDIR")
+          .put(270, "SQLITE_CANTOPEN_NOTEMPDIR")
+          .put(275, "SQLITE_CONSTRAINT_CHECK")
+          .put(531, "SQLITE_CONSTRAINT_COMMITHOOK")
+          .put(787, "SQLITE_CONSTRAINT_FOREIGNKEY")
+          .put(1043, "SQLITE_CONSTRAINT_FUNCTION")
+          .put(1299, "SQLITE_CONSTRAINT_NOTNULL")
+          .put(1555, "SQLITE_CONSTRAINT_PRIMARYKEY")
+          .put(2579, "SQLITE_CONSTRAINT_ROWID")
+          .put(1811, "SQLITE_CONSTRAINT_TRIGGER")
+          .put(2067, "SQLITE_CONSTRAINT_UNIQUE")
+          .put(2323, "SQLITE_CONSTRAINT_VTAB")
+          .put(267, "SQLITE_CORRUPT_VTAB")
+          .put(3338, "SQLITE_IOERR_ACCESS")
+          .put(2826, "SQLITE_IOERR_BLOCKED")
+          .put(3594, "SQLITE_IOERR_CHECKRESERVEDLOCK")
+          .put(4106, "SQLITE_IOERR_CLOSE")
+          .put(6666, "SQLITE_IOERR_CONVPATH")
+          .put(2570, "SQLITE_IOERR_DELETE")
+          .put(5898, "SQLITE_IOERR_DELETE_NOENT")
+          .put(4362, "SQLITE_IOERR_DIR_CLOSE")
+          .put(1290, "SQLITE_IOERR_DIR_FSYNC")
+          .put(1802, "SQLITE_IOERR_FSTAT")
+          .put(1034, "SQLITE_IOERR_FSYNC")
+          .put(6410, "SQLITE_IOERR_GETTEMPPATH")
+          .put(3850, "SQLITE_IOERR_LOCK")
+          .put(6154, "SQLITE_IOERR_MMAP")
+          .put(3082, "SQLITE_IOERR_NOMEM")
+          .put(2314, "SQLITE_IOERR_RDLOCK")
+          .put(266, "SQLITE_IOERR_READ")
+          .put(5642, "SQLITE_IOERR_SEEK")
+          .put(5130, "SQLITE_IOERR_SHMLOCK")
+          .put(5386, "SQLITE_IOERR_SHMMAP")
+          .put(4618, "SQLITE_IOERR_SHMOPEN")
+          .put(4874, "SQLITE_IOERR_SHMSIZE")
+          .put(522, "SQLITE_IOERR_SHORT_READ")
+          .put(1546, "SQLITE_IOERR_TRUNCATE")
+          .put(2058, "SQLITE_IOERR_UNLOCK")
+          .put(778, "SQLITE_IOERR_WRITE")
+          .put(262, "SQLITE_LOCKED_SHAREDCACHE")
+          .put(539, "SQLITE_NOTICE_RECOVER_ROLLBACK")
+          .put(283, "SQLITE_NOTICE_RECOVER_WAL")
+          .put(256, "SQLITE_OK_LOAD_PERMANENTLY")
+          .put(520, "SQLITE_READONLY_CANTLOCK")
+          .put(1032, "SQLITE_READONLY_DBMOVED")
+          .put(264, "SQLITE_READONLY_RECOVERY")
+          .put(776, "SQLITE_READONLY_ROLLBACK")
+          .put(284, "SQLITE_WARNING_AUTOINDEX")
+          .build();
+
+  private static RuntimeException getSqliteException(
+      final String sqliteErrorMessage, final int errorCode) {
+    final int baseErrorCode = errorCode & 0xff;
+    // Remove redundant error code prefix from sqlite4java. The error code is added
+    // as a suffix below.
+    String errorMessageWithoutCode = sqliteErrorMessage.replaceAll("^\\[\\d+\\] ?", "");
+    StringBuilder fullMessage = new StringBuilder(errorMessageWithoutCode);
+    fullMessage.append(" (code ");
+    fullMessage.append(errorCode);
+    String errorCodeMessage = ERROR_CODE_MAP.getOrDefault(errorCode, "");
+    if (MoreObjects.firstNonNull(errorCodeMessage, "").length() > 0) {
+      fullMessage.append(" ").append(errorCodeMessage);
+    }
+    fullMessage.append(")");
+    String message = fullMessage.toString();
+    // Mapping is from throw_sqlite3_exception in android_database_SQLiteCommon.cpp
+    switch (baseErrorCode) {
       case SQLiteConstants.SQLITE_ABORT: return new SQLiteAbortException(message);
       case SQLiteConstants.SQLITE_PERM: return new SQLiteAccessPermException(message);
       case SQLiteConstants.SQLITE_RANGE: return new SQLiteBindOrColumnIndexOutOfRangeException(message);
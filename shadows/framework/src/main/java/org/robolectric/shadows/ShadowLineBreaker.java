@@ -15,7 +15,8 @@ public class ShadowLineBreaker {
   }
 
   static final NativeObjRegistry<NativeLineBreakerResult> nativeObjectRegistry =
-      new NativeObjRegistry<>(NativeLineBreakerResult.class);
+      new NativeObjRegistry<>(
+          NativeLineBreakerResult.class, /* debug= */ false, /* intIds= */ false);
 
   @Implementation
   protected static long nComputeLineBreaks(
@@ -37,7 +37,8 @@ public class ShadowNativeStaticLayout {
 
   // Only used for the O/O_MR1 adapter logic.
   static final NativeObjRegistry<NativeStaticLayoutSetup> nativeObjectRegistry =
-      new NativeObjRegistry<>(NativeStaticLayoutSetup.class);
+      new NativeObjRegistry<>(
+          NativeStaticLayoutSetup.class, /* debug= */ false, /* intIds= */ false);
 
   @Implementation(minSdk = P, maxSdk = P)
   protected static long nInit(
@@ -77,6 +77,7 @@ public final class ShadowPausedLooper extends ShadowLooper {
   @Implementation
   protected void __constructor__(boolean quitAllowed) {
     invokeConstructor(Looper.class, realLooper, from(boolean.class, quitAllowed));
+    shadowQueue().setLooperThread(realLooper.getThread());
 
     loopingLoopers.add(realLooper);
     looperExecutor = new HandlerExecutor(realLooper);
@@ -104,19 +105,18 @@ public final class ShadowPausedLooper extends ShadowLooper {
     executeOnLooper(new IdlingRunnable());
   }
 
+  /**
+   * Advances the clock task by task, executing the tasks that become due, until {@code time} has
+   * elapsed.
+   *
+   * <p>This is done in a single control runnable on the looper's thread, rather than by idling the
+   * looper once per task, so that long spans of virtual time don't require a round-trip to the
+   * looper thread for every task (e.g. every frame of a repeating animation).
+   */
   @Override
   public void idleFor(long time, TimeUnit timeUnit) {
     long endingTimeMs = SystemClock.uptimeMillis() + timeUnit.toMillis(time);
-    long nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
-    while (nextScheduledTimeMs != 0 && nextScheduledTimeMs <= endingTimeMs) {
-      SystemClock.setCurrentTimeMillis(nextScheduledTimeMs);
-      idle();
-      nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
-    }
-    SystemClock.setCurrentTimeMillis(endingTimeMs);
-    // the last SystemClock update might have added new tasks to the main looper via Choreographer
-    // so idle once more.
-    idle();
+    executeOnLooper(new IdleForRunnable(endingTimeMs));
   }
 
   @Override
@@ -588,19 +588,59 @@ public final class ShadowPausedLooper extends ShadowLooper {
     }
   }
 
+  /** Executes the messages in the queue until it's idle. Must be called on the looper thread. */
+  private void executeExecutableMessages() {
+    while (true) {
+      Message msg = getNextExecutableMessage();
+      if (msg == null) {
+        break;
+      }
+      msg.getTarget().dispatchMessage(msg);
+      shadowMsg(msg).recycleUnchecked();
+      triggerIdleHandlersIfNeeded(msg);
+    }
+  }
+
   private class IdlingRunnable extends ControlRunnable {
 
     @Override
     public void doRun() {
-      while (true) {
-        Message msg = getNextExecutableMessage();
-        if (msg == null) {
-          break;
-        }
-        msg.getTarget().dispatchMessage(msg);
-        shadowMsg(msg).recycleUnchecked();
-        triggerIdleHandlersIfNeeded(msg);
+      executeExecutableMessages();
+    }
+  }
+
+  private class IdleForRunnable extends ControlRunnable {
+    private final long endingTimeMs;
+
+    IdleForRunnable(long endingTimeMs) {
+      this.endingTimeMs = endingTimeMs;
+    }
+
+    @Override
+    public void doRun() {
+      long nextScheduledTimeMs = getNextScheduledTaskTimeMillis(endingTimeMs);
+      while (nextScheduledTimeMs != 0 && nextScheduledTimeMs <= endingTimeMs) {
+        SystemClock.setCurrentTimeMillis(nextScheduledTimeMs);
+        executeExecutableMessages();
+        nextScheduledTimeMs = getNextScheduledTaskTimeMillis(endingTimeMs);
+      }
+      SystemClock.setCurrentTimeMillis(endingTimeMs);
+      // the last SystemClock update might have added new tasks to the main looper via
+      // Choreographer so idle once more.
+      executeExecutableMessages();
+    }
+
+    /**
+     * Returns the time of the next task of this looper if it's due by {@code endingTimeMs}, or 0.
+     * The earliest due time across all loopers is a lower bound of it, so the looper's queue isn't
+     * locked and searched when no looper has a task due by then.
+     */
+    private long getNextScheduledTaskTimeMillis(long endingTimeMs) {
+      long nextDueTimeMs = ShadowPausedSystemClock.getNextDueTimeMillis();
+      if (nextDueTimeMs == 0 || nextDueTimeMs > endingTimeMs) {
+        return 0;
       }
+      return getNextScheduledTaskTime().toMillis();
     }
   }
 
@@ -48,6 +48,8 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
       new NativeObjRegistry<ShadowPausedMessageQueue>(ShadowPausedMessageQueue.class);
   private boolean isPolling = false;
   private ShadowPausedSystemClock.Listener clockListener;
+  // the thread of the Looper of this queue, if any
+  private volatile Thread looperThread;
   private Exception uncaughtException = null;
 
   // shadow constructor instead of nativeInit because nativeInit signature has changed across SDK
@@ -57,17 +59,32 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
     invokeConstructor(MessageQueue.class, realQueue, from(boolean.class, quitAllowed));
     int ptr = (int) nativeQueueRegistry.register(this);
     reflector(MessageQueueReflector.class, realQueue).setPtr(ptr);
+    // the clock only calls this once it reaches the due time of the next message, so that
+    // advancing the clock doesn't contend on the queues of all the active Looper threads
     clockListener =
-        () -> {
-          synchronized (realQueue) {
-            // only wake up the Looper thread if queue is non empty to reduce contention if many
-            // Looper threads are active
-            if (getMessages() != null) {
-              nativeWake(ptr);
+        new ShadowPausedSystemClock.Listener() {
+          @Override
+          public void onClockAdvanced() {
+            synchronized (realQueue) {
+              updateDueTime();
             }
           }
+
+          @Override
+          public boolean isActive() {
+            return isLooperActive();
+          }
         };
-    ShadowPausedSystemClock.addStaticListener(clockListener);
+  }
+
+  /** Sets the thread of the Looper of this queue, whose messages aren't due once it dies. */
+  void setLooperThread(Thread thread) {
+    looperThread = thread;
+  }
+
+  private boolean isLooperActive() {
+    Thread thread = looperThread;
+    return (thread == null || thread.isAlive()) && !isQuitting();
   }
 
   @Implementation(maxSdk = JELLY_BEAN_MR1)
@@ -105,6 +122,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
       return;
     }
     synchronized (realQueue) {
+      updateDueTime();
       // only block if queue is empty
       // ignore timeout since clock is not advancing. ClockListener will notify when clock advances
       while (isIdle() && !isQuitting()) {
@@ -157,6 +175,29 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
   protected void nativeWake(int ptr) {
     synchronized (realQueue) {
       realQueue.notifyAll();
+      // e.g. a removed sync barrier may have made an earlier message executable
+      updateDueTime();
+    }
+  }
+
+  /**
+   * Sets this queue's due time in the clock to the time of its next executable message, so that
+   * the Looper thread is woken when the clock reaches it. Must be called while holding the queue's
+   * lock.
+   */
+  private void updateDueTime() {
+    Message msg = peekNextExecutableMessage();
+    // the Looper thread of a quitting queue doesn't wait for messages to become due, and a dead one
+    // can't run them
+    if (msg == null || !isLooperActive()) {
+      ShadowPausedSystemClock.clearDueTime(clockListener);
+      return;
+    }
+    long when = shadowOfMsg(msg).getWhen();
+    ShadowPausedSystemClock.setDueTime(clockListener, when);
+    // the clock may have reached the due time before it was set
+    if (when <= SystemClock.uptimeMillis()) {
+      realQueue.notifyAll();
     }
   }
 
@@ -241,7 +282,10 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
         msg.recycle();
         throw e;
       }
-      return reflector(MessageQueueReflector.class, realQueue).enqueueMessage(msg, when);
+      boolean enqueued =
+          reflector(MessageQueueReflector.class, realQueue).enqueueMessage(msg, when);
+      updateDueTime();
+      return enqueued;
     }
   }
 
@@ -366,6 +410,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
         } else {
           ReflectionHelpers.setField(prev, "next", next);
         }
+        updateDueTime();
       }
       return msg;
     }
@@ -381,6 +426,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
       msgQueue.setIdleHandlers(new ArrayList<>());
       msgQueue.setNextBarrierToken(0);
     }
+    ShadowPausedSystemClock.clearDueTime(clockListener);
     setUncaughtException(null);
   }
 
@@ -465,6 +511,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
       }
       reflector(MessageQueueReflector.class, realQueue).setMessages(null);
     }
+    ShadowPausedSystemClock.clearDueTime(clockListener);
   }
 
   /** Accessor interface for {@link MessageQueue}'s internals. */
@@ -4,7 +4,13 @@ import static android.os.Build.VERSION_CODES.P;
 
 import android.os.SystemClock;
 import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 import javax.annotation.concurrent.GuardedBy;
 import org.robolectric.annotation.HiddenApi;
@@ -42,15 +48,38 @@ public class ShadowPausedSystemClock extends ShadowSystemClock {
   private static long currentRealtimeMillis = INITIAL_TIME;
 
   private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
-  // hopefully temporary list of clock listeners that are NOT cleared between tests
-  // This is needed to accomodate Loopers which are not reset between tests
-  private static final List<Listener> staticListeners = new CopyOnWriteArrayList<>();
+
+  // Listeners waiting for the clock to reach a due time, e.g. message queues waiting for their next
+  // message, ordered by due time. Unlike listeners, these are NOT cleared between tests, to
+  // accommodate Loopers which are not reset between tests.
+  private static final Object dueTimesLock = new Object();
+
+  @GuardedBy("dueTimesLock")
+  private static final TreeSet<DueTime> dueTimes =
+      new TreeSet<>(
+          Comparator.<DueTime>comparingLong(dueTime -> dueTime.timeMs)
+              .thenComparingLong(dueTime -> dueTime.sequence));
+
+  @GuardedBy("dueTimesLock")
+  private static final Map<Listener, DueTime> dueTimesByListener = new HashMap<>();
+
+  @SuppressWarnings("NonFinalStaticField")
+  @GuardedBy("dueTimesLock")
+  private static long dueTimeSequence;
 
   /**
    * Callback for clock updates
    */
   interface Listener {
     void onClockAdvanced();
+
+    /**
+     * Returns false if the listener no longer needs to be notified of its due time, e.g. because
+     * its Looper has quit or its thread has died; its due time is then dropped.
+     */
+    default boolean isActive() {
+      return true;
+    }
   }
 
   static void addListener(Listener listener) {
@@ -59,11 +88,49 @@ public class ShadowPausedSystemClock extends ShadowSystemClock {
 
   static void removeListener(Listener listener) {
     listeners.remove(listener);
-    staticListeners.remove(listener);
+    clearDueTime(listener);
+  }
+
+  /**
+   * Notifies {@code listener}, once, when the uptime reaches {@code timeMs}, replacing its previous
+   * due time if any. If {@code timeMs} has already been reached, the listener is notified on the
+   * next clock update.
+   */
+  static void setDueTime(Listener listener, long timeMs) {
+    synchronized (dueTimesLock) {
+      DueTime previous = dueTimesByListener.get(listener);
+      if (previous != null) {
+        if (previous.timeMs == timeMs) {
+          return;
+        }
+        dueTimes.remove(previous);
+      }
+      DueTime dueTime = new DueTime(listener, timeMs, dueTimeSequence++);
+      dueTimes.add(dueTime);
+      dueTimesByListener.put(listener, dueTime);
+    }
   }
 
-  static void addStaticListener(Listener listener) {
-    staticListeners.add(listener);
+  /** Clears the due time of {@code listener}, if any. */
+  static void clearDueTime(Listener listener) {
+    synchronized (dueTimesLock) {
+      DueTime dueTime = dueTimesByListener.remove(listener);
+      if (dueTime != null) {
+        dueTimes.remove(dueTime);
+      }
+    }
+  }
+
+  /**
+   * Returns the earliest due time across all listeners, e.g. the time of the next message across
+   * all loopers, floored to the current uptime, or 0 if there is none.
+   */
+  static long getNextDueTimeMillis() {
+    // read before taking dueTimesLock, since reset() takes the locks in the opposite order
+    long now = uptimeMillis();
+    synchronized (dueTimesLock) {
+      return dueTimes.isEmpty() ? 0 : Math.max(dueTimes.first().timeMs, now);
+    }
   }
 
   /**
@@ -97,11 +164,29 @@ public class ShadowPausedSystemClock extends ShadowSystemClock {
     for (Listener listener : listeners) {
       listener.onClockAdvanced();
     }
-    for (Listener listener : staticListeners) {
+    // listeners are called without holding the lock, since they typically take their own locks
+    // and set their next due time
+    for (Listener listener : takeDueListeners()) {
       listener.onClockAdvanced();
     }
   }
 
+  /** Removes and returns the listeners whose due time has been reached. */
+  private static List<Listener> takeDueListeners() {
+    long now = uptimeMillis();
+    List<Listener> dueListeners = new ArrayList<>();
+    synchronized (dueTimesLock) {
+      while (!dueTimes.isEmpty() && dueTimes.first().timeMs <= now) {
+        DueTime dueTime = dueTimes.pollFirst();
+        dueTimesByListener.remove(dueTime.listener);
+        if (dueTime.listener.isActive()) {
+          dueListeners.add(dueTime.listener);
+        }
+      }
+    }
+    return dueListeners;
+  }
+
   /**
    * Sets the current wall time (both elapsed realtime and uptime).
    *
@@ -170,10 +255,42 @@ public class ShadowPausedSystemClock extends ShadowSystemClock {
   }
 
   @Resetter
-  public static synchronized void reset() {
-    currentUptimeMillis = INITIAL_TIME;
-    currentRealtimeMillis = INITIAL_TIME;
-    ShadowSystemClock.reset();
-    listeners.clear();
+  public static void reset() {
+    synchronized (ShadowPausedSystemClock.class) {
+      currentUptimeMillis = INITIAL_TIME;
+      currentRealtimeMillis = INITIAL_TIME;
+      ShadowSystemClock.reset();
+      listeners.clear();
+    }
+    dropInactiveDueTimes();
+  }
+
+  /**
+   * Drops the due times of inactive listeners, which would otherwise be kept across tests along
+   * with their message queues, and hold back {@link #getNextDueTimeMillis()}.
+   */
+  private static void dropInactiveDueTimes() {
+    synchronized (dueTimesLock) {
+      Iterator<DueTime> iterator = dueTimes.iterator();
+      while (iterator.hasNext()) {
+        DueTime dueTime = iterator.next();
+        if (!dueTime.listener.isActive()) {
+          iterator.remove();
+          dueTimesByListener.remove(dueTime.listener);
+        }
+      }
+    }
+  }
+
+  private static final class DueTime {
+    private final Listener listener;
+    private final long timeMs;
+    private final long sequence;
+
+    DueTime(Listener listener, long timeMs, long sequence) {
+      this.listener = listener;
+      this.timeMs = timeMs;
+      this.sequence = sequence;
+    }
   }
 }
@@ -1,20 +1,181 @@
 package org.robolectric.shadows;
 
 import static android.os.Build.VERSION_CODES.O_MR1;
+import static org.robolectric.util.reflector.Reflector.reflector;
 
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.util.reflector.Accessor;
+import org.robolectric.util.reflector.Direct;
+import org.robolectric.util.reflector.ForType;
 
 /**
  * Avoid calls to setIdleConnectionTimeout.
  * They shouldn't matter for tests, but sometimes induced deadlocks.
+ *
+ * <p>Also supports database templates: once a test has created a database, it can save it as a
+ * template with {@link #saveTemplate(SQLiteOpenHelper)}. Databases with the same name and version
+ * that are opened later by the same {@link SQLiteOpenHelper} subclass, in this or subsequent
+ * tests, start from a copy of the template instead of being created from scratch, so {@link
+ * SQLiteOpenHelper#onCreate} and migrations are skipped. Databases opened through wrappers which
+ * don't expose their {@link SQLiteOpenHelper}, such as Room's, can be saved with {@link
+ * #saveTemplate(String, String, int, File)}.
+ *
+ * <p>Templates aren't discarded between tests, since that's what makes them useful, so they also
+ * apply to unrelated tests which happen to open a matching database. Tests which save templates
+ * must call {@link #clearTemplates()} once the tests sharing them are done, e.g. in an {@code
+ * AfterClass} method.
  */
 @Implements(SQLiteOpenHelper.class)
 public class ShadowSQLiteOpenHelper {
+  // not cleared between tests, that's the point
+  private static final Map<String, byte[]> templates = new ConcurrentHashMap<>();
+  // the owner of templates which apply to any SQLiteOpenHelper
+  private static final String ANY_OWNER = "*";
+
+  @RealObject private SQLiteOpenHelper realOpenHelper;
+
   @Implementation(minSdk = O_MR1)
   protected void setIdleConnectionTimeout(long idleConnectionTimeoutMs) {
     // Calling the real one currently results in a Robolectric deadlock. Just ignore it.
     // See https://github.com/robolectric/robolectric/issues/6853.
   }
+
+  @Implementation
+  protected SQLiteDatabase getDatabaseLocked(boolean writable) {
+    if (!templates.isEmpty()) {
+      restoreTemplate();
+    }
+    return reflector(SQLiteOpenHelperReflector.class, realOpenHelper).getDatabaseLocked(writable);
+  }
+
+  private void restoreTemplate() {
+    SQLiteOpenHelperReflector openHelperReflector =
+        reflector(SQLiteOpenHelperReflector.class, realOpenHelper);
+    String name = openHelperReflector.getName();
+    Context context = openHelperReflector.getContext();
+    SQLiteDatabase database = openHelperReflector.getDatabase();
+    if (name == null || context == null || (database != null && database.isOpen())) {
+      return;
+    }
+    int version = openHelperReflector.getNewVersion();
+    byte[] template =
+        templates.get(templateKey(realOpenHelper.getClass().getName(), name, version));
+    if (template == null) {
+      template = templates.get(templateKey(ANY_OWNER, name, version));
+    }
+    if (template == null) {
+      return;
+    }
+    File databaseFile = context.getDatabasePath(name);
+    if (databaseFile.exists()) {
+      return;
+    }
+    try {
+      Files.createDirectories(databaseFile.getAbsoluteFile().getParentFile().toPath());
+      Files.write(databaseFile.toPath(), template);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to restore template of database " + name, e);
+    }
+  }
+
+  /**
+   * Saves the current contents of the database of {@code openHelper} as a template for databases
+   * with the same name and version opened by the same class of {@link SQLiteOpenHelper}.
+   *
+   * <p>Templates are kept for the lifetime of the sandbox, so tests using the same SDK and
+   * application package share them, until {@link #clearTemplates()} is called. The template is a
+   * snapshot that includes any rows inserted so far, not just the schema.
+   *
+   * @throws IllegalArgumentException if {@code openHelper} uses an in-memory database
+   */
+  public static void saveTemplate(SQLiteOpenHelper openHelper) {
+    String name = openHelper.getDatabaseName();
+    if (name == null) {
+      throw new IllegalArgumentException("In-memory databases can't be saved as templates");
+    }
+    SQLiteDatabase database = openHelper.getWritableDatabase();
+    if (database.isWriteAheadLoggingEnabled()) {
+      // move all committed changes into the main database file
+      Cursor cursor = database.rawQuery("PRAGMA wal_checkpoint(FULL)", null);
+      try {
+        cursor.moveToFirst();
+      } finally {
+        cursor.close();
+      }
+    }
+    saveTemplate(
+        openHelper.getClass().getName(),
+        name,
+        database.getVersion(),
+        new File(database.getPath()));
+  }
+
+  /**
+   * Saves the contents of {@code databaseFile} as a template for databases with the given name and
+   * version opened by {@code owner}, or by any {@link SQLiteOpenHelper} if {@code owner} is null.
+   * This is useful for databases opened through wrappers that don't expose their {@link
+   * SQLiteOpenHelper}, such as Room's, whose helper class isn't public.
+   *
+   * <p>The file must not be in the middle of a transaction, and if write-ahead logging is enabled,
+   * the log must have been checkpointed, e.g. with {@code PRAGMA wal_checkpoint(FULL)}.
+   *
+   * @param owner the binary name of the {@link SQLiteOpenHelper} class which opens the database,
+   *     e.g. {@code "androidx.sqlite.db.framework.FrameworkSQLiteOpenHelper$OpenHelper"}, or null
+   */
+  public static void saveTemplate(
+      @Nullable String owner, String databaseName, int version, File databaseFile) {
+    try {
+      templates.put(
+          templateKey(owner == null ? ANY_OWNER : owner, databaseName, version),
+          Files.readAllBytes(databaseFile.toPath()));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to save template of database " + databaseName, e);
+    }
+  }
+
+  /**
+   * Discards all templates saved by {@link #saveTemplate}. Templates are only tied to the SDK and
+   * application package of the tests that saved them, so this should also be called before tests
+   * with a different configuration (e.g. different qualifiers) open the same databases.
+   */
+  public static void clearTemplates() {
+    templates.clear();
+  }
+
+  private static String templateKey(String owner, String databaseName, int version) {
+    // tests configured with a different application don't share its templates
+    String packageName = RuntimeEnvironment.getApplication().getPackageName();
+    return packageName + ":" + owner + ":" + databaseName + ":" + version;
+  }
+
+  @ForType(SQLiteOpenHelper.class)
+  interface SQLiteOpenHelperReflector {
+    @Direct
+    SQLiteDatabase getDatabaseLocked(boolean writable);
+
+    @Accessor("mContext")
+    Context getContext();
+
+    @Accessor("mName")
+    String getName();
+
+    @Accessor("mNewVersion")
+    int getNewVersion();
+
+    @Accessor("mDatabase")
+    SQLiteDatabase getDatabase();
+  }
 }
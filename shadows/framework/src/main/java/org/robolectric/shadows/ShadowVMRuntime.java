@@ -4,20 +4,35 @@ import static android.os.Build.VERSION_CODES.LOLLIPOP;
 import static android.os.Build.VERSION_CODES.Q;
 
 import android.annotation.TargetApi;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.MapMaker;
 import dalvik.system.VMRuntime;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.res.android.NativeObjRegistry;
+import org.robolectric.util.PerfStatsCollector;
 
 @Implements(value = VMRuntime.class, isInAndroidSdk = false)
 public class ShadowVMRuntime {
 
-  private final NativeObjRegistry<WeakReference<Object>> nativeObjRegistry =
+  private final NativeObjRegistry<AddressReference> nativeObjRegistry =
       new NativeObjRegistry<>("VRRuntime.nativeObjectRegistry");
+  // the addresses of objects, compared by identity, which don't keep the objects alive
+  private final Map<Object, AddressReference> addresses = new MapMaker().weakKeys().makeMap();
+  private final ReferenceQueue<Object> collectedObjects = new ReferenceQueue<>();
+  // reported as a gauge summed over the live sandboxes of each SDK, since it outlives tests
+  private final AtomicLong liveAddressCount = new AtomicLong();
+  private boolean liveAddressGaugeRegistered;
+
   // There actually isn't any android JNI code to call through to in Robolectric due to
   // cross-platform compatibility issues. We default to a reasonable value that reflects the devices
   // that would commonly run this code.
@@ -40,10 +55,52 @@ public class ShadowVMRuntime {
 
   /**
    * Returns a unique identifier of the object instead of a 'native' address.
+   *
+   * <p>Like a real address, it is the same for every call with the same object. It is reclaimed
+   * once the object has been garbage collected, so that repeated calls, e.g. for the arrays of
+   * every {@code obtainStyledAttributes}, don't grow the registry.
    */
   @Implementation
-  public long addressOf(Object obj) {
-    return nativeObjRegistry.register(new WeakReference<>(obj));
+  public synchronized long addressOf(Object obj) {
+    reclaimAddresses();
+    AddressReference reference = addresses.get(obj);
+    if (reference == null) {
+      reference = new AddressReference(obj, collectedObjects);
+      reference.address = nativeObjRegistry.register(reference);
+      addresses.put(obj, reference);
+      if (!liveAddressGaugeRegistered) {
+        PerfStatsCollector.getInstance()
+            .registerGauge(
+                "vmRuntimeLiveAddresses sdk=" + RuntimeEnvironment.getApiLevel(),
+                liveAddressCount);
+        liveAddressGaugeRegistered = true;
+      }
+      liveAddressCount.incrementAndGet();
+    }
+    return reference.address;
+  }
+
+  /** Unregisters the addresses of the objects which have been garbage collected. */
+  private void reclaimAddresses() {
+    Reference<?> reference = collectedObjects.poll();
+    if (reference == null) {
+      return;
+    }
+    do {
+      nativeObjRegistry.unregister(((AddressReference) reference).address);
+      liveAddressCount.decrementAndGet();
+    } while ((reference = collectedObjects.poll()) != null);
+  }
+
+  @VisibleForTesting
+  synchronized long getLiveAddressCount() {
+    return liveAddressCount.get();
+  }
+
+  /** Returns the reference which reclaims the address of {@code obj} once it's enqueued. */
+  @VisibleForTesting
+  synchronized Reference<?> getAddressReference(Object obj) {
+    return addresses.get(obj);
   }
 
   /**
@@ -94,4 +151,12 @@ public class ShadowVMRuntime {
     // avoid a divide-by-zero error in VMRuntime.notifyNativeAllocation.
     return 384; // must be greater than 0
   }
+
+  private static final class AddressReference extends WeakReference<Object> {
+    private long address;
+
+    AddressReference(Object referent, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+    }
+  }
 }
@@ -3,15 +3,15 @@ package org.robolectric.shadows.util;
 import com.almworks.sqlite4java.SQLite;
 import com.almworks.sqlite4java.SQLiteException;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.io.ByteSource;
-import com.google.common.io.Files;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.robolectric.util.ResourceExtractionCache;
 
 /** Initializes sqlite native libraries. */
 public class SQLiteLibraryLoader {
@@ -47,15 +47,21 @@ public class SQLiteLibraryLoader {
       return;
     }
     final long startTime = System.currentTimeMillis();
-    File tempDir = Files.createTempDir();
-    tempDir.deleteOnExit();
-    File extractedLibraryPath = new File(tempDir, getLibName());
-    try (FileOutputStream outputStream = new FileOutputStream(extractedLibraryPath)) {
-      getLibraryByteSource().copyTo(outputStream);
+    Path extractedLibraryPath;
+    try {
+      // sqlite4java isn't acquired by sandboxes, so the library is loaded once per JVM and the
+      // shared, cached copy can be used.
+      extractedLibraryPath =
+          ResourceExtractionCache.getInstance()
+              .extract(
+                  SQLITE4JAVA,
+                  ImmutableMap.of(
+                      getLibName(), Resources.getResource(getLibClasspathResourceName())))
+              .resolve(getLibName());
     } catch (IOException e) {
-      throw new RuntimeException("Cannot extract SQLite library into " + extractedLibraryPath, e);
+      throw new RuntimeException("Cannot extract SQLite library " + getLibName(), e);
     }
-    loadFromDirectory(tempDir);
+    loadFromDirectory(extractedLibraryPath.getParent().toFile());
     logWithTime("SQLite natives prepared in", startTime);
   }
 
@@ -63,10 +69,6 @@ public class SQLiteLibraryLoader {
     return "sqlite4java/" + getNativesResourcesPathPart() + "/" + getLibName();
   }
 
-  private ByteSource getLibraryByteSource() {
-    return Resources.asByteSource(Resources.getResource(getLibClasspathResourceName()));
-  }
-
   private void logWithTime(final String message, final long startTime) {
     log(message + " " + (System.currentTimeMillis() - startTime));
   }
@@ -9,6 +9,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import org.robolectric.util.PerfStatsCollector;
 
 /**
@@ -37,7 +38,7 @@ public class Reflector {
 
   private static final boolean DEBUG = false;
   private static final AtomicInteger COUNTER = new AtomicInteger();
-  private static final Map<Class<?>, Constructor<?>> cache = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ReflectorFactory> cache = new ConcurrentHashMap<>();
   private static final Map<Class<?>, Object> staticReflectorCache = new ConcurrentHashMap<>();
 
   /**
@@ -57,41 +58,37 @@ public class Reflector {
    * @param iClass an interface with methods matching private methods on the target
    * @param target the target object
    */
+  @SuppressWarnings("unchecked")
   public static <T> T reflector(Class<T> iClass, Object target) {
-    if (target == null && staticReflectorCache.containsKey(iClass)) {
-      return (T) staticReflectorCache.get(iClass);
-    }
-
-    Class<?> targetClass = determineTargetClass(iClass);
-
-    Constructor<? extends T> ctor = (Constructor<? extends T>) cache.get(iClass);
-    try {
-      if (ctor == null) {
-        Class<? extends T> reflectorClass =
-            PerfStatsCollector.getInstance()
-                .measure(
-                    "createReflectorClass",
-                    () -> Reflector.<T>createReflectorClass(iClass, targetClass));
-        ctor = reflectorClass.getConstructor(targetClass);
-        ctor.setAccessible(true);
-        cache.put(iClass, ctor);
+    if (target == null) {
+      Object staticReflector = staticReflectorCache.get(iClass);
+      if (staticReflector != null) {
+        return (T) staticReflector;
       }
+    }
 
-      T instance = ctor.newInstance(target);
-      if (target == null) {
-        staticReflectorCache.put(iClass, instance);
-      }
-      return instance;
+    ReflectorFactory factory = cache.get(iClass);
+    if (factory == null) {
+      factory = createFactory(iClass);
+      cache.put(iClass, factory);
+    }
 
-    } catch (NoSuchMethodException
-        | InstantiationException
-        | IllegalAccessException
-        | InvocationTargetException e) {
-      throw new IllegalStateException(e);
+    T instance = (T) factory.newReflector(target);
+    if (target == null) {
+      staticReflectorCache.put(iClass, instance);
     }
+    return instance;
   }
 
-  private static <T> Class<?> determineTargetClass(Class<T> iClass) {
+  private static ReflectorFactory createFactory(Class<?> iClass) {
+    Class<?> targetClass = determineTargetClass(iClass);
+    Function<Object, ?> newReflector =
+        PerfStatsCollector.getInstance()
+            .measure("createReflectorClass", () -> createReflectorClass(iClass));
+    return new ReflectorFactory(targetClass, newReflector);
+  }
+
+  static Class<?> determineTargetClass(Class<?> iClass) {
     ForType forType = iClass.getAnnotation(ForType.class);
     if (forType == null) {
       throw new IllegalArgumentException("no @ForType annotation found for " + iClass);
@@ -113,13 +110,35 @@ public class Reflector {
     return targetClass;
   }
 
-  private static <T> Class<? extends T> createReflectorClass(
-      Class<T> iClass, Class<?> targetClass) {
+  /**
+   * Generates a reflector class for {@code iClass}, and returns a factory which creates instances
+   * of it without reflection.
+   */
+  @SuppressWarnings("unchecked")
+  private static Function<Object, ?> createReflectorClass(Class<?> iClass) {
     String reflectorClassName = iClass.getName() + "$$Reflector" + COUNTER.getAndIncrement();
-    byte[] bytecode = getBytecode(iClass, targetClass, reflectorClassName);
+    String factoryClassName = reflectorClassName + "$Factory";
+    ReflectorClassWriter writer = new ReflectorClassWriter(iClass, reflectorClassName);
+    writer.write();
 
+    defineClass(iClass, reflectorClassName, writer.toByteArray());
+    Class<?> factoryClass =
+        defineClass(iClass, factoryClassName, writer.writeFactory(factoryClassName));
+    try {
+      Constructor<?> ctor = factoryClass.getConstructor();
+      ctor.setAccessible(true);
+      return (Function<Object, ?>) ctor.newInstance();
+    } catch (NoSuchMethodException
+        | InstantiationException
+        | IllegalAccessException
+        | InvocationTargetException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Class<?> defineClass(Class<?> iClass, String className, byte[] bytecode) {
     if (DEBUG) {
-      File file = new File("/tmp", reflectorClassName + ".class");
+      File file = new File("/tmp", className + ".class");
       System.out.println("Generated reflector: " + file.getAbsolutePath());
       try (OutputStream out = new FileOutputStream(file)) {
         out.write(bytecode);
@@ -128,42 +147,24 @@ public class Reflector {
       }
     }
 
-    final Class<?> proxyClass;
-    proxyClass = defineViaUnsafe(iClass, reflectorClassName, bytecode);
-    // proxyClass = defineViaNewClassLoader(iClass, reflectorClassName, bytecode);
-
-    return proxyClass.asSubclass(iClass);
+    return UnsafeAccess.defineClass(iClass, className, bytecode);
   }
 
-  private static <T> Class<?> defineViaUnsafe(
-      Class<T> iClass, String reflectorClassName, byte[] bytecode) {
-    return UnsafeAccess.defineClass(iClass, reflectorClassName, bytecode);
-  }
+  private static final class ReflectorFactory {
+    private final Class<?> targetClass;
+    private final Function<Object, ?> newReflector;
 
-  @SuppressWarnings("unused")
-  private static <T> Class<?> defineViaNewClassLoader(
-      Class<T> iClass, String reflectorClassName, byte[] bytecode) {
-    Class<?> proxyClass;
-    ClassLoader classLoader =
-        new ClassLoader(iClass.getClassLoader()) {
-          @Override
-          protected Class<?> findClass(String name) throws ClassNotFoundException {
-            return defineClass(name, bytecode, 0, bytecode.length);
-          }
-        };
-    try {
-      proxyClass = classLoader.loadClass(reflectorClassName);
-    } catch (ClassNotFoundException e) {
-      throw new AssertionError(e);
+    ReflectorFactory(Class<?> targetClass, Function<Object, ?> newReflector) {
+      this.targetClass = targetClass;
+      this.newReflector = newReflector;
     }
-    return proxyClass;
-  }
 
-  private static <T> byte[] getBytecode(
-      Class<T> iClass, Class<?> targetClass, String reflectorClassName) {
-    ReflectorClassWriter writer = new ReflectorClassWriter(iClass, targetClass, reflectorClassName);
-    writer.write();
-
-    return writer.toByteArray();
+    Object newReflector(Object target) {
+      if (target != null && !targetClass.isInstance(target)) {
+        throw new IllegalArgumentException(
+            "reflector target " + target.getClass() + " is not an instance of " + targetClass);
+      }
+      return newReflector.apply(target);
+    }
   }
 }
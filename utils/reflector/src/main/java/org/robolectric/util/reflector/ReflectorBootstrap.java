@@ -0,0 +1,159 @@
+package org.robolectric.util.reflector;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import javax.annotation.Nullable;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
+
+/**
+ * Links the invokedynamic call sites of the classes generated by {@link Reflector} to the members
+ * of their target class.
+ *
+ * <p>Each call site is linked on its first invocation, so members which don't exist in the target
+ * class only fail when they are used. Once linked, the call site calls the member directly, without
+ * boxing its arguments.
+ */
+@SuppressWarnings({"NewApi", "RethrowReflectiveOperationExceptionAsLinkageError"})
+public final class ReflectorBootstrap {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodHandle FAIL;
+
+  private static final MetricHandle BOOTSTRAP_METRIC =
+      PerfStatsCollector.getInstance().getMetricHandle("reflector bootstrap");
+
+  static {
+    try {
+      FAIL =
+          LOOKUP.findStatic(
+              ReflectorBootstrap.class,
+              "fail",
+              methodType(Object.class, String.class, ReflectiveOperationException.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private ReflectorBootstrap() {}
+
+  /**
+   * Bootstrap method for the call sites of a reflector class.
+   *
+   * @param caller the lookup of the reflector class
+   * @param name the name of the reflector interface method
+   * @param type the type of the reflector interface method, preceded by the target object (or
+   *     null, for static members)
+   */
+  @SuppressWarnings("UnusedDeclaration")
+  public static CallSite bootstrap(MethodHandles.Lookup caller, String name, MethodType type) {
+    return BOOTSTRAP_METRIC.measure(
+        () -> {
+          Class<?> iClass = caller.lookupClass().getInterfaces()[0];
+          Class<?> targetClass = Reflector.determineTargetClass(iClass);
+          Method iMethod;
+          try {
+            iMethod = iClass.getMethod(name, type.dropParameterTypes(0, 1).parameterArray());
+          } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+          }
+
+          MethodHandle handle;
+          try {
+            handle = findTarget(iClass, iMethod, targetClass);
+          } catch (ReflectiveOperationException e) {
+            String message =
+                "Error invoking reflector method in ClassLoader " + targetClass.getClassLoader();
+            handle = dropArguments(insertArguments(FAIL, 0, message, e), 0, type.parameterList());
+            return new ConstantCallSite(handle.asType(type));
+          }
+
+          if (handle.type().parameterCount() < type.parameterCount()) {
+            // static members and constructors don't take the target object
+            handle = dropArguments(handle, 0, Object.class);
+          }
+          return new ConstantCallSite(handle.asType(type));
+        });
+  }
+
+  private static MethodHandle findTarget(Class<?> iClass, Method iMethod, Class<?> targetClass)
+      throws ReflectiveOperationException {
+    Accessor accessor = iMethod.getAnnotation(Accessor.class);
+    if (accessor != null) {
+      Field field = targetClass.getDeclaredField(accessor.value());
+      field.setAccessible(true);
+      return iMethod.getReturnType().equals(void.class)
+          ? LOOKUP.unreflectSetter(field)
+          : LOOKUP.unreflectGetter(field);
+    }
+
+    Class<?>[] paramTypes = resolveParamTypes(iClass, iMethod);
+    if (iMethod.isAnnotationPresent(Constructor.class)) {
+      java.lang.reflect.Constructor<?> constructor =
+          targetClass.getDeclaredConstructor(paramTypes);
+      constructor.setAccessible(true);
+      return LOOKUP.unreflectConstructor(constructor).asFixedArity();
+    }
+
+    String methodName = getMethodName(iClass, iMethod, targetClass);
+    Method method = targetClass.getDeclaredMethod(methodName, paramTypes);
+    method.setAccessible(true);
+    return LOOKUP.unreflect(method).asFixedArity();
+  }
+
+  private static String getMethodName(Class<?> iClass, Method iMethod, Class<?> targetClass) {
+    String methodName = iMethod.getName();
+    ForType forType = iClass.getAnnotation(ForType.class);
+    boolean directModifier = forType != null && forType.direct();
+    if (iMethod.isAnnotationPresent(Direct.class) || directModifier) {
+      methodName =
+          "$$robo$$"
+              + targetClass.getName().replace('.', '_').replace('$', '_')
+              + "$"
+              + methodName;
+    }
+    return methodName;
+  }
+
+  private static Class<?>[] resolveParamTypes(Class<?> iClass, Method iMethod) {
+    Class<?>[] iParamTypes = iMethod.getParameterTypes();
+    Annotation[][] paramAnnotations = iMethod.getParameterAnnotations();
+
+    Class<?>[] targetParamTypes = new Class<?>[iParamTypes.length];
+    for (int i = 0; i < iParamTypes.length; i++) {
+      Class<?> paramType = findWithType(iClass, paramAnnotations[i]);
+      targetParamTypes[i] = paramType == null ? iParamTypes[i] : paramType;
+    }
+    return targetParamTypes;
+  }
+
+  @Nullable
+  private static Class<?> findWithType(Class<?> iClass, Annotation[] paramAnnotation) {
+    for (Annotation annotation : paramAnnotation) {
+      if (annotation instanceof WithType) {
+        String withTypeName = ((WithType) annotation).value();
+        try {
+          return Class.forName(withTypeName, true, iClass.getClassLoader());
+        } catch (ClassNotFoundException e1) {
+          // it's okay, ignore
+        }
+      }
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unused")
+  private static Object fail(String message, ReflectiveOperationException e) {
+    throw new AssertionError(message, e);
+  }
+}
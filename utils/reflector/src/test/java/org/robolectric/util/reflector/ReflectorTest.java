@@ -82,6 +82,17 @@ public class ReflectorTest {
     assertThat(reflector.getEStatic()).isEqualTo("eee!");
   }
 
+  @Test
+  public void reflector_shouldCallOverloadedMethods() {
+    assertThat(reflector.overloadedMethod("a")).isEqualTo("a (String)");
+    assertThat(reflector.overloadedMethod(1)).isEqualTo("1 (int)");
+  }
+
+  @Test
+  public void reflector_shouldRejectTargetOfWrongType() {
+    assertThrows(IllegalArgumentException.class, () -> reflector(_SomeClass_.class, "c"));
+  }
+
   @Test
   public void reflector_throwsCorrectExceptions() {
     Throwable expected = new ArrayIndexOutOfBoundsException();
@@ -216,6 +227,10 @@ public class ReflectorTest {
 
     long returnLong();
 
+    String overloadedMethod(String a);
+
+    String overloadedMethod(int a);
+
     void throwException(Throwable t);
   }
 
@@ -246,6 +261,14 @@ public class ReflectorTest {
       return 1234L;
     }
 
+    private String overloadedMethod(String a) {
+      return a + " (String)";
+    }
+
+    private String overloadedMethod(int a) {
+      return a + " (int)";
+    }
+
     @SuppressWarnings("unused")
     private void throwException(Throwable t) throws Throwable {
       throw t;
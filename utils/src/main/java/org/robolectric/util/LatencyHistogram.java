@@ -0,0 +1,74 @@
+package org.robolectric.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed-size histogram of durations in nanoseconds.
+ *
+ * <p>Values are bucketed log-linearly: values below 32 get a bucket each, and every larger power
+ * of two is split into 16 equally-sized sub-buckets, so recorded values are accurate to within
+ * 1/16 (6.25%) of their magnitude. This is the same scheme used by HDR histograms with one
+ * significant digit of precision, and keeps recording to a single atomic increment.
+ */
+class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  void record(long valueNs) {
+    counts.incrementAndGet(bucketIndex(Math.max(0, valueNs)));
+  }
+
+  /**
+   * Returns the smallest recorded value (rounded up to its bucket's upper bound) such that at least
+   * {@code percentile} percent of recorded values are less than or equal to it, or 0 if nothing
+   * has been recorded.
+   */
+  long getValueAtPercentile(double percentile) {
+    long[] snapshot = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += snapshot[i];
+      if (seen >= target) {
+        return highestValueInBucket(i);
+      }
+    }
+    return highestValueInBucket(BUCKET_COUNT - 1);
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    // the top SUB_BUCKET_BITS + 1 bits of the value, in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+    int mantissa = (int) (value >>> shift);
+    return shift * SUB_BUCKET_COUNT + mantissa;
+  }
+
+  static long highestValueInBucket(int index) {
+    if (index < 2 * SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long mantissa = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    return ((mantissa + 1) << shift) - 1;
+  }
+}
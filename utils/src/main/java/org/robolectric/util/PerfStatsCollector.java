@@ -1,9 +1,17 @@
 package org.robolectric.util;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 import org.robolectric.pluginapi.perf.Metadata;
 import org.robolectric.pluginapi.perf.Metric;
 import org.robolectric.pluginapi.perf.PerfStatsReporter;
@@ -11,6 +19,12 @@ import org.robolectric.pluginapi.perf.PerfStatsReporter;
 /**
  * Collects performance statistics for later reporting via {@link PerfStatsReporter}.
  *
+ * <p>Recording is lock-free: each metric accumulates into striped counters and a {@link
+ * LatencyHistogram}, so concurrent sandboxes don't contend on a shared monitor. Callers on hot
+ * paths can look up a {@link MetricHandle} once and reuse it to avoid a map lookup per event. When
+ * collection is disabled, {@link #measure} runs its argument directly without reading the clock or
+ * allocating.
+ *
  * @since 3.6
  */
 public class PerfStatsCollector {
@@ -19,8 +33,12 @@ public class PerfStatsCollector {
 
   private final Clock clock;
   private final Map<Class<?>, Object> metadata = new HashMap<>();
-  private final Map<MetricKey, Metric> metricMap = new HashMap<>();
-  private boolean enabled = true;
+  private final ConcurrentHashMap<String, MetricHandle> metricHandles = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Collection<WeakReference<AtomicLong>>> counterGauges =
+      new ConcurrentHashMap<>();
+  private final Event disabledEvent = new Event(null, 0);
+  private volatile boolean enabled = true;
 
   public PerfStatsCollector() {
     this(System::nanoTime);
@@ -41,35 +59,83 @@ public class PerfStatsCollector {
     this.enabled = isEnabled;
   }
 
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns a handle for recording events with the given name. Handles remain valid across {@link
+   * #reset()}, so they may be cached in static fields by frequently-called code.
+   */
+  public MetricHandle getMetricHandle(String eventName) {
+    MetricHandle handle = metricHandles.get(eventName);
+    if (handle == null) {
+      handle = metricHandles.computeIfAbsent(eventName, MetricHandle::new);
+    }
+    return handle;
+  }
+
   public Event startEvent(String eventName) {
-    return new Event(eventName);
+    return enabled ? new Event(getMetricHandle(eventName), clock.nanoTime()) : disabledEvent;
   }
 
   public <T, E extends Exception> T measure(String eventName, ThrowingSupplier<T, E> supplier)
       throws E {
-    boolean success = true;
-    Event event = startEvent(eventName);
-    try {
+    if (!enabled) {
       return supplier.get();
-    } catch (Exception e) {
-      success = false;
-      throw e;
-    } finally {
-      event.finished(success);
     }
+    return getMetricHandle(eventName).measure(supplier);
   }
 
+  /**
+   * Increments the count of the given event. Like all metrics, counts are only collected while
+   * collection is enabled; increments made while it's disabled are dropped.
+   */
   public void incrementCount(String eventName) {
-    synchronized (PerfStatsCollector.this) {
-      MetricKey key = new MetricKey(eventName, true);
-      Metric metric = metricMap.get(key);
-      if (metric == null) {
-        metricMap.put(key, metric = new Metric(key.name, key.success));
-      }
-      metric.incrementCount();
+    if (enabled) {
+      getMetricHandle(eventName).incrementCount();
     }
   }
 
+  /** Adds {@code amount} to the count of the given event, e.g. to tally bytes processed. */
+  public void incrementCount(String eventName, long amount) {
+    if (enabled) {
+      getMetricHandle(eventName).incrementCount(amount);
+    }
+  }
+
+  /**
+   * Sets the count of the given event to {@code value}, e.g. to report the current size of a cache
+   * rather than a tally. Like other counts, it's zeroed by {@link #reset()}; use {@link
+   * #registerGauge} for values that outlive a test.
+   */
+  public void setCount(String eventName, long value) {
+    if (enabled) {
+      getMetricHandle(eventName).setCount(value);
+    }
+  }
+
+  /**
+   * Registers a gauge, whose current value is reported as the count of the metric with the given
+   * name whenever metrics are collected, e.g. the size of a cache shared by all tests. Gauges
+   * aren't cleared by {@link #reset()}; registering a gauge with the same name replaces it.
+   */
+  public void registerGauge(String name, LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /**
+   * Registers {@code counter} with the gauge with the given name, which reports the sum of the
+   * counters registered with it, e.g. one per sandbox. Counters are only weakly referenced, so
+   * that registering a counter owned by a sandbox doesn't keep the sandbox alive; once a counter
+   * has been garbage collected, it no longer contributes to the gauge.
+   */
+  public void registerGauge(String name, AtomicLong counter) {
+    counterGauges
+        .computeIfAbsent(name, k -> new ConcurrentLinkedQueue<>())
+        .add(new WeakReference<>(counter));
+  }
+
   /**
    * Supplier that throws an exception.
    */
@@ -80,16 +146,11 @@ public class PerfStatsCollector {
 
   public <E extends Exception> void measure(String eventName, ThrowingRunnable<E> runnable)
       throws E {
-    boolean success = true;
-    Event event = startEvent(eventName);
-    try {
+    if (!enabled) {
       runnable.run();
-    } catch (Exception e) {
-      success = false;
-      throw e;
-    } finally {
-      event.finished(success);
+      return;
     }
+    getMetricHandle(eventName).measure(runnable);
   }
 
   /**
@@ -100,8 +161,32 @@ public class PerfStatsCollector {
     void run() throws F;
   }
 
-  public synchronized Collection<Metric> getMetrics() {
-    return new ArrayList<>(metricMap.values());
+  public Collection<Metric> getMetrics() {
+    Collection<Metric> metrics = new ArrayList<>();
+    for (MetricHandle handle : metricHandles.values()) {
+      handle.addMetricsTo(metrics);
+    }
+    for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+      addGauge(metrics, gauge.getKey(), gauge.getValue().getAsLong());
+    }
+    for (Map.Entry<String, Collection<WeakReference<AtomicLong>>> gauge :
+        counterGauges.entrySet()) {
+      long value = 0;
+      for (Iterator<WeakReference<AtomicLong>> it = gauge.getValue().iterator(); it.hasNext(); ) {
+        AtomicLong counter = it.next().get();
+        if (counter == null) {
+          it.remove();
+        } else {
+          value += counter.get();
+        }
+      }
+      addGauge(metrics, gauge.getKey(), value);
+    }
+    return metrics;
+  }
+
+  private static void addGauge(Collection<Metric> metrics, String name, long value) {
+    metrics.add(new Metric(name, (int) Math.min(value, Integer.MAX_VALUE), 0, true));
   }
 
   public synchronized <T> void putMetadata(Class<T> metadataClass, T metadata) {
@@ -116,21 +201,28 @@ public class PerfStatsCollector {
     return new Metadata(metadata);
   }
 
-  public void reset() {
+  /**
+   * Clears all metadata and metrics, except gauges. Metrics are zeroed in place rather than
+   * removed so that cached {@link MetricHandle}s stay valid; events finishing concurrently with a
+   * reset may be partially counted.
+   */
+  public synchronized void reset() {
     metadata.clear();
-    metricMap.clear();
+    for (MetricHandle handle : metricHandles.values()) {
+      handle.reset();
+    }
   }
 
   /**
    * Event for perf stats collection.
    */
   public class Event {
-    private final String name;
+    private final MetricHandle handle;
     private final long startTimeNs;
 
-    Event(String name) {
-      this.name = name;
-      this.startTimeNs = clock.nanoTime();
+    Event(MetricHandle handle, long startTimeNs) {
+      this.handle = handle;
+      this.startTimeNs = startTimeNs;
     }
 
     public void finished() {
@@ -138,55 +230,190 @@ public class PerfStatsCollector {
     }
 
     public void finished(boolean success) {
-      if (!enabled) {
+      if (handle == null || !enabled) {
         return;
       }
 
-      synchronized (PerfStatsCollector.this) {
-        MetricKey key = new MetricKey(name, success);
-        Metric metric = metricMap.get(key);
-        if (metric == null) {
-          metricMap.put(key, metric = new Metric(key.name, key.success));
-        }
-        metric.record(clock.nanoTime() - startTimeNs);
-      }
+      handle.record(success, clock.nanoTime() - startTimeNs);
     }
   }
 
   /**
-   * Metric key for perf stats collection.
+   * A pre-registered metric, obtained from {@link #getMetricHandle(String)}. Recording through a
+   * handle skips the lookup by name.
    */
-  private static class MetricKey {
+  public final class MetricHandle {
     private final String name;
-    private final boolean success;
+    private final Accumulator successes = new Accumulator();
+    private volatile Accumulator failures;
 
-    MetricKey(String name, boolean success) {
+    private MetricHandle(String name) {
       this.name = name;
-      this.success = success;
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
+    public <T, E extends Exception> T measure(ThrowingSupplier<T, E> supplier) throws E {
+      if (!enabled) {
+        return supplier.get();
+      }
+      boolean success = true;
+      long startTimeNs = clock.nanoTime();
+      try {
+        return supplier.get();
+      } catch (Exception e) {
+        success = false;
+        throw e;
+      } finally {
+        record(success, clock.nanoTime() - startTimeNs);
+      }
+    }
+
+    public <E extends Exception> void measure(ThrowingRunnable<E> runnable) throws E {
+      if (!enabled) {
+        runnable.run();
+        return;
+      }
+      boolean success = true;
+      long startTimeNs = clock.nanoTime();
+      try {
+        runnable.run();
+      } catch (Exception e) {
+        success = false;
+        throw e;
+      } finally {
+        record(success, clock.nanoTime() - startTimeNs);
+      }
+    }
+
+    public void incrementCount() {
+      if (enabled) {
+        successes.incrementCount();
       }
-      if (!(o instanceof MetricKey)) {
-        return false;
+    }
+
+    public void incrementCount(long amount) {
+      if (enabled) {
+        successes.incrementCount(amount);
       }
+    }
+
+    /** Sets the count of this metric; concurrent increments may be lost. */
+    public void setCount(long value) {
+      if (enabled) {
+        successes.setCount(value);
+      }
+    }
+
+    private void record(boolean success, long elapsedNs) {
+      (success ? successes : getFailures()).record(elapsedNs);
+    }
+
+    private Accumulator getFailures() {
+      Accumulator result = failures;
+      if (result == null) {
+        synchronized (this) {
+          result = failures;
+          if (result == null) {
+            failures = result = new Accumulator();
+          }
+        }
+      }
+      return result;
+    }
 
-      MetricKey metricKey = (MetricKey) o;
+    private void addMetricsTo(Collection<Metric> metrics) {
+      successes.addMetricTo(metrics, name, true);
+      Accumulator failures = this.failures;
+      if (failures != null) {
+        failures.addMetricTo(metrics, name, false);
+      }
+    }
 
-      if (success != metricKey.success) {
-        return false;
+    private void reset() {
+      successes.reset();
+      Accumulator failures = this.failures;
+      if (failures != null) {
+        failures.reset();
       }
-      return name != null ? name.equals(metricKey.name) : metricKey.name == null;
+    }
+  }
+
+  /** Lock-free accumulator for the values of a single metric. */
+  private static class Accumulator {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder elapsedNs = new LongAdder();
+    private final LongAccumulator minNs = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxNs = new LongAccumulator(Math::max, 0);
+    // allocated on first timed event, so count-only metrics stay small
+    private volatile LatencyHistogram histogram;
+
+    void record(long elapsed) {
+      count.increment();
+      elapsedNs.add(elapsed);
+      minNs.accumulate(elapsed);
+      maxNs.accumulate(elapsed);
+      getHistogram().record(elapsed);
+    }
+
+    void incrementCount() {
+      count.increment();
+    }
+
+    void incrementCount(long amount) {
+      count.add(amount);
+    }
+
+    void setCount(long value) {
+      count.reset();
+      count.add(value);
     }
 
-    @Override
-    public int hashCode() {
-      int result = name != null ? name.hashCode() : 0;
-      result = 31 * result + (success ? 1 : 0);
+    private LatencyHistogram getHistogram() {
+      LatencyHistogram result = histogram;
+      if (result == null) {
+        synchronized (this) {
+          result = histogram;
+          if (result == null) {
+            histogram = result = new LatencyHistogram();
+          }
+        }
+      }
       return result;
     }
+
+    void addMetricTo(Collection<Metric> metrics, String name, boolean success) {
+      long count = this.count.sum();
+      if (count == 0) {
+        return;
+      }
+      LatencyHistogram histogram = this.histogram;
+      long min = minNs.get();
+      long max = maxNs.get();
+      metrics.add(
+          new Metric(
+              name,
+              (int) Math.min(count, Integer.MAX_VALUE),
+              elapsedNs.sum(),
+              min == Long.MAX_VALUE ? 0 : min,
+              max,
+              percentile(histogram, 50, max),
+              percentile(histogram, 90, max),
+              percentile(histogram, 99, max),
+              success));
+    }
+
+    private static long percentile(LatencyHistogram histogram, double percentile, long max) {
+      return histogram == null ? 0 : Math.min(max, histogram.getValueAtPercentile(percentile));
+    }
+
+    void reset() {
+      count.reset();
+      elapsedNs.reset();
+      minNs.reset();
+      maxNs.reset();
+      LatencyHistogram histogram = this.histogram;
+      if (histogram != null) {
+        histogram.reset();
+      }
+    }
   }
 }
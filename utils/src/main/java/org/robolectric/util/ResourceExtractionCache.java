@@ -0,0 +1,229 @@
+package org.robolectric.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Extracts classpath resources, such as native libraries, ICU data and fonts, to the file system.
+ *
+ * <p>By default, resources are extracted to a fresh temporary directory in every JVM. Set the
+ * {@code robolectric.extractionCacheDirectory} system property to a directory (e.g. {@code
+ * ~/.robolectric/extraction-cache}) to share extracted resources between JVMs instead. Each set of
+ * resources is stored in a directory named after a SHA-256 hash of the resources' contents, so
+ * it's reused by any JVM extracting the same resources. Directories are populated under a file
+ * lock and atomically renamed into place, so concurrent JVMs never observe partially-extracted
+ * resources. Robolectric never deletes anything from the cache directory; every version of the
+ * resources adds a directory and a lock file, which may be deleted while no tests are running.
+ *
+ * <p>The number of bytes copied and reused are reported as the {@code extractedBytesCopied} and
+ * {@code extractedBytesReused} perf stats.
+ */
+@SuppressWarnings({"NewApi", "AndroidJdkLibsChecker"})
+public class ResourceExtractionCache {
+  public static final String CACHE_DIRECTORY_PROPERTY = "robolectric.extractionCacheDirectory";
+
+  /** Bumped whenever the layout of the cache or the way keys are computed changes. */
+  private static final int CACHE_FORMAT_VERSION = 2;
+
+  private static ResourceExtractionCache instance;
+
+  @Nullable private final Path cacheDirectory;
+
+  /** Native libraries handed out by {@link #extractNativeLibrary}. */
+  private final Set<Path> nativeLibraries = new HashSet<>();
+
+  @VisibleForTesting
+  ResourceExtractionCache(@Nullable Path cacheDirectory) {
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  /** Returns the cache configured by system properties. */
+  public static synchronized ResourceExtractionCache getInstance() {
+    if (instance == null) {
+      String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY, "");
+      instance =
+          new ResourceExtractionCache(
+              directory.isEmpty() ? null : Paths.get(directory).toAbsolutePath());
+    }
+    return instance;
+  }
+
+  /**
+   * Returns a directory containing the given resources.
+   *
+   * @param name a name describing the resources, used as part of the directory name
+   * @param resources the resources to extract, keyed by their path relative to the directory
+   */
+  public synchronized Path extract(String name, Map<String, URL> resources) throws IOException {
+    if (cacheDirectory != null) {
+      try {
+        return extractToCache(name, resources);
+      } catch (IOException | RuntimeException e) {
+        Logger.warn(
+            "Unable to use extraction cache in %s, extracting to a temporary directory instead: %s",
+            cacheDirectory, e);
+      }
+    }
+    Path directory = new TempDirectory(name).getBasePath();
+    copyResources(resources, directory);
+    return directory;
+  }
+
+  /**
+   * Returns the path of a file containing the given native library.
+   *
+   * <p>A library can only be loaded from a given path by a single class loader, so the cached copy
+   * of a library is only returned once per JVM; subsequent calls (e.g. from other sandboxes)
+   * extract it to a fresh temporary directory.
+   *
+   * @param fileName the file name of the library, e.g. as returned by {@link
+   *     System#mapLibraryName(String)}
+   */
+  public synchronized Path extractNativeLibrary(String fileName, URL resource) throws IOException {
+    Map<String, URL> resources = new TreeMap<>();
+    resources.put(fileName, resource);
+    Path library = extract(fileName, resources).resolve(fileName);
+    if (nativeLibraries.add(library)) {
+      return library;
+    }
+    Path copy = new TempDirectory(fileName).getBasePath().resolve(fileName);
+    Files.copy(library, copy);
+    PerfStatsCollector.getInstance().incrementCount("extractedBytesCopied", Files.size(copy));
+    return copy;
+  }
+
+  private Path extractToCache(String name, Map<String, URL> resources) throws IOException {
+    // only the cache needs the contents hashed, to find the directory to reuse
+    Map<String, ResourceInfo> infos = new TreeMap<>();
+    for (Map.Entry<String, URL> entry : resources.entrySet()) {
+      infos.put(entry.getKey(), ResourceInfo.of(entry.getValue()));
+    }
+    String directoryName = name + "-" + keyFor(infos);
+    Path directory = cacheDirectory.resolve(directoryName);
+    if (!Files.isDirectory(directory)) {
+      Files.createDirectories(cacheDirectory);
+      Path lockFile = cacheDirectory.resolve(directoryName + ".lock");
+      try (RandomAccessFile raf = new RandomAccessFile(lockFile.toFile(), "rw");
+          FileChannel channel = raf.getChannel();
+          FileLock ignored = channel.lock()) {
+        // another JVM may have populated the directory while we were waiting for the lock
+        if (!Files.isDirectory(directory)) {
+          // any temporary directory left behind belongs to a JVM that died while holding the lock
+          Path tmpDirectory = cacheDirectory.resolve(directoryName + ".tmp");
+          deleteRecursively(tmpDirectory);
+          Files.createDirectory(tmpDirectory);
+          copyResources(resources, tmpDirectory);
+          moveAtomically(tmpDirectory, directory);
+          return directory;
+        }
+      }
+    }
+
+    long size = 0;
+    for (ResourceInfo info : infos.values()) {
+      size += info.size;
+    }
+    PerfStatsCollector.getInstance().incrementCount("extractedBytesReused", size);
+    return directory;
+  }
+
+  private static void copyResources(Map<String, URL> resources, Path directory)
+      throws IOException {
+    for (Map.Entry<String, URL> entry : resources.entrySet()) {
+      Path path = directory.resolve(entry.getKey());
+      Files.createDirectories(path.getParent());
+      try (InputStream in = entry.getValue().openStream()) {
+        long size = Files.copy(in, path);
+        PerfStatsCollector.getInstance().incrementCount("extractedBytesCopied", size);
+      }
+    }
+  }
+
+  private static void moveAtomically(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target);
+    } catch (FileAlreadyExistsException e) {
+      // can't happen while holding the lock, unless the lock isn't honored (e.g. on some network
+      // file systems); the existing directory has the same contents
+      deleteRecursively(source);
+    }
+  }
+
+  private static String keyFor(Map<String, ResourceInfo> infos) {
+    Hasher hasher = Hashing.sha256().newHasher().putInt(CACHE_FORMAT_VERSION);
+    for (Map.Entry<String, ResourceInfo> entry : infos.entrySet()) {
+      hasher
+          .putString(entry.getKey(), StandardCharsets.UTF_8)
+          .putLong(entry.getValue().size)
+          .putString(entry.getValue().contentHash, StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString().substring(0, 32);
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    Files.walkFileTree(
+        path,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  /** A hash and size identifying the contents of a resource. */
+  private static class ResourceInfo {
+    final long size;
+    final String contentHash;
+
+    private ResourceInfo(long size, String contentHash) {
+      this.size = size;
+      this.contentHash = contentHash;
+    }
+
+    static ResourceInfo of(URL url) throws IOException {
+      Hasher hasher = Hashing.sha256().newHasher();
+      try (InputStream in = url.openStream()) {
+        long size = ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+        return new ResourceInfo(size, hasher.hash().toString());
+      }
+    }
+  }
+}
@@ -2,6 +2,7 @@ package org.robolectric.util
 
 import com.google.common.truth.Truth.assertThat
 import java.io.IOException
+import java.util.concurrent.atomic.AtomicLong
 import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
@@ -107,9 +108,109 @@ class PerfStatsCollectorTest {
     assertThat(collector.metrics).isEmpty()
   }
 
+  @Test
+  fun shouldReportPercentiles() {
+    for (i in 1..100) {
+      val event = collector.startEvent("event")
+      fakeClock.delay(i)
+      event.finished()
+    }
+    val metric = collector.metrics.single()
+    assertThat(metric.count).isEqualTo(100)
+    assertThat(metric.minNs).isEqualTo(1)
+    assertThat(metric.maxNs).isEqualTo(100)
+    // buckets are accurate to within 1/16 of the recorded value
+    assertThat(metric.p50Ns).isAtLeast(50)
+    assertThat(metric.p50Ns).isAtMost(54)
+    assertThat(metric.p90Ns).isAtLeast(90)
+    assertThat(metric.p90Ns).isAtMost(96)
+    assertThat(metric.p99Ns).isAtLeast(99)
+    assertThat(metric.p99Ns).isAtMost(100)
+  }
+
+  @Test
+  fun whenDisabled_shouldNotRecordOrReadClock() {
+    collector.setEnabled(false)
+    val result =
+      collector.measure<String, RuntimeException>("event") {
+        fakeClock.delay(10)
+        "return value"
+      }
+    collector.startEvent("other event").finished()
+    collector.incrementCount("counter")
+    assertThat(result).isEqualTo("return value")
+    assertThat(fakeClock.reads).isEqualTo(0)
+    assertThat(collector.metrics).isEmpty()
+  }
+
+  @Test
+  fun metricHandle_shouldRemainValidAfterReset() {
+    val handle = collector.getMetricHandle("event")
+    handle.measure<RuntimeException> { fakeClock.delay(10) }
+    collector.reset()
+    assertThat(collector.metrics).isEmpty()
+    handle.measure<RuntimeException> { fakeClock.delay(5) }
+    assertThat(collector.metrics).containsExactly(Metric("event", 1, 5, true))
+    assertThat(collector.metrics.single().elapsedNs).isEqualTo(5)
+  }
+
+  @Test
+  fun incrementCount_shouldAddAmount() {
+    collector.incrementCount("bytes", 1000)
+    collector.incrementCount("bytes", 24)
+    assertThat(collector.metrics.map { it.name to it.count }).containsExactly("bytes" to 1024)
+  }
+
+  @Test
+  fun setCount_shouldReplaceCount() {
+    collector.incrementCount("bytes", 1000)
+    collector.setCount("bytes", 24)
+    assertThat(collector.metrics.map { it.name to it.count }).containsExactly("bytes" to 24)
+  }
+
+  @Test
+  fun registerGauge_shouldReportCurrentValueAfterReset() {
+    var bytes = 1000L
+    collector.registerGauge("bytes") { bytes }
+    collector.reset()
+    bytes = 24
+    assertThat(collector.metrics.map { it.name to it.count }).containsExactly("bytes" to 24)
+  }
+
+  @Test
+  fun registerGauge_withCounters_shouldReportTheirSum() {
+    val first = AtomicLong(3)
+    val second = AtomicLong(4)
+    collector.registerGauge("addresses", first)
+    collector.registerGauge("addresses", second)
+    collector.reset()
+    second.set(5)
+    assertThat(collector.metrics.map { it.name to it.count }).containsExactly("addresses" to 8)
+  }
+
+  @Test
+  fun shouldCountConcurrentEvents() {
+    val threads =
+      (1..4).map {
+        Thread {
+          for (i in 1..1000) {
+            collector.incrementCount("counter")
+            collector.startEvent("event").finished()
+          }
+        }
+      }
+    threads.forEach { it.start() }
+    threads.forEach { it.join() }
+    assertThat(collector.metrics.map { it.name to it.count })
+      .containsExactly("counter" to 4000, "event" to 4000)
+  }
+
   private class FakeClock : Clock {
     private var timeNs = 0
+    var reads = 0
+
     override fun nanoTime(): Long {
+      reads++
       return timeNs.toLong()
     }
 
@@ -0,0 +1,86 @@
+package org.robolectric.util
+
+import com.google.common.truth.Truth.assertThat
+import java.net.URL
+import java.nio.file.Files
+import java.nio.file.Path
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class ResourceExtractionCacheTest {
+  private val tempDirectory = TempDirectory("extraction_cache_test")
+  private lateinit var cacheDirectory: Path
+  private lateinit var cache: ResourceExtractionCache
+
+  @Before
+  fun setUp() {
+    cacheDirectory = tempDirectory.create("cache")
+    cache = ResourceExtractionCache(cacheDirectory)
+    PerfStatsCollector.getInstance().reset()
+  }
+
+  @Test
+  fun extract_shouldCopyResourcesToCacheDirectory() {
+    val directory =
+      cache.extract("test", mapOf("a.txt" to resource("a", "aaa"), "sub/b.txt" to resource("b", "b")))
+
+    assertThat(directory.parent).isEqualTo(cacheDirectory)
+    assertThat(String(Files.readAllBytes(directory.resolve("a.txt")))).isEqualTo("aaa")
+    assertThat(String(Files.readAllBytes(directory.resolve("sub/b.txt")))).isEqualTo("b")
+    assertThat(count("extractedBytesCopied")).isEqualTo(4)
+  }
+
+  @Test
+  fun extract_shouldReuseDirectoryForSameContents() {
+    val first = cache.extract("test", mapOf("a.txt" to resource("a", "aaa")))
+    val second =
+      ResourceExtractionCache(cacheDirectory).extract("test", mapOf("a.txt" to resource("a2", "aaa")))
+
+    assertThat(second).isEqualTo(first)
+    assertThat(count("extractedBytesCopied")).isEqualTo(3)
+    assertThat(count("extractedBytesReused")).isEqualTo(3)
+  }
+
+  @Test
+  fun extract_shouldUseNewDirectoryForChangedContents() {
+    val first = cache.extract("test", mapOf("a.txt" to resource("a", "aaa")))
+    val second = cache.extract("test", mapOf("a.txt" to resource("a", "bbb")))
+
+    assertThat(second).isNotEqualTo(first)
+    assertThat(String(Files.readAllBytes(first.resolve("a.txt")))).isEqualTo("aaa")
+    assertThat(String(Files.readAllBytes(second.resolve("a.txt")))).isEqualTo("bbb")
+  }
+
+  @Test
+  fun extractNativeLibrary_shouldReturnCachedCopyOnlyOnce() {
+    val library = resource("lib", "native code")
+
+    val first = cache.extractNativeLibrary("libfoo.so", library)
+    val second = cache.extractNativeLibrary("libfoo.so", library)
+
+    assertThat(first.startsWith(cacheDirectory)).isTrue()
+    assertThat(second.startsWith(cacheDirectory)).isFalse()
+    assertThat(second.fileName.toString()).isEqualTo("libfoo.so")
+    assertThat(String(Files.readAllBytes(second))).isEqualTo("native code")
+  }
+
+  @Test
+  fun extract_withoutCacheDirectory_shouldExtractToTemporaryDirectory() {
+    val uncached = ResourceExtractionCache(null)
+
+    val first = uncached.extract("test", mapOf("a.txt" to resource("a", "aaa")))
+    val second = uncached.extract("test", mapOf("a.txt" to resource("a", "aaa")))
+
+    assertThat(second).isNotEqualTo(first)
+    assertThat(String(Files.readAllBytes(second.resolve("a.txt")))).isEqualTo("aaa")
+  }
+
+  private fun resource(name: String, contents: String): URL =
+    tempDirectory.createFile(name, contents).toUri().toURL()
+
+  private fun count(name: String): Int =
+    PerfStatsCollector.getInstance().metrics.filter { it.name == name }.sumOf { it.count }
+}